@@ -2,8 +2,15 @@ package com.example.AutoDeployApp.config;
 
 import com.example.AutoDeployApp.service.ServerService;
 import com.example.AutoDeployApp.service.AnsibleInstallationService;
+import com.example.AutoDeployApp.service.K8sPodLogStreamService;
+import com.example.AutoDeployApp.service.K8sWorkloadsService;
+import com.example.AutoDeployApp.service.SshSessionPool;
+import com.example.AutoDeployApp.ws.TerminalRecorder;
 import com.example.AutoDeployApp.ws.TerminalWebSocketHandler;
 import com.example.AutoDeployApp.ws.AnsibleWebSocketHandler;
+import com.example.AutoDeployApp.ws.PodExecWebSocketHandler;
+import com.example.AutoDeployApp.ws.PodLogWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.lang.NonNull;
@@ -18,17 +25,59 @@ public class WebSocketConfig implements WebSocketConfigurer {
 
     private final ServerService serverService;
     private final AnsibleInstallationService ansibleInstallationService;
+    private final K8sPodLogStreamService podLogStreamService;
+    private final K8sWorkloadsService k8sWorkloadsService;
+    private final SshSessionPool sshSessionPool;
+
+    @Value("${terminal.outbound.max-bytes:1048576}")
+    private int terminalOutboundMaxBytes;
+
+    @Value("${terminal.outbound.stall-timeout-ms:60000}")
+    private long terminalStallTimeoutMs;
+
+    @Value("${terminal.resume.scrollback-bytes:262144}")
+    private int terminalScrollbackBytes;
+
+    @Value("${terminal.resume.grace-seconds:300}")
+    private long terminalResumeGraceSeconds;
+
+    @Value("${terminal.recording.enabled:false}")
+    private boolean terminalRecordingEnabled;
+
+    @Value("${terminal.recording.dir:./recordings/terminal}")
+    private String terminalRecordingDir;
+
+    @Value("${terminal.recording.record-input:false}")
+    private boolean terminalRecordInput;
+
+    @Value("${terminal.recording.max-pending-bytes:8388608}")
+    private long terminalRecordingMaxPendingBytes;
 
     public WebSocketConfig(ServerService serverService,
-            AnsibleInstallationService ansibleInstallationService) {
+            AnsibleInstallationService ansibleInstallationService,
+            K8sPodLogStreamService podLogStreamService,
+            K8sWorkloadsService k8sWorkloadsService,
+            SshSessionPool sshSessionPool) {
         this.serverService = serverService;
         this.ansibleInstallationService = ansibleInstallationService;
+        this.podLogStreamService = podLogStreamService;
+        this.k8sWorkloadsService = k8sWorkloadsService;
+        this.sshSessionPool = sshSessionPool;
+    }
+
+    @Bean
+    @NonNull
+    public TerminalRecorder terminalRecorder() {
+        return new TerminalRecorder(terminalRecordingEnabled, terminalRecordingDir, terminalRecordInput,
+                terminalRecordingMaxPendingBytes);
     }
 
     @Bean
     @NonNull
     public TerminalWebSocketHandler terminalWebSocketHandler() {
-        return new TerminalWebSocketHandler(serverService);
+        return new TerminalWebSocketHandler(serverService, sshSessionPool, terminalRecorder(),
+                terminalOutboundMaxBytes, terminalStallTimeoutMs, terminalScrollbackBytes,
+                terminalResumeGraceSeconds);
     }
 
     @Bean
@@ -37,6 +86,18 @@ public class WebSocketConfig implements WebSocketConfigurer {
         return new AnsibleWebSocketHandler(ansibleInstallationService, serverService);
     }
 
+    @Bean
+    @NonNull
+    public PodLogWebSocketHandler podLogWebSocketHandler() {
+        return new PodLogWebSocketHandler(podLogStreamService);
+    }
+
+    @Bean
+    @NonNull
+    public PodExecWebSocketHandler podExecWebSocketHandler() {
+        return new PodExecWebSocketHandler(k8sWorkloadsService);
+    }
+
     @Override
     public void registerWebSocketHandlers(@NonNull WebSocketHandlerRegistry registry) {
         HttpSessionHandshakeInterceptor httpSessionInterceptor = new HttpSessionHandshakeInterceptor();
@@ -54,5 +115,13 @@ public class WebSocketConfig implements WebSocketConfigurer {
         registry.addHandler(ansibleWebSocketHandler(), "/ws/ansible")
                 .addInterceptors(httpSessionInterceptor)
                 .setAllowedOrigins("*");
+
+        registry.addHandler(podLogWebSocketHandler(), "/ws/pod-logs")
+                .addInterceptors(httpSessionInterceptor)
+                .setAllowedOrigins("*");
+
+        registry.addHandler(podExecWebSocketHandler(), "/ws/pod-exec")
+                .addInterceptors(httpSessionInterceptor)
+                .setAllowedOrigins("*");
     }
 }
@@ -5,6 +5,7 @@ import com.example.AutoDeployApp.entity.UserEntity;
 import com.example.AutoDeployApp.entity.UserActivity;
 import com.example.AutoDeployApp.service.ApplicationService;
 import com.example.AutoDeployApp.service.ClusterService;
+import com.example.AutoDeployApp.service.DeploymentRolloutService;
 import com.example.AutoDeployApp.entity.Server;
 import com.example.AutoDeployApp.service.KubernetesService;
 import com.example.AutoDeployApp.service.K8sWorkloadsService;
@@ -34,15 +35,17 @@ public class AdminController {
     private final KubernetesService kubernetesService;
     private final K8sWorkloadsService k8sWorkloadsService;
     private final ClusterService clusterService;
+    private final DeploymentRolloutService deploymentRolloutService;
 
     public AdminController(UserService userService, ApplicationService applicationService,
             KubernetesService kubernetesService, K8sWorkloadsService k8sWorkloadsService,
-            ClusterService clusterService) {
+            ClusterService clusterService, DeploymentRolloutService deploymentRolloutService) {
         this.userService = userService;
         this.applicationService = applicationService;
         this.kubernetesService = kubernetesService;
         this.k8sWorkloadsService = k8sWorkloadsService;
         this.clusterService = clusterService;
+        this.deploymentRolloutService = deploymentRolloutService;
     }
 
     @GetMapping("/users")
@@ -355,8 +358,12 @@ public class AdminController {
             Application application = applicationService.getApplicationById(id)
                     .orElseThrow(() -> new IllegalArgumentException("Application not found"));
 
-            // Kiểm tra status - cho phép PENDING (lần đầu) hoặc ERROR (retry)
+            // Kiểm tra status - cho phép PENDING (lần đầu) hoặc ERROR (retry); DEPLOYING không còn rollout chạy
+            // (ứng dụng khởi động lại giữa chừng) được coi như ERROR
             String currentStatus = application.getStatus();
+            if ("DEPLOYING".equals(currentStatus) && !deploymentRolloutService.isRolloutRunning(id)) {
+                currentStatus = "ERROR";
+            }
             if (!"PENDING".equals(currentStatus) && !"ERROR".equals(currentStatus)) {
                 return ResponseEntity.badRequest()
                         .body(Map.of("error", "Bad Request", "message",
@@ -430,11 +437,11 @@ public class AdminController {
             // Hàm tiện ích dùng để nối log
             java.util.function.Consumer<String> appendLog = (logMessage) -> {
                 String currentLogs = application.getDeploymentLogs() != null ? application.getDeploymentLogs() : "";
-                String timestamp = java.time.LocalDateTime.now()
-                        .format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss"));
-                String newLog = currentLogs + "[" + timestamp + "] " + logMessage + "\n";
-                application.setDeploymentLogs(newLog);
+                String line = formatDeploymentLogLine(System.currentTimeMillis(), logMessage);
+                application.setDeploymentLogs(currentLogs + line + "\n");
                 applicationService.updateApplication(application);
+                // Đẩy realtime cho các client đang theo dõi /deployment-requests/{id}/logs/stream
+                deploymentRolloutService.publish(application.getId(), line);
             };
 
             // Xóa log cũ nếu đang retry
@@ -612,79 +619,97 @@ public class AdminController {
                 application.setK8sIngressName(ingressName);
                 applicationService.updateApplication(application);
 
-                // 9. Chờ Deployment sẵn sàng (timeout 2 phút)
+                // 9. Chờ Deployment sẵn sàng (timeout 2 phút) trên thread nền - request trả về ngay với rolloutId.
+                // Tiến trình rollout được đẩy SSE ngay khi xảy ra, còn ghi DB theo lô (~1s) trên thread rollout,
+                // không ghi DB trên thread watch của fabric8. Dừng sớm nếu container lỗi không tự phục hồi.
                 appendLog.accept("⏳ Đang chờ Deployment sẵn sàng... (timeout: 2 phút)");
-                kubernetesService.waitForDeploymentReady(namespace, deploymentName, 2);
-                appendLog.accept("✅ Deployment đã sẵn sàng: " + deploymentName);
+                application.setStatus("DEPLOYING");
+                applicationService.updateApplication(application);
 
-                // 10. Lấy Ingress URL từ MetalLB
-                appendLog.accept("🔍 Đang lấy Ingress URL từ MetalLB...");
-                String accessUrl = kubernetesService.getIngressURL(namespace, ingressName);
-                appendLog.accept("✅ Đã lấy Ingress URL: " + accessUrl);
+                final int finalReplicas = replicas;
+                final String rolloutNamespace = namespace;
+                final Object adminUsername = session.getAttribute("USER_USERNAME");
+                final String ip = xff != null ? xff : (xri != null ? xri : null);
+                java.util.concurrent.ConcurrentLinkedQueue<String> rolloutLines = new java.util.concurrent.ConcurrentLinkedQueue<>();
+                DeploymentRolloutService.Rollout rollout = deploymentRolloutService.startRollout(application.getId(),
+                        rolloutNamespace, deploymentName, 2, new DeploymentRolloutService.RolloutCallbacks() {
+                            @Override
+                            public void onEvent(DeploymentRolloutService.RolloutEvent event) {
+                                String line = formatDeploymentLogLine(event.timestamp(), event.message());
+                                rolloutLines.add(line);
+                                deploymentRolloutService.publish(application.getId(), line);
+                            }
 
-                // 11. Cập nhật metadata K8s vào Application
-                appendLog.accept("💾 Đang lưu thông tin deployment vào database...");
-                application.setStatus("RUNNING");
-                application.setK8sDeploymentName(deploymentName);
-                application.setK8sServiceName(serviceName);
-                application.setK8sIngressName(ingressName);
-                application.setAccessUrl(accessUrl);
-                application.setReplicas(replicas);
-                // clusterId đã được lưu sớm hơn (sau khi chọn cluster), không cần set lại
-
-                Application savedApplication = applicationService.updateApplication(application);
-                appendLog.accept("✅ Đã lưu tất cả thông tin deployment vào database");
-                appendLog.accept("🎉 Triển khai hoàn tất thành công!");
-                String appNameForLog = savedApplication.getAppName(); // Biến dùng trong lambda
-
-                // Ghi lại hoạt động
-                Object adminUsername = session.getAttribute("USER_USERNAME");
-                if (adminUsername != null) {
-                    userService.findByUsername(adminUsername.toString()).ifPresent(admin -> {
-                        String ip = xff != null ? xff : (xri != null ? xri : null);
-                        userService.logActivity(admin, "DEPLOY_PROCESS",
-                                "Đã triển khai ứng dụng: " + appNameForLog + " lên K8s", ip);
-                    });
-                }
+                            @Override
+                            public void flush() {
+                                StringBuilder batch = new StringBuilder();
+                                for (String line; (line = rolloutLines.poll()) != null;) {
+                                    batch.append(line).append('\n');
+                                }
+                                if (batch.length() > 0) {
+                                    String currentLogs = application.getDeploymentLogs() != null
+                                            ? application.getDeploymentLogs() : "";
+                                    application.setDeploymentLogs(currentLogs + batch);
+                                    applicationService.updateApplication(application);
+                                }
+                            }
+
+                            @Override
+                            public void onReady() {
+                                // 10. Lấy Ingress URL từ MetalLB
+                                appendLog.accept("🔍 Đang lấy Ingress URL từ MetalLB...");
+                                String accessUrl = kubernetesService.getIngressURL(rolloutNamespace, ingressName);
+                                appendLog.accept("✅ Đã lấy Ingress URL: " + accessUrl);
+
+                                // 11. Cập nhật metadata K8s vào Application
+                                appendLog.accept("💾 Đang lưu thông tin deployment vào database...");
+                                application.setStatus("RUNNING");
+                                application.setK8sDeploymentName(deploymentName);
+                                application.setK8sServiceName(serviceName);
+                                application.setK8sIngressName(ingressName);
+                                application.setAccessUrl(accessUrl);
+                                application.setReplicas(finalReplicas);
+                                // clusterId đã được lưu sớm hơn (sau khi chọn cluster), không cần set lại
+
+                                Application savedApplication = applicationService.updateApplication(application);
+                                appendLog.accept("✅ Đã lưu tất cả thông tin deployment vào database");
+                                appendLog.accept("🎉 Triển khai hoàn tất thành công!");
+
+                                // Ghi lại hoạt động
+                                if (adminUsername != null) {
+                                    userService.findByUsername(adminUsername.toString()).ifPresent(admin -> userService
+                                            .logActivity(admin, "DEPLOY_PROCESS", "Đã triển khai ứng dụng: "
+                                                    + savedApplication.getAppName() + " lên K8s", ip));
+                                }
+                            }
 
-                // Trả response
+                            @Override
+                            public void onFailure(Exception error) {
+                                markDeploymentError(application, error);
+                            }
+                        });
+
+                // Trả response: 202, theo dõi qua /logs/stream và /rollout
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
-                response.put("applicationId", savedApplication.getId());
-                response.put("status", savedApplication.getStatus());
-                response.put("accessUrl", savedApplication.getAccessUrl());
-                response.put("message", "Ứng dụng đã được triển khai thành công lên Kubernetes");
+                response.put("applicationId", application.getId());
+                response.put("status", "DEPLOYING");
+                response.put("rolloutId", rollout.id());
+                response.put("message", "Đã tạo K8s resources, đang chờ Deployment sẵn sàng");
 
                 Map<String, Object> k8sResources = new HashMap<>();
-                k8sResources.put("namespace", namespace);
+                k8sResources.put("namespace", rolloutNamespace);
                 k8sResources.put("deployment", deploymentName);
                 k8sResources.put("service", serviceName);
                 k8sResources.put("ingress", ingressName);
                 response.put("k8sResources", k8sResources);
 
-                return ResponseEntity.ok(response);
+                return ResponseEntity.status(202).body(response);
 
             } catch (Exception k8sException) {
                 // Nếu triển khai K8s lỗi, cập nhật trạng thái ERROR và ghi log
                 // clusterId đã được lưu sẵn, nên có thể dọn tài nguyên nếu cần
-                String errorLog = "❌ LỖI: " + k8sException.getMessage();
-                if (application.getDeploymentLogs() != null) {
-                    String currentLogs = application.getDeploymentLogs();
-                    String timestamp = java.time.LocalDateTime.now()
-                            .format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss"));
-                    application.setDeploymentLogs(currentLogs + "[" + timestamp + "] " + errorLog + "\n");
-                } else {
-                    application
-                            .setDeploymentLogs("["
-                                    + java.time.LocalDateTime.now()
-                                            .format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss"))
-                                    + "] " + errorLog + "\n");
-                }
-                application.setStatus("ERROR");
-                // Giữ nguyên clusterId đã lưu để dọn dẹp sau (clusterId không thay đổi)
-                applicationService.updateApplication(application);
-
-                logger.error("Failed to deploy to Kubernetes", k8sException);
+                markDeploymentError(application, k8sException);
                 return ResponseEntity.status(500)
                         .body(Map.of(
                                 "error", "Kubernetes Deployment Failed",
@@ -700,6 +725,34 @@ public class AdminController {
         }
     }
 
+    private static String formatDeploymentLogLine(long timestampMillis, String message) {
+        String timestamp = java.time.LocalDateTime.ofInstant(java.time.Instant.ofEpochMilli(timestampMillis),
+                java.time.ZoneId.systemDefault()).format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss"));
+        return "[" + timestamp + "] " + message;
+    }
+
+    // Triển khai lỗi (khi tạo resources hoặc khi chờ rollout): ghi log lỗi, chuyển ERROR để có thể retry
+    private void markDeploymentError(Application application, Exception error) {
+        String line = formatDeploymentLogLine(System.currentTimeMillis(), "❌ LỖI: " + error.getMessage());
+        String currentLogs = application.getDeploymentLogs() != null ? application.getDeploymentLogs() : "";
+        application.setDeploymentLogs(currentLogs + line + "\n");
+        application.setStatus("ERROR");
+        // Giữ nguyên clusterId đã lưu để dọn dẹp sau (clusterId không thay đổi)
+        applicationService.updateApplication(application);
+        deploymentRolloutService.publish(application.getId(), line);
+        logger.error("Failed to deploy to Kubernetes", error);
+    }
+
+    /**
+     * Admin: Trạng thái rollout gần nhất của 1 deployment request (RUNNING / READY / FAILED)
+     */
+    @GetMapping("/deployment-requests/{id}/rollout")
+    public ResponseEntity<?> getDeploymentRollout(@PathVariable Long id) {
+        return deploymentRolloutService.latestRollout(id)
+                .<ResponseEntity<?>>map(r -> ResponseEntity.ok(r.toMap()))
+                .orElseGet(() -> ResponseEntity.status(404).body(Map.of("error", "No rollout for this application")));
+    }
+
     /**
      * Admin: Retry triển khai lại một deployment request (shortcut cho process)
      */
@@ -1235,6 +1288,16 @@ public class AdminController {
         }
     }
 
+    /**
+     * Admin: Theo dõi deployment logs realtime (SSE, event "log" cho mỗi dòng mới).
+     * Client nên gọi /logs trước để lấy phần log đã có.
+     */
+    @GetMapping("/deployment-requests/{id}/logs/stream")
+    public org.springframework.web.servlet.mvc.method.annotation.SseEmitter streamDeploymentLogs(
+            @PathVariable Long id) {
+        return deploymentRolloutService.subscribe(id);
+    }
+
     /**
      * Admin: Xóa hoàn toàn ứng dụng (xóa K8s resources và xóa record trong DB)
      */
@@ -1,6 +1,7 @@
 package com.example.AutoDeployApp.controller;
 
 import com.example.AutoDeployApp.service.ServerService;
+import com.example.AutoDeployApp.service.SshScriptBatch;
 import com.example.AutoDeployApp.entity.Server;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -126,210 +127,119 @@ public class AnsibleConfigController {
 
             try {
                 // Kiem tra sudo NOPASSWD neu co SSH key
+                // (tra cache nang luc server; neu khong kiem tra duoc, su dung sudo password)
                 if (pem != null && !pem.isBlank()) {
-                    try {
-                        String checkSudoCmd = "sudo -l 2>/dev/null | grep -q 'NOPASSWD' && echo 'HAS_NOPASSWD' || echo 'NO_NOPASSWD'";
-                        String sudoCheckResult = serverService.execCommandWithKey(target.getHost(),
-                                target.getPort() != null ? target.getPort() : 22,
-                                target.getUsername(), pem, checkSudoCmd, 10000);
-                        useSudoNopasswd = (sudoCheckResult != null && sudoCheckResult.contains("HAS_NOPASSWD"));
-                    } catch (Exception e) {
-                        // Neu khong kiem tra duoc, su dung sudo password
-                    }
+                    var caps = serverService.getCapabilities(target, null, false);
+                    useSudoNopasswd = caps != null && caps.sudoNopasswd();
                 }
 
+                // Toàn bộ bước chuẩn bị + ghi file + xác minh chạy trong 1 lần exec (1 round trip), lỗi 1 bước
+                // không chặn các bước sau như trước; kết quả xác minh lấy từ output của bước tương ứng
+                boolean useKey = pem != null && !pem.isBlank();
+                String sudoPrefix = useKey && useSudoNopasswd ? "sudo " : "";
+                int port = target.getPort() != null ? target.getPort() : 22;
+                List<SshScriptBatch.Step> writeSteps = new java.util.ArrayList<>();
+
                 // Tao thu muc can thiet
-                if (pem != null && !pem.isBlank()) {
-                    execCommandWithSudoOptimization(target, "mkdir -p /etc/ansible /var/log/ansible", useSudoNopasswd,
-                            15000);
-                } else {
-                    serverService.execCommand(target.getHost(),
-                            target.getPort() != null ? target.getPort() : 22,
-                            target.getUsername(), sudoPassword, "mkdir -p /etc/ansible /var/log/ansible", 15000);
-                }
+                writeSteps.add(new SshScriptBatch.Step("mkdir", sudoPrefix + "mkdir -p /etc/ansible /var/log/ansible"));
 
-                // Tao backup va cleanup backup cu
-                if (pem != null && !pem.isBlank()) {
-                    // Tạo bản sao lưu cố định (.bak)
-                    execCommandWithSudoOptimization(target,
-                            "bash -lc '[ -f /etc/ansible/ansible.cfg ] && cp -a /etc/ansible/ansible.cfg /etc/ansible/ansible.cfg.bak || true'",
-                            useSudoNopasswd, 15000);
-                    execCommandWithSudoOptimization(target,
-                            "bash -lc '[ -f /etc/ansible/hosts ] && cp -a /etc/ansible/hosts /etc/ansible/hosts.bak || true'",
-                            useSudoNopasswd, 15000);
-                } else {
-                    // Tạo bản sao lưu cố định (.bak)
-                    serverService.execCommand(target.getHost(),
-                            target.getPort() != null ? target.getPort() : 22,
-                            target.getUsername(), sudoPassword,
-                            "bash -lc '[ -f /etc/ansible/ansible.cfg ] && cp -a /etc/ansible/ansible.cfg /etc/ansible/ansible.cfg.bak || true'",
-                            15000);
-                    serverService.execCommand(target.getHost(),
-                            target.getPort() != null ? target.getPort() : 22,
-                            target.getUsername(), sudoPassword,
-                            "bash -lc '[ -f /etc/ansible/hosts ] && cp -a /etc/ansible/hosts /etc/ansible/hosts.bak || true'",
-                            15000);
-                }
+                // Tạo bản sao lưu cố định (.bak)
+                writeSteps.add(new SshScriptBatch.Step("backupCfg", sudoPrefix
+                        + "bash -lc '[ -f /etc/ansible/ansible.cfg ] && cp -a /etc/ansible/ansible.cfg /etc/ansible/ansible.cfg.bak || true'"));
+                writeSteps.add(new SshScriptBatch.Step("backupHosts", sudoPrefix
+                        + "bash -lc '[ -f /etc/ansible/hosts ] && cp -a /etc/ansible/hosts /etc/ansible/hosts.bak || true'"));
 
                 // Ghi file cfg bang base64 encoding
                 String cfgSafe = cfg == null ? "" : cfg;
                 String cfgBase64 = java.util.Base64.getEncoder().encodeToString(cfgSafe.getBytes("UTF-8"));
-                String cmdCfg = "echo '" + cfgBase64
-                        + "' | base64 -d | sudo tee /etc/ansible/ansible.cfg > /dev/null && echo 'CFG_WRITTEN'";
-                if (pem != null && !pem.isBlank()) {
-                    execCommandWithSudoOptimization(target, cmdCfg, useSudoNopasswd, 45000);
+                if (useKey) {
+                    writeSteps.add(new SshScriptBatch.Step("writeCfg", sudoPrefix + "echo '" + cfgBase64
+                            + "' | base64 -d | sudo tee /etc/ansible/ansible.cfg > /dev/null && echo 'CFG_WRITTEN'"));
                 } else {
                     // Truyen password cho sudo bang echo
-                    String cmdCfgWithPassword = "echo '" + sudoPassword + "' | sudo -S bash -c 'echo \"" + cfgBase64
-                            + "\" | base64 -d | sudo tee /etc/ansible/ansible.cfg > /dev/null && echo CFG_WRITTEN'";
-                    serverService.execCommand(target.getHost(),
-                            target.getPort() != null ? target.getPort() : 22,
-                            target.getUsername(), sudoPassword, cmdCfgWithPassword, 45000);
+                    writeSteps.add(new SshScriptBatch.Step("writeCfg", "echo '" + sudoPassword
+                            + "' | sudo -S bash -c 'echo \"" + cfgBase64
+                            + "\" | base64 -d | sudo tee /etc/ansible/ansible.cfg > /dev/null && echo CFG_WRITTEN'"));
                 }
 
                 // Ghi file hosts bang base64 encoding
                 String hostsSafe = hosts == null ? "" : hosts;
                 String hostsBase64 = java.util.Base64.getEncoder().encodeToString(hostsSafe.getBytes("UTF-8"));
-                String cmdHosts = "echo '" + hostsBase64
-                        + "' | base64 -d | sudo tee /etc/ansible/hosts > /dev/null && echo 'HOSTS_WRITTEN'";
-                if (pem != null && !pem.isBlank()) {
-                    execCommandWithSudoOptimization(target, cmdHosts, useSudoNopasswd, 45000);
+                if (useKey) {
+                    writeSteps.add(new SshScriptBatch.Step("writeHosts", sudoPrefix + "echo '" + hostsBase64
+                            + "' | base64 -d | sudo tee /etc/ansible/hosts > /dev/null && echo 'HOSTS_WRITTEN'"));
                 } else {
-                    // Truyen password cho sudo bang echo
-                    String cmdHostsWithPassword = "echo '" + sudoPassword + "' | sudo -S bash -c 'echo \"" + hostsBase64
-                            + "\" | base64 -d | sudo tee /etc/ansible/hosts > /dev/null && echo HOSTS_WRITTEN'";
-                    serverService.execCommand(target.getHost(),
-                            target.getPort() != null ? target.getPort() : 22,
-                            target.getUsername(), sudoPassword, cmdHostsWithPassword, 45000);
+                    writeSteps.add(new SshScriptBatch.Step("writeHosts", "echo '" + sudoPassword
+                            + "' | sudo -S bash -c 'echo \"" + hostsBase64
+                            + "\" | base64 -d | sudo tee /etc/ansible/hosts > /dev/null && echo HOSTS_WRITTEN'"));
                 }
 
                 // Ghi file variables (group_vars/all.yml) bang base64 encoding
-                if (vars != null && !vars.trim().isEmpty()) {
-                    String varsSafe = vars;
-                    String varsBase64 = java.util.Base64.getEncoder().encodeToString(varsSafe.getBytes("UTF-8"));
-                    String cmdVars = "echo '" + varsBase64
-                            + "' | base64 -d > /tmp/ansible.vars.tmp && cp /tmp/ansible.vars.tmp /etc/ansible/group_vars/all.yml && rm /tmp/ansible.vars.tmp";
-                    if (pem != null && !pem.isBlank()) {
-                        execCommandWithSudoOptimization(target, cmdVars, useSudoNopasswd, 45000);
+                boolean hasVars = vars != null && !vars.trim().isEmpty();
+                if (hasVars) {
+                    String varsBase64 = java.util.Base64.getEncoder().encodeToString(vars.getBytes("UTF-8"));
+                    if (useKey) {
+                        writeSteps.add(new SshScriptBatch.Step("writeVars", sudoPrefix + "echo '" + varsBase64
+                                + "' | base64 -d > /tmp/ansible.vars.tmp && cp /tmp/ansible.vars.tmp /etc/ansible/group_vars/all.yml && rm /tmp/ansible.vars.tmp"));
                     } else {
-                        // Truyen password cho sudo bang echo
-                        String cmdVarsWithPassword = "echo '" + sudoPassword + "' | sudo -S bash -c 'echo \""
-                                + varsBase64
-                                + "\" | base64 -d > /tmp/ansible.vars.tmp && cp /tmp/ansible.vars.tmp /etc/ansible/group_vars/all.yml && rm /tmp/ansible.vars.tmp'";
-                        serverService.execCommand(target.getHost(),
-                                target.getPort() != null ? target.getPort() : 22,
-                                target.getUsername(), sudoPassword, cmdVarsWithPassword, 45000);
+                        writeSteps.add(new SshScriptBatch.Step("writeVars", "echo '" + sudoPassword
+                                + "' | sudo -S bash -c 'echo \"" + varsBase64
+                                + "\" | base64 -d > /tmp/ansible.vars.tmp && cp /tmp/ansible.vars.tmp /etc/ansible/group_vars/all.yml && rm /tmp/ansible.vars.tmp'"));
                     }
                 }
 
-                // Dat quyen cho file va thu muc
-                if (pem != null && !pem.isBlank()) {
-                    // Quyen cho file cau hinh (644 = rw-r--r--)
-                    execCommandWithSudoOptimization(target, "chmod 644 /etc/ansible/ansible.cfg /etc/ansible/hosts",
-                            useSudoNopasswd, 15000);
-                    if (vars != null && !vars.trim().isEmpty()) {
-                        execCommandWithSudoOptimization(target, "chmod 644 /etc/ansible/group_vars/all.yml",
-                                useSudoNopasswd, 15000);
-                    }
-                    // Quyen cho thu muc (755 = rwxr-xr-x)
-                    execCommandWithSudoOptimization(target, "chmod 755 /etc/ansible", useSudoNopasswd, 15000);
-                    // Quyen cho thu muc con (700 = rwx------)
-                    execCommandWithSudoOptimization(target, "chmod 700 /etc/ansible/group_vars /etc/ansible/host_vars",
-                            useSudoNopasswd, 15000);
-                } else {
-                    // Quyen cho file cau hinh (644 = rw-r--r--)
-                    serverService.execCommand(target.getHost(),
-                            target.getPort() != null ? target.getPort() : 22,
-                            target.getUsername(), sudoPassword, "chmod 644 /etc/ansible/ansible.cfg /etc/ansible/hosts",
-                            15000);
-                    if (vars != null && !vars.trim().isEmpty()) {
-                        serverService.execCommand(target.getHost(),
-                                target.getPort() != null ? target.getPort() : 22,
-                                target.getUsername(), sudoPassword, "chmod 644 /etc/ansible/group_vars/all.yml", 15000);
-                    }
-                    // Quyen cho thu muc (755 = rwxr-xr-x)
-                    serverService.execCommand(target.getHost(),
-                            target.getPort() != null ? target.getPort() : 22,
-                            target.getUsername(), sudoPassword, "chmod 755 /etc/ansible", 15000);
-                    // Quyen cho thu muc con (700 = rwx------)
-                    serverService.execCommand(target.getHost(),
-                            target.getPort() != null ? target.getPort() : 22,
-                            target.getUsername(), sudoPassword,
-                            "chmod 700 /etc/ansible/group_vars /etc/ansible/host_vars", 15000);
+                // Dat quyen cho file va thu muc: file cau hinh 644, thu muc 755, thu muc con 700
+                writeSteps.add(new SshScriptBatch.Step("chmodFiles",
+                        sudoPrefix + "chmod 644 /etc/ansible/ansible.cfg /etc/ansible/hosts"));
+                if (hasVars) {
+                    writeSteps.add(new SshScriptBatch.Step("chmodVars",
+                            sudoPrefix + "chmod 644 /etc/ansible/group_vars/all.yml"));
                 }
+                writeSteps.add(new SshScriptBatch.Step("chmodDir", sudoPrefix + "chmod 755 /etc/ansible"));
+                writeSteps.add(new SshScriptBatch.Step("chmodSubdirs",
+                        sudoPrefix + "chmod 700 /etc/ansible/group_vars /etc/ansible/host_vars"));
 
                 // Xac minh file da duoc ghi thanh cong
-                String verifyCfg = "";
-                String verifyHosts = "";
-                if (pem != null && !pem.isBlank()) {
-                    verifyCfg = execCommandWithSudoOptimization(target,
-                            "bash -lc '[ -s /etc/ansible/ansible.cfg ] && echo OK || echo FAIL'", useSudoNopasswd,
-                            15000);
-                    verifyHosts = execCommandWithSudoOptimization(target,
-                            "bash -lc '[ -s /etc/ansible/hosts ] && echo OK || echo FAIL'", useSudoNopasswd, 15000);
-                } else {
-                    verifyCfg = serverService.execCommand(target.getHost(),
-                            target.getPort() != null ? target.getPort() : 22,
-                            target.getUsername(), sudoPassword,
-                            "bash -lc '[ -s /etc/ansible/ansible.cfg ] && echo OK || echo FAIL'", 15000);
-                    verifyHosts = serverService.execCommand(target.getHost(),
-                            target.getPort() != null ? target.getPort() : 22,
-                            target.getUsername(), sudoPassword,
-                            "bash -lc '[ -s /etc/ansible/hosts ] && echo OK || echo FAIL'", 15000);
-                }
-
-                if (!verifyCfg.trim().equals("OK") || !verifyHosts.trim().equals("OK")) {
+                writeSteps.add(new SshScriptBatch.Step("verifyCfg",
+                        sudoPrefix + "bash -lc '[ -s /etc/ansible/ansible.cfg ] && echo OK || echo FAIL'"));
+                writeSteps.add(new SshScriptBatch.Step("verifyHosts",
+                        sudoPrefix + "bash -lc '[ -s /etc/ansible/hosts ] && echo OK || echo FAIL'"));
+
+                SshScriptBatch.Result writeResult = serverService.execBatch(target.getHost(), port,
+                        target.getUsername(), useKey ? null : sudoPassword, useKey ? pem : null, writeSteps,
+                        SshScriptBatch.Mode.CONTINUE, 240000);
+                String verifyCfg = writeResult.output("verifyCfg");
+                String verifyHosts = writeResult.output("verifyHosts");
+
+                if (!verifyCfg.equals("OK") || !verifyHosts.equals("OK")) {
                     success = false;
                     return ResponseEntity.badRequest().body(Map.of(
                             "success", false,
-                            "message", "Khong the xac minh file da duoc ghi thanh cong. verifyCfg=" + verifyCfg.trim()
-                                    + ", verifyHosts=" + verifyHosts.trim()));
+                            "message", "Khong the xac minh file da duoc ghi thanh cong. verifyCfg=" + verifyCfg
+                                    + ", verifyHosts=" + verifyHosts));
                 }
 
                 // Kiem tra cu phap va ket noi Ansible
                 String errorDetails = "";
 
                 try {
-
-                    // 1. Kiem tra cu phap ansible-config
-                    if (pem != null && !pem.isBlank()) {
-                        configCheck = execCommandWithSudoOptimization(target,
-                                "bash -lc 'ansible-config dump --only-changed 2>&1 || echo CONFIG_ERROR'",
-                                useSudoNopasswd, 15000);
-                    } else {
-                        configCheck = serverService.execCommand(target.getHost(),
-                                target.getPort() != null ? target.getPort() : 22,
-                                target.getUsername(), sudoPassword,
-                                "bash -lc 'ansible-config dump --only-changed 2>&1 || echo CONFIG_ERROR'", 15000);
-                    }
-
-                    // 2. Kiem tra cu phap inventory - su dung file tam thoi
+                    // 1. Kiem tra cu phap ansible-config, 2. inventory (file tam thoi), 3. ket noi ping - cung 1 lo
                     String hostsBase64Test = java.util.Base64.getEncoder()
                             .encodeToString((hosts != null ? hosts : "").getBytes("UTF-8"));
                     String inventoryTestCmd = "echo '" + hostsBase64Test
                             + "' | base64 -d > /tmp/test_hosts && ansible-inventory -i /tmp/test_hosts --list 2>&1 && rm /tmp/test_hosts || echo INVENTORY_ERROR";
-
-                    if (pem != null && !pem.isBlank()) {
-                        inventoryCheck = execCommandWithSudoOptimization(target,
-                                "bash -lc '" + inventoryTestCmd + "'", useSudoNopasswd, 15000);
-                    } else {
-                        inventoryCheck = serverService.execCommand(target.getHost(),
-                                target.getPort() != null ? target.getPort() : 22,
-                                target.getUsername(), sudoPassword,
-                                "bash -lc '" + inventoryTestCmd + "'", 15000);
-                    }
-
-                    // 3. Kiem tra ket noi ping
-                    if (pem != null && !pem.isBlank()) {
-                        pingCheck = execCommandWithSudoOptimization(target,
-                                "bash -lc 'ansible all -m ping -i /etc/ansible/hosts 2>&1 || echo PING_ERROR'",
-                                useSudoNopasswd, 20000);
-                    } else {
-                        pingCheck = serverService.execCommand(target.getHost(),
-                                target.getPort() != null ? target.getPort() : 22,
-                                target.getUsername(), sudoPassword,
-                                "bash -lc 'ansible all -m ping -i /etc/ansible/hosts 2>&1 || echo PING_ERROR'", 20000);
-                    }
+                    List<SshScriptBatch.Step> checkSteps = List.of(
+                            new SshScriptBatch.Step("configCheck", sudoPrefix
+                                    + "bash -lc 'ansible-config dump --only-changed 2>&1 || echo CONFIG_ERROR'"),
+                            new SshScriptBatch.Step("inventoryCheck", sudoPrefix + "bash -lc '" + inventoryTestCmd + "'"),
+                            new SshScriptBatch.Step("pingCheck", sudoPrefix
+                                    + "bash -lc 'ansible all -m ping -i /etc/ansible/hosts 2>&1 || echo PING_ERROR'"));
+                    SshScriptBatch.Result checkResult = serverService.execBatch(target.getHost(), port,
+                            target.getUsername(), useKey ? null : sudoPassword, useKey ? pem : null, checkSteps,
+                            SshScriptBatch.Mode.CONTINUE, 60000);
+                    configCheck = checkResult.output("configCheck");
+                    inventoryCheck = checkResult.output("inventoryCheck");
+                    pingCheck = checkResult.output("pingCheck");
 
                     // Phan tich ket qua
                     if (configCheck.contains("CONFIG_ERROR")) {
@@ -523,7 +433,8 @@ public class AnsibleConfigController {
 
     @GetMapping("/check-sudo")
     public ResponseEntity<Map<String, Object>> checkSudoNopasswd(
-            @RequestParam(required = false) String host) {
+            @RequestParam(required = false) String host,
+            @RequestParam(defaultValue = "false") boolean refresh) {
         try {
             Server target = null;
             
@@ -558,16 +469,9 @@ public class AnsibleConfigController {
             boolean hasNopasswd = false;
 
             if (pem != null && !pem.isBlank()) {
-                try {
-                    // Kiem tra sudo NOPASSWD
-                    String checkCmd = "sudo -l 2>/dev/null | grep -q 'NOPASSWD' && echo 'HAS_NOPASSWD' || echo 'NO_NOPASSWD'";
-                    String result = serverService.execCommandWithKey(target.getHost(),
-                            target.getPort() != null ? target.getPort() : 22,
-                            target.getUsername(), pem, checkCmd, 10000);
-                    hasNopasswd = (result != null && result.contains("HAS_NOPASSWD"));
-                } catch (Exception e) {
-                    // Loi kiem tra sudo
-                }
+                // Kiem tra sudo NOPASSWD (tu cache, refresh=true de probe lai)
+                var caps = serverService.getCapabilities(target, null, refresh);
+                hasNopasswd = caps != null && caps.sudoNopasswd();
             }
 
             Map<String, Object> response = new HashMap<>();
@@ -614,13 +518,12 @@ public class AnsibleConfigController {
                             target.getUsername(), pem,
                             "bash -lc '[ -f /etc/ansible/ansible.cfg.bak ] && echo OK || echo FAIL'", 15000);
                 } else {
-                    // Kiem tra sudo NOPASSWD neu khong co SSH key
-                    String sudoCheck = serverService.execCommand(target.getHost(),
+                    // Kiem tra sudo NOPASSWD neu khong co SSH key (tra cache nang luc server)
+                    var caps = serverService.getCapabilities(target.getHost(),
                             target.getPort() != null ? target.getPort() : 22,
-                            target.getUsername(), sudoPassword,
-                            "bash -lc 'sudo -n true 2>/dev/null && echo OK || echo FAIL'", 15000);
+                            target.getUsername(), sudoPassword, null, false);
 
-                    if (sudoCheck.trim().equals("OK")) {
+                    if (caps != null && caps.sudoNopasswd()) {
                         useSudoNopasswd = true;
                         checkBackup = serverService.execCommand(target.getHost(),
                                 target.getPort() != null ? target.getPort() : 22,
@@ -6,6 +6,9 @@ import com.example.AutoDeployApp.service.AnsibleInstallationService;
 import com.example.AutoDeployApp.service.KubernetesService;
 import com.example.AutoDeployApp.service.K8sWorkloadsService;
 import com.example.AutoDeployApp.service.K8sServiceDiscoveryService;
+import com.example.AutoDeployApp.service.MetricsHistoryService;
+import com.example.AutoDeployApp.service.FleetMetricsCollector;
+import com.example.AutoDeployApp.service.HostMetrics;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import jakarta.servlet.http.HttpServletRequest;
@@ -52,32 +55,33 @@ public class ClusterAdminController {
     private final KubernetesService kubernetesService;
     private final K8sWorkloadsService k8sWorkloadsService;
     private final K8sServiceDiscoveryService k8sServiceDiscoveryService;
+    private final MetricsHistoryService metricsHistoryService;
+    private final FleetMetricsCollector metricsCollector;
     private final ExecutorService executorService = Executors.newFixedThreadPool(10);
 
     // Constants for timeouts and commands
     private static final int SSH_TIMEOUT = 10000; // Tăng timeout cho combined commands
     private static final int OVERVIEW_API_TIMEOUT_SECONDS = 30; // Timeout cho overview API calls (tăng từ 10s lên 30s để đủ thời gian cho lần đầu load)
-    private static final String COMBINED_METRICS_COMMAND = "echo \"CPU_CORES:$(nproc)\"; " +
-            "echo \"CPU_LOAD:$(uptime | awk -F'load average:' '{print $2}' | awk '{print $1}' | sed 's/,//')\"; " +
-            "echo \"RAM_TOTAL:$(free -h | awk '/^Mem:/{print $2}')\"; " +
-            "echo \"RAM_USED:$(free -h | awk '/^Mem:/{print $3}')\"; " +
-            "echo \"DISK_PERCENT:$(df / | awk 'NR==2{print $5}')\"";
     private static final String KUBELET_VERSION_COMMAND = "kubelet --version 2>/dev/null | awk '{print $2}'";
     private static final String KUBEADM_VERSION_COMMAND = "kubeadm version -o short 2>/dev/null";
 
     public ClusterAdminController(ClusterService clusterService, ServerService serverService,
             AnsibleInstallationService ansibleInstallationService, KubernetesService kubernetesService,
-            K8sWorkloadsService k8sWorkloadsService, K8sServiceDiscoveryService k8sServiceDiscoveryService) {
+            K8sWorkloadsService k8sWorkloadsService, K8sServiceDiscoveryService k8sServiceDiscoveryService,
+            MetricsHistoryService metricsHistoryService, FleetMetricsCollector metricsCollector) {
         this.clusterService = clusterService;
         this.serverService = serverService;
         this.ansibleInstallationService = ansibleInstallationService;
         this.kubernetesService = kubernetesService;
         this.k8sWorkloadsService = k8sWorkloadsService;
         this.k8sServiceDiscoveryService = k8sServiceDiscoveryService;
+        this.metricsHistoryService = metricsHistoryService;
+        this.metricsCollector = metricsCollector;
     }
 
     @PreDestroy
     public void cleanup() {
+        snapshotExecutor.shutdownNow();
         if (executorService != null && !executorService.isShutdown()) {
             executorService.shutdown();
             try {
@@ -202,31 +206,7 @@ public class ClusterAdminController {
             logger.debug("[Overview Nodes] Ket qua: nodesCount=" + nodesCount + 
                     ", masterCount=" + masterCount + ", workerCount=" + workerCount);
 
-            var recentNodes = k8sNodes.stream()
-                    .limit(10)
-                    .map(n -> {
-                        String roleStr = "WORKER";
-                        Object k8sRolesObj = n.get("k8sRoles");
-                        if (k8sRolesObj instanceof java.util.List<?> k8sRoles && !k8sRoles.isEmpty()) {
-                            String firstRole = String.valueOf(k8sRoles.get(0));
-                            if ("master".equalsIgnoreCase(firstRole) || "control-plane".equalsIgnoreCase(firstRole)) {
-                                roleStr = "MASTER";
-                            } else if ("worker".equalsIgnoreCase(firstRole)) {
-                                roleStr = "WORKER";
-                            }
-                        } else {
-                            Object roleObj = n.get("role");
-                            if (roleObj instanceof String role && !role.isBlank()) {
-                                roleStr = role.toUpperCase();
-                            }
-                        }
-                        
-                        return java.util.Map.<String, Object>of(
-                                "name", n.getOrDefault("name", n.getOrDefault("ip", "-")),
-                                "role", roleStr,
-                                "status", n.getOrDefault("k8sStatus", n.getOrDefault("status", "Unknown")));
-                    })
-                    .collect(java.util.stream.Collectors.toList());
+            var recentNodes = toRecentNodes(k8sNodes);
 
             return ResponseEntity.ok(Map.of(
                     "nodesCount", nodesCount,
@@ -506,7 +486,7 @@ public class ClusterAdminController {
 
     /**
      * Lấy resource usage data cho overview từ Kubernetes Metrics API (nhanh - không cần SSH)
-     * Fallback về SSH nếu Metrics API không available
+     * Fallback về snapshot metrics của server (FleetMetricsCollector) nếu Metrics API không available
      * Chỉ hiển thị Resource Usage khi có nodes trong cluster
      * Trả về: resourceUsage (cpu, ram, disk)
      */
@@ -555,16 +535,16 @@ public class ClusterAdminController {
                     resourceUsageRaw.getOrDefault("cpu", ""), resourceUsageRaw.getOrDefault("ram", ""));
             
             // Nếu Metrics API trả về dữ liệu hợp lệ (không phải tất cả 0), sử dụng nó
-            // Disk không có trong Metrics API, cần lấy từ SSH fallback
+            // Disk không có trong Metrics API, lấy từ snapshot metrics của server
             double cpuVal = toDouble(resourceUsage.get("cpu"));
             double ramVal = toDouble(resourceUsage.get("ram"));
             if (cpuVal > 0.0 || ramVal > 0.0) {
-                logger.info("[Overview] Metrics API co du lieu hop le, lay disk tu SSH...");
-                logger.debug("[Overview] Metrics API co du lieu hop le, lay disk tu SSH...");
-                // Lấy disk usage từ SSH fallback nếu cần
-                double diskUsage = getDiskUsageFromSSH(request);
-                logger.info("[Overview] Disk usage tu SSH: {}%", diskUsage);
-                logger.debug("[Overview] Disk usage tu SSH: " + diskUsage + "%");
+                logger.info("[Overview] Metrics API co du lieu hop le, lay disk tu snapshot metrics...");
+                logger.debug("[Overview] Metrics API co du lieu hop le, lay disk tu snapshot metrics...");
+                // Lấy disk usage từ snapshot metrics
+                double diskUsage = getDiskUsageFromSnapshot(request);
+                logger.info("[Overview] Disk usage tu snapshot: {}%", diskUsage);
+                logger.debug("[Overview] Disk usage tu snapshot: " + diskUsage + "%");
                 if (diskUsage > 0.0) {
                 resourceUsage = Map.of(
                         "cpu", resourceUsage.get("cpu"),
@@ -580,7 +560,7 @@ public class ClusterAdminController {
                 return ResponseEntity.ok(Map.of("resourceUsage", resourceUsage, "resourceUsageRaw", resourceUsageRaw, "reason", reason, "warning", warning));
             } else {
                 reason = "Metrics API tra ve tat ca 0 (CPU=" + resourceUsage.get("cpu") + 
-                        "%, RAM=" + resourceUsage.get("ram") + "%), se fallback ve SSH";
+                        "%, RAM=" + resourceUsage.get("ram") + "%), se fallback ve snapshot metrics";
                 logger.info("[Overview] " + reason);
                 logger.debug("[Overview] " + reason);
             }
@@ -591,32 +571,31 @@ public class ClusterAdminController {
             e.printStackTrace();
         }
         
-        // Fallback về SSH nếu Metrics API không available hoặc không có dữ liệu
+        // Fallback về snapshot metrics của server (FleetMetricsCollector) nếu Metrics API không available hoặc không có dữ liệu
         // Chỉ fallback khi đã có nodes trong cluster (đã kiểm tra ở trên)
         try {
             var servers = serverService.findByClusterStatus("AVAILABLE");
-            logger.info("[Overview] Fallback SSH: Tim thay {} servers voi clusterStatus=AVAILABLE", 
+            logger.info("[Overview] Fallback snapshot: Tim thay {} servers voi clusterStatus=AVAILABLE", 
                     servers != null ? servers.size() : 0);
-            logger.debug("[Overview] Fallback SSH: Tim thay " + 
+            logger.debug("[Overview] Fallback snapshot: Tim thay " + 
                     (servers != null ? servers.size() : 0) + " servers voi clusterStatus=AVAILABLE");
             
             if (servers != null && !servers.isEmpty()) {
                 var session = request.getSession(false);
-                java.util.Map<Long, String> pwCache = getPasswordCache(session);
                 java.util.Set<Long> connectedIds = getConnectedServerIds(session);
                 if (connectedIds == null || connectedIds.isEmpty()) {
                     warning = "Khong co server nao duoc connect de lay metrics (CONNECTED_SERVERS trong session trong).";
                 }
                 java.util.List<ServerData> serverDataList = createServerDataList(servers, connectedIds, 5);
                 
-                logger.info("[Overview] Fallback SSH: Tạo được {} ServerData để lấy metrics", 
+                logger.info("[Overview] Fallback snapshot: Tạo được {} ServerData để lấy metrics", 
                         serverDataList.size());
-                logger.debug("[Overview] Fallback SSH: Tạo được " + 
+                logger.debug("[Overview] Fallback snapshot: Tạo được " + 
                         serverDataList.size() + " ServerData để lấy metrics");
                 
                 if (!serverDataList.isEmpty()) {
                     java.util.List<CompletableFuture<Map<String, Object>>> metricsFutures = serverDataList.stream()
-                            .map(serverData -> getServerMetricsAsync(serverData, pwCache))
+                            .map(serverData -> getServerMetricsAsync(serverData))
                             .collect(java.util.stream.Collectors.toList());
                     
                     java.util.List<Map<String, Object>> metricsList = new java.util.ArrayList<>();
@@ -633,8 +612,8 @@ public class ClusterAdminController {
                         }
                     }
                     
-                    logger.info("[Overview] Fallback SSH: Thu thập được {} metrics", metricsList.size());
-                    logger.debug("[Overview] Fallback SSH: Thu thập được " + 
+                    logger.info("[Overview] Fallback snapshot: Thu thập được {} metrics", metricsList.size());
+                    logger.debug("[Overview] Fallback snapshot: Thu thập được " + 
                             metricsList.size() + " metrics");
                     
                     if (!metricsList.isEmpty()) {
@@ -646,14 +625,14 @@ public class ClusterAdminController {
                         merged.put("ramUsedBytes", 0.0);
                         merged.put("ramTotalBytes", 0.0);
                         resourceUsage = merged;
-                        reason = "Lấy từ SSH fallback thành công (" + metricsList.size() + " servers)";
-                        logger.info("[Overview] SSH fallback trả về: CPU={}%, RAM={}%, Disk={}%", 
+                        reason = "Lấy từ snapshot metrics thành công (" + metricsList.size() + " servers)";
+                        logger.info("[Overview] Snapshot fallback trả về: CPU={}%, RAM={}%, Disk={}%", 
                                 resourceUsage.get("cpu"), resourceUsage.get("ram"), resourceUsage.get("disk"));
-                        logger.debug("[Overview] SSH fallback trả về: CPU=" + resourceUsage.get("cpu") + 
+                        logger.debug("[Overview] Snapshot fallback trả về: CPU=" + resourceUsage.get("cpu") + 
                                 "%, RAM=" + resourceUsage.get("ram") + "%, Disk=" + resourceUsage.get("disk") + "%");
                     } else {
-                        reason = "SSH fallback không thu thập được metrics nào";
-                        warning = warning.isBlank() ? "Không lấy được metrics từ SSH fallback" : warning;
+                        reason = "Snapshot metrics không có dữ liệu cho server nào";
+                        warning = warning.isBlank() ? "Không có snapshot metrics của server" : warning;
                         logger.warn("[Overview] " + reason);
                         logger.debug("[Overview] " + reason);
                     }
@@ -670,7 +649,7 @@ public class ClusterAdminController {
                 logger.debug("[Overview] " + reason);
             }
         } catch (Exception e) {
-            reason = "Lỗi khi fallback về SSH: " + e.getMessage();
+            reason = "Lỗi khi fallback về snapshot metrics: " + e.getMessage();
             logger.error("[Overview] " + reason, e);
             logger.debug("[Overview] " + reason);
             e.printStackTrace();
@@ -799,42 +778,13 @@ public class ClusterAdminController {
             // Events (Warning/Error trong 1 giờ gần nhất)
             int warningsCount = 0;
             List<Map<String, Object>> recentEvents = new java.util.ArrayList<>();
-            try (var client = kubernetesService.getKubernetesClientForCluster()) {
-                var events = client.v1().events().inAnyNamespace().list();
-                if (events != null && events.getItems() != null) {
-                    java.time.Instant cutoff = java.time.Instant.now().minus(java.time.Duration.ofHours(1));
-                    for (Event ev : events.getItems()) {
-                        String type = ev.getType();
-                        java.time.Instant eventTime = null;
-                        if (ev.getEventTime() != null && ev.getEventTime().getTime() != null) {
-                            try {
-                                eventTime = java.time.Instant.parse(ev.getEventTime().getTime().toString());
-                            } catch (Exception ignored) {}
-                        } else if (ev.getMetadata() != null && ev.getMetadata().getCreationTimestamp() != null) {
-                            try {
-                                eventTime = java.time.Instant.parse(ev.getMetadata().getCreationTimestamp());
-                            } catch (Exception ignored) {}
-                        }
-                        if (eventTime != null && eventTime.isBefore(cutoff)) {
-                            continue;
-                        }
-                        if ("Warning".equalsIgnoreCase(type) || "Error".equalsIgnoreCase(type)) {
-                            warningsCount++;
-                            if (recentEvents.size() < 10) {
-                                String obj = ev.getInvolvedObject() != null
-                                        ? ev.getInvolvedObject().getKind() + "/" + ev.getInvolvedObject().getName()
-                                        : "";
-                                recentEvents.add(Map.of(
-                                        "type", type != null ? type : "Warning",
-                                        "reason", ev.getReason() != null ? ev.getReason() : "",
-                                        "message", ev.getMessage() != null ? ev.getMessage() : "",
-                                        "object", obj,
-                                        "time", eventTime != null ? eventTime.toString() : (ev.getLastTimestamp() != null ? ev.getLastTimestamp().toString() : "")
-                                ));
-                            }
-                        }
-                    }
-                }
+            try {
+                var events = kubernetesService.getEvents(null);
+                Map<String, Object> summary = summarizeRecentWarnings(events != null ? events.getItems() : null);
+                warningsCount = (int) summary.get("warnings");
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> recent = (List<Map<String, Object>>) summary.get("recent");
+                recentEvents = recent;
             } catch (Exception e) {
                 logger.debug("Không lấy được events: {}", e.getMessage());
             }
@@ -858,10 +808,330 @@ public class ClusterAdminController {
         }
     }
 
+    // ===================== Overview snapshot (gộp 5 API overview) =====================
+
+    @org.springframework.beans.factory.annotation.Value("${overview.snapshot.ttl-seconds:10}")
+    private long snapshotTtlSeconds;
+
+    @org.springframework.beans.factory.annotation.Value("${overview.snapshot.max-stale-seconds:120}")
+    private long snapshotMaxStaleSeconds;
+
+    private record OverviewSnapshot(Map<String, Object> sections, long builtAt, long buildMs) {
+    }
+
+    private volatile OverviewSnapshot overviewSnapshot;
+    private final java.util.concurrent.atomic.AtomicReference<CompletableFuture<OverviewSnapshot>> snapshotRebuild =
+            new java.util.concurrent.atomic.AtomicReference<>();
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "overview-snapshot");
+        t.setDaemon(true);
+        return t;
+    });
+
     /**
-     * Helper method để lấy disk usage từ SSH (fallback khi Metrics API không có disk)
+     * Toàn bộ dữ liệu overview (nodes, workloads, pods/namespaces, resource usage, health) trong 1 request.
+     * - Còn trong TTL: trả ngay bản cache
+     * - Hết TTL nhưng chưa quá max-stale: trả bản cũ (stale=true) và rebuild nền
+     * - Chưa có hoặc quá cũ: chờ rebuild
+     * - Rebuild lỗi (không lấy được nodes/pods): giữ và trả bản cũ (stale=true) nếu có
+     * Nhiều admin refresh cùng lúc chỉ gây ra 1 lần rebuild (single-flight).
+     * Resource usage chỉ lấy từ Metrics API (snapshot dùng chung, không phụ thuộc session SSH).
      */
-    private double getDiskUsageFromSSH(HttpServletRequest request) {
+    @GetMapping("/overview/snapshot")
+    public ResponseEntity<?> getOverviewSnapshot(@RequestParam(required = false, defaultValue = "false") boolean refresh) {
+        long now = System.currentTimeMillis();
+        OverviewSnapshot current = overviewSnapshot;
+        long age = current != null ? now - current.builtAt() : Long.MAX_VALUE;
+
+        try {
+            if (current != null && !refresh && age < TimeUnit.SECONDS.toMillis(snapshotTtlSeconds)) {
+                return ResponseEntity.ok(snapshotResponse(current, false));
+            }
+            if (current != null && !refresh && age < TimeUnit.SECONDS.toMillis(snapshotMaxStaleSeconds)) {
+                triggerSnapshotRebuild();
+                return ResponseEntity.ok(snapshotResponse(current, true));
+            }
+            OverviewSnapshot rebuilt = triggerSnapshotRebuild().get(OVERVIEW_API_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return ResponseEntity.ok(snapshotResponse(rebuilt, false));
+        } catch (java.util.concurrent.TimeoutException e) {
+            if (current != null) {
+                return ResponseEntity.ok(snapshotResponse(current, true));
+            }
+            return ResponseEntity.status(504).body(Map.of("error", "Timeout khi tổng hợp overview snapshot"));
+        } catch (Exception e) {
+            logger.error("[Overview Snapshot] Lỗi khi tổng hợp snapshot: {}", e.getMessage());
+            if (current != null) {
+                return ResponseEntity.ok(snapshotResponse(current, true));
+            }
+            return ResponseEntity.status(500).body(Map.of("error", "Không thể tổng hợp overview: " + e.getMessage()));
+        }
+    }
+
+    private Map<String, Object> snapshotResponse(OverviewSnapshot snapshot, boolean stale) {
+        Map<String, Object> body = new java.util.LinkedHashMap<>(snapshot.sections());
+        body.put("meta", Map.of(
+                "builtAt", snapshot.builtAt(),
+                "ageMs", System.currentTimeMillis() - snapshot.builtAt(),
+                "buildMs", snapshot.buildMs(),
+                "stale", stale,
+                "rebuilding", snapshotRebuild.get() != null,
+                "ttlSeconds", snapshotTtlSeconds));
+        return body;
+    }
+
+    /**
+     * Single-flight: nếu đang rebuild thì trả future hiện tại, ngược lại bắt đầu rebuild mới
+     */
+    private CompletableFuture<OverviewSnapshot> triggerSnapshotRebuild() {
+        while (true) {
+            CompletableFuture<OverviewSnapshot> inFlight = snapshotRebuild.get();
+            if (inFlight != null) {
+                return inFlight;
+            }
+            CompletableFuture<OverviewSnapshot> created = new CompletableFuture<>();
+            if (snapshotRebuild.compareAndSet(null, created)) {
+                snapshotExecutor.execute(() -> {
+                    try {
+                        OverviewSnapshot built = buildOverviewSnapshot();
+                        overviewSnapshot = built;
+                        created.complete(built);
+                    } catch (Throwable t) {
+                        created.completeExceptionally(t);
+                    } finally {
+                        snapshotRebuild.compareAndSet(created, null);
+                    }
+                });
+                return created;
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> fetchAsync(String what, java.util.function.Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return supplier.get();
+            } catch (Exception e) {
+                logger.debug("[Overview Snapshot] Không lấy được {}: {}", what, e.getMessage());
+                return null;
+            }
+        }, executorService);
+    }
+
+    private static <T> T joinQuietly(CompletableFuture<T> future) {
+        try {
+            return future.getNow(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private OverviewSnapshot buildOverviewSnapshot() {
+        long start = System.currentTimeMillis();
+
+        // Các nguồn dữ liệu độc lập - lấy song song, mỗi loại chỉ 1 lần cho tất cả section
+        var nodesF = fetchAsync("nodes", kubernetesService::getKubernetesNodes);
+        var podsF = fetchAsync("pods", () -> k8sWorkloadsService.getPods(null));
+        var deploymentsF = fetchAsync("deployments", () -> k8sWorkloadsService.getDeployments(null));
+        var statefulSetsF = fetchAsync("statefulsets", () -> k8sWorkloadsService.getStatefulSets(null));
+        var daemonSetsF = fetchAsync("daemonsets", () -> k8sWorkloadsService.getDaemonSets(null));
+        var cronJobsF = fetchAsync("cronjobs", () -> k8sWorkloadsService.getCronJobs(null));
+        var jobsF = fetchAsync("jobs", () -> k8sWorkloadsService.getJobs(null));
+        var namespacesF = fetchAsync("namespaces", kubernetesService::getNamespaces);
+        var servicesF = fetchAsync("services", () -> k8sServiceDiscoveryService.getServices(null));
+        var ingressF = fetchAsync("ingress", () -> k8sServiceDiscoveryService.getIngress(null));
+        var eventsF = fetchAsync("events", () -> kubernetesService.getEvents(null));
+        var usageF = fetchAsync("resource usage", kubernetesService::calculateClusterResourceUsageFromMetrics);
+
+        try {
+            CompletableFuture.allOf(nodesF, podsF, deploymentsF, statefulSetsF, daemonSetsF, cronJobsF, jobsF,
+                    namespacesF, servicesF, ingressF, eventsF, usageF)
+                    .get(OVERVIEW_API_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            logger.warn("[Overview Snapshot] Không lấy đủ dữ liệu trong {} giây: {}", OVERVIEW_API_TIMEOUT_SECONDS,
+                    e.getMessage());
+        }
+
+        java.util.List<java.util.Map<String, Object>> k8sNodes = joinQuietly(nodesF);
+        var pods = joinQuietly(podsF);
+        if (k8sNodes == null || pods == null) {
+            // Nguồn chính không lấy được (cluster / kubeconfig không truy cập được): rebuild thất bại để giữ snapshot
+            // tốt gần nhất (trả về với stale=true) thay vì ghi đè bằng snapshot toàn số 0
+            throw new IllegalStateException("Không lấy được " + (k8sNodes == null ? "nodes" : "pods")
+                    + " từ Kubernetes cluster");
+        }
+        var deployments = joinQuietly(deploymentsF);
+        var statefulSets = joinQuietly(statefulSetsF);
+        var daemonSets = joinQuietly(daemonSetsF);
+        var cronJobs = joinQuietly(cronJobsF);
+        var jobs = joinQuietly(jobsF);
+        var namespaces = joinQuietly(namespacesF);
+        var services = joinQuietly(servicesF);
+        var ingresses = joinQuietly(ingressF);
+        var events = joinQuietly(eventsF);
+        Map<String, Object> usage = joinQuietly(usageF);
+
+        List<Pod> podItems = pods != null ? pods.getItems() : List.of();
+        List<Deployment> deploymentItems = deployments != null ? deployments.getItems() : List.of();
+
+        Map<String, Object> sections = new java.util.LinkedHashMap<>();
+
+        // Nodes
+        Map<String, Long> roleCounts = countMasterAndWorkerNodes(k8sNodes);
+        long readyNodes = k8sNodes.stream()
+                .filter(n -> "Ready".equalsIgnoreCase(String.valueOf(n.getOrDefault("k8sStatus", "")))
+                        || "Ready".equalsIgnoreCase(String.valueOf(n.getOrDefault("status", ""))))
+                .count();
+        sections.put("nodes", Map.of(
+                "nodesCount", k8sNodes.size(),
+                "masterCount", roleCounts.get("masterCount"),
+                "workerCount", roleCounts.get("workerCount"),
+                "recentNodes", toRecentNodes(k8sNodes)));
+
+        // Workloads
+        var workloadsList = new java.util.ArrayList<java.util.Map<String, Object>>();
+        deploymentItems.forEach(dep -> workloadsList.add(convertWorkloadToOverviewMap(dep)));
+        if (statefulSets != null) statefulSets.getItems().forEach(sts -> workloadsList.add(convertWorkloadToOverviewMap(sts)));
+        if (daemonSets != null) daemonSets.getItems().forEach(ds -> workloadsList.add(convertWorkloadToOverviewMap(ds)));
+        if (cronJobs != null) cronJobs.getItems().forEach(cj -> workloadsList.add(convertWorkloadToOverviewMap(cj)));
+        if (jobs != null) jobs.getItems().forEach(job -> workloadsList.add(convertWorkloadToOverviewMap(job)));
+        podItems.forEach(pod -> workloadsList.add(convertWorkloadToOverviewMap(pod)));
+        sections.put("workloads", Map.of(
+                "workloadsCount", workloadsList.size(),
+                "recentWorkloads", workloadsList.stream().limit(10).collect(java.util.stream.Collectors.toList())));
+
+        // Pods / namespaces
+        int runningPods = 0;
+        int pendingPods = 0;
+        int failedPods = 0;
+        for (Pod p : podItems) {
+            String phase = p.getStatus() != null ? p.getStatus().getPhase() : "";
+            if ("Running".equalsIgnoreCase(phase)) {
+                runningPods++;
+            } else if ("Pending".equalsIgnoreCase(phase)) {
+                pendingPods++;
+            } else if ("Failed".equalsIgnoreCase(phase) || "CrashLoopBackOff".equalsIgnoreCase(phase)) {
+                failedPods++;
+            }
+        }
+        sections.put("podsNamespaces", Map.of(
+                "podsCount", podItems.size(),
+                "runningPodsCount", runningPods,
+                "namespacesCount", namespaces != null ? namespaces.getItems().size() : 0));
+
+        // Resource usage (Metrics API)
+        if (usage == null || k8sNodes.isEmpty()) {
+            usage = Map.of("cpu", 0.0, "ram", 0.0, "disk", 0.0,
+                    "cpuUsedCores", 0.0, "cpuTotalCores", 0.0, "ramUsedBytes", 0.0, "ramTotalBytes", 0.0);
+        }
+        sections.put("resourceUsage", Map.of(
+                "resourceUsage", usage,
+                "resourceUsageRaw", extractRawUsage(usage),
+                "reason", k8sNodes.isEmpty() ? "Khong co nodes trong K8s cluster" : "Lay tu K8s Metrics API"));
+
+        // Health
+        int availableDeployments = 0;
+        for (Deployment dep : deploymentItems) {
+            Integer available = dep.getStatus() != null ? dep.getStatus().getAvailableReplicas() : null;
+            Integer desired = dep.getSpec() != null ? dep.getSpec().getReplicas() : null;
+            if (available != null && desired != null && available >= desired) {
+                availableDeployments++;
+            }
+        }
+        Map<String, Object> eventSummary = summarizeRecentWarnings(events != null ? events.getItems() : null);
+        sections.put("health", Map.of(
+                "nodes", Map.of("ready", readyNodes, "total", k8sNodes.size()),
+                "pods", Map.of("running", runningPods, "total", podItems.size(), "pending", pendingPods, "failed", failedPods),
+                "deployments", Map.of("available", availableDeployments, "total", deploymentItems.size()),
+                "networking", Map.of(
+                        "services", services != null && services.getItems() != null ? services.getItems().size() : 0,
+                        "ingress", ingresses != null && ingresses.getItems() != null ? ingresses.getItems().size() : 0),
+                "events", eventSummary));
+
+        long buildMs = System.currentTimeMillis() - start;
+        logger.info("[Overview Snapshot] Rebuilt in {} ms ({} nodes, {} pods)", buildMs, k8sNodes.size(), podItems.size());
+        return new OverviewSnapshot(sections, System.currentTimeMillis(), buildMs);
+    }
+
+    /**
+     * Chuyển 10 node đầu tiên sang dạng rút gọn cho overview (name, role, status)
+     */
+    private java.util.List<java.util.Map<String, Object>> toRecentNodes(
+            java.util.List<java.util.Map<String, Object>> k8sNodes) {
+        return k8sNodes.stream()
+                .limit(10)
+                .map(n -> {
+                    String roleStr = "WORKER";
+                    Object k8sRolesObj = n.get("k8sRoles");
+                    if (k8sRolesObj instanceof java.util.List<?> k8sRoles && !k8sRoles.isEmpty()) {
+                        String firstRole = String.valueOf(k8sRoles.get(0));
+                        if ("master".equalsIgnoreCase(firstRole) || "control-plane".equalsIgnoreCase(firstRole)) {
+                            roleStr = "MASTER";
+                        } else if ("worker".equalsIgnoreCase(firstRole)) {
+                            roleStr = "WORKER";
+                        }
+                    } else {
+                        Object roleObj = n.get("role");
+                        if (roleObj instanceof String role && !role.isBlank()) {
+                            roleStr = role.toUpperCase();
+                        }
+                    }
+
+                    return java.util.Map.<String, Object>of(
+                            "name", n.getOrDefault("name", n.getOrDefault("ip", "-")),
+                            "role", roleStr,
+                            "status", n.getOrDefault("k8sStatus", n.getOrDefault("status", "Unknown")));
+                })
+                .collect(java.util.stream.Collectors.toList());
+    }
+
+    /**
+     * Đếm events Warning/Error trong 1 giờ gần nhất và lấy tối đa 10 event gần đây
+     * @return Map với keys: "warnings" (int), "recent" (List)
+     */
+    private Map<String, Object> summarizeRecentWarnings(List<Event> events) {
+        int warningsCount = 0;
+        List<Map<String, Object>> recentEvents = new java.util.ArrayList<>();
+        if (events != null) {
+            java.time.Instant cutoff = java.time.Instant.now().minus(java.time.Duration.ofHours(1));
+            for (Event ev : events) {
+                String type = ev.getType();
+                java.time.Instant eventTime = null;
+                if (ev.getEventTime() != null && ev.getEventTime().getTime() != null) {
+                    try {
+                        eventTime = java.time.Instant.parse(ev.getEventTime().getTime().toString());
+                    } catch (Exception ignored) {}
+                } else if (ev.getMetadata() != null && ev.getMetadata().getCreationTimestamp() != null) {
+                    try {
+                        eventTime = java.time.Instant.parse(ev.getMetadata().getCreationTimestamp());
+                    } catch (Exception ignored) {}
+                }
+                if (eventTime != null && eventTime.isBefore(cutoff)) {
+                    continue;
+                }
+                if ("Warning".equalsIgnoreCase(type) || "Error".equalsIgnoreCase(type)) {
+                    warningsCount++;
+                    if (recentEvents.size() < 10) {
+                        String obj = ev.getInvolvedObject() != null
+                                ? ev.getInvolvedObject().getKind() + "/" + ev.getInvolvedObject().getName()
+                                : "";
+                        recentEvents.add(Map.of(
+                                "type", type != null ? type : "Warning",
+                                "reason", ev.getReason() != null ? ev.getReason() : "",
+                                "message", ev.getMessage() != null ? ev.getMessage() : "",
+                                "object", obj,
+                                "time", eventTime != null ? eventTime.toString() : (ev.getLastTimestamp() != null ? ev.getLastTimestamp().toString() : "")
+                        ));
+                    }
+                }
+            }
+        }
+        return Map.of("warnings", warningsCount, "recent", recentEvents);
+    }
+
+    /**
+     * Helper method để lấy disk usage từ snapshot metrics (Metrics API không có disk)
+     */
+    private double getDiskUsageFromSnapshot(HttpServletRequest request) {
         try {
             var servers = serverService.findByClusterStatus("AVAILABLE");
             if (servers == null || servers.isEmpty()) {
@@ -869,7 +1139,6 @@ public class ClusterAdminController {
             }
             
             var session = request.getSession(false);
-            java.util.Map<Long, String> pwCache = getPasswordCache(session);
             java.util.Set<Long> connectedIds = getConnectedServerIds(session);
             java.util.List<ServerData> serverDataList = createServerDataList(servers, connectedIds, 3); // Chỉ lấy 3 servers để nhanh
             
@@ -878,7 +1147,7 @@ public class ClusterAdminController {
             }
             
             java.util.List<CompletableFuture<Map<String, Object>>> metricsFutures = serverDataList.stream()
-                    .map(serverData -> getServerMetricsAsync(serverData, pwCache))
+                    .map(serverData -> getServerMetricsAsync(serverData))
                     .collect(java.util.stream.Collectors.toList());
             
             double totalDiskUsage = 0.0;
@@ -902,7 +1171,7 @@ public class ClusterAdminController {
             
             return diskNodeCount > 0 ? totalDiskUsage / diskNodeCount : 0.0;
         } catch (Exception e) {
-            logger.debug("Không lấy được disk usage từ SSH: " + e.getMessage());
+            logger.debug("Không lấy được disk usage từ snapshot: " + e.getMessage());
             return 0.0;
         }
     }
@@ -1137,7 +1406,7 @@ public class ClusterAdminController {
 
     /**
      * Lấy danh sách node từ Kubernetes API cho cluster duy nhất (không cần ID)
-     * Ready/NotReady, IP nội bộ, version, và usage metrics từ SSH
+     * Ready/NotReady, IP nội bộ, version, và usage metrics từ snapshot của FleetMetricsCollector
      */
     @GetMapping("/k8s/nodes")
     public ResponseEntity<?> getKubernetesNodes(HttpServletRequest request) {
@@ -1145,14 +1414,11 @@ public class ClusterAdminController {
             // Sử dụng Fabric8 Kubernetes Client thay vì SSH kubectl
             java.util.List<java.util.Map<String, Object>> nodes = kubernetesService.getKubernetesNodes();
             
-            // Thêm usage metrics từ SSH cho mỗi node
+            // Thêm usage metrics từ snapshot của FleetMetricsCollector cho mỗi node
             try {
                 // Lấy servers từ database
                 var servers = serverService.findByClusterStatus("AVAILABLE");
                 if (servers != null && !servers.isEmpty()) {
-                    // Lấy password cache từ session
-                    var session = request.getSession(false);
-                    java.util.Map<Long, String> pwCache = getPasswordCache(session);
                     
                     // Tạo map để match node theo IP
                     Map<String, com.example.AutoDeployApp.entity.Server> serverByIP = new java.util.HashMap<>();
@@ -1186,7 +1452,7 @@ public class ClusterAdminController {
                                     true
                                 );
                                 
-                                CompletableFuture<Map<String, Object>> metricsFuture = getServerMetricsAsync(serverData, pwCache);
+                                CompletableFuture<Map<String, Object>> metricsFuture = getServerMetricsAsync(serverData);
                                 nodeMetricsFutures.add(java.util.Map.entry(node, metricsFuture));
                             }
                         }
@@ -1294,20 +1560,24 @@ public class ClusterAdminController {
     public ResponseEntity<?> listPods(
             @RequestParam(required = false) String namespace,
             @RequestParam(required = false) String node,
+            @RequestParam java.util.Map<String, String> params,
             HttpServletRequest request) {
         try {
-            // Sử dụng Fabric8 Kubernetes Client thay vì SSH kubectl
+            // Khi phân trang, node được chuyển thành fieldSelector spec.nodeName
+            var query = KubernetesService.ListQuery.from(params)
+                    .withFieldSelector(node != null && !node.isBlank() ? "spec.nodeName=" + node.trim() : null);
+            if (!query.isEmpty()) {
+                var page = k8sWorkloadsService.getPodsPage(namespace, query);
+                java.util.Map<String, Object> body = new java.util.LinkedHashMap<>(page.metadata());
+                body.put("pods", page.items().stream()
+                        .map(pod -> parsePodToMap(pod))
+                        .collect(java.util.stream.Collectors.toList()));
+                return ResponseEntity.ok(body);
+            }
+            // Không có tham số (kể cả node) - trả toàn bộ danh sách như cũ
             var podList = k8sWorkloadsService.getPods(namespace);
             java.util.List<java.util.Map<String, Object>> result = podList.getItems().stream()
                     .map(pod -> parsePodToMap(pod))
-                    .filter(pod -> {
-                        // Filter theo node nếu có tham số node
-                        if (node != null && !node.isBlank()) {
-                            String podNode = (String) pod.get("node");
-                            return node.equals(podNode);
-                        }
-                        return true;
-                    })
                     .collect(java.util.stream.Collectors.toList());
             return ResponseEntity.ok(Map.of("pods", result));
         } catch (io.fabric8.kubernetes.client.KubernetesClientException e) {
@@ -1317,6 +1587,8 @@ public class ClusterAdminController {
                         "pods", new java.util.ArrayList<>()));
             }
             return ResponseEntity.status(500).body(Map.of("error", "Failed to get pods: " + e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
@@ -1361,16 +1633,9 @@ public class ClusterAdminController {
             java.util.Map<String, Map<String, Double>> metricsByNamespace = new java.util.HashMap<>();
             try {
                 logger.debug("[Namespaces] Loading pod metrics...");
-                var allPodMetrics = kubernetesService.getPodMetrics(null); // null = lấy tất cả metrics
-                if (allPodMetrics != null && !allPodMetrics.isEmpty()) {
-                    logger.info("[Namespaces] Found {} pod metrics", allPodMetrics.size());
-                    // Group metrics theo namespace và tính tổng CPU/RAM
-                    java.util.Map<String, java.util.List<io.fabric8.kubernetes.api.model.metrics.v1beta1.PodMetrics>> metricsGrouped = 
-                            allPodMetrics.stream()
-                                    .filter(pm -> pm.getMetadata() != null && pm.getMetadata().getNamespace() != null)
-                                    .collect(java.util.stream.Collectors.groupingBy(
-                                            pm -> pm.getMetadata().getNamespace()));
-                    
+                // 1 request metrics toàn cluster, đã group theo namespace (memoize trong TTL ngắn)
+                var metricsGrouped = kubernetesService.getPodMetricsByNamespace();
+                if (metricsGrouped != null && !metricsGrouped.isEmpty()) {
                     logger.info("[Namespaces] Metrics grouped into {} namespaces", metricsGrouped.size());
                     
                     for (var entry : metricsGrouped.entrySet()) {
@@ -1868,154 +2133,25 @@ public class ClusterAdminController {
     }
 
     /**
-     * Lấy thông số server (CPU, RAM, Disk) sử dụng lệnh kết hợp để giảm số lần SSH
+     * Thông số server (CPU, RAM, Disk) lấy từ snapshot của FleetMetricsCollector - không SSH theo request.
+     * Định dạng hiển thị giữ như cũ: CPU (Cores / Load), RAM (Used / Total (~X%)), Disk (%).
      */
-    private CompletableFuture<Map<String, Object>> getServerMetricsAsync(ServerData serverData,
-            Map<Long, String> pwCache) {
-        return CompletableFuture.<Map<String, Object>>supplyAsync(() -> {
-            try {
-                // Thử SSH key trước
-                if (serverData.sshPrivateKey != null && !serverData.sshPrivateKey.isBlank()) {
-                    Map<String, Object> metrics = executeCombinedMetricsWithKey(
-                            serverData.host, serverData.port, serverData.username, serverData.sshPrivateKey);
-                    if (metrics != null) {
-                        return metrics;
-                    }
-                }
-
-                // Fallback về password nếu SSH key không hoạt động
-                String pw = pwCache.get(serverData.id);
-                if (pw != null && !pw.isBlank()) {
-                    return executeCombinedMetricsWithPassword(serverData.host, serverData.port, serverData.username,
-                            pw);
-                }
-            } catch (Exception e) {
-                // Ghi log lỗi nhưng vẫn tiếp tục với giá trị mặc định
-                System.err.println("Lỗi lấy thông số server " + serverData.host + ": " + e.getMessage());
-            }
-
-            // Trả về giá trị mặc định nếu tất cả phương thức đều thất bại
-            return Map.of("cpu", "-", "ram", "-", "ramPercentage", 0, "disk", "-");
-        }, executorService).orTimeout(15, TimeUnit.SECONDS)
-                .exceptionally(throwable -> {
-                    System.err.println("Timeout hoặc lỗi lấy thông số server " + serverData.host + ": "
-                            + throwable.getMessage());
-                    return Map.of("cpu", "-", "ram", "-", "ramPercentage", 0, "disk", "-");
-                });
-    }
-
-    /**
-     * Thực thi lệnh metrics kết hợp sử dụng SSH key (giảm từ 3 lần SSH xuống 1 lần)
-     */
-    private Map<String, Object> executeCombinedMetricsWithKey(String host, int port, String user,
-            String privateKeyPem) {
-        try {
-            String output = serverService.execCommandWithKey(host, port, user, privateKeyPem, COMBINED_METRICS_COMMAND,
-                    SSH_TIMEOUT);
-            if (output != null && !output.isBlank()) {
-                Map<String, Object> result = parseCombinedMetricsOutput(output);
-                return Map.of(
-                        "cpu", (String) result.get("cpu"),
-                        "ram", (String) result.get("ram"),
-                        "ramPercentage", (Integer) result.get("ramPercentage"),
-                        "disk", (String) result.get("disk"));
-            }
-        } catch (Exception e) {
-            System.err.println("Xác thực SSH key thất bại cho " + host + ": " + e.getMessage());
-        }
-        return null;
-    }
-
-    /**
-     * Thực thi lệnh metrics kết hợp sử dụng password (giảm từ 3 lần SSH xuống 1
-     * lần)
-     */
-    private Map<String, Object> executeCombinedMetricsWithPassword(String host, int port, String user,
-            String password) {
-        try {
-            String output = serverService.execCommand(host, port, user, password, COMBINED_METRICS_COMMAND,
-                    SSH_TIMEOUT);
-            if (output != null && !output.isBlank()) {
-                return parseCombinedMetricsOutput(output);
-            }
-        } catch (Exception e) {
-            System.err.println("Xác thực password thất bại cho " + host + ": " + e.getMessage());
-        }
-        return Map.of("cpu", "-", "ram", "-", "ramPercentage", 0, "disk", "-");
-    }
-
-    /**
-     * Phân tích kết quả metrics kết hợp từ lệnh shell
-     * Định dạng mong đợi:
-     * "CPU_CORES:4\nCPU_LOAD:1.2\nRAM_TOTAL:8.0G\nRAM_USED:2.1G\nDISK_TOTAL:50G\nDISK_USED:20G\nDISK_PERCENT:45%"
-     */
-    private Map<String, Object> parseCombinedMetricsOutput(String output) {
-        String cpuCores = "-", cpuLoad = "-", ramTotal = "-", ramUsed = "-", diskPercent = "-";
-
-        try {
-            String[] lines = output.split("\n");
-            for (String line : lines) {
-                line = line.trim();
-                if (line.startsWith("CPU_CORES:")) {
-                    cpuCores = line.substring(10).trim();
-                } else if (line.startsWith("CPU_LOAD:")) {
-                    cpuLoad = line.substring(9).trim();
-                } else if (line.startsWith("RAM_TOTAL:")) {
-                    ramTotal = line.substring(10).trim();
-                } else if (line.startsWith("RAM_USED:")) {
-                    ramUsed = line.substring(9).trim();
-                } else if (line.startsWith("DISK_PERCENT:")) {
-                    diskPercent = line.substring(13).trim();
-                }
-                // Bỏ qua DISK_TOTAL và DISK_USED vì chỉ cần DISK_PERCENT
-            }
-        } catch (Exception e) {
-            System.err.println("Lỗi phân tích kết quả metrics: " + e.getMessage());
-        }
-
-        // Format hiển thị: CPU (Cores / Load), RAM (Used/Total (X%)), Disk (%)
-        String cpu = cpuCores.equals("-") ? "-" : cpuCores + " cores / " + cpuLoad + " load";
-        Map<String, Object> ramData = formatRamUsageWithPercentage(ramUsed, ramTotal);
-        String disk = diskPercent.equals("-") ? "-" : diskPercent;
-
-        return Map.of(
-                "cpu", cpu,
-                "ram", (String) ramData.get("formatted"),
-                "ramPercentage", (Integer) ramData.get("percentage"),
-                "disk", disk);
-    }
-
-    /**
-     * Format RAM usage với phần trăm chính xác và trả về cả percentage để color
-     * coding
-     * Ví dụ: "554Mi / 3.8Gi (~14%)"
-     */
-    private Map<String, Object> formatRamUsageWithPercentage(String ramUsed, String ramTotal) {
-        if (ramUsed.equals("-") || ramTotal.equals("-")) {
-            return Map.of("formatted", "-", "percentage", 0);
-        }
-
-        try {
-            // Parse RAM values (remove 'G', 'M', 'K' and convert to bytes)
-            double usedBytes = parseMemoryValue(ramUsed);
-            double totalBytes = parseMemoryValue(ramTotal);
-
-            if (usedBytes <= 0 || totalBytes <= 0) {
-                return Map.of("formatted", ramUsed + " / " + ramTotal, "percentage", 0);
-            }
-
-            // Calculate percentage
-            double percentage = (usedBytes / totalBytes) * 100;
-            int roundedPercentage = (int) Math.round(percentage);
-
-            // Format với ~ để chỉ gần đúng
-            String formatted = ramUsed + " / " + ramTotal + " (~" + roundedPercentage + "%)";
-
-            return Map.of("formatted", formatted, "percentage", roundedPercentage);
-        } catch (Exception e) {
-            // Fallback to simple format if parsing fails
-            return Map.of("formatted", ramUsed + " / " + ramTotal, "percentage", 0);
-        }
+    private CompletableFuture<Map<String, Object>> getServerMetricsAsync(ServerData serverData) {
+        FleetMetricsCollector.Snapshot snapshot = metricsCollector.get(serverData.id);
+        HostMetrics m = snapshot != null ? snapshot.metrics() : null;
+        if (m == null) {
+            return CompletableFuture.completedFuture(Map.of("cpu", "-", "ram", "-", "ramPercentage", 0, "disk", "-"));
+        }
+        String load = String.format(java.util.Locale.ROOT, "%.2f", m.load1());
+        java.util.Map<String, Object> result = new java.util.HashMap<>();
+        result.put("cpu", m.cpuCores() + " cores / " + load + " load");
+        result.put("ram", HostMetrics.humanBytes(m.memUsedBytes()) + " / " + HostMetrics.humanBytes(m.memTotalBytes())
+                + " (~" + m.memUsedPercent() + "%)");
+        result.put("ramPercentage", m.memUsedPercent());
+        result.put("disk", m.diskTotalBytes() > 0 ? m.diskUsedPercent() + "%" : "-");
+        result.put("metricsCollectedAt", m.collectedAt());
+        result.put("metricsStale", snapshot.stale());
+        return CompletableFuture.completedFuture(result);
     }
 
     /**
@@ -2106,45 +2242,6 @@ public class ClusterAdminController {
     }
 
 
-    /**
-     * Parse memory value to bytes
-     * Supports G, M, K suffixes
-     */
-    private double parseMemoryValue(String memoryStr) {
-        if (memoryStr == null || memoryStr.trim().isEmpty()) {
-            return 0;
-        }
-
-        String clean = memoryStr.trim().toUpperCase();
-        double multiplier = 1.0;
-
-        if (clean.endsWith("GI")) {
-            multiplier = 1024 * 1024 * 1024; // GiB to bytes
-            clean = clean.substring(0, clean.length() - 2);
-        } else if (clean.endsWith("MI")) {
-            multiplier = 1024 * 1024; // MiB to bytes
-            clean = clean.substring(0, clean.length() - 2);
-        } else if (clean.endsWith("KI")) {
-            multiplier = 1024; // KiB to bytes
-            clean = clean.substring(0, clean.length() - 2);
-        } else if (clean.endsWith("G")) {
-            multiplier = 1024 * 1024 * 1024; // GB to bytes
-            clean = clean.substring(0, clean.length() - 1);
-        } else if (clean.endsWith("M")) {
-            multiplier = 1024 * 1024; // MB to bytes
-            clean = clean.substring(0, clean.length() - 1);
-        } else if (clean.endsWith("K")) {
-            multiplier = 1024; // KB to bytes
-            clean = clean.substring(0, clean.length() - 1);
-        }
-
-        try {
-            return Double.parseDouble(clean) * multiplier;
-        } catch (NumberFormatException e) {
-            return 0;
-        }
-    }
-
     /**
      * Lấy phiên bản Kubernetes từ master node
      */
@@ -2349,7 +2446,7 @@ public class ClusterAdminController {
                     }
 
                     // Chỉ load metrics cho nodes online
-                    return getServerMetricsAsync(serverDataItem, pwCache)
+                    return getServerMetricsAsync(serverDataItem)
                             .thenApply(metrics -> {
                                 return java.util.Map.<String, Object>of(
                                         "id", serverDataItem.id,
@@ -2403,7 +2500,7 @@ public class ClusterAdminController {
                     nodeData = future.get();
                 } else {
                     // Online nodes: timeout 10 giây để tăng tốc độ phản hồi
-                    // (đã có orTimeout 15s trong getServerMetricsAsync, nhưng giảm wait time ở đây)
+                    // (metrics lấy từ snapshot nên thường xong ngay)
                     nodeData = future.get(10, TimeUnit.SECONDS);
                 }
 
@@ -2508,6 +2605,61 @@ public class ClusterAdminController {
         }
     }
 
+    /**
+     * Metrics của Kubernetes client dùng chung (lease, connection pool, số lần refresh kubeconfig)
+     */
+    @GetMapping("/k8s/client-metrics")
+    public ResponseEntity<?> getKubernetesClientMetrics() {
+        return ResponseEntity.ok(kubernetesService.getKubernetesClientMetrics());
+    }
+
+    /**
+     * Trạng thái cache informer: readiness, số object và ước lượng bộ nhớ theo loại resource
+     */
+    @GetMapping("/k8s/cache-stats")
+    public ResponseEntity<?> getClusterCacheStats() {
+        return ResponseEntity.ok(kubernetesService.getClusterCacheStats());
+    }
+
+    /**
+     * Lịch sử CPU/RAM từ store in-memory (không gọi tới cluster)
+     * target: cluster | node:{name} | namespace:{ns} | pod:{ns}/{name}
+     * from/to: epoch millis (mặc định 1 giờ gần nhất), step: giây (tùy chọn)
+     */
+    @GetMapping("/metrics/range")
+    public ResponseEntity<?> getMetricsRange(@RequestParam String target,
+            @RequestParam(required = false) Long from,
+            @RequestParam(required = false) Long to,
+            @RequestParam(required = false, defaultValue = "0") long step) {
+        long end = to != null ? to : System.currentTimeMillis();
+        long start = from != null ? from : end - TimeUnit.HOURS.toMillis(1);
+        if (end <= start) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Tham số 'to' phải lớn hơn 'from'"));
+        }
+        try {
+            return ResponseEntity.ok(metricsHistoryService.queryRange(target, start, end, step));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Danh sách target có lịch sử và thống kê bộ nhớ của store
+     */
+    @GetMapping("/metrics/series")
+    public ResponseEntity<?> getMetricsSeries() {
+        return ResponseEntity.ok(metricsHistoryService.getStats());
+    }
+
+    /**
+     * Buộc kéo lại kubeconfig từ master ở lần gọi tiếp theo (ví dụ sau khi cài lại cluster)
+     */
+    @PostMapping("/k8s/client/invalidate")
+    public ResponseEntity<?> invalidateKubernetesClient() {
+        kubernetesService.invalidateKubernetesClient("manual invalidate via admin API");
+        return ResponseEntity.ok(Map.of("success", true));
+    }
+
     /**
      * SECURITY: Không còn đọc password từ session để tránh rủi ro bảo mật.
      * Method này trả về empty map để tương thích với code hiện tại.
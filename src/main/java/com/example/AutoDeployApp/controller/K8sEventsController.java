@@ -1,5 +1,6 @@
 package com.example.AutoDeployApp.controller;
 
+import com.example.AutoDeployApp.service.K8sEventStreamService;
 import com.example.AutoDeployApp.service.KubernetesService;
 import io.fabric8.kubernetes.api.model.Event;
 import io.fabric8.kubernetes.api.model.EventList;
@@ -7,6 +8,7 @@ import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import jakarta.servlet.http.HttpServletRequest;
 
 import java.util.*;
@@ -17,9 +19,11 @@ import java.util.stream.Collectors;
 public class K8sEventsController {
 
     private final KubernetesService kubernetesService;
+    private final K8sEventStreamService eventStreamService;
 
-    public K8sEventsController(KubernetesService kubernetesService) {
+    public K8sEventsController(KubernetesService kubernetesService, K8sEventStreamService eventStreamService) {
         this.kubernetesService = kubernetesService;
+        this.eventStreamService = eventStreamService;
     }
 
     private KubernetesClient getKubernetesClient() {
@@ -33,13 +37,8 @@ public class K8sEventsController {
             @RequestParam(required = false) String involvedObjectName,
             @RequestParam(required = false, defaultValue = "100") int limit,
             HttpServletRequest request) {
-        try (KubernetesClient client = getKubernetesClient()) {
-            EventList eventList;
-            if (namespace != null && !namespace.trim().isEmpty()) {
-                eventList = client.v1().events().inNamespace(namespace).list();
-            } else {
-                eventList = client.v1().events().inAnyNamespace().list();
-            }
+        try {
+            EventList eventList = kubernetesService.getEvents(namespace);
 
             List<Event> filteredEvents = eventList.getItems().stream()
                     .filter(event -> {
@@ -84,6 +83,26 @@ public class K8sEventsController {
         }
     }
 
+    /**
+     * Luồng events realtime (SSE): event "backlog" gồm các event gần nhất theo bộ lọc,
+     * sau đó là các event "ADDED" / "MODIFIED" / "DELETED" khi cluster thay đổi.
+     */
+    @GetMapping(value = "/k8s/events/stream", produces = org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(
+            @RequestParam(required = false) String namespace,
+            @RequestParam(required = false) String involvedObjectKind,
+            @RequestParam(required = false) String involvedObjectName,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false, defaultValue = "100") int backlog) {
+        var filter = new K8sEventStreamService.EventFilter(namespace, involvedObjectKind, involvedObjectName, type);
+        return eventStreamService.subscribe(filter, backlog, this::parseEventToMap);
+    }
+
+    @GetMapping("/k8s/events/stream/stats")
+    public ResponseEntity<?> eventStreamStats() {
+        return ResponseEntity.ok(eventStreamService.getStats());
+    }
+
     @GetMapping("/k8s/events/{namespace}/{name}")
     public ResponseEntity<?> getEvent(
             @PathVariable String namespace,
@@ -1,5 +1,6 @@
 package com.example.AutoDeployApp.controller;
 
+import com.example.AutoDeployApp.service.KubernetesService;
 import com.example.AutoDeployApp.service.K8sServiceDiscoveryService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -31,8 +32,18 @@ public class K8sServiceDiscoveryController {
     @GetMapping("/k8s/services")
     public ResponseEntity<?> listServices(
             @RequestParam(required = false) String namespace,
+            @RequestParam java.util.Map<String, String> params,
             HttpServletRequest request) {
         try {
+            var query = KubernetesService.ListQuery.from(params);
+            if (!query.isEmpty()) {
+                var page = serviceDiscoveryService.getServicesPage(namespace, query);
+                java.util.Map<String, Object> body = new java.util.LinkedHashMap<>(page.metadata());
+                body.put("services", page.items().stream()
+                        .map(svc -> parseServiceToMap(svc))
+                        .collect(java.util.stream.Collectors.toList()));
+                return ResponseEntity.ok(body);
+            }
             // Sử dụng Fabric8 Kubernetes Client thay vì SSH kubectl
             var serviceList = serviceDiscoveryService.getServices(namespace);
             java.util.List<java.util.Map<String, Object>> result = serviceList.getItems().stream()
@@ -46,6 +57,8 @@ public class K8sServiceDiscoveryController {
                         "services", new java.util.ArrayList<>()));
             }
             return ResponseEntity.status(500).body(Map.of("error", "Failed to get services: " + e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
@@ -1,5 +1,6 @@
 package com.example.AutoDeployApp.controller;
 
+import com.example.AutoDeployApp.service.KubernetesService;
 import com.example.AutoDeployApp.service.K8sStorageService;
 import io.fabric8.kubernetes.api.model.PersistentVolume;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
@@ -35,8 +36,18 @@ public class K8sStorageController {
     @GetMapping("/k8s/storage/pvcs")
     public ResponseEntity<?> listPvcs(
             @RequestParam(required = false) String namespace,
+            @RequestParam java.util.Map<String, String> params,
             HttpServletRequest request) {
         try {
+            var query = KubernetesService.ListQuery.from(params);
+            if (!query.isEmpty()) {
+                var page = storageService.getPersistentVolumeClaimsPage(namespace, query);
+                java.util.Map<String, Object> body = new java.util.LinkedHashMap<>(page.metadata());
+                body.put("pvcs", page.items().stream()
+                        .map(this::parsePVCToMap)
+                        .collect(java.util.stream.Collectors.toList()));
+                return ResponseEntity.ok(body);
+            }
             var pvcList = storageService.getPersistentVolumeClaims(namespace);
             List<Map<String, Object>> result = pvcList.getItems().stream()
                     .map(this::parsePVCToMap)
@@ -49,6 +60,8 @@ public class K8sStorageController {
                         "pvcs", List.of()));
             }
             return ResponseEntity.status(500).body(Map.of("error", "Failed to get PVCs: " + e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
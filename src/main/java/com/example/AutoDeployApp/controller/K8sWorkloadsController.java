@@ -1,5 +1,7 @@
 package com.example.AutoDeployApp.controller;
 
+import com.example.AutoDeployApp.service.KubernetesService;
+import com.example.AutoDeployApp.service.K8sPodLogStreamService;
 import com.example.AutoDeployApp.service.K8sWorkloadsService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -25,9 +27,18 @@ import io.fabric8.kubernetes.api.model.batch.v1.Job;
 public class K8sWorkloadsController {
 
     private final K8sWorkloadsService k8sWorkloadsService;
+    private final K8sPodLogStreamService podLogStreamService;
 
-    public K8sWorkloadsController(K8sWorkloadsService k8sWorkloadsService) {
+    @org.springframework.beans.factory.annotation.Value("${k8s.exec.default-timeout-seconds:30}")
+    private int defaultExecTimeoutSeconds;
+
+    @org.springframework.beans.factory.annotation.Value("${k8s.exec.max-timeout-seconds:300}")
+    private int maxExecTimeoutSeconds;
+
+    public K8sWorkloadsController(K8sWorkloadsService k8sWorkloadsService,
+            K8sPodLogStreamService podLogStreamService) {
         this.k8sWorkloadsService = k8sWorkloadsService;
+        this.podLogStreamService = podLogStreamService;
     }
 
     // ===================== List Endpoints =====================
@@ -39,8 +50,18 @@ public class K8sWorkloadsController {
     @GetMapping("/k8s/workloads/deployments")
     public ResponseEntity<?> listDeployments(
             @RequestParam(required = false) String namespace,
+            @RequestParam java.util.Map<String, String> params,
             HttpServletRequest request) {
         try {
+            var query = KubernetesService.ListQuery.from(params);
+            if (!query.isEmpty()) {
+                var page = k8sWorkloadsService.getDeploymentsPage(namespace, query);
+                java.util.Map<String, Object> body = new java.util.LinkedHashMap<>(page.metadata());
+                body.put("deployments", page.items().stream()
+                        .map(dep -> parseWorkloadToMap(dep))
+                        .collect(java.util.stream.Collectors.toList()));
+                return ResponseEntity.ok(body);
+            }
             var deployments = k8sWorkloadsService.getDeployments(namespace);
             java.util.List<java.util.Map<String, Object>> deploymentList = deployments.getItems().stream()
                     .map(dep -> parseWorkloadToMap(dep))
@@ -55,6 +76,8 @@ public class K8sWorkloadsController {
             return ResponseEntity.status(500).body(Map.of(
                     "error", "Failed to get deployments: " + e.getMessage(),
                     "deployments", new java.util.ArrayList<>()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of(
                     "error", e.getMessage(),
@@ -189,8 +212,18 @@ public class K8sWorkloadsController {
     @GetMapping("/k8s/workloads/pods")
     public ResponseEntity<?> listPodsForWorkloads(
             @RequestParam(required = false) String namespace,
+            @RequestParam java.util.Map<String, String> params,
             HttpServletRequest request) {
         try {
+            var query = KubernetesService.ListQuery.from(params);
+            if (!query.isEmpty()) {
+                var page = k8sWorkloadsService.getPodsPage(namespace, query);
+                java.util.Map<String, Object> body = new java.util.LinkedHashMap<>(page.metadata());
+                body.put("pods", page.items().stream()
+                        .map(pod -> parsePodToMap(pod))
+                        .collect(java.util.stream.Collectors.toList()));
+                return ResponseEntity.ok(body);
+            }
             var pods = k8sWorkloadsService.getPods(namespace);
             java.util.List<java.util.Map<String, Object>> podList = pods.getItems().stream()
                     .map(pod -> parsePodToMap(pod))
@@ -205,6 +238,8 @@ public class K8sWorkloadsController {
             return ResponseEntity.status(500).body(Map.of(
                     "error", "Failed to get pods: " + e.getMessage(),
                     "pods", new java.util.ArrayList<>()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of(
                     "error", e.getMessage(),
@@ -644,6 +679,14 @@ public class K8sWorkloadsController {
         }
     }
 
+    /**
+     * Thống kê stream log realtime (/ws/pod-logs): số upstream, viewer, dòng bị bỏ do client chậm
+     */
+    @GetMapping("/k8s/pods/logs/stream/stats")
+    public ResponseEntity<?> podLogStreamStats() {
+        return ResponseEntity.ok(podLogStreamService.getStats());
+    }
+
     /**
      * Lấy danh sách containers trong pod
      */
@@ -663,7 +706,8 @@ public class K8sWorkloadsController {
     }
 
     /**
-     * Exec command trong pod (non-interactive)
+     * Exec command trong pod (non-interactive) - trả về khi process kết thúc hoặc hết timeoutSeconds
+     * (body tuỳ chọn, mặc định k8s.exec.default-timeout-seconds). Exec tương tác dùng /ws/pod-exec.
      */
     @PostMapping("/k8s/pods/{namespace}/{name}/exec")
     public ResponseEntity<?> execPodCommand(
@@ -679,14 +723,26 @@ public class K8sWorkloadsController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Command is required"));
             }
             
-            String output = k8sWorkloadsService.execPodCommand(namespace, name, container, command);
-            return ResponseEntity.ok(Map.of(
-                    "success", true,
-                    "output", output,
-                    "namespace", namespace,
-                    "pod", name,
-                    "container", container != null ? container : "",
-                    "command", command));
+            int timeoutSeconds = body.get("timeoutSeconds") instanceof Number n
+                    ? Math.min(n.intValue(), maxExecTimeoutSeconds)
+                    : defaultExecTimeoutSeconds;
+
+            var result = k8sWorkloadsService.execPodCommand(namespace, name, container, command, timeoutSeconds);
+            String output = !result.stderr().isEmpty() ? result.stderr()
+                    : result.stdout().isEmpty() ? "(Không có output)" : result.stdout();
+            java.util.Map<String, Object> response = new java.util.LinkedHashMap<>();
+            response.put("success", !result.timedOut());
+            response.put("output", output);
+            response.put("stdout", result.stdout());
+            response.put("stderr", result.stderr());
+            response.put("exitCode", result.exitCode());
+            response.put("timedOut", result.timedOut());
+            response.put("durationMs", result.durationMs());
+            response.put("namespace", namespace);
+            response.put("pod", name);
+            response.put("container", container != null ? container : "");
+            response.put("command", command);
+            return ResponseEntity.ok(response);
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
@@ -1,7 +1,16 @@
 package com.example.AutoDeployApp.controller;
 
 import com.example.AutoDeployApp.entity.Server;
+import com.example.AutoDeployApp.service.FleetExecService;
+import com.example.AutoDeployApp.service.FleetMetricsCollector;
+import com.example.AutoDeployApp.service.HostMetrics;
+import com.example.AutoDeployApp.service.ServerHealthMonitor;
 import com.example.AutoDeployApp.service.ServerService;
+import com.example.AutoDeployApp.ws.TerminalRecorder;
+import com.example.AutoDeployApp.ws.TerminalWebSocketHandler;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.web.bind.annotation.*;
@@ -19,10 +28,22 @@ import java.util.concurrent.TimeUnit;
 public class ServerAdminController {
 
     private final ServerService serverService;
+    private final ServerHealthMonitor healthMonitor;
+    private final FleetMetricsCollector metricsCollector;
+    private final FleetExecService fleetExecService;
+    private final TerminalWebSocketHandler terminalHandler;
+    private final TerminalRecorder terminalRecorder;
     private final ExecutorService executorService = Executors.newFixedThreadPool(10);
 
-    public ServerAdminController(ServerService serverService) {
+    public ServerAdminController(ServerService serverService, ServerHealthMonitor healthMonitor,
+            FleetMetricsCollector metricsCollector, FleetExecService fleetExecService,
+            TerminalWebSocketHandler terminalHandler, TerminalRecorder terminalRecorder) {
         this.serverService = serverService;
+        this.healthMonitor = healthMonitor;
+        this.metricsCollector = metricsCollector;
+        this.fleetExecService = fleetExecService;
+        this.terminalHandler = terminalHandler;
+        this.terminalRecorder = terminalRecorder;
     }
 
     @PreDestroy
@@ -288,9 +309,6 @@ public class ServerAdminController {
     public Map<String, Object> checkStatusAll(HttpServletRequest request) {
         var session = request.getSession();
 
-        // 1) Ping tất cả server trong DB để cập nhật ONLINE/OFFLINE
-        var allUpdated = serverService.checkAllStatuses(2000);
-
         // Lọc server theo user hiện tại
         Long userId = null;
         Object uid = session.getAttribute("USER_ID");
@@ -298,7 +316,16 @@ public class ServerAdminController {
             userId = l;
         else if (uid instanceof Number n)
             userId = n.longValue();
+
+        // 1) ONLINE/OFFLINE: health monitor ping nền và ghi DB khi đổi trạng thái, ở đây chỉ trả về trạng thái
+        // đã biết và yêu cầu monitor ping lại ngay. Monitor tắt thì ping tất cả như trước.
+        if (!healthMonitor.isEnabled()) {
+            serverService.checkAllStatuses(2000);
+        }
         var userServers = (userId != null) ? serverService.findAllForUser(userId) : java.util.List.<Server>of();
+        if (healthMonitor.isEnabled()) {
+            healthMonitor.probeNow(userServers.stream().map(Server::getId).toList());
+        }
 
         // 2) CONNECTED_SERVERS: chỉ thử SSH bằng KEY (không sử dụng password từ session)
         // SECURITY: Không đọc password từ session để tránh rủi ro bảo mật
@@ -319,55 +346,68 @@ public class ServerAdminController {
         }
         
         java.util.LinkedHashSet<Long> connected = new java.util.LinkedHashSet<>();
-        int connectedCount = 0;
+        java.util.List<Server> toConnect = new java.util.ArrayList<>();
         int onlineCount = 0;
         int offlineCount = 0;
         int skippedCount = 0; // Đếm số máy đã connected và vẫn online (skip SSH test)
         
         for (var s : userServers) {
-            // Đếm ONLINE/OFFLINE/DISABLED
-            if (s.getStatus() == Server.ServerStatus.ONLINE) {
-                onlineCount++;
-            } else if (s.getStatus() == Server.ServerStatus.DISABLED) {
-                // DISABLED servers: không đếm vào online/offline, không thử SSH connection
-                continue; // Skip SSH connection cho DISABLED servers
-            } else {
-                offlineCount++;
-            }
-            
-            // DISABLED servers: chỉ check status (ping) nhưng không thử SSH connection
+            // DISABLED servers: không đếm vào online/offline, không thử SSH connection
             if (s.getStatus() == Server.ServerStatus.DISABLED) {
-                continue; // Skip SSH connection
+                continue;
             }
-            
-            // Tối ưu: Nếu máy đã connected và vẫn online, không cần thử SSH lại
-            boolean alreadyConnected = existingConnected.contains(s.getId());
-            boolean isOnline = s.getStatus() == Server.ServerStatus.ONLINE;
-            
-            if (alreadyConnected && isOnline) {
+            if (s.getStatus() != Server.ServerStatus.ONLINE) {
+                // Máy offline: tự động remove khỏi connected
+                offlineCount++;
+                continue;
+            }
+            onlineCount++;
+            if (existingConnected.contains(s.getId())) {
                 // Máy đã connected và vẫn online → giữ nguyên trạng thái connected
                 connected.add(s.getId());
-                connectedCount++;
                 skippedCount++;
             } else {
-                // Máy chưa connected hoặc đã offline → thử SSH connection
-                boolean ok = serverService.tryConnectPreferKey(s, null, 3000);
-                if (ok) {
-                    connected.add(s.getId());
-                    connectedCount++;
-                }
-                // Nếu máy đã offline, tự động remove khỏi connected (không add vào connected)
+                toConnect.add(s);
             }
         }
         session.setAttribute("CONNECTED_SERVERS", connected);
 
+        // Máy online chưa connected: thử SSH key ở nền, không giữ request; thành công thì thêm vào session
+        for (var s : toConnect) {
+            executorService.submit(() -> {
+                if (!serverService.tryConnectPreferKey(s, null, 3000)) {
+                    return;
+                }
+                try {
+                    synchronized (session) {
+                        Object attr = session.getAttribute("CONNECTED_SERVERS");
+                        java.util.Set<Long> current = new java.util.LinkedHashSet<>();
+                        if (attr instanceof java.util.Set<?> set) {
+                            for (Object o : set) {
+                                if (o instanceof Number n)
+                                    current.add(n.longValue());
+                            }
+                        }
+                        current.add(s.getId());
+                        session.setAttribute("CONNECTED_SERVERS", current);
+                    }
+                } catch (IllegalStateException ignored) {
+                    // Session đã hết hạn
+                }
+            });
+        }
+
         // Trả về danh sách trạng thái và thống kê
-        var serversList = allUpdated.stream()
-                .filter(s -> userServers.stream().anyMatch(us -> us.getId().equals(s.getId())))
-                .map(s -> Map.<String, Object>of(
-                        "id", s.getId(),
-                        "host", s.getHost(),
-                        "status", s.getStatus().name()))
+        var serversList = userServers.stream()
+                .map(s -> {
+                    var health = healthMonitor.get(s.getId());
+                    return Map.<String, Object>of(
+                            "id", s.getId(),
+                            "host", s.getHost(),
+                            "status", s.getStatus().name(),
+                            "rttMs", health != null ? health.rttMs() : -1L,
+                            "lastCheckedAt", health != null ? health.lastCheckedAt() : 0L);
+                })
                 .toList();
         
         return Map.of(
@@ -376,13 +416,115 @@ public class ServerAdminController {
                         "total", userServers.size(),
                         "online", onlineCount,
                         "offline", offlineCount,
-                        "connected", connectedCount,
-                        "failed", userServers.size() - connectedCount,
+                        "connected", connected.size(),
+                        "pending", toConnect.size(), // Đang thử SSH key ở nền
+                        "failed", userServers.size() - connected.size() - toConnect.size(),
                         "skipped", skippedCount // Số máy đã connected và vẫn online (không cần SSH lại)
                 )
         );
     }
 
+    /**
+     * Trạng thái ONLINE/OFFLINE của các server của user theo health monitor (không ping), kèm RTT
+     */
+    @GetMapping("/health")
+    public Map<String, Object> health(HttpServletRequest request) {
+        java.util.Set<Long> ids = userServerIds(request);
+        return Map.of(
+                "servers", healthMonitor.snapshot().stream().filter(v -> ids.contains(v.id())).toList(),
+                "monitor", healthMonitor.getStats());
+    }
+
+    /**
+     * Đẩy thay đổi trạng thái server (SSE): "snapshot" khi kết nối, sau đó "transition" mỗi khi server
+     * của user đổi ONLINE/OFFLINE - UI không cần poll check-status.
+     */
+    @GetMapping(value = "/health/stream", produces = org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE)
+    public org.springframework.web.servlet.mvc.method.annotation.SseEmitter healthStream(HttpServletRequest request) {
+        java.util.Set<Long> ids = userServerIds(request);
+        return healthMonitor.subscribe(ids::contains);
+    }
+
+    private java.util.Set<Long> userServerIds(HttpServletRequest request) {
+        Long userId = null;
+        var session = request.getSession(false);
+        if (session != null) {
+            Object uid = session.getAttribute("USER_ID");
+            if (uid instanceof Long l)
+                userId = l;
+            else if (uid instanceof Number n)
+                userId = n.longValue();
+        }
+        java.util.Set<Long> ids = new java.util.HashSet<>();
+        if (userId != null) {
+            serverService.findAllForUser(userId).forEach(s -> ids.add(s.getId()));
+        }
+        return ids;
+    }
+
+    /**
+     * Ping TCP tất cả server và stream kết quả (SSE) ngay khi từng server có kết quả: event "probe" cho mỗi
+     * server của user (kèm RTT, tiến độ done/total), cuối cùng event "done" với thống kê. Chỉ cập nhật
+     * ONLINE/OFFLINE - danh sách CONNECTED_SERVERS vẫn do POST /check-status làm mới.
+     */
+    @GetMapping(value = "/check-status/stream", produces = org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE)
+    public org.springframework.web.servlet.mvc.method.annotation.SseEmitter checkStatusStream(
+            HttpServletRequest request,
+            @RequestParam(defaultValue = "2000") int timeoutMs) {
+        java.util.Set<Long> userServerIds = userServerIds(request);
+        int effectiveTimeout = Math.max(200, Math.min(timeoutMs, 10000));
+        var emitter = new org.springframework.web.servlet.mvc.method.annotation.SseEmitter(
+                TimeUnit.MINUTES.toMillis(5));
+
+        executorService.submit(() -> {
+            int total = userServerIds.size();
+            java.util.concurrent.atomic.AtomicInteger done = new java.util.concurrent.atomic.AtomicInteger();
+            java.util.concurrent.atomic.AtomicBoolean clientGone = new java.util.concurrent.atomic.AtomicBoolean();
+            try {
+                var servers = serverService.checkAllStatuses(effectiveTimeout, r -> {
+                    if (!userServerIds.contains(r.id()) || clientGone.get()) {
+                        return;
+                    }
+                    java.util.Map<String, Object> event = new java.util.LinkedHashMap<>();
+                    event.put("id", r.id());
+                    event.put("host", r.host());
+                    event.put("port", r.port());
+                    event.put("reachable", r.reachable());
+                    event.put("rttMs", r.rttMs());
+                    event.put("error", r.error());
+                    event.put("done", done.incrementAndGet());
+                    event.put("total", total);
+                    try {
+                        emitter.send(org.springframework.web.servlet.mvc.method.annotation.SseEmitter.event()
+                                .name("probe").data(event));
+                    } catch (java.io.IOException | IllegalStateException e) {
+                        clientGone.set(true); // client đóng kết nối - vẫn chạy hết để ghi status vào DB
+                    }
+                });
+                if (clientGone.get()) {
+                    return;
+                }
+                var statuses = servers.stream()
+                        .filter(s -> userServerIds.contains(s.getId()))
+                        .map(s -> Map.<String, Object>of("id", s.getId(), "status", s.getStatus().name()))
+                        .toList();
+                long online = statuses.stream().filter(m -> "ONLINE".equals(m.get("status"))).count();
+                long disabled = statuses.stream().filter(m -> "DISABLED".equals(m.get("status"))).count();
+                emitter.send(org.springframework.web.servlet.mvc.method.annotation.SseEmitter.event()
+                        .name("done").data(Map.of(
+                                "servers", statuses,
+                                "stats", Map.of(
+                                        "total", total,
+                                        "online", online,
+                                        "offline", total - online - disabled))));
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
     @GetMapping("/connected")
     public List<Long> getConnected(HttpServletRequest request) {
         var session = request.getSession(false);
@@ -406,6 +548,126 @@ public class ServerAdminController {
         return java.util.List.copyOf(ids);
     }
 
+    // Thống kê SSH session pool (hit ratio, số handshake, thời gian handshake, lease đang dùng)
+    @GetMapping("/ssh-pool")
+    public Map<String, Object> sshPoolStats() {
+        return serverService.getSshPoolStats();
+    }
+
+    // Hàng đợi output của các phiên terminal (byte chờ gửi, thời gian bị chặn, phiên bị huỷ do client chậm)
+    @GetMapping("/terminal-flow")
+    public Map<String, Object> terminalFlowStats() {
+        return terminalHandler.getStats();
+    }
+
+    // Các shell terminal đang mở (shareId dùng để xem chung qua /ws/terminal {"join": shareId})
+    @GetMapping("/terminal-sessions")
+    public List<Map<String, Object>> terminalSessions(@RequestParam(required = false) Long serverId) {
+        return terminalHandler.listSessions(serverId);
+    }
+
+    // File ghi hình terminal (asciicast v2), mới nhất trước; active=true là shell còn đang chạy
+    @GetMapping("/terminal-recordings")
+    public Map<String, Object> terminalRecordings() {
+        return Map.of("recordings", terminalRecorder.listRecordings(), "stats", terminalRecorder.getStats());
+    }
+
+    /**
+     * Tải/phát 1 file ghi hình. Trả về FileSystemResource nên Spring tự xử lý header Range (206 Partial Content):
+     * player có thể tua, client có thể tải tiếp hoặc đọc dần file đang ghi. File .gz trả nguyên dạng nén;
+     * inflate=true giải nén trên đường truyền: trả StreamingResponseBody (không phải Resource) để Spring bỏ qua
+     * header Range thay vì đọc cạn stream khi tính độ dài rồi trả 416.
+     */
+    @GetMapping("/terminal-recordings/{name:.+}")
+    public ResponseEntity<?> terminalRecording(@PathVariable String name,
+            @RequestParam(defaultValue = "false") boolean inflate) {
+        java.nio.file.Path path = terminalRecorder.resolveRecording(name);
+        if (path == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Recording not found"));
+        }
+        MediaType asciicast = MediaType.parseMediaType("application/x-asciicast");
+        boolean gzip = name.endsWith(".gz");
+        if (gzip && inflate) {
+            java.io.InputStream in;
+            try {
+                in = new java.util.zip.GZIPInputStream(java.nio.file.Files.newInputStream(path));
+            } catch (java.io.IOException e) {
+                return ResponseEntity.status(500).body(Map.of("error", "Cannot read recording: " + e.getMessage()));
+            }
+            org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody body = out -> {
+                try (in) {
+                    in.transferTo(out);
+                }
+            };
+            return ResponseEntity.ok()
+                    .contentType(asciicast)
+                    .header(HttpHeaders.ACCEPT_RANGES, "none")
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "inline; filename=\"" + name.substring(0, name.length() - 3) + "\"")
+                    .body(body);
+        }
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : asciicast)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + name + "\"")
+                .body(new FileSystemResource(path));
+    }
+
+    // Thống kê TCP prober (số kết nối đang mở / giới hạn)
+    @GetMapping("/reachability-prober")
+    public Map<String, Object> reachabilityProberStats() {
+        return serverService.getReachabilityProberStats();
+    }
+
+    // Năng lực server (sudo NOPASSWD, OS, package manager, ansible/kubelet) - từ cache, refresh=true để probe lại
+    @GetMapping("/{id}/capabilities")
+    public ResponseEntity<?> capabilities(@PathVariable Long id,
+            @RequestParam(defaultValue = "false") boolean refresh) {
+        Server s;
+        try {
+            s = serverService.findById(id);
+        } catch (java.util.NoSuchElementException e) {
+            return ResponseEntity.status(404).body(Map.of("error", "Server not found"));
+        }
+        var caps = serverService.getCapabilities(s, null, refresh);
+        if (caps == null) {
+            return ResponseEntity.status(502).body(Map.of("error", "Không probe được server " + s.getHost()));
+        }
+        return ResponseEntity.ok(caps);
+    }
+
+    // Probe lại năng lực cho nhiều server song song: body {"ids":[...]} hoặc rỗng = mọi server chưa bị DISABLED
+    @PostMapping("/capabilities/refresh")
+    public Map<String, Object> refreshCapabilities(@RequestBody(required = false) Map<String, Object> body) {
+        java.util.Set<Long> ids = new java.util.HashSet<>();
+        if (body != null && body.get("ids") instanceof List<?> list) {
+            for (Object o : list) {
+                if (o instanceof Number n)
+                    ids.add(n.longValue());
+            }
+        }
+        List<Server> targets = serverService.findAll().stream()
+                .filter(s -> ids.isEmpty() ? s.getStatus() != Server.ServerStatus.DISABLED : ids.contains(s.getId()))
+                .toList();
+        java.util.Map<Long, CompletableFuture<Object>> futures = new java.util.LinkedHashMap<>();
+        for (Server s : targets) {
+            futures.put(s.getId(), CompletableFuture.<Object>supplyAsync(() -> {
+                var caps = serverService.getCapabilities(s, null, true);
+                return caps != null ? caps : Map.of("error", "probe failed");
+            }, executorService).orTimeout(20, TimeUnit.SECONDS)
+                    .exceptionally(t -> Map.of("error", String.valueOf(t.getMessage()))));
+        }
+        java.util.Map<Long, Object> results = new java.util.LinkedHashMap<>();
+        int failed = 0;
+        for (var entry : futures.entrySet()) {
+            Object result = entry.getValue().join();
+            if (result instanceof Map<?, ?>)
+                failed++;
+            results.put(entry.getKey(), result);
+        }
+        return Map.of("refreshed", results.size() - failed, "failed", failed, "results", results);
+    }
+
     @PostMapping("/{id}/reconnect")
     public ResponseEntity<?> reconnect(@PathVariable Long id, @RequestBody Map<String, String> body,
             HttpServletRequest request) {
@@ -707,6 +969,10 @@ public class ServerAdminController {
         }
     }
 
+    /**
+     * Metrics của các server của user, lấy từ snapshot của FleetMetricsCollector (không SSH khi tải trang).
+     * cpuCores/ramTotal/diskTotal giữ định dạng cũ; kèm số liệu dạng số và collectedAt/ageMs/stale cho độ mới.
+     */
     @GetMapping("/metrics")
     public Map<Long, Map<String, Object>> getServersMetrics(HttpServletRequest request) {
         var session = request.getSession(false);
@@ -723,115 +989,47 @@ public class ServerAdminController {
             userId = n.longValue();
         var servers = (userId != null) ? serverService.findAllForUser(userId) : java.util.List.<Server>of();
 
-        // SECURITY: Không đọc password từ session. Chỉ sử dụng SSH key để lấy metrics.
-        // Lấy metrics cho tất cả servers song song (parallel processing)
-        java.util.List<CompletableFuture<java.util.Map.Entry<Long, Map<String, Object>>>> futures = servers.stream()
-                .map(s -> {
-                    CompletableFuture<Map<String, Object>> metricsFuture = getServerMetricsAsync(s, null);
-                    return metricsFuture.<java.util.Map.Entry<Long, Map<String, Object>>>thenApply(metrics -> {
-                        Map<String, Object> result = metrics != null ? metrics
-                                : Map.of("cpuCores", "-", "ramTotal", "-", "diskTotal", "-");
-                        return java.util.Map.entry(s.getId(), result);
-                    });
-                })
-                .toList();
-
-        // Chờ tất cả futures hoàn thành
         java.util.Map<Long, Map<String, Object>> metricsMap = new java.util.LinkedHashMap<>();
-        try {
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-                    .orTimeout(30, TimeUnit.SECONDS)
-                    .join();
-
-            // Thu thập kết quả
-            for (var future : futures) {
-                try {
-                    var entry = future.getNow(null);
-                    if (entry != null) {
-                        metricsMap.put(entry.getKey(), entry.getValue());
-                    }
-                } catch (Exception e) {
-                    // Bỏ qua lỗi của từng server
-                    System.err.println("Lỗi lấy metrics cho server: " + e.getMessage());
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Lỗi xử lý metrics: " + e.getMessage());
-            // Nếu timeout hoặc lỗi, vẫn trả về những gì đã lấy được
-        }
-
-        // Đảm bảo tất cả servers đều có trong map (nếu chưa có thì thêm giá trị mặc định)
         for (var s : servers) {
-            if (!metricsMap.containsKey(s.getId())) {
-                metricsMap.put(s.getId(), Map.of("cpuCores", "-", "ramTotal", "-", "diskTotal", "-"));
-            }
+            metricsMap.put(s.getId(), metricsView(metricsCollector.get(s.getId())));
         }
-
+        // Server mới chưa có snapshot: thu thập ở nền, lần tải sau sẽ có
+        metricsCollector.collectMissing(servers);
         return metricsMap;
     }
 
-    private static final String COMBINED_METRICS_COMMAND = "echo \"CPU_CORES:$(nproc)\"; " +
-            "echo \"RAM_TOTAL:$(free -h | awk '/^Mem:/{print $2}')\"; " +
-            "echo \"DISK_TOTAL:$(df -h / | awk 'NR==2{print $2}')\"";
-
-    /**
-     * Lấy metrics cho một server bất đồng bộ (async) để xử lý song song
-     */
-    private CompletableFuture<Map<String, Object>> getServerMetricsAsync(Server s, String fallbackPassword) {
-        return CompletableFuture.<Map<String, Object>>supplyAsync(() -> {
-            int port = s.getPort() != null ? s.getPort() : 22;
-            
-            // Thử SSH key trước
-            if (s.getSshKey() != null && s.getSshKey().getEncryptedPrivateKey() != null
-                    && !s.getSshKey().getEncryptedPrivateKey().isBlank()) {
-                try {
-                    String output = serverService.execCommandWithKey(s.getHost(), port, s.getUsername(),
-                            s.getSshKey().getEncryptedPrivateKey(), COMBINED_METRICS_COMMAND, 5000);
-                    if (output != null && !output.isBlank()) {
-                        return parseCombinedMetricsOutput(output);
-                    }
-                } catch (Exception e) {
-                    // Fallback to password
-                    System.err.println("SSH key failed for " + s.getHost() + ": " + e.getMessage());
-                }
-            }
-
-            // SECURITY: Không sử dụng password fallback. Chỉ sử dụng SSH key.
-            // Trả về giá trị mặc định nếu SSH key không hoạt động
-            return Map.of("cpuCores", "-", "ramTotal", "-", "diskTotal", "-");
-        }, executorService)
-                .orTimeout(15, TimeUnit.SECONDS)
-                .exceptionally(throwable -> {
-                    System.err.println("Timeout hoặc lỗi lấy metrics cho server " + s.getHost() + ": "
-                            + throwable.getMessage());
-                    return Map.of("cpuCores", "-", "ramTotal", "-", "diskTotal", "-");
-                });
-    }
-
-    private Map<String, Object> parseCombinedMetricsOutput(String output) {
-        String cpuCores = "-", ramTotal = "-", diskTotal = "-";
-
-        try {
-            String[] lines = output.split("\n");
-            for (String line : lines) {
-                line = line.trim();
-                if (line.startsWith("CPU_CORES:")) {
-                    cpuCores = line.substring(10).trim();
-                } else if (line.startsWith("RAM_TOTAL:")) {
-                    ramTotal = line.substring(10).trim();
-                } else if (line.startsWith("DISK_TOTAL:")) {
-                    diskTotal = line.substring(11).trim();
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Lỗi phân tích kết quả metrics: " + e.getMessage());
+    private static Map<String, Object> metricsView(FleetMetricsCollector.Snapshot snapshot) {
+        java.util.Map<String, Object> m = new java.util.LinkedHashMap<>();
+        HostMetrics metrics = snapshot != null ? snapshot.metrics() : null;
+        if (metrics == null) {
+            m.put("cpuCores", "-");
+            m.put("ramTotal", "-");
+            m.put("diskTotal", "-");
+            m.put("collectedAt", null);
+            m.put("stale", true);
+            m.put("error", snapshot != null ? snapshot.error() : null);
+            return m;
         }
-
-        // Return hardware specs: CPU cores, RAM total, Disk total
-        return Map.of(
-                "cpuCores", cpuCores.equals("-") ? "-" : cpuCores,
-                "ramTotal", ramTotal,
-                "diskTotal", diskTotal);
+        m.put("cpuCores", String.valueOf(metrics.cpuCores()));
+        m.put("ramTotal", HostMetrics.humanBytes(metrics.memTotalBytes()));
+        m.put("diskTotal", HostMetrics.humanBytesDf(metrics.diskTotalBytes()));
+        m.put("cpuUsagePercent", metrics.cpuUsagePercent());
+        m.put("load1", metrics.load1());
+        m.put("load5", metrics.load5());
+        m.put("load15", metrics.load15());
+        m.put("memTotalBytes", metrics.memTotalBytes());
+        m.put("memAvailableBytes", metrics.memAvailableBytes());
+        m.put("memUsedPercent", metrics.memUsedPercent());
+        m.put("swapTotalBytes", metrics.swapTotalBytes());
+        m.put("swapFreeBytes", metrics.swapFreeBytes());
+        m.put("diskTotalBytes", metrics.diskTotalBytes());
+        m.put("diskAvailableBytes", metrics.diskAvailableBytes());
+        m.put("diskUsedPercent", metrics.diskUsedPercent());
+        m.put("collectedAt", metrics.collectedAt());
+        m.put("ageMs", snapshot.ageMs());
+        m.put("stale", snapshot.stale());
+        m.put("error", snapshot.error());
+        return m;
     }
 
     @PostMapping("/{id}/metrics")
@@ -845,29 +1043,17 @@ public class ServerAdminController {
             Server s = serverService.findById(id);
             
             // SECURITY: Không đọc password từ session. Chỉ sử dụng SSH key để lấy metrics.
-            // Lấy metrics mới từ server
-            Map<String, Object> metrics = getServerMetricsAsync(s, null).get(20, TimeUnit.SECONDS);
+            // Thu thập ngay qua collector (thông số phần cứng được collector ghi vào database khi thay đổi)
+            HostMetrics metrics = metricsCollector.collectNow(java.util.List.of(s), 20, TimeUnit.SECONDS).get(id);
             
             if (metrics == null) {
                 return ResponseEntity.ok(Map.of("ok", false, "message", "Không thể lấy metrics từ server"));
             }
 
-            // Cập nhật metrics vào database
-            String cpuCores = (String) metrics.get("cpuCores");
-            String ramTotal = (String) metrics.get("ramTotal");
-            String diskTotal = (String) metrics.get("diskTotal");
-            
-            // Xử lý giá trị "-" thành null
-            cpuCores = (cpuCores != null && !cpuCores.equals("-")) ? cpuCores : null;
-            ramTotal = (ramTotal != null && !ramTotal.equals("-")) ? ramTotal : null;
-            diskTotal = (diskTotal != null && !diskTotal.equals("-")) ? diskTotal : null;
-            
-            serverService.updateMetrics(id, cpuCores, ramTotal, diskTotal);
-
             return ResponseEntity.ok(Map.of(
                     "ok", true,
                     "message", "Cập nhật metrics thành công",
-                    "metrics", metrics));
+                    "metrics", metricsView(metricsCollector.get(id))));
         } catch (Exception e) {
             return ResponseEntity.ok(Map.of(
                     "ok", false,
@@ -892,57 +1078,27 @@ public class ServerAdminController {
         var servers = (userId != null) ? serverService.findAllForUser(userId) : java.util.List.<Server>of();
 
         // SECURITY: Không đọc password từ session. Chỉ sử dụng SSH key để lấy metrics.
-        // Cập nhật metrics cho tất cả servers song song
-        java.util.List<CompletableFuture<Map<String, Object>>> futures = servers.stream()
-                .map(s -> {
-                    CompletableFuture<Map<String, Object>> metricsFuture = getServerMetricsAsync(s, null);
-                    return metricsFuture.<Map<String, Object>>thenApply(metrics -> {
-                        if (metrics != null) {
-                            try {
-                                String cpuCores = (String) metrics.get("cpuCores");
-                                String ramTotal = (String) metrics.get("ramTotal");
-                                String diskTotal = (String) metrics.get("diskTotal");
-                                
-                                cpuCores = (cpuCores != null && !cpuCores.equals("-")) ? cpuCores : null;
-                                ramTotal = (ramTotal != null && !ramTotal.equals("-")) ? ramTotal : null;
-                                diskTotal = (diskTotal != null && !diskTotal.equals("-")) ? diskTotal : null;
-                                
-                                serverService.updateMetrics(s.getId(), cpuCores, ramTotal, diskTotal);
-                                java.util.Map<String, Object> result = new java.util.LinkedHashMap<>();
-                                result.put("serverId", s.getId());
-                                result.put("ok", true);
-                                result.put("metrics", metrics);
-                                return result;
-                            } catch (Exception e) {
-                                java.util.Map<String, Object> result = new java.util.LinkedHashMap<>();
-                                result.put("serverId", s.getId());
-                                result.put("ok", false);
-                                result.put("error", e.getMessage());
-                                return result;
-                            }
-                        }
-                        java.util.Map<String, Object> result = new java.util.LinkedHashMap<>();
-                        result.put("serverId", s.getId());
-                        result.put("ok", false);
-                        result.put("error", "No metrics");
-                        return result;
-                    });
-                })
-                .toList();
-
+        // Thu thập ngay cho tất cả servers (song song, giới hạn bởi fleet-metrics.parallelism)
         try {
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-                    .orTimeout(60, TimeUnit.SECONDS)
-                    .join();
+            var collected = metricsCollector.collectNow(servers, 60, TimeUnit.SECONDS);
 
-            java.util.List<Map<String, Object>> results = futures.stream()
-                    .map(f -> f.getNow(null))
-                    .filter(r -> r != null)
-                    .toList();
+            java.util.List<Map<String, Object>> results = new java.util.ArrayList<>();
+            for (var s : servers) {
+                java.util.Map<String, Object> result = new java.util.LinkedHashMap<>();
+                result.put("serverId", s.getId());
+                if (collected.get(s.getId()) != null) {
+                    result.put("ok", true);
+                    result.put("metrics", metricsView(metricsCollector.get(s.getId())));
+                } else {
+                    var snapshot = metricsCollector.get(s.getId());
+                    result.put("ok", false);
+                    result.put("error", snapshot != null && snapshot.error() != null ? snapshot.error() : "No metrics");
+                }
+                results.add(result);
+            }
 
             int successCount = (int) results.stream().filter(r -> Boolean.TRUE.equals(r.get("ok"))).count();
             int failCount = results.size() - successCount;
-
             return ResponseEntity.ok(Map.of(
                     "ok", true,
                     "message", String.format("Cập nhật metrics: %d thành công, %d thất bại", successCount, failCount),
@@ -953,4 +1109,141 @@ public class ServerAdminController {
                     "message", "Lỗi cập nhật metrics: " + e.getMessage()));
         }
     }
+
+    // Thống kê collector metrics (số lần thu thập, lỗi, thời gian vòng thu thập gần nhất)
+    @GetMapping("/metrics/collector")
+    public Map<String, Object> metricsCollectorStats() {
+        return metricsCollector.getStats();
+    }
+
+    /**
+     * Chạy 1 lệnh trên nhiều server song song. Body: command, ids (tuỳ chọn), role, clusterStatus,
+     * concurrency (mặc định 20), timeoutMs cho từng host (mặc định 60s). Trả về jobId ngay; kết quả từng host
+     * theo dõi qua GET /exec/{jobId}/stream hoặc GET /exec/{jobId}.
+     */
+    @PostMapping("/exec")
+    public ResponseEntity<?> execOnFleet(@RequestBody Map<String, Object> body, HttpServletRequest request) {
+        Object commandObj = body.get("command");
+        String command = commandObj != null ? commandObj.toString().trim() : "";
+        if (command.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Thiếu command"));
+        }
+        java.util.Set<Long> ids = null;
+        if (body.get("ids") instanceof java.util.Collection<?> rawIds) {
+            ids = new java.util.HashSet<>();
+            for (Object o : rawIds) {
+                try {
+                    ids.add(Long.valueOf(o.toString()));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            if (ids.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "ids không hợp lệ"));
+            }
+        }
+        String role = body.get("role") != null ? body.get("role").toString() : null;
+        String clusterStatus = body.get("clusterStatus") != null ? body.get("clusterStatus").toString() : null;
+        int concurrency = parseIntOrDefault(body.get("concurrency"), 20);
+        int timeoutMs = Math.max(1000, Math.min(parseIntOrDefault(body.get("timeoutMs"), 60000), 3600000));
+
+        java.util.Set<Long> allowed = userServerIds(request);
+        List<Server> targets = fleetExecService.selectTargets(ids, role, clusterStatus).stream()
+                .filter(s -> allowed.contains(s.getId()))
+                .toList();
+        if (targets.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Không có server nào khớp điều kiện"));
+        }
+        FleetExecService.Job job = fleetExecService.submit(targets, command, concurrency, timeoutMs,
+                sessionUserId(request));
+        return ResponseEntity.ok(Map.of(
+                "jobId", job.id(),
+                "total", targets.size(),
+                "targets", targets.stream()
+                        .map(s -> Map.<String, Object>of("id", s.getId(), "host", s.getHost()))
+                        .toList()));
+    }
+
+    private static int parseIntOrDefault(Object value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static Long sessionUserId(HttpServletRequest request) {
+        var session = request.getSession(false);
+        if (session != null && session.getAttribute("USER_ID") instanceof Number n) {
+            return n.longValue();
+        }
+        return null;
+    }
+
+    // Job chỉ hiển thị với người đã tạo (giống /health: user chỉ thấy server của mình)
+    private static boolean ownsJob(FleetExecService.Job job, Long userId) {
+        return userId != null && userId.equals(job.startedBy());
+    }
+
+    /** 404 nếu không có job, 403 nếu job của user khác; null nếu được phép */
+    private ResponseEntity<?> execJobAccessError(FleetExecService.Job job, HttpServletRequest request) {
+        if (job == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Không tìm thấy job"));
+        }
+        if (!ownsJob(job, sessionUserId(request))) {
+            return ResponseEntity.status(403)
+                    .body(Map.of("error", "Forbidden", "message", "Job không thuộc user hiện tại"));
+        }
+        return null;
+    }
+
+    // Các job gần đây của user (summary, không gồm output)
+    @GetMapping("/exec")
+    public Map<String, Object> listExecJobs(HttpServletRequest request) {
+        Long userId = sessionUserId(request);
+        return Map.of(
+                "jobs", fleetExecService.history().stream()
+                        .filter(job -> ownsJob(job, userId))
+                        .map(FleetExecService.Job::summary)
+                        .toList(),
+                "stats", fleetExecService.getStats());
+    }
+
+    @GetMapping("/exec/{jobId}")
+    public ResponseEntity<?> getExecJob(@PathVariable String jobId, HttpServletRequest request) {
+        FleetExecService.Job job = fleetExecService.get(jobId);
+        ResponseEntity<?> error = execJobAccessError(job, request);
+        if (error != null) {
+            return error;
+        }
+        return ResponseEntity.ok(job.detail());
+    }
+
+    /**
+     * SSE: "result" cho mỗi host (phát lại các host đã xong khi mới kết nối), "summary" khi job kết thúc
+     */
+    @GetMapping(value = "/exec/{jobId}/stream", produces = org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> streamExecJob(@PathVariable String jobId, HttpServletRequest request) {
+        FleetExecService.Job job = fleetExecService.get(jobId);
+        ResponseEntity<?> error = execJobAccessError(job, request);
+        if (error != null) {
+            return error;
+        }
+        return ResponseEntity.ok(fleetExecService.subscribe(job));
+    }
+
+    // Huỷ job: dừng các host đang chạy, host chưa bắt đầu được đánh dấu CANCELLED
+    @PostMapping("/exec/{jobId}/cancel")
+    public ResponseEntity<?> cancelExecJob(@PathVariable String jobId, HttpServletRequest request) {
+        ResponseEntity<?> error = execJobAccessError(fleetExecService.get(jobId), request);
+        if (error != null) {
+            return error;
+        }
+        if (!fleetExecService.cancel(jobId)) {
+            return ResponseEntity.status(404).body(Map.of("error", "Không tìm thấy job"));
+        }
+        return ResponseEntity.ok(Map.of("ok", true, "jobId", jobId));
+    }
 }
@@ -2,8 +2,11 @@ package com.example.AutoDeployApp.controller;
 
 import com.example.AutoDeployApp.entity.SshKey;
 import com.example.AutoDeployApp.repository.SshKeyRepository;
+import com.example.AutoDeployApp.service.SshIdentityCache;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
@@ -14,9 +17,11 @@ import java.util.Map;
 public class SshKeyAdminController {
 
     private final SshKeyRepository sshKeyRepository;
+    private final SshIdentityCache sshIdentityCache;
 
-    public SshKeyAdminController(SshKeyRepository sshKeyRepository) {
+    public SshKeyAdminController(SshKeyRepository sshKeyRepository, SshIdentityCache sshIdentityCache) {
         this.sshKeyRepository = sshKeyRepository;
+        this.sshIdentityCache = sshIdentityCache;
     }
 
     @GetMapping
@@ -34,4 +39,20 @@ public class SshKeyAdminController {
             return m;
         }).toList();
     }
+
+    @GetMapping("/identity-cache")
+    public Map<String, Object> identityCacheStats() {
+        return sshIdentityCache.getStats();
+    }
+
+    // Xoá cache key đã parse (toàn bộ hoặc 1 key) - dùng khi key được sửa trực tiếp trong DB
+    @DeleteMapping("/identity-cache")
+    public Map<String, Object> invalidateIdentityCache(@RequestParam(required = false) Long keyId) {
+        if (keyId != null) {
+            sshIdentityCache.invalidateKey(keyId);
+        } else {
+            sshIdentityCache.invalidateAll();
+        }
+        return sshIdentityCache.getStats();
+    }
 }
@@ -2,9 +2,12 @@ package com.example.AutoDeployApp.repository;
 
 import com.example.AutoDeployApp.entity.Server;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
 
@@ -24,4 +27,24 @@ public interface ServerRepository extends JpaRepository<Server, Long> {
     
     // Find server by host, port, and username (for duplicate check)
     Optional<Server> findByHostAndPortAndUsername(String host, Integer port, String username);
+
+    // Cập nhật status hàng loạt, bỏ qua server đang DISABLED (có thể bị disable trong lúc đang ping)
+    @Modifying
+    @Transactional
+    @Query("update Server s set s.status = :status where s.id in :ids and s.status <> :excluded")
+    int updateStatusExcept(@Param("ids") Collection<Long> ids, @Param("status") Server.ServerStatus status,
+            @Param("excluded") Server.ServerStatus excluded);
+
+    /**
+     * Ghi kết quả ping của nhiều server trong 1 transaction (tối đa 2 câu UPDATE)
+     */
+    @Transactional
+    default void updateReachability(Collection<Long> onlineIds, Collection<Long> offlineIds) {
+        if (!onlineIds.isEmpty()) {
+            updateStatusExcept(onlineIds, Server.ServerStatus.ONLINE, Server.ServerStatus.DISABLED);
+        }
+        if (!offlineIds.isEmpty()) {
+            updateStatusExcept(offlineIds, Server.ServerStatus.OFFLINE, Server.ServerStatus.DISABLED);
+        }
+    }
 }
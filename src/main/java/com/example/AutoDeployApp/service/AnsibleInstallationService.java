@@ -41,24 +41,13 @@ public class AnsibleInstallationService {
             // Kiểm tra sudo NOPASSWD nếu có SSH key
             if (pem != null && !pem.isBlank()) {
                 if (needsSudo) {
-                    try {
-                        String checkSudoCmd = "sudo -l 2>/dev/null | grep -q 'NOPASSWD' && echo 'HAS_NOPASSWD' || echo 'NO_NOPASSWD'";
-                        String sudoCheckResult = serverService.execCommandWithKey(host, port, username, pem,
-                                checkSudoCmd, 5000);
-                        hasSudoNopasswd = (sudoCheckResult != null && sudoCheckResult.contains("HAS_NOPASSWD"));
-                    } catch (Exception e) {
-                        // Nếu không kiểm tra được với SSH key, thử với password
-                        try {
-                            if (sudoPassword != null && !sudoPassword.isBlank()) {
-                                String checkSudoCmd = "sudo -l 2>/dev/null | grep -q 'NOPASSWD' && echo 'HAS_NOPASSWD' || echo 'NO_NOPASSWD'";
-                                String sudoCheckResult = serverService.execCommand(host, port, username, sudoPassword,
-                                        checkSudoCmd, 5000);
-                                hasSudoNopasswd = (sudoCheckResult != null && sudoCheckResult.contains("HAS_NOPASSWD"));
-                            }
-                        } catch (Exception e2) {
-                            // Nếu không kiểm tra được, giả định cần sudo password
-                        }
+                    // Tra cache năng lực; không probe được với SSH key thì thử với password
+                    ServerCapabilities caps = serverService.getCapabilities(host, port, username, null, pem, false);
+                    if (caps == null && sudoPassword != null && !sudoPassword.isBlank()) {
+                        caps = serverService.getCapabilities(host, port, username, sudoPassword, null, false);
                     }
+                    // Nếu không kiểm tra được, giả định cần sudo password
+                    hasSudoNopasswd = caps != null && caps.sudoNopasswd();
                 }
             }
 
@@ -100,15 +89,11 @@ public class AnsibleInstallationService {
         if (hasSshKey) {
             // Có SSH key, kiểm tra sudo NOPASSWD
             try {
-                String checkSudoCmd = "sudo -l 2>/dev/null | grep -q 'NOPASSWD' && echo 'HAS_NOPASSWD' || echo 'NO_NOPASSWD'";
-                String sudoCheckResult = serverService.execCommandWithKey(
-                        server.getHost(),
-                        server.getPort() != null ? server.getPort() : 22,
-                        server.getUsername(),
-                        pem,
-                        checkSudoCmd,
-                        5000);
-                hasSudoNopasswd = (sudoCheckResult != null && sudoCheckResult.contains("HAS_NOPASSWD"));
+                ServerCapabilities caps = serverService.getCapabilities(server, null, false);
+                if (caps == null) {
+                    throw new IllegalStateException("Không probe được năng lực server");
+                }
+                hasSudoNopasswd = caps.sudoNopasswd();
 
                 if (hasSudoNopasswd) {
                     needsPassword = false;
@@ -1,14 +1,10 @@
 package com.example.AutoDeployApp.service;
 
 import com.example.AutoDeployApp.entity.Server;
-import com.jcraft.jsch.JSch;
-import com.jcraft.jsch.Session;
-import com.jcraft.jsch.ChannelExec;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayOutputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -275,96 +271,60 @@ public class AnsibleService {
     }
 
     /**
-     * Thực thi lệnh SSH trực tiếp với JSch
+     * Thực thi lệnh SSH (session lấy từ pool, chờ exit thay vì polling)
      */
     private String sshExec(Server server, String command) {
-        Session session = null;
-        ChannelExec channel = null;
-        try {
-            JSch jsch = new JSch();
-            String privateKey = serverService.resolveServerPrivateKeyPem(server.getId());
-            jsch.addIdentity("key", privateKey.getBytes(), null, null);
-
-            session = jsch.getSession(server.getUsername(), server.getHost(), server.getPort());
-            session.setConfig("StrictHostKeyChecking", "no");
-            session.connect(10000);
-
-            channel = (ChannelExec) session.openChannel("exec");
-            channel.setCommand(command);
-
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            channel.setOutputStream(outputStream);
-            channel.connect();
-
-            while (channel.isConnected()) {
-                Thread.sleep(100);
-            }
-
-            return outputStream.toString();
+        try (SshExecService.RemoteExec exec = serverService.startExec(server, command, 120000, null)) {
+            exec.waitFor();
+            return exec.stdout().asString();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("SSH execution interrupted");
         } catch (Exception e) {
             throw new RuntimeException("SSH execution failed: " + e.getMessage());
-        } finally {
-            if (channel != null)
-                channel.disconnect();
-            if (session != null)
-                session.disconnect();
         }
     }
 
     /**
-     * SSH execute với real-time output capture
+     * SSH execute với real-time output capture: mỗi chunk stdout cập nhật ngay vào cache trạng thái task
      */
     private String sshExecWithOutput(Server server, String command, String taskId) {
-        Session session = null;
-        ChannelExec channel = null;
-        try {
-            JSch jsch = new JSch();
-            String privateKey = serverService.resolveServerPrivateKeyPem(server.getId());
-            jsch.addIdentity("key", privateKey.getBytes(), null, null);
-
-            session = jsch.getSession(server.getUsername(), server.getHost(), server.getPort());
-            session.setConfig("StrictHostKeyChecking", "no");
-            session.connect(10000);
-
-            channel = (ChannelExec) session.openChannel("exec");
-            channel.setCommand(command);
-
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            channel.setOutputStream(outputStream);
-            channel.connect();
-
-            // Monitor output real-time
-            StringBuilder realTimeOutput = new StringBuilder();
-            while (channel.isConnected()) {
-                Thread.sleep(100);
-
-                // Cập nhật output real-time
-                String currentOutput = outputStream.toString();
-                if (currentOutput.length() > realTimeOutput.length()) {
-                    realTimeOutput.setLength(0);
-                    realTimeOutput.append(currentOutput);
-
-                    // Cập nhật cache với output mới
-                    Map<String, Object> currentStatus = executionStatusCache.get(taskId);
-                    if (currentStatus != null) {
-                        Map<String, Object> updatedStatus = new java.util.HashMap<>(currentStatus);
-                        updatedStatus.put("result", currentOutput);
-                        updatedStatus.put("progress", Math.min(25 + (currentOutput.length() / 10), 95)); // Rough
-                                                                                                         // progress
-                                                                                                         // estimation
-                        executionStatusCache.put(taskId, updatedStatus);
-                    }
+        StringBuilder realTimeOutput = new StringBuilder();
+        SshExecService.ExecListener listener = new SshExecService.ExecListener() {
+            private long lastUpdate;
+
+            @Override
+            public void onLine(SshExecService.StreamType stream, String line) {
+                if (stream != SshExecService.StreamType.STDOUT) {
+                    return;
+                }
+                realTimeOutput.append(line).append('\n');
+                long now = System.currentTimeMillis();
+                if (now - lastUpdate < 100) {
+                    return;
+                }
+                lastUpdate = now;
+                // Cập nhật cache với output mới (tối đa 10 lần/giây)
+                Map<String, Object> currentStatus = executionStatusCache.get(taskId);
+                if (currentStatus != null) {
+                    Map<String, Object> updatedStatus = new java.util.HashMap<>(currentStatus);
+                    updatedStatus.put("result", realTimeOutput.toString());
+                    updatedStatus.put("progress", Math.min(25 + (realTimeOutput.length() / 10), 95)); // Rough
+                                                                                                       // progress
+                                                                                                       // estimation
+                    executionStatusCache.put(taskId, updatedStatus);
                 }
             }
-
-            return outputStream.toString();
+        };
+        // Playbook có thể chạy lâu - không đặt deadline, output lớn tự tràn sang file tạm
+        try (SshExecService.RemoteExec exec = serverService.startExec(server, command, 0, listener)) {
+            exec.waitFor();
+            return exec.stdout().asString();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("SSH execution interrupted");
         } catch (Exception e) {
             throw new RuntimeException("SSH execution failed: " + e.getMessage());
-        } finally {
-            if (channel != null)
-                channel.disconnect();
-            if (session != null)
-                session.disconnect();
         }
     }
 
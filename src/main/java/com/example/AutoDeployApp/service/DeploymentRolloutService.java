@@ -0,0 +1,479 @@
+package com.example.AutoDeployApp.service;
+
+import io.fabric8.kubernetes.api.model.ContainerStatus;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.api.model.apps.DeploymentCondition;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.WatcherException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Theo dõi rollout của Deployment bằng watch thay cho waitUntilReady.
+ *
+ * Phát sự kiện tiến trình ngay khi xảy ra (replicas updated/ready/available, phase của pod, image pull,
+ * container restart) và kết thúc sớm khi container rơi vào trạng thái không tự phục hồi
+ * (ErrImagePull, CrashLoopBackOff, ...). Đồng thời giữ danh sách subscriber SSE theo applicationId
+ * để đẩy log triển khai realtime.
+ *
+ * startRollout() chạy việc chờ trên thread "deployment-rollout" riêng: request HTTP trả về ngay với rolloutId,
+ * tiến trình đi qua SSE log và GET trạng thái rollout.
+ */
+@Service
+public class DeploymentRolloutService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeploymentRolloutService.class);
+
+    private final KubernetesService kubernetesService;
+
+    @Value("${k8s.rollout.fail-fast-reasons:ErrImagePull,ImagePullBackOff,InvalidImageName,CrashLoopBackOff,CreateContainerConfigError,CreateContainerError}")
+    private String failFastReasons;
+
+    @Value("${k8s.rollout.stream-timeout-minutes:15}")
+    private long streamTimeoutMinutes;
+
+    @Value("${k8s.rollout.history-size:100}")
+    private int historySize;
+
+    private final Map<Long, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    // rolloutId -> rollout, theo thứ tự bắt đầu; guarded by itself
+    private final LinkedHashMap<String, Rollout> rollouts = new LinkedHashMap<>();
+    private final ExecutorService rolloutExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final java.util.concurrent.atomic.AtomicInteger seq = new java.util.concurrent.atomic.AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "deployment-rollout-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    public DeploymentRolloutService(KubernetesService kubernetesService) {
+        this.kubernetesService = kubernetesService;
+    }
+
+    /**
+     * Sự kiện tiến trình rollout. type: REPLICAS, POD_PHASE, IMAGE_PULL, RESTART, WAITING, READY, FAILED
+     */
+    public record RolloutEvent(String type, String message, long timestamp) {
+    }
+
+    public enum RolloutState {
+        RUNNING, READY, FAILED
+    }
+
+    /**
+     * Callback của 1 rollout chạy nền. onEvent chạy trên thread watch của fabric8 - chỉ được làm việc nhanh
+     * (đẩy SSE, đưa vào hàng đợi), không ghi DB. flush/onReady/onFailure chạy tuần tự trên thread rollout:
+     * flush được gọi khoảng mỗi giây trong lúc chờ để ghi log theo lô.
+     */
+    public interface RolloutCallbacks {
+        void onEvent(RolloutEvent event);
+
+        void flush();
+
+        void onReady() throws Exception;
+
+        void onFailure(Exception error);
+    }
+
+    /** Trạng thái 1 lần chờ rollout chạy nền */
+    public static final class Rollout {
+        private final String id = UUID.randomUUID().toString();
+        private final Long applicationId;
+        private final String namespace;
+        private final String deploymentName;
+        private final long startedAt = System.currentTimeMillis();
+        private volatile RolloutState state = RolloutState.RUNNING;
+        private volatile String message;
+        private volatile long finishedAt;
+
+        private Rollout(Long applicationId, String namespace, String deploymentName) {
+            this.applicationId = applicationId;
+            this.namespace = namespace;
+            this.deploymentName = deploymentName;
+        }
+
+        public String id() {
+            return id;
+        }
+
+        public RolloutState state() {
+            return state;
+        }
+
+        private void finish(RolloutState finalState, String finalMessage) {
+            message = finalMessage;
+            finishedAt = System.currentTimeMillis();
+            state = finalState;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("rolloutId", id);
+            m.put("applicationId", applicationId);
+            m.put("namespace", namespace);
+            m.put("deployment", deploymentName);
+            m.put("state", state.name());
+            m.put("message", message);
+            m.put("startedAt", startedAt);
+            m.put("finishedAt", finishedAt > 0 ? finishedAt : null);
+            return m;
+        }
+    }
+
+    /**
+     * Chờ rollout trên thread riêng và trả về ngay. Lỗi trong onReady (vd. lấy Ingress URL) cũng tính là thất bại.
+     */
+    public Rollout startRollout(Long applicationId, String namespace, String deploymentName, long timeoutMinutes,
+            RolloutCallbacks callbacks) {
+        Rollout rollout = new Rollout(applicationId, namespace, deploymentName);
+        synchronized (rollouts) {
+            rollouts.put(rollout.id, rollout);
+            Iterator<Rollout> it = rollouts.values().iterator();
+            while (rollouts.size() > Math.max(1, historySize) && it.hasNext()) {
+                if (it.next().state != RolloutState.RUNNING) {
+                    it.remove();
+                }
+            }
+        }
+        rolloutExecutor.execute(() -> {
+            try {
+                waitForDeploymentReady(namespace, deploymentName, timeoutMinutes, callbacks::onEvent,
+                        callbacks::flush);
+                callbacks.flush();
+                callbacks.onReady();
+                rollout.finish(RolloutState.READY, "Deployment ready");
+            } catch (Exception e) {
+                rollout.finish(RolloutState.FAILED, e.getMessage());
+                try {
+                    callbacks.flush();
+                    callbacks.onFailure(e);
+                } catch (RuntimeException callbackError) {
+                    logger.error("Rollout failure handler failed for {}/{}", namespace, deploymentName,
+                            callbackError);
+                }
+            }
+        });
+        return rollout;
+    }
+
+    public Optional<Rollout> getRollout(String rolloutId) {
+        synchronized (rollouts) {
+            return Optional.ofNullable(rollouts.get(rolloutId));
+        }
+    }
+
+    /** Rollout gần nhất của application (đang chạy hoặc đã xong) */
+    public Optional<Rollout> latestRollout(Long applicationId) {
+        synchronized (rollouts) {
+            Rollout latest = null;
+            for (Rollout r : rollouts.values()) {
+                if (Objects.equals(r.applicationId, applicationId)) {
+                    latest = r;
+                }
+            }
+            return Optional.ofNullable(latest);
+        }
+    }
+
+    public boolean isRolloutRunning(Long applicationId) {
+        return latestRollout(applicationId).map(r -> r.state == RolloutState.RUNNING).orElse(false);
+    }
+
+    /**
+     * Chờ Deployment sẵn sàng, gọi listener cho từng sự kiện. Ném RuntimeException (kèm chẩn đoán thu thập
+     * trên cùng client) khi hết thời gian hoặc gặp trạng thái lỗi không tự phục hồi.
+     */
+    public void waitForDeploymentReady(String namespace, String deploymentName, long timeoutMinutes,
+            Consumer<RolloutEvent> listener) {
+        waitForDeploymentReady(namespace, deploymentName, timeoutMinutes, listener, () -> {
+        });
+    }
+
+    /**
+     * Như trên, thêm tick được gọi khoảng mỗi giây trên thread đang chờ (để ghi log theo lô)
+     */
+    public void waitForDeploymentReady(String namespace, String deploymentName, long timeoutMinutes,
+            Consumer<RolloutEvent> listener, Runnable tick) {
+        Set<String> terminalReasons = new HashSet<>();
+        for (String reason : failFastReasons.split(",")) {
+            if (!reason.isBlank()) {
+                terminalReasons.add(reason.trim());
+            }
+        }
+
+        try (KubernetesClient client = kubernetesService.getKubernetesClientForCluster()) {
+            logger.info("Dang cho Deployment {}/{} san sang (watch)...", namespace, deploymentName);
+            Tracker tracker = new Tracker(client, namespace, deploymentName, terminalReasons, listener);
+            try {
+                tracker.start();
+                long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(timeoutMinutes);
+                while (true) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new TimeoutException();
+                    }
+                    try {
+                        tracker.result.get(Math.min(remaining, TimeUnit.SECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        tick.run();
+                    }
+                }
+                logger.info("Deployment {}/{} da san sang", namespace, deploymentName);
+            } catch (TimeoutException e) {
+                tracker.emit("FAILED", "⏱️ Hết thời gian chờ (" + timeoutMinutes + " phút)");
+                throw failure(client, namespace, deploymentName, "hết thời gian chờ " + timeoutMinutes + " phút", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                throw failure(client, namespace, deploymentName, cause.getMessage(), cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Bị gián đoạn khi chờ Deployment " + deploymentName, e);
+            } finally {
+                tracker.stop();
+            }
+        }
+    }
+
+    private RuntimeException failure(KubernetesClient client, String namespace, String deploymentName,
+            String reason, Throwable cause) {
+        logger.error("Cho Deployment san sang that bai: {}/{} - {}", namespace, deploymentName, reason);
+        String diagnostics = kubernetesService.collectDeploymentDiagnostics(client, namespace, deploymentName, 50);
+        return new RuntimeException("Deployment chưa sẵn sàng: " + deploymentName + " (" + reason + "). "
+                + diagnostics, cause);
+    }
+
+    private final class Tracker {
+        final KubernetesClient client;
+        final String namespace;
+        final String deploymentName;
+        final Set<String> terminalReasons;
+        final Consumer<RolloutEvent> listener;
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        final List<Watch> watches = new CopyOnWriteArrayList<>();
+
+        // Trạng thái đã báo để chỉ phát khi có thay đổi
+        String lastReplicaSummary;
+        final Map<String, String> podPhases = new HashMap<>();
+        final Map<String, Integer> restartCounts = new HashMap<>();
+        final Map<String, String> waitingReasons = new HashMap<>();
+
+        Tracker(KubernetesClient client, String namespace, String deploymentName, Set<String> terminalReasons,
+                Consumer<RolloutEvent> listener) {
+            this.client = client;
+            this.namespace = namespace;
+            this.deploymentName = deploymentName;
+            this.terminalReasons = terminalReasons;
+            this.listener = listener;
+        }
+
+        void start() {
+            watchDeployment();
+            watchPods();
+            // Đánh giá trạng thái hiện tại phòng khi rollout đã xong trước khi watch kịp mở
+            onDeployment(client.apps().deployments().inNamespace(namespace).withName(deploymentName).get());
+            client.pods().inNamespace(namespace).withLabel("app", deploymentName).list().getItems()
+                    .forEach(this::onPod);
+        }
+
+        void watchDeployment() {
+            watches.add(client.apps().deployments().inNamespace(namespace).withName(deploymentName)
+                    .watch(new Watcher<Deployment>() {
+                        @Override
+                        public void eventReceived(Action action, Deployment deployment) {
+                            if (action == Action.DELETED) {
+                                result.completeExceptionally(new IllegalStateException("Deployment đã bị xóa"));
+                            } else {
+                                onDeployment(deployment);
+                            }
+                        }
+
+                        @Override
+                        public void onClose(WatcherException cause) {
+                            if (!result.isDone()) {
+                                logger.debug("Deployment watch closed, reopening: {}", cause.getMessage());
+                                watchDeployment();
+                            }
+                        }
+                    }));
+        }
+
+        void watchPods() {
+            watches.add(client.pods().inNamespace(namespace).withLabel("app", deploymentName)
+                    .watch(new Watcher<Pod>() {
+                        @Override
+                        public void eventReceived(Action action, Pod pod) {
+                            if (action != Action.DELETED) {
+                                onPod(pod);
+                            }
+                        }
+
+                        @Override
+                        public void onClose(WatcherException cause) {
+                            if (!result.isDone()) {
+                                logger.debug("Pod watch closed, reopening: {}", cause.getMessage());
+                                watchPods();
+                            }
+                        }
+                    }));
+        }
+
+        synchronized void onDeployment(Deployment deployment) {
+            if (deployment == null || result.isDone()) {
+                return;
+            }
+            int desired = deployment.getSpec() != null && deployment.getSpec().getReplicas() != null
+                    ? deployment.getSpec().getReplicas() : 1;
+            var status = deployment.getStatus();
+            int total = status != null && status.getReplicas() != null ? status.getReplicas() : 0;
+            int updated = status != null && status.getUpdatedReplicas() != null ? status.getUpdatedReplicas() : 0;
+            int ready = status != null && status.getReadyReplicas() != null ? status.getReadyReplicas() : 0;
+            int available = status != null && status.getAvailableReplicas() != null ? status.getAvailableReplicas() : 0;
+            long generation = deployment.getMetadata().getGeneration() != null
+                    ? deployment.getMetadata().getGeneration() : 0;
+            long observed = status != null && status.getObservedGeneration() != null
+                    ? status.getObservedGeneration() : 0;
+
+            String summary = "updated " + updated + "/" + desired + ", ready " + ready + "/" + desired
+                    + ", available " + available + "/" + desired;
+            if (!summary.equals(lastReplicaSummary)) {
+                lastReplicaSummary = summary;
+                emit("REPLICAS", "📊 Replicas: " + summary);
+            }
+
+            if (status != null && status.getConditions() != null) {
+                for (DeploymentCondition condition : status.getConditions()) {
+                    if ("Progressing".equals(condition.getType())
+                            && "ProgressDeadlineExceeded".equals(condition.getReason())) {
+                        fail("ProgressDeadlineExceeded: " + condition.getMessage());
+                        return;
+                    }
+                }
+            }
+
+            if (observed >= generation && updated == desired && ready == desired && available == desired
+                    && total == desired) {
+                emit("READY", "✅ Deployment " + deploymentName + " đã sẵn sàng (" + ready + "/" + desired + ")");
+                result.complete(null);
+            }
+        }
+
+        synchronized void onPod(Pod pod) {
+            if (pod == null || pod.getMetadata() == null || result.isDone()) {
+                return;
+            }
+            String podName = pod.getMetadata().getName();
+            String phase = pod.getStatus() != null ? pod.getStatus().getPhase() : null;
+            String previousPhase = podPhases.put(podName, phase);
+            if (phase != null && !phase.equals(previousPhase)) {
+                emit("POD_PHASE", "📦 Pod " + podName + ": "
+                        + (previousPhase != null ? previousPhase + " → " : "") + phase);
+            }
+            if (pod.getStatus() == null || pod.getStatus().getContainerStatuses() == null) {
+                return;
+            }
+            for (ContainerStatus cs : pod.getStatus().getContainerStatuses()) {
+                String key = podName + "/" + cs.getName();
+                int restarts = cs.getRestartCount() != null ? cs.getRestartCount() : 0;
+                Integer previousRestarts = restartCounts.put(key, restarts);
+                if (previousRestarts != null && restarts > previousRestarts) {
+                    emit("RESTART", "🔁 Container " + key + " restart (lần " + restarts + ")");
+                }
+
+                String reason = cs.getState() != null && cs.getState().getWaiting() != null
+                        ? cs.getState().getWaiting().getReason() : null;
+                String previousReason = waitingReasons.put(key, reason);
+                if (reason == null || reason.equals(previousReason)) {
+                    continue;
+                }
+                String message = cs.getState().getWaiting().getMessage();
+                String type = reason.contains("Image") ? "IMAGE_PULL" : "WAITING";
+                emit(type, "⚠️ Container " + key + " đang chờ: " + reason
+                        + (message != null && !message.isBlank() ? " - " + message : ""));
+                if (terminalReasons.contains(reason)) {
+                    fail(reason + " tại " + key + (message != null ? ": " + message : ""));
+                    return;
+                }
+            }
+        }
+
+        void fail(String reason) {
+            emit("FAILED", "❌ Rollout thất bại: " + reason);
+            result.completeExceptionally(new IllegalStateException(reason));
+        }
+
+        void emit(String type, String message) {
+            try {
+                listener.accept(new RolloutEvent(type, message, System.currentTimeMillis()));
+            } catch (RuntimeException e) {
+                logger.warn("Rollout listener failed: {}", e.getMessage());
+            }
+        }
+
+        void stop() {
+            result.complete(null);
+            for (Watch watch : watches) {
+                try {
+                    watch.close();
+                } catch (Exception e) {
+                    logger.debug("Error closing rollout watch", e);
+                }
+            }
+        }
+    }
+
+    // ========== Đẩy log triển khai realtime (SSE) theo applicationId ==========
+
+    /**
+     * Đăng ký nhận log triển khai mới của 1 application (event "log", data là dòng log đã có timestamp)
+     */
+    public SseEmitter subscribe(Long applicationId) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(streamTimeoutMinutes));
+        List<SseEmitter> list = subscribers.computeIfAbsent(applicationId, k -> new CopyOnWriteArrayList<>());
+        list.add(emitter);
+        Runnable remove = () -> list.remove(emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+        return emitter;
+    }
+
+    public void publish(Long applicationId, String line) {
+        List<SseEmitter> list = applicationId != null ? subscribers.get(applicationId) : null;
+        if (list == null || list.isEmpty()) {
+            return;
+        }
+        for (SseEmitter emitter : list) {
+            try {
+                synchronized (emitter) {
+                    emitter.send(SseEmitter.event().name("log").data(line));
+                }
+            } catch (IOException | IllegalStateException e) {
+                list.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rolloutExecutor.shutdownNow();
+        subscribers.values().forEach(list -> list.forEach(SseEmitter::complete));
+        subscribers.clear();
+    }
+}
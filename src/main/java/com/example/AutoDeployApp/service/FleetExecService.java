@@ -0,0 +1,514 @@
+package com.example.AutoDeployApp.service;
+
+import com.example.AutoDeployApp.entity.Server;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chạy 1 lệnh trên nhiều server song song (job), giới hạn số host chạy cùng lúc theo từng job.
+ *
+ * Thread "fleet-exec-*" chỉ dùng để mở kết nối/kênh (phần blocking); khi lệnh đang chạy không giữ thread nào -
+ * kết thúc được báo qua completion của RemoteExec và host kế tiếp được khởi chạy ngay. Mọi kết quả và event SSE
+ * đi qua 1 thread "fleet-exec-events" nên thứ tự event luôn khớp với danh sách kết quả đã lưu.
+ * Giữ lại history-size job gần nhất (kể cả output tail) để xem lại sau; tổng output giữ lại của mọi job không
+ * vượt max-retained-bytes.
+ */
+@Service
+public class FleetExecService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FleetExecService.class);
+    private static final String NOT_STARTED = "not started";
+
+    public enum JobState {
+        RUNNING, DONE, CANCELLED
+    }
+
+    public enum HostStatus {
+        OK, FAILED, TIMEOUT, CANCELLED, ERROR
+    }
+
+    /**
+     * Kết quả 1 host. exitCode = null khi không chạy được hoặc bị huỷ/hết hạn; stdout/stderr chỉ giữ phần cuối.
+     */
+    public record HostResult(Long serverId, String host, HostStatus status, Integer exitCode, long durationMs,
+            String stdout, String stderr, String error, long finishedAt) {
+    }
+
+    private final ServerService serverService;
+
+    @Value("${fleet-exec.max-concurrency:64}")
+    private int maxConcurrency;
+
+    @Value("${fleet-exec.history-size:50}")
+    private int historySize;
+
+    @Value("${fleet-exec.output-tail-bytes:16384}")
+    private int outputTailBytes;
+
+    @Value("${fleet-exec.max-retained-bytes:33554432}")
+    private long maxRetainedBytes;
+
+    private final Map<String, Job> jobs = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final ExecutorService events = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "fleet-exec-events");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile ExecutorService starters;
+    private final AtomicInteger starterSeq = new AtomicInteger();
+    private final AtomicLong totalRetainedBytes = new AtomicLong();
+
+    public FleetExecService(ServerService serverService) {
+        this.serverService = serverService;
+    }
+
+    /**
+     * Chọn server theo ids / role / clusterStatus (null = không lọc theo tiêu chí đó), bỏ qua server DISABLED
+     */
+    public List<Server> selectTargets(Collection<Long> ids, String role, String clusterStatus) {
+        return serverService.findAll().stream()
+                .filter(s -> s.getStatus() != Server.ServerStatus.DISABLED)
+                .filter(s -> ids == null || ids.isEmpty() || ids.contains(s.getId()))
+                .filter(s -> role == null || role.isBlank() || role.equalsIgnoreCase(s.getRole()))
+                .filter(s -> clusterStatus == null || clusterStatus.isBlank()
+                        || clusterStatus.equalsIgnoreCase(s.getClusterStatus()))
+                .toList();
+    }
+
+    /**
+     * Tạo và bắt đầu job. concurrency bị giới hạn trong [1, max-concurrency]; timeoutMs là deadline của lệnh
+     * trên từng host.
+     */
+    public Job submit(List<Server> targets, String command, int concurrency, int timeoutMs, Long startedBy) {
+        int limit = Math.max(1, Math.min(concurrency, Math.max(1, maxConcurrency)));
+        Job job = new Job(UUID.randomUUID().toString().substring(0, 8), command, targets, limit, timeoutMs,
+                startedBy);
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+            evictHistory();
+        }
+        logger.info("[FleetExec] Job {} started on {} servers (concurrency={}): {}", job.id, targets.size(), limit,
+                command);
+        if (targets.isEmpty()) {
+            events.execute(job::finishIfComplete);
+        } else {
+            job.pump();
+        }
+        return job;
+    }
+
+    public Job get(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /** Các job còn giữ, mới nhất trước */
+    public List<Job> history() {
+        synchronized (jobs) {
+            List<Job> list = new ArrayList<>(jobs.values());
+            Collections.reverse(list);
+            return list;
+        }
+    }
+
+    public boolean cancel(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return false;
+        }
+        job.cancel();
+        return true;
+    }
+
+    /**
+     * Stream kết quả của job: phát lại các "result" đã có, sau đó "result" mỗi khi 1 host xong và "summary"
+     * khi job kết thúc (emitter được đóng sau summary).
+     */
+    public SseEmitter subscribe(Job job) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.HOURS.toMillis(2));
+        emitter.onCompletion(() -> job.subscribers.remove(emitter));
+        emitter.onTimeout(() -> job.subscribers.remove(emitter));
+        emitter.onError(e -> job.subscribers.remove(emitter));
+        events.execute(() -> {
+            try {
+                for (HostResult result : job.results) {
+                    emitter.send(SseEmitter.event().name("result").data(resultView(job, result)));
+                }
+                if (job.state != JobState.RUNNING) {
+                    emitter.send(SseEmitter.event().name("summary").data(job.summary()));
+                    emitter.complete();
+                } else {
+                    job.subscribers.add(emitter);
+                }
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    public Map<String, Object> getStats() {
+        long running;
+        synchronized (jobs) {
+            running = jobs.values().stream().filter(j -> j.state == JobState.RUNNING).count();
+        }
+        return Map.of(
+                "jobs", jobs.size(),
+                "running", running,
+                "maxConcurrency", Math.max(1, maxConcurrency),
+                "historySize", Math.max(1, historySize),
+                "retainedBytes", totalRetainedBytes.get(),
+                "maxRetainedBytes", maxRetainedBytes);
+    }
+
+    // Xoá job cũ nhất đã kết thúc khi vượt history-size (job đang chạy không bị xoá)
+    private void evictHistory() {
+        Iterator<Job> it = jobs.values().iterator();
+        int excess = jobs.size() - Math.max(1, historySize);
+        while (excess > 0 && it.hasNext()) {
+            Job job = it.next();
+            if (job.state != JobState.RUNNING) {
+                it.remove();
+                totalRetainedBytes.addAndGet(-job.retainedBytes);
+                excess--;
+            }
+        }
+    }
+
+    /**
+     * Giữ tổng output trong max-retained-bytes: xoá job đã kết thúc cũ nhất trước, nếu vẫn vượt thì bỏ output
+     * (stdout/stderr) của các job đang chạy, job cũ nhất trước. Chạy trên thread events.
+     */
+    private void evictRetainedOutput() {
+        if (totalRetainedBytes.get() <= maxRetainedBytes) {
+            return;
+        }
+        synchronized (jobs) {
+            Iterator<Job> it = jobs.values().iterator();
+            while (totalRetainedBytes.get() > maxRetainedBytes && it.hasNext()) {
+                Job job = it.next();
+                if (job.state != JobState.RUNNING) {
+                    it.remove();
+                    totalRetainedBytes.addAndGet(-job.retainedBytes);
+                    logger.info("[FleetExec] Job {} evicted: retained output over {} bytes", job.id,
+                            maxRetainedBytes);
+                }
+            }
+            for (Job job : jobs.values()) {
+                if (totalRetainedBytes.get() <= maxRetainedBytes) {
+                    break;
+                }
+                totalRetainedBytes.addAndGet(-job.dropOutput());
+            }
+        }
+    }
+
+    private static long outputBytes(HostResult r) {
+        return (r.stdout() != null ? r.stdout().getBytes(StandardCharsets.UTF_8).length : 0)
+                + (r.stderr() != null ? r.stderr().getBytes(StandardCharsets.UTF_8).length : 0);
+    }
+
+    private ExecutorService starters() {
+        ExecutorService pool = starters;
+        if (pool == null) {
+            synchronized (this) {
+                pool = starters;
+                if (pool == null) {
+                    pool = Executors.newFixedThreadPool(Math.max(1, maxConcurrency), r -> {
+                        Thread t = new Thread(r, "fleet-exec-" + starterSeq.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    starters = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    private static Map<String, Object> resultView(Job job, HostResult r) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("jobId", job.id);
+        m.put("serverId", r.serverId());
+        m.put("host", r.host());
+        m.put("status", r.status().name());
+        m.put("exitCode", r.exitCode());
+        m.put("durationMs", r.durationMs());
+        m.put("stdout", r.stdout());
+        m.put("stderr", r.stderr());
+        m.put("error", r.error());
+        m.put("done", job.results.size());
+        m.put("total", job.targets.size());
+        return m;
+    }
+
+    public final class Job {
+        private final String id;
+        private final String command;
+        private final List<Server> targets;
+        private final int concurrency;
+        private final int timeoutMs;
+        private final Long startedBy;
+        private final long startedAt = System.currentTimeMillis();
+        private final Deque<Server> pending;
+        private final Set<SshExecService.RemoteExec> running = ConcurrentHashMap.newKeySet();
+        private final List<HostResult> results = new CopyOnWriteArrayList<>();
+        private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+        private int active; // guarded by this
+        private volatile boolean cancelled;
+        private volatile JobState state = JobState.RUNNING;
+        private volatile long finishedAt;
+        private volatile long retainedBytes; // byte stdout/stderr đang giữ; chỉ ghi trên thread events
+        private volatile boolean outputEvicted;
+
+        private Job(String id, String command, List<Server> targets, int concurrency, int timeoutMs,
+                Long startedBy) {
+            this.id = id;
+            this.command = command;
+            this.targets = List.copyOf(targets);
+            this.concurrency = concurrency;
+            this.timeoutMs = timeoutMs;
+            this.startedBy = startedBy;
+            this.pending = new ArrayDeque<>(targets);
+        }
+
+        public String id() {
+            return id;
+        }
+
+        public JobState state() {
+            return state;
+        }
+
+        /** USER_ID của người tạo job (null nếu không xác định) */
+        public Long startedBy() {
+            return startedBy;
+        }
+
+        public List<HostResult> results() {
+            return List.copyOf(results);
+        }
+
+        /** Khởi chạy thêm host cho tới khi đủ concurrency */
+        private void pump() {
+            while (true) {
+                Server next;
+                synchronized (this) {
+                    if (cancelled || active >= concurrency || pending.isEmpty()) {
+                        return;
+                    }
+                    next = pending.poll();
+                    active++;
+                }
+                try {
+                    starters().execute(() -> start(next));
+                } catch (RuntimeException e) {
+                    hostDone(new HostResult(next.getId(), next.getHost(), HostStatus.ERROR, null, 0, null, null,
+                            "rejected: " + e.getMessage(), System.currentTimeMillis()));
+                }
+            }
+        }
+
+        private void start(Server s) {
+            long begin = System.currentTimeMillis();
+            if (cancelled) {
+                hostDone(new HostResult(s.getId(), s.getHost(), HostStatus.CANCELLED, null, 0, null, null,
+                        NOT_STARTED, begin));
+                return;
+            }
+            SshExecService.RemoteExec exec;
+            try {
+                String pem = serverService.resolveServerPrivateKeyPem(s.getId());
+                if (pem == null || pem.isBlank()) {
+                    // SECURITY: chỉ dùng SSH key, không dùng password
+                    hostDone(new HostResult(s.getId(), s.getHost(), HostStatus.ERROR, null, 0, null, null,
+                            "no ssh key", begin));
+                    return;
+                }
+                exec = serverService.startExec(s, command, timeoutMs, null);
+            } catch (Exception e) {
+                hostDone(new HostResult(s.getId(), s.getHost(), HostStatus.ERROR, null,
+                        System.currentTimeMillis() - begin, null, null, e.getMessage(), System.currentTimeMillis()));
+                return;
+            }
+            running.add(exec);
+            if (cancelled) {
+                exec.cancel();
+            }
+            exec.completion().whenComplete((result, failure) -> {
+                running.remove(exec);
+                long now = System.currentTimeMillis();
+                HostResult hostResult;
+                if (failure != null || result == null) {
+                    hostResult = new HostResult(s.getId(), s.getHost(), HostStatus.ERROR, null, now - begin, null,
+                            null, failure != null ? failure.getMessage() : "no result", now);
+                } else {
+                    HostStatus status = result.cancelled() ? HostStatus.CANCELLED
+                            : result.timedOut() ? HostStatus.TIMEOUT
+                                    : result.isSuccess() ? HostStatus.OK : HostStatus.FAILED;
+                    hostResult = new HostResult(s.getId(), s.getHost(), status, result.exitCode(), now - begin,
+                            exec.stdout().tail(outputTailBytes, StandardCharsets.UTF_8),
+                            exec.stderr().tail(outputTailBytes, StandardCharsets.UTF_8),
+                            result.exitCode() == null && status == HostStatus.FAILED ? "connection lost" : null,
+                            now);
+                }
+                exec.close();
+                hostDone(hostResult);
+            });
+        }
+
+        // Giảm active cùng task với results.add trên thread events: finishIfComplete không thể thấy active == 0
+        // trước khi kết quả của host vừa xong được thêm vào
+        private void hostDone(HostResult result) {
+            events.execute(() -> {
+                synchronized (this) {
+                    active--;
+                }
+                results.add(result);
+                long bytes = outputBytes(result);
+                retainedBytes += bytes;
+                totalRetainedBytes.addAndGet(bytes);
+                broadcast("result", resultView(this, result));
+                finishIfComplete();
+                evictRetainedOutput();
+                pump();
+            });
+        }
+
+        /** Chạy trên thread events */
+        private void finishIfComplete() {
+            if (state != JobState.RUNNING) {
+                return;
+            }
+            List<Server> skipped;
+            synchronized (this) {
+                if (active > 0 || (!pending.isEmpty() && !cancelled)) {
+                    return;
+                }
+                skipped = new ArrayList<>(pending);
+                pending.clear();
+            }
+            long now = System.currentTimeMillis();
+            for (Server s : skipped) {
+                HostResult r = new HostResult(s.getId(), s.getHost(), HostStatus.CANCELLED, null, 0, null, null,
+                        NOT_STARTED, now);
+                results.add(r);
+                broadcast("result", resultView(this, r));
+            }
+            finishedAt = now;
+            state = cancelled ? JobState.CANCELLED : JobState.DONE;
+            Map<String, Object> summary = summary();
+            logger.info("[FleetExec] Job {} {}: {}", id, state, summary.get("counts"));
+            broadcast("summary", summary);
+            subscribers.forEach(SseEmitter::complete);
+            subscribers.clear();
+        }
+
+        /** Bỏ stdout/stderr đã giữ (kết quả và exit code vẫn còn); trả về số byte được giải phóng */
+        private long dropOutput() {
+            long freed = retainedBytes;
+            if (freed == 0) {
+                return 0;
+            }
+            for (int i = 0; i < results.size(); i++) {
+                HostResult r = results.get(i);
+                if (r.stdout() != null || r.stderr() != null) {
+                    results.set(i, new HostResult(r.serverId(), r.host(), r.status(), r.exitCode(), r.durationMs(),
+                            null, null, r.error(), r.finishedAt()));
+                }
+            }
+            retainedBytes = 0;
+            outputEvicted = true;
+            return freed;
+        }
+
+        private void cancel() {
+            if (state != JobState.RUNNING) {
+                return;
+            }
+            cancelled = true;
+            running.forEach(SshExecService.RemoteExec::cancel);
+            events.execute(this::finishIfComplete);
+        }
+
+        private void broadcast(String name, Object data) {
+            for (SseEmitter emitter : subscribers) {
+                try {
+                    emitter.send(SseEmitter.event().name(name).data(data));
+                } catch (IOException | IllegalStateException e) {
+                    subscribers.remove(emitter);
+                    emitter.completeWithError(e);
+                }
+            }
+        }
+
+        /** Tổng hợp: số host theo trạng thái, số host theo exit code và thời gian chạy */
+        public Map<String, Object> summary() {
+            List<HostResult> snapshot = List.copyOf(results);
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (HostStatus status : HostStatus.values()) {
+                counts.put(status.name(), snapshot.stream().filter(r -> r.status() == status).count());
+            }
+            Map<String, Long> exitCodes = new TreeMap<>();
+            snapshot.stream().filter(r -> r.exitCode() != null)
+                    .forEach(r -> exitCodes.merge(String.valueOf(r.exitCode()), 1L, Long::sum));
+            // Mọi host đã chạy (kể cả timeout/lỗi), trừ host bị huỷ trước khi bắt đầu
+            LongSummaryStatistics durations = snapshot.stream().filter(r -> !NOT_STARTED.equals(r.error()))
+                    .mapToLong(HostResult::durationMs).summaryStatistics();
+
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("jobId", id);
+            m.put("command", command);
+            m.put("state", state.name());
+            m.put("startedBy", startedBy);
+            m.put("startedAt", startedAt);
+            m.put("finishedAt", finishedAt > 0 ? finishedAt : null);
+            m.put("elapsedMs", (finishedAt > 0 ? finishedAt : System.currentTimeMillis()) - startedAt);
+            m.put("concurrency", concurrency);
+            m.put("timeoutMs", timeoutMs);
+            m.put("total", targets.size());
+            m.put("done", snapshot.size());
+            m.put("outputEvicted", outputEvicted);
+            m.put("counts", counts);
+            m.put("exitCodes", exitCodes);
+            m.put("durationMs", durations.getCount() > 0
+                    ? Map.of("min", durations.getMin(), "avg", Math.round(durations.getAverage()), "max",
+                            durations.getMax())
+                    : Map.of());
+            return m;
+        }
+
+        /** Summary kèm kết quả từng host */
+        public Map<String, Object> detail() {
+            Map<String, Object> m = summary();
+            m.put("results", results.stream().map(r -> resultView(this, r)).toList());
+            return m;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (jobs) {
+            jobs.values().forEach(Job::cancel);
+        }
+        events.shutdown();
+        ExecutorService pool = starters;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,468 @@
+package com.example.AutoDeployApp.service;
+
+import com.example.AutoDeployApp.entity.Server;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thu thập CPU/RAM/Disk của các server ở nền và giữ snapshot mới nhất trong bộ nhớ.
+ *
+ * Mỗi interval-seconds, server ONLINE có SSH key được đọc số liệu bằng 1 lệnh (HostMetrics.COLLECT_COMMAND) qua
+ * session trong pool, tối đa parallelism server cùng lúc. Endpoint metrics đọc snapshot (kèm thời điểm thu thập)
+ * thay vì SSH tới cả fleet mỗi lần tải trang. Thông số phần cứng (cores, RAM, disk) được ghi vào bảng servers
+ * khi thay đổi.
+ *
+ * mode=agent: thay vì exec mới mỗi chu kỳ, mỗi server chạy 1 vòng lặp shell (HostMetrics.agentCommand) trên 1 kênh
+ * exec tồn tại suốt vòng đời ứng dụng, in 1 dòng mẫu mỗi agent.sample-seconds; output được parse tăng dần
+ * (HostMetricsStreamParser). Kênh chết (process thoát, mất kết nối) hoặc im lặng quá lâu được tạo lại tự động,
+ * lỗi liên tiếp thì lùi thời gian thử lại.
+ */
+@Service
+public class FleetMetricsCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(FleetMetricsCollector.class);
+
+    private final ServerService serverService;
+
+    @Value("${fleet-metrics.enabled:true}")
+    private boolean enabled;
+
+    @Value("${fleet-metrics.interval-seconds:30}")
+    private int intervalSeconds;
+
+    @Value("${fleet-metrics.parallelism:8}")
+    private int parallelism;
+
+    @Value("${fleet-metrics.timeout-ms:10000}")
+    private int timeoutMs;
+
+    @Value("${fleet-metrics.mode:poll}")
+    private String mode;
+
+    @Value("${fleet-metrics.agent.sample-seconds:5}")
+    private int agentSampleSeconds;
+
+    private final Map<Long, Entry> snapshots = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<HostMetrics>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong collections = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final Map<Long, Agent> agents = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> agentFailures = new ConcurrentHashMap<>();
+    private final Map<Long, Long> agentRetryAt = new ConcurrentHashMap<>();
+    private final AtomicLong agentStarts = new AtomicLong();
+    private final AtomicLong agentRestarts = new AtomicLong();
+    private final AtomicLong agentSamples = new AtomicLong();
+    private volatile long lastRunAt;
+    private volatile long lastRunDurationMs;
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService workers;
+
+    public FleetMetricsCollector(ServerService serverService) {
+        this.serverService = serverService;
+    }
+
+    private record Entry(HostMetrics metrics, String error, long lastAttemptAt) {
+    }
+
+    /**
+     * Snapshot trả cho endpoint. metrics = null nếu chưa thu thập được lần nào; ageMs tính từ lần thu thập
+     * thành công gần nhất; stale khi quá 3 chu kỳ chưa cập nhật được.
+     */
+    public record Snapshot(HostMetrics metrics, long ageMs, boolean stale, String error, long lastAttemptAt) {
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread t = new Thread(r, "fleet-metrics-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        if (!enabled) {
+            logger.info("[FleetMetrics] Background collection disabled");
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fleet-metrics-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        if (isAgentMode()) {
+            scheduler.scheduleWithFixedDelay(this::reconcileAgentsSafely, 5, 10, TimeUnit.SECONDS);
+            logger.info("[FleetMetrics] Agent mode started, sample={}s", Math.max(1, agentSampleSeconds));
+            return;
+        }
+        int interval = Math.max(5, intervalSeconds);
+        scheduler.scheduleWithFixedDelay(this::collectAllSafely, 5, interval, TimeUnit.SECONDS);
+        logger.info("[FleetMetrics] Collector started, interval={}s, parallelism={}", interval, parallelism);
+    }
+
+    private boolean isAgentMode() {
+        return "agent".equalsIgnoreCase(mode);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        agents.values().forEach(Agent::stop);
+        agents.clear();
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    public Snapshot get(Long serverId) {
+        Entry e = serverId != null ? snapshots.get(serverId) : null;
+        if (e == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        long age = e.metrics() != null ? now - e.metrics().collectedAt() : -1;
+        long staleAfter = isAgentMode() ? agentSilenceLimitMs()
+                : TimeUnit.SECONDS.toMillis(Math.max(5, intervalSeconds) * 3L);
+        boolean stale = e.metrics() == null || age > staleAfter;
+        return new Snapshot(e.metrics(), age, stale, e.error(), e.lastAttemptAt());
+    }
+
+    /**
+     * Thu thập ở nền cho các server chưa có snapshot (vd. server mới thêm) - không chờ kết quả
+     */
+    public void collectMissing(Collection<Server> servers) {
+        if (enabled && lastRunAt == 0) {
+            return; // Vòng thu thập đầu tiên sắp chạy - không fan-out theo lượt tải trang
+        }
+        for (Server s : servers) {
+            if (s.getStatus() == Server.ServerStatus.ONLINE && !snapshots.containsKey(s.getId())) {
+                collect(s);
+            }
+        }
+    }
+
+    /**
+     * Thu thập ngay (nút làm mới) và chờ tối đa timeout; server chưa xong trong thời gian chờ vẫn tiếp tục ở nền.
+     * Kết quả: serverId → metrics mới, null nếu lỗi/hết thời gian chờ.
+     */
+    public Map<Long, HostMetrics> collectNow(Collection<Server> servers, long timeout, TimeUnit unit) {
+        Map<Long, CompletableFuture<HostMetrics>> futures = new LinkedHashMap<>();
+        for (Server s : servers) {
+            futures.put(s.getId(), collect(s));
+        }
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).get(timeout, unit);
+        } catch (Exception ignored) {
+            // Trả về những gì đã có
+        }
+        Map<Long, HostMetrics> result = new LinkedHashMap<>();
+        futures.forEach((id, f) -> result.put(id, f.isDone() && !f.isCompletedExceptionally() ? f.join() : null));
+        return result;
+    }
+
+    /** Thu thập 1 server; gộp với lần thu thập đang chạy của cùng server nếu có */
+    public CompletableFuture<HostMetrics> collect(Server server) {
+        CompletableFuture<HostMetrics> created = new CompletableFuture<>();
+        CompletableFuture<HostMetrics> existing = inFlight.putIfAbsent(server.getId(), created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    created.complete(collectOne(server));
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(server.getId(), created);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(server.getId(), created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    public Map<String, Object> getStats() {
+        long withMetrics = snapshots.values().stream().filter(e -> e.metrics() != null).count();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("servers", snapshots.size());
+        stats.put("withMetrics", withMetrics);
+        stats.put("collections", collections.get());
+        stats.put("failures", failures.get());
+        stats.put("inFlight", inFlight.size());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunDurationMs", lastRunDurationMs);
+        stats.put("intervalSeconds", Math.max(5, intervalSeconds));
+        stats.put("mode", isAgentMode() ? "agent" : "poll");
+        if (isAgentMode()) {
+            stats.put("agents", agents.size());
+            stats.put("agentsStreaming", agents.values().stream().filter(a -> !a.dead && a.lastSampleAt > 0).count());
+            stats.put("agentStarts", agentStarts.get());
+            stats.put("agentRestarts", agentRestarts.get());
+            stats.put("agentSamples", agentSamples.get());
+            stats.put("agentSampleSeconds", Math.max(1, agentSampleSeconds));
+        }
+        return stats;
+    }
+
+    // ========== Thu thập ==========
+
+    private void collectAllSafely() {
+        try {
+            long start = System.currentTimeMillis();
+            List<Server> servers = serverService.findAll();
+            Set<Long> ids = new HashSet<>();
+            List<CompletableFuture<HostMetrics>> futures = new ArrayList<>();
+            for (Server s : servers) {
+                ids.add(s.getId());
+                if (s.getStatus() == Server.ServerStatus.ONLINE) {
+                    futures.add(collect(s));
+                }
+            }
+            snapshots.keySet().retainAll(ids);
+            lastRunAt = start;
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                    .get(Math.max(5, intervalSeconds) + TimeUnit.MILLISECONDS.toSeconds(timeoutMs), TimeUnit.SECONDS);
+            lastRunDurationMs = System.currentTimeMillis() - start;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.debug("[FleetMetrics] Collection round failed: {}", e.getMessage());
+        }
+    }
+
+    private HostMetrics collectOne(Server s) {
+        long now = System.currentTimeMillis();
+        Entry previous = snapshots.get(s.getId());
+        HostMetrics previousMetrics = previous != null ? previous.metrics() : null;
+        String pem = serverService.resolveServerPrivateKeyPem(s.getId());
+        if (pem == null || pem.isBlank()) {
+            // SECURITY: chỉ dùng SSH key, không dùng password
+            snapshots.put(s.getId(), new Entry(previousMetrics, "no ssh key", now));
+            return null;
+        }
+        long start = System.nanoTime();
+        String output = serverService.execCommandWithKey(s.getHost(), s.getPort() != null ? s.getPort() : 22,
+                s.getUsername(), pem, HostMetrics.COLLECT_COMMAND, timeoutMs);
+        HostMetrics metrics = HostMetrics.parse(s.getId(), output, previousMetrics,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        collections.incrementAndGet();
+        if (metrics == null) {
+            failures.incrementAndGet();
+            snapshots.put(s.getId(), new Entry(previousMetrics, output == null ? "ssh failed" : "unparseable output",
+                    now));
+            return null;
+        }
+        snapshots.put(s.getId(), new Entry(metrics, null, now));
+        persistSpecsIfChanged(s, metrics);
+        return metrics;
+    }
+
+    private void persistSpecsIfChanged(Server s, HostMetrics m) {
+        String cpuCores = String.valueOf(m.cpuCores());
+        String ramTotal = HostMetrics.humanBytes(m.memTotalBytes());
+        String diskTotal = HostMetrics.humanBytesDf(m.diskTotalBytes());
+        if (cpuCores.equals(s.getCpuCores()) && ramTotal.equals(s.getRamTotal())
+                && (m.diskTotalBytes() <= 0 || diskTotal.equals(s.getDiskTotal()))) {
+            return;
+        }
+        try {
+            serverService.updateMetrics(s.getId(), cpuCores, ramTotal, m.diskTotalBytes() > 0 ? diskTotal : null);
+            s.setCpuCores(cpuCores);
+            s.setRamTotal(ramTotal);
+            if (m.diskTotalBytes() > 0) {
+                s.setDiskTotal(diskTotal);
+            }
+        } catch (Exception e) {
+            logger.debug("[FleetMetrics] Failed to persist specs for {}: {}", s.getHost(), e.getMessage());
+        }
+    }
+
+    // ========== Agent mode ==========
+
+    /** Agent coi là chết nếu không có mẫu mới trong khoảng này (gồm cả thời gian kết nối) */
+    private long agentSilenceLimitMs() {
+        return TimeUnit.SECONDS.toMillis(Math.max(15, Math.max(1, agentSampleSeconds) * 3L)) + timeoutMs;
+    }
+
+    private void reconcileAgentsSafely() {
+        try {
+            reconcileAgents(System.currentTimeMillis());
+        } catch (Exception e) {
+            logger.debug("[FleetMetrics] Agent reconcile failed: {}", e.getMessage());
+        }
+    }
+
+    private void reconcileAgents(long now) {
+        List<Server> servers = serverService.findAll();
+        Set<Long> ids = new HashSet<>();
+        for (Server s : servers) {
+            ids.add(s.getId());
+            boolean wanted = s.getStatus() == Server.ServerStatus.ONLINE;
+            Agent agent = agents.get(s.getId());
+            if (agent != null) {
+                boolean silent = now - Math.max(agent.startedAt, agent.lastSampleAt) > agentSilenceLimitMs();
+                if (wanted && agent.matches(s) && !agent.dead && !silent) {
+                    continue;
+                }
+                agent.stop();
+                agents.remove(s.getId(), agent);
+                if (wanted && (agent.dead || silent)) {
+                    agentRestarts.incrementAndGet();
+                    if (agent.lastSampleAt == 0) {
+                        // Chưa gửi được mẫu nào: lùi thời gian thử lại 10s, 20s, 40s... tối đa 5 phút
+                        int failures = agentFailures.merge(s.getId(), 1, Integer::sum);
+                        long delay = Math.min(TimeUnit.MINUTES.toMillis(5), 10_000L << Math.min(failures - 1, 5));
+                        agentRetryAt.put(s.getId(), now + delay);
+                    }
+                    logger.debug("[FleetMetrics] Agent for {} {}, respawning", s.getHost(),
+                            agent.dead ? "exited" : "went silent");
+                }
+            }
+            if (wanted && now >= agentRetryAt.getOrDefault(s.getId(), 0L)) {
+                spawnAgent(s, now);
+            }
+        }
+        agents.entrySet().removeIf(e -> {
+            if (!ids.contains(e.getKey())) {
+                e.getValue().stop();
+                return true;
+            }
+            return false;
+        });
+        agentFailures.keySet().retainAll(ids);
+        agentRetryAt.keySet().retainAll(ids);
+        snapshots.keySet().retainAll(ids);
+        lastRunAt = now;
+    }
+
+    private void spawnAgent(Server s, long now) {
+        Agent agent = new Agent(s);
+        agents.put(s.getId(), agent);
+        agentStarts.incrementAndGet();
+        workers.execute(() -> {
+            try {
+                SshExecService.RemoteExec exec = serverService.startStreamExec(s,
+                        HostMetrics.agentCommand(agentSampleSeconds), timeoutMs, agent);
+                if (exec == null) {
+                    // SECURITY: chỉ dùng SSH key, không dùng password
+                    agent.dead = true;
+                    recordError(s.getId(), "no ssh key", now);
+                    return;
+                }
+                agent.exec = exec;
+                if (agent.dead) {
+                    exec.close(); // Bị dừng trong lúc đang kết nối
+                }
+            } catch (Exception e) {
+                agent.dead = true;
+                recordError(s.getId(), "agent start failed: " + e.getMessage(), now);
+            }
+        });
+    }
+
+    private void recordError(Long serverId, String error, long at) {
+        Entry previous = snapshots.get(serverId);
+        snapshots.put(serverId, new Entry(previous != null ? previous.metrics() : null, error, at));
+    }
+
+    /**
+     * 1 agent = 1 kênh exec lâu dài tới 1 server. Callback chạy trên thread của SSH session nên chỉ parse và
+     * cập nhật snapshot; ghi DB (khi thông số phần cứng đổi) được chuyển sang worker.
+     */
+    private final class Agent implements SshExecService.ExecListener, HostMetricsStreamParser.SampleHandler {
+        final Server server;
+        final String host;
+        final int port;
+        final String username;
+        final long startedAt = System.currentTimeMillis();
+        final HostMetricsStreamParser parser = new HostMetricsStreamParser(HostMetrics.AGENT_FIELDS, this);
+        volatile SshExecService.RemoteExec exec;
+        volatile long lastSampleAt;
+        volatile boolean dead;
+        // Chỉ thread của session đọc/ghi
+        private int persistedCores;
+        private long persistedMemTotal = -1;
+        private long persistedDiskTotal = -1;
+
+        Agent(Server server) {
+            this.server = server;
+            this.host = server.getHost();
+            this.port = server.getPort() != null ? server.getPort() : 22;
+            this.username = server.getUsername();
+        }
+
+        boolean matches(Server s) {
+            return Objects.equals(host, s.getHost()) && port == (s.getPort() != null ? s.getPort() : 22)
+                    && Objects.equals(username, s.getUsername());
+        }
+
+        @Override
+        public void onChunk(SshExecService.StreamType stream, byte[] data, int offset, int length) {
+            if (stream == SshExecService.StreamType.STDOUT) {
+                parser.feed(data, offset, length);
+            }
+        }
+
+        @Override
+        public void onSample(long[] fields) {
+            long now = System.currentTimeMillis();
+            Long id = server.getId();
+            Entry previous = snapshots.get(id);
+            HostMetrics metrics = HostMetrics.fromAgentSample(id, fields, previous != null ? previous.metrics() : null,
+                    now);
+            if (metrics == null) {
+                return;
+            }
+            snapshots.put(id, new Entry(metrics, null, now));
+            lastSampleAt = now;
+            agentSamples.incrementAndGet();
+            if (agentFailures.remove(id) != null) {
+                agentRetryAt.remove(id);
+            }
+            if (metrics.cpuCores() != persistedCores || metrics.memTotalBytes() != persistedMemTotal
+                    || metrics.diskTotalBytes() != persistedDiskTotal) {
+                persistedCores = metrics.cpuCores();
+                persistedMemTotal = metrics.memTotalBytes();
+                persistedDiskTotal = metrics.diskTotalBytes();
+                workers.execute(() -> persistSpecsIfChanged(server, metrics));
+            }
+        }
+
+        @Override
+        public void onExit(SshExecService.ExecResult result) {
+            dead = true;
+            if (!result.cancelled()) {
+                logger.debug("[FleetMetrics] Agent on {} exited (code={}, samples={}, rejected={})", host,
+                        result.exitCode(), parser.samples(), parser.rejectedLines());
+            }
+        }
+
+        void stop() {
+            dead = true;
+            SshExecService.RemoteExec e = exec;
+            if (e != null) {
+                e.close();
+            }
+        }
+    }
+}
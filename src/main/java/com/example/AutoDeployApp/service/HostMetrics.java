@@ -0,0 +1,211 @@
+package com.example.AutoDeployApp.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Số liệu tài nguyên của 1 server, đọc trực tiếp từ /proc và statvfs (đơn vị byte / phần trăm, không phải chuỗi
+ * "7.6Gi" của free -h). cpuUsagePercent = null ở lần thu thập đầu tiên (cần 2 mẫu /proc/stat để tính).
+ */
+public record HostMetrics(Long serverId, int cpuCores, Double cpuUsagePercent, double load1, double load5,
+        double load15, long memTotalBytes, long memAvailableBytes, long swapTotalBytes, long swapFreeBytes,
+        long diskTotalBytes, long diskFreeBytes, long diskAvailableBytes, long cpuTotalTicks, long cpuIdleTicks,
+        long collectedAt, long collectDurationMs) {
+
+    /**
+     * 1 lần exec: số CPU, dòng tổng của /proc/stat, các trường cần của /proc/meminfo, /proc/loadavg và
+     * statvfs của / (stat -f: block size, tổng block, block trống, block trống cho user thường)
+     */
+    static final String COLLECT_COMMAND = "echo \"NPROC $(grep -c '^cpu[0-9]' /proc/stat)\"; "
+            + "head -n 1 /proc/stat; "
+            + "grep -E '^(MemTotal|MemAvailable|SwapTotal|SwapFree):' /proc/meminfo; "
+            + "echo \"LOADAVG $(cat /proc/loadavg)\"; "
+            + "echo \"STATVFS $(stat -f -c '%S %b %f %a' /)\"";
+
+    public long memUsedBytes() {
+        return Math.max(0, memTotalBytes - memAvailableBytes);
+    }
+
+    public int memUsedPercent() {
+        return memTotalBytes > 0 ? (int) Math.round(memUsedBytes() * 100.0 / memTotalBytes) : 0;
+    }
+
+    public long diskUsedBytes() {
+        return Math.max(0, diskTotalBytes - diskFreeBytes);
+    }
+
+    /** Cùng cách tính với cột Use% của df: used / (used + available) */
+    public int diskUsedPercent() {
+        long denominator = diskUsedBytes() + diskAvailableBytes;
+        return denominator > 0 ? (int) Math.ceil(diskUsedBytes() * 100.0 / denominator) : 0;
+    }
+
+    /**
+     * Parse output của COLLECT_COMMAND. previous (có thể null) là mẫu trước của cùng server để tính % CPU.
+     * Trả về null nếu thiếu số liệu bắt buộc (CPU, RAM).
+     */
+    static HostMetrics parse(Long serverId, String output, HostMetrics previous, long collectDurationMs) {
+        if (output == null || output.isBlank()) {
+            return null;
+        }
+        int cores = 0;
+        long total = -1, idle = -1;
+        long memTotal = -1, memAvailable = -1, swapTotal = 0, swapFree = 0;
+        double l1 = 0, l5 = 0, l15 = 0;
+        long diskTotal = 0, diskFree = 0, diskAvailable = 0;
+        for (String raw : output.split("\n")) {
+            String[] f = raw.trim().split("\\s+");
+            if (f.length < 2) {
+                continue;
+            }
+            try {
+                switch (f[0]) {
+                    case "NPROC" -> cores = Integer.parseInt(f[1]);
+                    case "cpu" -> {
+                        // user nice system idle iowait irq softirq steal (guest đã nằm trong user)
+                        long sum = 0;
+                        for (int i = 1; i < Math.min(f.length, 9); i++) {
+                            sum += Long.parseLong(f[i]);
+                        }
+                        total = sum;
+                        idle = Long.parseLong(f[4]) + (f.length > 5 ? Long.parseLong(f[5]) : 0);
+                    }
+                    case "MemTotal:" -> memTotal = Long.parseLong(f[1]) * 1024;
+                    case "MemAvailable:" -> memAvailable = Long.parseLong(f[1]) * 1024;
+                    case "SwapTotal:" -> swapTotal = Long.parseLong(f[1]) * 1024;
+                    case "SwapFree:" -> swapFree = Long.parseLong(f[1]) * 1024;
+                    case "LOADAVG" -> {
+                        l1 = Double.parseDouble(f[1]);
+                        l5 = f.length > 2 ? Double.parseDouble(f[2]) : 0;
+                        l15 = f.length > 3 ? Double.parseDouble(f[3]) : 0;
+                    }
+                    case "STATVFS" -> {
+                        if (f.length >= 5) {
+                            long blockSize = Long.parseLong(f[1]);
+                            diskTotal = blockSize * Long.parseLong(f[2]);
+                            diskFree = blockSize * Long.parseLong(f[3]);
+                            diskAvailable = blockSize * Long.parseLong(f[4]);
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            } catch (NumberFormatException ignored) {
+                // Dòng lỗi (thiếu quyền, khác định dạng) - bỏ qua trường đó
+            }
+        }
+        return build(serverId, cores, total, idle, memTotal, memAvailable, swapTotal, swapFree, l1, l5, l15,
+                diskTotal, diskFree, diskAvailable, previous, System.currentTimeMillis(), collectDurationMs);
+    }
+
+    /**
+     * Lệnh agent: vòng lặp shell chạy lâu dài trên 1 kênh exec, mỗi sampleSeconds in 1 dòng
+     * "M cores user nice system idle iowait irq softirq steal memTotalKb memAvailKb swapTotalKb swapFreeKb
+     * load1 load5 load15 blockSize blocks blocksFree blocksAvail" (chỉ dùng builtin trừ stat/sleep).
+     * Script được base64 để không phải escape; khi kênh đóng, echo gặp SIGPIPE và vòng lặp dừng.
+     */
+    static String agentCommand(int sampleSeconds) {
+        String script = "n=$(grep -c '^cpu[0-9]' /proc/stat)\n"
+                + "while :; do\n"
+                + "  read -r _c u ni sy id io irq si st _r < /proc/stat\n"
+                + "  mt=0; ma=0; swt=0; swf=0\n"
+                + "  while read -r k v _r; do\n"
+                + "    case $k in MemTotal:) mt=$v ;; MemAvailable:) ma=$v ;; SwapTotal:) swt=$v ;; SwapFree:) swf=$v ;; esac\n"
+                + "  done < /proc/meminfo\n"
+                + "  read -r l1 l5 l15 _r < /proc/loadavg\n"
+                + "  fs=$(stat -f -c '%S %b %f %a' / 2>/dev/null) || fs='0 0 0 0'\n"
+                + "  echo \"M $n $u $ni $sy $id ${io:-0} ${irq:-0} ${si:-0} ${st:-0} $mt $ma $swt $swf $l1 $l5 $l15 $fs\" || exit 0\n"
+                + "  sleep " + Math.max(1, sampleSeconds) + "\n"
+                + "done\n";
+        String encoded = Base64.getEncoder().encodeToString(script.getBytes(StandardCharsets.UTF_8));
+        return "sh -c \"$(echo '" + encoded + "' | base64 -d)\"";
+    }
+
+    /** Số trường của 1 dòng agent (không tính marker M) */
+    static final int AGENT_FIELDS = 20;
+
+    /**
+     * Tạo metrics từ 1 dòng agent đã parse (HostMetricsStreamParser: giá trị x100)
+     */
+    static HostMetrics fromAgentSample(Long serverId, long[] f, HostMetrics previous, long collectedAt) {
+        long total = 0;
+        for (int i = 1; i <= 8; i++) {
+            total += f[i] / 100;
+        }
+        long blockSize = f[16] / 100;
+        return build(serverId, (int) (f[0] / 100), total, f[4] / 100 + f[5] / 100,
+                f[9] / 100 * 1024, f[10] / 100 * 1024, f[11] / 100 * 1024, f[12] / 100 * 1024,
+                f[13] / 100.0, f[14] / 100.0, f[15] / 100.0,
+                blockSize * (f[17] / 100), blockSize * (f[18] / 100), blockSize * (f[19] / 100),
+                previous, collectedAt, 0);
+    }
+
+    private static HostMetrics build(Long serverId, int cores, long total, long idle, long memTotal,
+            long memAvailable, long swapTotal, long swapFree, double l1, double l5, double l15, long diskTotal,
+            long diskFree, long diskAvailable, HostMetrics previous, long collectedAt, long collectDurationMs) {
+        if (cores <= 0 || total < 0 || memTotal <= 0) {
+            return null;
+        }
+        if (memAvailable < 0) {
+            memAvailable = 0; // Kernel < 3.14 không có MemAvailable
+        }
+        Double cpuUsage = null;
+        if (previous != null && total > previous.cpuTotalTicks()) {
+            long dTotal = total - previous.cpuTotalTicks();
+            long dIdle = Math.max(0, idle - previous.cpuIdleTicks());
+            cpuUsage = Math.round(Math.max(0, Math.min(100, (dTotal - dIdle) * 100.0 / dTotal)) * 10) / 10.0;
+        }
+        return new HostMetrics(serverId, cores, cpuUsage, l1, l5, l15, memTotal, memAvailable, swapTotal, swapFree,
+                diskTotal, diskFree, diskAvailable, total, idle, collectedAt, collectDurationMs);
+    }
+
+    /**
+     * Định dạng giống free -h ("512Mi", "7.6Gi") - giữ tương thích với cột ramTotal cũ
+     */
+    public static String humanBytes(long bytes) {
+        if (bytes <= 0) {
+            return "-";
+        }
+        String[] units = { "B", "Ki", "Mi", "Gi", "Ti", "Pi" };
+        double value = bytes;
+        int unit = 0;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return (value >= 10 || unit == 0 ? String.format(Locale.ROOT, "%.0f", value)
+                : String.format(Locale.ROOT, "%.1f", value)) + units[unit];
+    }
+
+    /**
+     * Định dạng giống df -h ("50G", "3.9G", "512M"): hậu tố 1 chữ, làm tròn lên như df - giữ tương thích với
+     * cột diskTotal cũ
+     */
+    public static String humanBytesDf(long bytes) {
+        if (bytes <= 0) {
+            return "-";
+        }
+        String[] units = { "", "K", "M", "G", "T", "P" };
+        double value = bytes;
+        int unit = 0;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        if (unit == 0) {
+            return String.valueOf(bytes);
+        }
+        if (value < 10) {
+            double rounded = Math.ceil(value * 10) / 10;
+            if (rounded < 10) {
+                return String.format(Locale.ROOT, "%.1f", rounded) + units[unit];
+            }
+        }
+        double rounded = Math.ceil(value);
+        if (rounded >= 1024 && unit < units.length - 1) {
+            return "1.0" + units[unit + 1];
+        }
+        return String.format(Locale.ROOT, "%.0f", rounded) + units[unit];
+    }
+}
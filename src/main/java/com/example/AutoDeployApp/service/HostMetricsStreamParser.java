@@ -0,0 +1,116 @@
+package com.example.AutoDeployApp.service;
+
+/**
+ * Parse tăng dần output của agent metrics (HostMetrics.agentCommand) theo từng chunk byte JSch đẩy tới,
+ * không tạo String/mảng cho mỗi dòng: các trường số được ghi vào 1 mảng long dùng lại, dạng fixed-point x100
+ * (giữ 2 chữ số thập phân cho load average). Dòng không bắt đầu bằng "M " hoặc sai số trường bị bỏ qua.
+ *
+ * Không thread-safe: chỉ gọi feed() từ 1 thread (thread của SSH session).
+ */
+final class HostMetricsStreamParser {
+
+    interface SampleHandler {
+        /** fields chỉ hợp lệ trong lúc gọi - handler phải đọc xong trước khi trả về */
+        void onSample(long[] fields);
+    }
+
+    private static final int SKIP_LINE = -2;
+    private static final int LINE_START = -1;
+
+    private final long[] fields;
+    private final SampleHandler handler;
+    private int field = LINE_START;
+    private long value;
+    private boolean inNumber;
+    private boolean inFraction;
+    private int fractionDigits;
+    private long samples;
+    private long rejectedLines;
+
+    HostMetricsStreamParser(int fieldCount, SampleHandler handler) {
+        this.fields = new long[fieldCount];
+        this.handler = handler;
+    }
+
+    void feed(byte[] data, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = data[i];
+            if (b == '\n') {
+                endLine();
+                continue;
+            }
+            if (field == SKIP_LINE || b == '\r') {
+                continue;
+            }
+            if (field == LINE_START) {
+                field = b == 'M' ? 0 : SKIP_LINE;
+                continue;
+            }
+            if (b == ' ' || b == '\t') {
+                endField();
+            } else if (b >= '0' && b <= '9') {
+                inNumber = true;
+                if (!inFraction) {
+                    value = value * 10 + (b - '0');
+                } else if (fractionDigits < 2) {
+                    value = value * 10 + (b - '0');
+                    fractionDigits++;
+                }
+            } else if (b == '.' && inNumber && !inFraction) {
+                inFraction = true;
+            } else {
+                reject();
+            }
+        }
+    }
+
+    long samples() {
+        return samples;
+    }
+
+    long rejectedLines() {
+        return rejectedLines;
+    }
+
+    private void endField() {
+        if (!inNumber) {
+            return;
+        }
+        if (field >= fields.length) {
+            reject();
+            return;
+        }
+        long scaled = value;
+        for (int d = inFraction ? fractionDigits : 0; d < 2; d++) {
+            scaled *= 10;
+        }
+        fields[field++] = scaled;
+        value = 0;
+        inNumber = false;
+        inFraction = false;
+        fractionDigits = 0;
+    }
+
+    private void endLine() {
+        if (field >= 0) {
+            endField();
+            if (field == fields.length) {
+                samples++;
+                handler.onSample(fields);
+            } else if (field != SKIP_LINE) {
+                rejectedLines++;
+            }
+        }
+        field = LINE_START;
+        value = 0;
+        inNumber = false;
+        inFraction = false;
+        fractionDigits = 0;
+    }
+
+    private void reject() {
+        rejectedLines++;
+        field = SKIP_LINE;
+    }
+}
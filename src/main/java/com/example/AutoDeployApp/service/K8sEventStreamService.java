@@ -0,0 +1,369 @@
+package com.example.AutoDeployApp.service;
+
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Luồng Kubernetes events realtime qua SSE.
+ *
+ * Dùng 1 watch duy nhất (informer Event trong cache của KubernetesService), giữ ring buffer có giới hạn
+ * theo từng namespace. Client đăng ký với bộ lọc (namespace, involvedObjectKind, involvedObjectName, type),
+ * nhận backlog gần nhất rồi tới các thay đổi mới - thay cho việc list toàn bộ events mỗi lần poll.
+ */
+@Service
+public class K8sEventStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(K8sEventStreamService.class);
+
+    private final KubernetesService kubernetesService;
+
+    @Value("${k8s.events.buffer-per-namespace:200}")
+    private int bufferPerNamespace;
+
+    @Value("${k8s.events.stream-timeout-minutes:30}")
+    private long streamTimeoutMinutes;
+
+    @Value("${k8s.events.subscriber-queue-size:1000}")
+    private int subscriberQueueSize;
+
+    /** namespace -> (uid -> event), thứ tự theo lần thay đổi gần nhất, bị cắt khi vượt giới hạn */
+    private final Map<String, LinkedHashMap<String, Event>> buffers = new ConcurrentHashMap<>();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean handlerRegistered = new AtomicBoolean(false);
+    private final AtomicLong deltasPublished = new AtomicLong();
+    private final AtomicLong droppedSubscribers = new AtomicLong();
+    // Cập nhật buffer + xếp hàng delta, và chụp backlog + đăng ký subscriber, đều giữ khoá này: không có khoảng hở
+    private final Object publishLock = new Object();
+
+    // Gửi SSE trên thread riêng để client chậm không chặn thread của informer. Mỗi subscriber có hàng đợi riêng
+    // và tối đa 1 task gửi tại 1 thời điểm - client treo chỉ chặn thread của chính nó
+    private final AtomicLong senderThreads = new AtomicLong();
+    private final ExecutorService sender = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "k8s-event-stream-" + senderThreads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    public K8sEventStreamService(KubernetesService kubernetesService) {
+        this.kubernetesService = kubernetesService;
+    }
+
+    /**
+     * Bộ lọc phía server cho 1 subscriber (giá trị null/rỗng = không lọc)
+     */
+    public record EventFilter(String namespace, String involvedObjectKind, String involvedObjectName, String type) {
+        boolean matches(Event e) {
+            if (notBlank(namespace) && (e.getMetadata() == null || !namespace.equals(e.getMetadata().getNamespace()))) {
+                return false;
+            }
+            if (notBlank(involvedObjectKind) && (e.getInvolvedObject() == null
+                    || !involvedObjectKind.equals(e.getInvolvedObject().getKind()))) {
+                return false;
+            }
+            if (notBlank(involvedObjectName) && (e.getInvolvedObject() == null
+                    || !involvedObjectName.equals(e.getInvolvedObject().getName()))) {
+                return false;
+            }
+            return !notBlank(type) || type.equalsIgnoreCase(e.getType());
+        }
+
+        private static boolean notBlank(String s) {
+            return s != null && !s.trim().isEmpty();
+        }
+    }
+
+    /**
+     * Hàng đợi có giới hạn của 1 client. Tràn (client không đọc kịp) thì stream bị đóng - EventSource tự nối lại
+     * và nhận backlog mới thay vì dồn delta không giới hạn trong RAM.
+     */
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final EventFilter filter;
+        final Function<Event, Map<String, Object>> mapper;
+        private final ArrayDeque<SseEmitter.SseEventBuilder> queue = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closed;
+
+        Subscriber(SseEmitter emitter, EventFilter filter, Function<Event, Map<String, Object>> mapper) {
+            this.emitter = emitter;
+            this.filter = filter;
+            this.mapper = mapper;
+        }
+
+        void enqueue(SseEmitter.SseEventBuilder event) {
+            boolean overflow = false;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (queue.size() < Math.max(1, subscriberQueueSize)) {
+                    queue.add(event);
+                    if (draining) {
+                        return;
+                    }
+                    draining = true;
+                } else {
+                    closed = true;
+                    overflow = true;
+                    queue.clear();
+                }
+            }
+            if (overflow) {
+                droppedSubscribers.incrementAndGet();
+                logger.debug("[K8s Events] Subscriber queue overflow, closing stream");
+                subscribers.remove(this);
+                emitter.complete();
+                return;
+            }
+            sender.execute(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                SseEmitter.SseEventBuilder event;
+                synchronized (this) {
+                    event = closed ? null : queue.poll();
+                    if (event == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(event);
+                } catch (IOException | RuntimeException e) {
+                    close();
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                queue.clear();
+            }
+            subscribers.remove(this);
+        }
+    }
+
+    /**
+     * Đăng ký nhận events: gửi "backlog" (tối đa backlogLimit event gần nhất, mới nhất trước)
+     * rồi các event "ADDED"/"MODIFIED"/"DELETED" khi có thay đổi.
+     *
+     * Backlog được chụp, xếp đầu hàng đợi và subscriber được đăng ký dưới publishLock (cũng là khoá khi cập nhật
+     * buffer và xếp delta): thay đổi trước đó đã nằm trong backlog, thay đổi sau đó đến như delta, sau backlog -
+     * không có khoảng hở. Cùng 1 event có thể vừa ở backlog vừa tới dạng delta (client gộp theo uid).
+     *
+     * Khi tắt k8s.cache.enabled không có watch: gửi backlog list trực tiếp từ API server (live=false) rồi đóng stream.
+     */
+    public SseEmitter subscribe(EventFilter filter, int backlogLimit, Function<Event, Map<String, Object>> mapper) {
+        SseEmitter emitter = new SseEmitter(java.util.concurrent.TimeUnit.MINUTES.toMillis(streamTimeoutMinutes));
+        if (!kubernetesService.isClusterCacheEnabled()) {
+            sender.execute(() -> sendListedBacklog(emitter, filter, backlogLimit, mapper));
+            return emitter;
+        }
+        ensureWatching();
+
+        Subscriber subscriber = new Subscriber(emitter, filter, mapper);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+
+        try {
+            synchronized (publishLock) {
+                List<Map<String, Object>> backlog = backlog(filter, backlogLimit).stream()
+                        .map(mapper)
+                        .toList();
+                subscriber.enqueue(SseEmitter.event().name("backlog")
+                        .data(Map.of("events", backlog, "total", backlog.size(), "live", true)));
+                subscribers.add(subscriber);
+            }
+        } catch (RuntimeException e) {
+            subscriber.close();
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    private void sendListedBacklog(SseEmitter emitter, EventFilter filter, int backlogLimit,
+            Function<Event, Map<String, Object>> mapper) {
+        try {
+            List<Map<String, Object>> backlog = kubernetesService.getEvents(filter.namespace()).getItems().stream()
+                    .filter(filter::matches)
+                    .sorted(Comparator.comparing(K8sEventStreamService::eventTime).reversed())
+                    .limit(Math.max(0, backlogLimit))
+                    .map(mapper)
+                    .toList();
+            // retry dài: EventSource tự nối lại khi stream đóng, tránh list lại liên tục
+            emitter.send(SseEmitter.event().name("backlog").reconnectTime(60_000)
+                    .data(Map.of("events", backlog, "total", backlog.size(), "live", false,
+                            "reason", "k8s.cache.enabled=false - no live event watch")));
+            emitter.complete();
+        } catch (IOException | RuntimeException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * Backlog theo bộ lọc, sắp xếp mới nhất trước
+     */
+    public List<Event> backlog(EventFilter filter, int limit) {
+        List<Event> result = new ArrayList<>();
+        buffers.forEach((ns, buffer) -> {
+            if (filter.namespace() != null && !filter.namespace().isBlank() && !filter.namespace().equals(ns)) {
+                return;
+            }
+            synchronized (buffer) {
+                for (Event e : buffer.values()) {
+                    if (filter.matches(e)) {
+                        result.add(e);
+                    }
+                }
+            }
+        });
+        result.sort(Comparator.comparing(K8sEventStreamService::eventTime).reversed());
+        return result.size() > limit ? result.subList(0, Math.max(0, limit)) : result;
+    }
+
+    public Map<String, Object> getStats() {
+        int buffered = 0;
+        for (var buffer : buffers.values()) {
+            synchronized (buffer) {
+                buffered += buffer.size();
+            }
+        }
+        return Map.of(
+                "watching", handlerRegistered.get(),
+                "namespaces", buffers.size(),
+                "bufferedEvents", buffered,
+                "bufferPerNamespace", bufferPerNamespace,
+                "subscribers", subscribers.size(),
+                "subscriberQueueSize", subscriberQueueSize,
+                "droppedSubscribers", droppedSubscribers.get(),
+                "deltasPublished", deltasPublished.get());
+    }
+
+    private void ensureWatching() {
+        if (handlerRegistered.compareAndSet(false, true)) {
+            kubernetesService.addClusterCacheHandler(Event.class, new ResourceEventHandler<Event>() {
+                @Override
+                public void onAdd(Event event) {
+                    onChange("ADDED", event);
+                }
+
+                @Override
+                public void onUpdate(Event oldEvent, Event newEvent) {
+                    // Resync định kỳ của informer gọi onUpdate(obj, obj): không phải thay đổi, bỏ qua ngay (event
+                    // đã bị đẩy khỏi buffer sẽ không được thêm lại và phát lại)
+                    if (oldEvent != null && oldEvent.getMetadata() != null && newEvent.getMetadata() != null
+                            && Objects.equals(oldEvent.getMetadata().getResourceVersion(),
+                                    newEvent.getMetadata().getResourceVersion())) {
+                        return;
+                    }
+                    onChange("MODIFIED", newEvent);
+                }
+
+                @Override
+                public void onDelete(Event event, boolean deletedFinalStateUnknown) {
+                    onDeleted(event);
+                }
+            });
+            logger.info("[K8s Events] Event stream handler registered");
+        }
+        // Kích hoạt cache (informer) nếu chưa chạy
+        kubernetesService.listCached(Event.class, null);
+    }
+
+    private void onChange(String action, Event event) {
+        if (event.getMetadata() == null || event.getMetadata().getUid() == null) {
+            return;
+        }
+        String ns = Objects.toString(event.getMetadata().getNamespace(), "");
+        String uid = event.getMetadata().getUid();
+        LinkedHashMap<String, Event> buffer = buffers.computeIfAbsent(ns, k -> new LinkedHashMap<>());
+        synchronized (publishLock) {
+            synchronized (buffer) {
+                Event previous = buffer.remove(uid);
+                if (previous != null && Objects.equals(previous.getMetadata().getResourceVersion(),
+                        event.getMetadata().getResourceVersion())) {
+                    buffer.put(uid, previous);
+                    return; // Informer khởi động lại phát lại object cũ - không phải thay đổi mới
+                }
+                buffer.put(uid, event);
+                while (buffer.size() > Math.max(1, bufferPerNamespace)) {
+                    Iterator<String> it = buffer.keySet().iterator();
+                    it.next();
+                    it.remove();
+                }
+            }
+            publish(action, event);
+        }
+    }
+
+    private void onDeleted(Event event) {
+        if (event.getMetadata() == null) {
+            return;
+        }
+        LinkedHashMap<String, Event> buffer = buffers.get(Objects.toString(event.getMetadata().getNamespace(), ""));
+        synchronized (publishLock) {
+            if (buffer != null) {
+                synchronized (buffer) {
+                    buffer.remove(event.getMetadata().getUid());
+                }
+            }
+            publish("DELETED", event);
+        }
+    }
+
+    // Gọi dưới publishLock: chỉ map + xếp hàng, việc gửi chạy trên thread của từng subscriber
+    private void publish(String action, Event event) {
+        for (Subscriber s : subscribers) {
+            if (!s.filter.matches(event)) {
+                continue;
+            }
+            try {
+                s.enqueue(SseEmitter.event().name(action).data(s.mapper.apply(event)));
+                deltasPublished.incrementAndGet();
+            } catch (RuntimeException e) {
+                s.close();
+                s.emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private static String eventTime(Event e) {
+        if (e.getLastTimestamp() != null) {
+            return e.getLastTimestamp();
+        }
+        if (e.getEventTime() != null && e.getEventTime().getTime() != null) {
+            return e.getEventTime().getTime();
+        }
+        return e.getMetadata() != null && e.getMetadata().getCreationTimestamp() != null
+                ? e.getMetadata().getCreationTimestamp()
+                : "";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(s -> s.emitter.complete());
+        subscribers.clear();
+        sender.shutdownNow();
+    }
+}
@@ -0,0 +1,395 @@
+package com.example.AutoDeployApp.service;
+
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.dsl.BytesLimitTerminateTimeTailPrettyLoggable;
+import io.fabric8.kubernetes.client.dsl.ContainerResource;
+import io.fabric8.kubernetes.client.dsl.Loggable;
+import io.fabric8.kubernetes.client.dsl.LogWatch;
+import io.fabric8.kubernetes.client.dsl.PodResource;
+import io.fabric8.kubernetes.client.dsl.TailPrettyLoggable;
+import io.fabric8.kubernetes.client.dsl.TimeTailPrettyLoggable;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stream log pod (follow) dùng chung upstream.
+ *
+ * Mỗi tổ hợp pod/container/tuỳ chọn chỉ mở 1 LogWatch tới API server; các viewer đăng ký vào upstream đó.
+ * Upstream giữ N dòng gần nhất để viewer vào sau vẫn có phần tail. Mỗi viewer có buffer giới hạn
+ * (bỏ dòng cũ nhất khi client chậm) và được gửi theo lô - theo chu kỳ flush hoặc khi lô đủ lớn.
+ */
+@Service
+public class K8sPodLogStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(K8sPodLogStreamService.class);
+
+    private final KubernetesService kubernetesService;
+
+    @Value("${k8s.logs.flush-interval-ms:100}")
+    private long flushIntervalMs;
+
+    @Value("${k8s.logs.max-frame-bytes:65536}")
+    private int maxFrameBytes;
+
+    @Value("${k8s.logs.client-buffer-lines:5000}")
+    private int clientBufferLines;
+
+    @Value("${k8s.logs.replay-lines:500}")
+    private int replayLines;
+
+    private final Map<LogStreamKey, Upstream> upstreams = new ConcurrentHashMap<>();
+    private final AtomicLong linesRead = new AtomicLong();
+    private final AtomicLong linesDropped = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "pod-log-flush");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService readers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "pod-log-reader");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService senders = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "pod-log-send");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean flusherStarted = new AtomicBoolean(false);
+
+    public K8sPodLogStreamService(KubernetesService kubernetesService) {
+        this.kubernetesService = kubernetesService;
+    }
+
+    /**
+     * Định danh 1 upstream: các viewer cùng key dùng chung 1 LogWatch
+     */
+    public record LogStreamKey(String namespace, String pod, String container, Integer sinceSeconds,
+            boolean timestamps, boolean previous) {
+    }
+
+    /**
+     * Nơi nhận log của 1 viewer. Các lời gọi cho cùng 1 viewer luôn tuần tự (không chồng nhau).
+     */
+    public interface LogSink {
+        /** Gửi 1 lô dòng log; dropped = số dòng bị bỏ do client chậm kể từ lô trước */
+        void sendLines(List<String> lines, long dropped) throws IOException;
+
+        /** Upstream kết thúc (container dừng, lỗi, ứng dụng tắt) */
+        void end(String reason);
+    }
+
+    /**
+     * Đăng ký theo dõi log. Viewer đầu tiên mở upstream với tailLines (tối đa k8s.logs.replay-lines); viewer
+     * vào sau nhận tối đa tailLines dòng từ phần upstream đang giữ.
+     * Gọi close() trên kết quả để huỷ đăng ký; upstream đóng khi không còn viewer.
+     */
+    public AutoCloseable subscribe(LogStreamKey key, int tailLines, LogSink sink) {
+        ensureFlusher();
+        Subscriber subscriber = new Subscriber(sink);
+        Upstream upstream;
+        boolean created = false;
+        synchronized (upstreams) {
+            upstream = upstreams.get(key);
+            if (upstream == null) {
+                upstream = new Upstream(key);
+                upstreams.put(key, upstream);
+                created = true;
+            }
+            upstream.attach(subscriber, tailLines);
+        }
+        Upstream attached = upstream;
+        if (created) {
+            // Mở LogWatch (round trip tới API server) ngoài lock - pod chậm không chặn subscribe/unsubscribe khác
+            try {
+                attached.start(tailLines);
+            } catch (RuntimeException e) {
+                subscriber.closed = true;
+                attached.subscribers.remove(subscriber);
+                attached.fail(e);
+                throw e;
+            }
+        }
+        return () -> detach(attached, subscriber);
+    }
+
+    public Map<String, Object> getStats() {
+        int viewers = upstreams.values().stream().mapToInt(u -> u.subscribers.size()).sum();
+        return Map.of(
+                "upstreams", upstreams.size(),
+                "viewers", viewers,
+                "linesRead", linesRead.get(),
+                "linesDropped", linesDropped.get(),
+                "framesSent", framesSent.get());
+    }
+
+    private void detach(Upstream upstream, Subscriber subscriber) {
+        subscriber.closed = true;
+        synchronized (upstreams) {
+            upstream.subscribers.remove(subscriber);
+            if (upstream.subscribers.isEmpty() && upstreams.remove(upstream.key, upstream)) {
+                upstream.close();
+            }
+        }
+    }
+
+    private void ensureFlusher() {
+        if (flusherStarted.compareAndSet(false, true)) {
+            long interval = Math.max(10, flushIntervalMs);
+            flusher.scheduleWithFixedDelay(() -> {
+                for (Upstream u : upstreams.values()) {
+                    for (Subscriber s : u.subscribers) {
+                        s.scheduleFlush();
+                    }
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private final class Upstream {
+        final LogStreamKey key;
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        final ArrayDeque<String> recent = new ArrayDeque<>();
+        volatile boolean closed;
+        // guarded by this
+        KubernetesClient client;
+        LogWatch watch;
+
+        Upstream(LogStreamKey key) {
+            this.key = key;
+        }
+
+        void start(int tailLines) {
+            KubernetesClient client = kubernetesService.getKubernetesClientForCluster();
+            LogWatch watch;
+            try {
+                PodResource podResource = client.pods().inNamespace(key.namespace()).withName(key.pod());
+                ContainerResource resource = key.container() != null ? podResource.inContainer(key.container())
+                        : podResource;
+                BytesLimitTerminateTimeTailPrettyLoggable withTimestamps = key.timestamps()
+                        ? resource.usingTimestamps() : resource;
+                TimeTailPrettyLoggable withPrevious = key.previous() ? withTimestamps.terminated() : withTimestamps;
+                TailPrettyLoggable withSince = key.sinceSeconds() != null
+                        ? withPrevious.sinceSeconds(key.sinceSeconds()) : withPrevious;
+                int tail = Math.max(0, tailLines);
+                Loggable loggable = withSince.tailingLines(replayLines > 0 ? Math.min(replayLines, tail) : tail);
+                watch = loggable.watchLog();
+            } catch (RuntimeException e) {
+                client.close();
+                throw e;
+            }
+            boolean abandoned;
+            synchronized (this) {
+                abandoned = closed;
+                if (!abandoned) {
+                    this.client = client;
+                    this.watch = watch;
+                }
+            }
+            if (abandoned) {
+                // Viewer cuối đã rời đi trong lúc đang mở
+                watch.close();
+                client.close();
+                return;
+            }
+            readers.execute(() -> pump(watch));
+            logger.info("[PodLogs] Upstream opened {}/{} container={}", key.namespace(), key.pod(), key.container());
+        }
+
+        void attach(Subscriber subscriber, int tailLines) {
+            synchronized (recent) {
+                int skip = Math.max(0, recent.size() - Math.max(0, tailLines));
+                Iterator<String> it = recent.iterator();
+                for (int i = 0; it.hasNext(); i++) {
+                    String line = it.next();
+                    if (i >= skip) {
+                        subscriber.offer(line);
+                    }
+                }
+                subscribers.add(subscriber);
+            }
+        }
+
+        /** Không mở được upstream: báo lỗi cho các viewer đã đăng ký trong lúc chờ */
+        void fail(RuntimeException e) {
+            synchronized (upstreams) {
+                upstreams.remove(key, this);
+            }
+            for (Subscriber s : subscribers) {
+                s.end("error: " + e.getMessage());
+            }
+            close();
+        }
+
+        private void pump(LogWatch watch) {
+            String reason = "completed";
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(watch.getOutput(), StandardCharsets.UTF_8))) {
+                String line;
+                while (!closed && (line = reader.readLine()) != null) {
+                    linesRead.incrementAndGet();
+                    synchronized (recent) {
+                        recent.addLast(line);
+                        while (recent.size() > replayLines) {
+                            recent.pollFirst();
+                        }
+                        for (Subscriber s : subscribers) {
+                            s.offer(line);
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!closed) {
+                    reason = "error: " + e.getMessage();
+                    logger.warn("[PodLogs] Upstream {}/{} failed: {}", key.namespace(), key.pod(), e.getMessage());
+                }
+            } finally {
+                synchronized (upstreams) {
+                    upstreams.remove(key, this);
+                }
+                for (Subscriber s : subscribers) {
+                    s.end(reason);
+                }
+                close();
+            }
+        }
+
+        void close() {
+            LogWatch openWatch;
+            KubernetesClient lease;
+            synchronized (this) {
+                closed = true;
+                openWatch = watch;
+                lease = client;
+                watch = null;
+                client = null;
+            }
+            try {
+                if (openWatch != null) {
+                    openWatch.close();
+                }
+            } catch (Exception e) {
+                logger.debug("[PodLogs] Error closing log watch", e);
+            }
+            if (lease != null) {
+                lease.close();
+            }
+        }
+    }
+
+    private final class Subscriber {
+        final LogSink sink;
+        final ArrayDeque<String> pending = new ArrayDeque<>();
+        final AtomicBoolean sending = new AtomicBoolean(false);
+        long pendingBytes;
+        long dropped;
+        String endReason;
+        volatile boolean closed;
+
+        Subscriber(LogSink sink) {
+            this.sink = sink;
+        }
+
+        void offer(String line) {
+            boolean full;
+            synchronized (pending) {
+                pending.addLast(line);
+                pendingBytes += line.length() + 1;
+                while (pending.size() > Math.max(1, clientBufferLines)) {
+                    pendingBytes -= pending.pollFirst().length() + 1;
+                    dropped++;
+                    linesDropped.incrementAndGet();
+                }
+                full = pendingBytes >= maxFrameBytes;
+            }
+            if (full) {
+                scheduleFlush();
+            }
+        }
+
+        void end(String reason) {
+            synchronized (pending) {
+                endReason = reason;
+            }
+            scheduleFlush();
+        }
+
+        void scheduleFlush() {
+            if (closed) {
+                return;
+            }
+            synchronized (pending) {
+                if (pending.isEmpty() && endReason == null) {
+                    return;
+                }
+            }
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!closed) {
+                    List<String> batch = new ArrayList<>();
+                    long droppedSince;
+                    String reason;
+                    synchronized (pending) {
+                        long bytes = 0;
+                        while (!pending.isEmpty() && (batch.isEmpty() || bytes < maxFrameBytes)) {
+                            String line = pending.pollFirst();
+                            bytes += line.length() + 1;
+                            batch.add(line);
+                        }
+                        pendingBytes = Math.max(0, pendingBytes - bytes);
+                        droppedSince = dropped;
+                        dropped = 0;
+                        reason = pending.isEmpty() ? endReason : null;
+                    }
+                    if (!batch.isEmpty() || droppedSince > 0) {
+                        sink.sendLines(batch, droppedSince);
+                        framesSent.incrementAndGet();
+                    }
+                    if (reason != null) {
+                        closed = true;
+                        sink.end(reason);
+                        return;
+                    }
+                    if (batch.isEmpty()) {
+                        return;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.debug("[PodLogs] Viewer send failed: {}", e.getMessage());
+                closed = true;
+            } finally {
+                sending.set(false);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        synchronized (upstreams) {
+            upstreams.values().forEach(Upstream::close);
+            upstreams.clear();
+        }
+        readers.shutdownNow();
+        senders.shutdownNow();
+    }
+}
@@ -4,14 +4,18 @@ import io.fabric8.kubernetes.api.model.Endpoints;
 import io.fabric8.kubernetes.api.model.EndpointsList;
 import io.fabric8.kubernetes.api.model.PodList;
 import io.fabric8.kubernetes.api.model.ServiceList;
+import io.fabric8.kubernetes.api.model.ServiceListBuilder;
 import io.fabric8.kubernetes.api.model.networking.v1.Ingress;
 import io.fabric8.kubernetes.api.model.networking.v1.IngressList;
+import io.fabric8.kubernetes.api.model.networking.v1.IngressListBuilder;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class K8sServiceDiscoveryService {
 
@@ -27,7 +31,15 @@ public class K8sServiceDiscoveryService {
         return namespace != null && !namespace.trim().isEmpty();
     }
 
+    public KubernetesService.ListPage<io.fabric8.kubernetes.api.model.Service> getServicesPage(String namespace, KubernetesService.ListQuery query) {
+        return kubernetesService.listPage(io.fabric8.kubernetes.api.model.Service.class, namespace, query);
+    }
+
     public ServiceList getServices(String namespace) {
+        List<io.fabric8.kubernetes.api.model.Service> cached = kubernetesService.listCached(io.fabric8.kubernetes.api.model.Service.class, namespace);
+        if (cached != null) {
+            return new ServiceListBuilder().withItems(cached).build();
+        }
         try (KubernetesClient client = kubernetesService.getKubernetesClientForCluster()) {
             if (hasNamespace(namespace)) {
                 return client.services().inNamespace(namespace).list();
@@ -59,6 +71,10 @@ public class K8sServiceDiscoveryService {
     }
 
     public IngressList getIngress(String namespace) {
+        List<Ingress> cached = kubernetesService.listCached(Ingress.class, namespace);
+        if (cached != null) {
+            return new IngressListBuilder().withItems(cached).build();
+        }
         try (KubernetesClient client = kubernetesService.getKubernetesClientForCluster()) {
             if (hasNamespace(namespace)) {
                 return client.network().v1().ingresses().inNamespace(namespace).list();
@@ -3,6 +3,7 @@ package com.example.AutoDeployApp.service;
 import io.fabric8.kubernetes.api.model.PersistentVolume;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaimList;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaimListBuilder;
 import io.fabric8.kubernetes.api.model.PersistentVolumeList;
 import io.fabric8.kubernetes.api.model.storage.StorageClass;
 import io.fabric8.kubernetes.api.model.storage.StorageClassList;
@@ -12,6 +13,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class K8sStorageService {
 
@@ -27,7 +30,15 @@ public class K8sStorageService {
         return namespace != null && !namespace.trim().isEmpty();
     }
 
+    public KubernetesService.ListPage<PersistentVolumeClaim> getPersistentVolumeClaimsPage(String namespace, KubernetesService.ListQuery query) {
+        return kubernetesService.listPage(PersistentVolumeClaim.class, namespace, query);
+    }
+
     public PersistentVolumeClaimList getPersistentVolumeClaims(String namespace) {
+        List<PersistentVolumeClaim> cached = kubernetesService.listCached(PersistentVolumeClaim.class, namespace);
+        if (cached != null) {
+            return new PersistentVolumeClaimListBuilder().withItems(cached).build();
+        }
         try (KubernetesClient client = kubernetesService.getKubernetesClientForCluster()) {
             if (hasNamespace(namespace)) {
                 return client.persistentVolumeClaims().inNamespace(namespace).list();
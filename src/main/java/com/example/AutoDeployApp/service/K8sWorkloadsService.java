@@ -3,16 +3,21 @@ package com.example.AutoDeployApp.service;
 import io.fabric8.kubernetes.api.model.*;
 import io.fabric8.kubernetes.api.model.apps.Deployment;
 import io.fabric8.kubernetes.api.model.apps.DeploymentList;
+import io.fabric8.kubernetes.api.model.apps.DeploymentListBuilder;
 import io.fabric8.kubernetes.api.model.apps.ReplicaSet;
 import io.fabric8.kubernetes.api.model.apps.ReplicaSetList;
 import io.fabric8.kubernetes.api.model.apps.StatefulSet;
 import io.fabric8.kubernetes.api.model.apps.StatefulSetList;
+import io.fabric8.kubernetes.api.model.apps.StatefulSetListBuilder;
 import io.fabric8.kubernetes.api.model.apps.DaemonSet;
 import io.fabric8.kubernetes.api.model.apps.DaemonSetList;
+import io.fabric8.kubernetes.api.model.apps.DaemonSetListBuilder;
 import io.fabric8.kubernetes.api.model.batch.v1.CronJob;
 import io.fabric8.kubernetes.api.model.batch.v1.CronJobList;
+import io.fabric8.kubernetes.api.model.batch.v1.CronJobListBuilder;
 import io.fabric8.kubernetes.api.model.batch.v1.Job;
 import io.fabric8.kubernetes.api.model.batch.v1.JobList;
+import io.fabric8.kubernetes.api.model.batch.v1.JobListBuilder;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.dsl.ExecWatch;
@@ -21,8 +26,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Service chuyên xử lý các operations liên quan đến Kubernetes Workloads
@@ -55,11 +64,22 @@ public class K8sWorkloadsService {
 
     // ========== Deployments ==========
 
+    /**
+     * Lấy deployments theo trang (limit/continue, selector, tiền tố tên, sort)
+     */
+    public KubernetesService.ListPage<Deployment> getDeploymentsPage(String namespace, KubernetesService.ListQuery query) {
+        return kubernetesService.listPage(Deployment.class, namespace, query);
+    }
+
     /**
      * Lấy deployments - nếu namespace là null, trả về tất cả deployments trong
      * tất cả namespaces
      */
     public DeploymentList getDeployments(String namespace) {
+        List<Deployment> cached = kubernetesService.listCached(Deployment.class, namespace);
+        if (cached != null) {
+            return new DeploymentListBuilder().withItems(cached).build();
+        }
         try (KubernetesClient client = getKubernetesClient()) {
             if (isNamespaceNotEmpty(namespace)) {
                 return client.apps().deployments().inNamespace(namespace).list();
@@ -396,6 +416,10 @@ public class K8sWorkloadsService {
      * tất cả namespaces
      */
     public StatefulSetList getStatefulSets(String namespace) {
+        List<StatefulSet> cached = kubernetesService.listCached(StatefulSet.class, namespace);
+        if (cached != null) {
+            return new StatefulSetListBuilder().withItems(cached).build();
+        }
         try (KubernetesClient client = getKubernetesClient()) {
             if (isNamespaceNotEmpty(namespace)) {
                 return client.apps().statefulSets().inNamespace(namespace).list();
@@ -630,6 +654,10 @@ public class K8sWorkloadsService {
      * tất cả namespaces
      */
     public DaemonSetList getDaemonSets(String namespace) {
+        List<DaemonSet> cached = kubernetesService.listCached(DaemonSet.class, namespace);
+        if (cached != null) {
+            return new DaemonSetListBuilder().withItems(cached).build();
+        }
         try (KubernetesClient client = getKubernetesClient()) {
             if (isNamespaceNotEmpty(namespace)) {
                 return client.apps().daemonSets().inNamespace(namespace).list();
@@ -732,6 +760,10 @@ public class K8sWorkloadsService {
      * Lấy cronjobs - nếu namespace là null, trả về tất cả cronjobs trong tất cả namespaces
      */
     public CronJobList getCronJobs(String namespace) {
+        List<CronJob> cached = kubernetesService.listCached(CronJob.class, namespace);
+        if (cached != null) {
+            return new CronJobListBuilder().withItems(cached).build();
+        }
         try (KubernetesClient client = getKubernetesClient()) {
             if (isNamespaceNotEmpty(namespace)) {
                 return client.batch().v1().cronjobs().inNamespace(namespace).list();
@@ -936,6 +968,10 @@ public class K8sWorkloadsService {
      * Lấy jobs - nếu namespace là null, trả về tất cả jobs trong tất cả namespaces
      */
     public JobList getJobs(String namespace) {
+        List<Job> cached = kubernetesService.listCached(Job.class, namespace);
+        if (cached != null) {
+            return new JobListBuilder().withItems(cached).build();
+        }
         try (KubernetesClient client = getKubernetesClient()) {
             if (isNamespaceNotEmpty(namespace)) {
                 return client.batch().v1().jobs().inNamespace(namespace).list();
@@ -975,10 +1011,21 @@ public class K8sWorkloadsService {
 
     // ========== Pods ==========
 
+    /**
+     * Lấy pods theo trang (limit/continue, selector, tiền tố tên, sort)
+     */
+    public KubernetesService.ListPage<Pod> getPodsPage(String namespace, KubernetesService.ListQuery query) {
+        return kubernetesService.listPage(Pod.class, namespace, query);
+    }
+
     /**
      * Lấy pods - nếu namespace là null, trả về tất cả pods trong tất cả namespaces
      */
     public PodList getPods(String namespace) {
+        List<Pod> cached = kubernetesService.listCached(Pod.class, namespace);
+        if (cached != null) {
+            return new PodListBuilder().withItems(cached).build();
+        }
         try (KubernetesClient client = getKubernetesClient()) {
             if (isNamespaceNotEmpty(namespace)) {
                 return client.pods().inNamespace(namespace).list();
@@ -1070,9 +1117,17 @@ public class K8sWorkloadsService {
     }
 
     /**
-     * Exec command trong pod
+     * Kết quả exec không tương tác. exitCode null khi hết thời gian chờ (timedOut) hoặc API không trả status.
      */
-    public String execPodCommand(String namespace, String podName, String containerName, String command) {
+    public record PodExecResult(String stdout, String stderr, Integer exitCode, boolean timedOut, long durationMs) {
+    }
+
+    /**
+     * Exec command trong pod: trả về ngay khi process kết thúc, hoặc khi hết timeoutSeconds
+     * (khi đó trả output đã nhận được và timedOut = true)
+     */
+    public PodExecResult execPodCommand(String namespace, String podName, String containerName, String command,
+            int timeoutSeconds) {
         try (KubernetesClient client = getKubernetesClient()) {
             Pod pod = client.pods().inNamespace(namespace).withName(podName).get();
             if (pod == null) {
@@ -1082,32 +1137,77 @@ public class K8sWorkloadsService {
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
             ByteArrayOutputStream errorStream = new ByteArrayOutputStream();
 
-            ExecWatch execWatch = client.pods().inNamespace(namespace).withName(podName)
-                    .inContainer(containerName)
+            var podResource = client.pods().inNamespace(namespace).withName(podName);
+            var execable = containerName != null && !containerName.isEmpty()
+                    ? podResource.inContainer(containerName)
+                    : podResource;
+            long start = System.nanoTime();
+            Integer exitCode = null;
+            boolean timedOut = false;
+            try (ExecWatch execWatch = execable
                     .writingOutput(outputStream)
                     .writingError(errorStream)
-                    .exec(command.split("\\s+"));
-
-            // Đợi một chút để command thực thi
-            try {
-                Thread.sleep(2000);
+                    .exec(command.trim().split("\\s+"))) {
+                exitCode = execWatch.exitCode().get(Math.max(1, timeoutSeconds), TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                timedOut = true;
+                logger.warn("Exec in pod {}/{} timed out after {}s: {}", namespace, podName, timeoutSeconds, command);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
+                throw new RuntimeException("Exec interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                throw new RuntimeException("Failed to exec command: " + cause.getMessage(), cause);
             }
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
 
-            execWatch.close();
-
-            String output = outputStream.toString();
-            String error = errorStream.toString();
-
-            if (!error.isEmpty()) {
-                return error;
-            }
-            return output.isEmpty() ? "(Không có output)" : output;
+            return new PodExecResult(outputStream.toString(StandardCharsets.UTF_8),
+                    errorStream.toString(StandardCharsets.UTF_8), exitCode, timedOut, durationMs);
         } catch (KubernetesClientException e) {
             logger.error("Failed to exec command in pod {}/{}: {}", namespace, podName, e.getMessage(), e);
             throw new RuntimeException("Failed to exec command: " + e.getMessage(), e);
         }
     }
-}
 
+    /**
+     * Phiên exec tương tác (TTY) - giữ lease Kubernetes client tới khi đóng
+     */
+    public record InteractiveExec(ExecWatch watch, KubernetesClient client) implements AutoCloseable {
+        @Override
+        public void close() {
+            try {
+                watch.close();
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    /**
+     * Mở exec tương tác với TTY: stdin qua watch.getInput(), stdout (đã gộp stderr do TTY) qua watch.getOutput()
+     */
+    public InteractiveExec openInteractiveExec(String namespace, String podName, String containerName,
+            String[] command, int cols, int rows) {
+        KubernetesClient client = getKubernetesClient();
+        try {
+            var podResource = client.pods().inNamespace(namespace).withName(podName);
+            var execable = containerName != null && !containerName.isEmpty()
+                    ? podResource.inContainer(containerName)
+                    : podResource;
+            ExecWatch watch = execable
+                    .redirectingInput()
+                    .redirectingOutput()
+                    .redirectingError()
+                    .withTTY()
+                    .exec(command);
+            if (cols > 0 && rows > 0) {
+                watch.resize(cols, rows);
+            }
+            return new InteractiveExec(watch, client);
+        } catch (RuntimeException e) {
+            client.close();
+            logger.error("Failed to open interactive exec in pod {}/{}: {}", namespace, podName, e.getMessage());
+            throw e;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientBuilder;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
 import com.example.AutoDeployApp.entity.Server;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -132,36 +133,897 @@ public class KubernetesService {
         }
     }
 
+    // ========== Shared KubernetesClient ==========
+
+    // Thời gian tối đa dùng lại kubeconfig đã cache trước khi kéo lại từ master để so sánh
+    @Value("${k8s.client.kubeconfig-recheck-minutes:30}")
+    private long kubeconfigRecheckMinutes;
+
+    @Value("${k8s.client.pool.max-idle:10}")
+    private int clientPoolMaxIdle;
+
+    @Value("${k8s.client.pool.keep-alive-minutes:5}")
+    private long clientPoolKeepAliveMinutes;
+
+    private final Object sharedClientLock = new Object();
+    private volatile SharedClient sharedClient;
+
+    private final java.util.concurrent.atomic.AtomicLong clientLeases = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong clientRefreshes = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong kubeconfigFetches = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong clientInvalidations = new java.util.concurrent.atomic.AtomicLong();
+    private volatile String lastInvalidationReason;
+    private volatile long lastInvalidationAt;
+
+    /**
+     * Client dùng chung cho 1 master: giữ kubeconfig đã cache, connection pool
+     * và dispatcher của OkHttp để đọc metrics.
+     */
+    private static final class SharedClient {
+        final Long masterId;
+        final String masterHost;
+        final String kubeconfigHash;
+        final okhttp3.ConnectionPool connectionPool;
+        final java.util.concurrent.atomic.AtomicInteger activeLeases = new java.util.concurrent.atomic.AtomicInteger();
+        final long createdAt = System.currentTimeMillis();
+        volatile long kubeconfigCheckedAt = System.currentTimeMillis();
+        volatile okhttp3.Dispatcher dispatcher;
+        volatile KubernetesClient client;
+        volatile boolean invalidated;
+        volatile boolean retired;
+        final java.util.concurrent.atomic.AtomicBoolean closed = new java.util.concurrent.atomic.AtomicBoolean();
+
+        SharedClient(Server master, String kubeconfigHash, okhttp3.ConnectionPool connectionPool) {
+            this.masterId = master.getId();
+            this.masterHost = master.getHost();
+            this.kubeconfigHash = kubeconfigHash;
+            this.connectionPool = connectionPool;
+        }
+
+        boolean isFor(Server master) {
+            return Objects.equals(masterId, master.getId()) && Objects.equals(masterHost, master.getHost());
+        }
+    }
+
     /**
-     * Lấy Kubernetes client bằng cách kéo kubeconfig từ MASTER node online đầu tiên (có clusterStatus = "AVAILABLE") qua SSH
-     * Với 1 cluster duy nhất, luôn tìm MASTER online đầu tiên trong các server AVAILABLE
+     * Lấy Kubernetes client dùng chung cho MASTER online đầu tiên (có clusterStatus = "AVAILABLE").
+     * Kubeconfig chỉ được kéo qua SSH ở lần đầu, khi master thay đổi, khi client bị vô hiệu hóa
+     * (401 / lỗi TLS) hoặc khi tới hạn kiểm tra lại.
+     *
+     * Giá trị trả về là một "lease": gọi close() chỉ trả lease, không đóng client dùng chung,
+     * nên các chỗ gọi hiện tại với try-with-resources vẫn giữ nguyên.
      */
     private KubernetesClient getKubernetesClient() {
         try {
-            // Tìm MASTER online đầu tiên trong các server AVAILABLE
-            Server master = clusterService.getFirstHealthyMaster()
-                    .orElseThrow(() -> new RuntimeException(
-                            "Không tìm thấy MASTER node online trong cluster. " +
-                                    "Vui lòng đảm bảo có ít nhất 1 MASTER node online với clusterStatus = 'AVAILABLE'."));
+            Server master = findOnlineMaster();
 
-            // Kiểm tra master online - quan trọng vì cần SSH để lấy kubeconfig
-            if (master.getStatus() != Server.ServerStatus.ONLINE) {
-                throw new RuntimeException(
-                        "MASTER node (" + master.getHost() + ") đang offline. " +
-                                "Không thể kết nối đến Kubernetes cluster. " +
-                                "Vui lòng kiểm tra kết nối máy chủ và đảm bảo MASTER node đang hoạt động.");
+            // Client có thể bị refresh khác retire ngay giữa lúc đọc và lấy lease - khi đó lấy lại client mới
+            for (int attempt = 0; attempt < 5; attempt++) {
+                SharedClient shared = sharedClientFor(master);
+                if (tryAcquireLease(shared)) {
+                    return leaseClient(shared);
+                }
+            }
+            throw new IllegalStateException("Shared Kubernetes client kept being replaced, try again");
+
+        } catch (Exception e) {
+            logger.error("Failed to create Kubernetes client", e);
+            throw new RuntimeException("Cannot connect to Kubernetes cluster: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * MASTER online đầu tiên trong các server AVAILABLE (online là bắt buộc vì cần SSH để lấy kubeconfig)
+     */
+    private Server findOnlineMaster() {
+        Server master = clusterService.getFirstHealthyMaster()
+                .orElseThrow(() -> new RuntimeException(
+                        "Không tìm thấy MASTER node online trong cluster. " +
+                                "Vui lòng đảm bảo có ít nhất 1 MASTER node online với clusterStatus = 'AVAILABLE'."));
+        if (master.getStatus() != Server.ServerStatus.ONLINE) {
+            throw new RuntimeException(
+                    "MASTER node (" + master.getHost() + ") đang offline. " +
+                            "Không thể kết nối đến Kubernetes cluster. " +
+                            "Vui lòng kiểm tra kết nối máy chủ và đảm bảo MASTER node đang hoạt động.");
+        }
+        return master;
+    }
+
+    /**
+     * Client dùng chung hiện tại cho master (refresh nếu cần), chưa lấy lease
+     */
+    private SharedClient sharedClientFor(Server master) {
+        SharedClient shared = sharedClient;
+        if (shared == null || shared.invalidated || !shared.isFor(master) || isKubeconfigRecheckDue(shared)) {
+            shared = refreshSharedClient(master);
+        }
+        return shared;
+    }
+
+    private boolean isKubeconfigRecheckDue(SharedClient shared) {
+        return kubeconfigRecheckMinutes > 0 && System.currentTimeMillis()
+                - shared.kubeconfigCheckedAt > TimeUnit.MINUTES.toMillis(kubeconfigRecheckMinutes);
+    }
+
+    /**
+     * Tạo mới (hoặc xác nhận lại) client dùng chung. Chỉ 1 thread được kéo kubeconfig tại một thời điểm,
+     * các thread khác chờ và dùng lại kết quả.
+     */
+    private SharedClient refreshSharedClient(Server master) {
+        synchronized (sharedClientLock) {
+            SharedClient current = sharedClient;
+            boolean sameMaster = current != null && !current.invalidated && current.isFor(master);
+            if (sameMaster && !isKubeconfigRecheckDue(current)) {
+                return current; // Thread khác vừa refresh xong
             }
 
-            // Lấy kubeconfig từ master node qua SSH
             String kubeconfigContent = getKubeconfigFromMaster(master);
+            kubeconfigFetches.incrementAndGet();
+            String hash = sha256(kubeconfigContent);
+
+            if (sameMaster && hash.equals(current.kubeconfigHash)) {
+                // Kubeconfig không đổi: giữ nguyên client và connection pool
+                current.kubeconfigCheckedAt = System.currentTimeMillis();
+                return current;
+            }
 
-            // Tạo KubernetesClient từ kubeconfig
             Config config = Config.fromKubeconfig(null, kubeconfigContent, null);
-            return new KubernetesClientBuilder().withConfig(config).build();
+            okhttp3.ConnectionPool pool = new okhttp3.ConnectionPool(Math.max(1, clientPoolMaxIdle),
+                    Math.max(1, clientPoolKeepAliveMinutes), TimeUnit.MINUTES);
+            SharedClient created = new SharedClient(master, hash, pool);
+            created.client = new KubernetesClientBuilder()
+                    .withConfig(config)
+                    .withHttpClientFactory(new SharedClientHttpFactory(created))
+                    .build();
+
+            sharedClient = created;
+            clientRefreshes.incrementAndGet();
+            logger.info("[K8s Client] Created shared client for master {} (ID: {}), reason: {}", master.getHost(),
+                    master.getId(), current == null ? "first use"
+                            : current.invalidated ? "invalidated"
+                                    : !current.isFor(master) ? "master changed" : "kubeconfig changed");
 
+            if (current != null) {
+                retireSharedClient(current);
+            }
+            return created;
+        }
+    }
+
+    /**
+     * Client cũ chỉ được đóng khi không còn lease nào đang dùng
+     */
+    private void retireSharedClient(SharedClient old) {
+        old.retired = true;
+        if (old.activeLeases.get() == 0) {
+            closeQuietly(old);
+        }
+    }
+
+    /**
+     * Tăng lease rồi mới kiểm tra retired (retireSharedClient làm ngược lại: đặt retired rồi đọc lease), nên hoặc
+     * lease thấy client đã retire và trả lại, hoặc retire thấy lease > 0 và để lease cuối cùng đóng client.
+     */
+    private boolean tryAcquireLease(SharedClient shared) {
+        shared.activeLeases.incrementAndGet();
+        if (!shared.retired) {
+            return true;
+        }
+        if (shared.activeLeases.decrementAndGet() == 0) {
+            closeQuietly(shared);
+        }
+        return false;
+    }
+
+    /** Trả 1 lease; lease cuối cùng của client đã retire thì đóng client */
+    private void releaseLease(SharedClient shared) {
+        if (shared.activeLeases.decrementAndGet() == 0 && shared.retired) {
+            closeQuietly(shared);
+        }
+    }
+
+    private void closeQuietly(SharedClient shared) {
+        if (!shared.closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            KubernetesClient c = shared.client;
+            if (c != null) {
+                c.close();
+            }
         } catch (Exception e) {
-            logger.error("Failed to create Kubernetes client", e);
-            throw new RuntimeException("Cannot connect to Kubernetes cluster: " + e.getMessage(), e);
+            logger.debug("[K8s Client] Error closing retired client: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Bọc client dùng chung (đã lấy lease qua tryAcquireLease) trong proxy: close() chỉ giảm số lease đang dùng.
+     * Lỗi 401/TLS ném trực tiếp từ client cũng vô hiệu hóa client dùng chung.
+     */
+    private KubernetesClient leaseClient(SharedClient shared) {
+        clientLeases.incrementAndGet();
+        java.util.concurrent.atomic.AtomicBoolean released = new java.util.concurrent.atomic.AtomicBoolean(false);
+        return (KubernetesClient) java.lang.reflect.Proxy.newProxyInstance(
+                KubernetesClient.class.getClassLoader(),
+                new Class<?>[] { KubernetesClient.class },
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                        if (released.compareAndSet(false, true)) {
+                            releaseLease(shared);
+                        }
+                        return null;
+                    }
+                    try {
+                        return method.invoke(shared.client, args);
+                    } catch (java.lang.reflect.InvocationTargetException ite) {
+                        Throwable cause = ite.getCause();
+                        if (isAuthOrTlsFailure(cause)) {
+                            invalidateSharedClient(shared, cause.getClass().getSimpleName() + ": " + cause.getMessage());
+                        }
+                        throw cause;
+                    }
+                });
+    }
+
+    private boolean isAuthOrTlsFailure(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c instanceof javax.net.ssl.SSLException) {
+                return true;
+            }
+            if (c instanceof KubernetesClientException kce && kce.getCode() == 401) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void invalidateSharedClient(SharedClient shared, String reason) {
+        if (shared.invalidated) {
+            return;
+        }
+        shared.invalidated = true;
+        clientInvalidations.incrementAndGet();
+        lastInvalidationReason = reason;
+        lastInvalidationAt = System.currentTimeMillis();
+        logger.warn("[K8s Client] Shared client for master {} invalidated: {}", shared.masterHost, reason);
+    }
+
+    /**
+     * Vô hiệu hóa client dùng chung, lần gọi tiếp theo sẽ kéo lại kubeconfig từ master
+     */
+    public void invalidateKubernetesClient(String reason) {
+        SharedClient shared = sharedClient;
+        if (shared != null) {
+            invalidateSharedClient(shared, reason != null ? reason : "manual");
+        }
+    }
+
+    /**
+     * HTTP client factory cho client dùng chung: dùng connection pool riêng để đọc metrics
+     * và gắn interceptor phát hiện 401 / lỗi TLS để vô hiệu hóa kubeconfig đã cache.
+     */
+    private final class SharedClientHttpFactory extends io.fabric8.kubernetes.client.okhttp.OkHttpClientFactory {
+        private final SharedClient shared;
+
+        SharedClientHttpFactory(SharedClient shared) {
+            this.shared = shared;
+        }
+
+        @Override
+        protected okhttp3.Dispatcher initDispatcher() {
+            okhttp3.Dispatcher dispatcher = super.initDispatcher();
+            shared.dispatcher = dispatcher;
+            return dispatcher;
+        }
+
+        @Override
+        protected void additionalConfig(okhttp3.OkHttpClient.Builder builder) {
+            builder.connectionPool(shared.connectionPool);
+            builder.addInterceptor(chain -> {
+                try {
+                    okhttp3.Response response = chain.proceed(chain.request());
+                    if (response.code() == 401) {
+                        invalidateSharedClient(shared, "HTTP 401 from " + chain.request().url().encodedPath());
+                    }
+                    return response;
+                } catch (javax.net.ssl.SSLException e) {
+                    invalidateSharedClient(shared, "TLS error: " + e.getMessage());
+                    throw e;
+                }
+            });
+        }
+    }
+
+    /**
+     * Metrics của client dùng chung: lease, connection pool, số lần refresh/kéo kubeconfig
+     */
+    public Map<String, Object> getKubernetesClientMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        SharedClient shared = sharedClient;
+        metrics.put("initialized", shared != null);
+        metrics.put("leasesTotal", clientLeases.get());
+        metrics.put("refreshes", clientRefreshes.get());
+        metrics.put("kubeconfigFetches", kubeconfigFetches.get());
+        metrics.put("invalidations", clientInvalidations.get());
+        metrics.put("lastInvalidationReason", lastInvalidationReason);
+        metrics.put("lastInvalidationAt", lastInvalidationAt > 0 ? lastInvalidationAt : null);
+        metrics.put("kubeconfigRecheckMinutes", kubeconfigRecheckMinutes);
+
+        Map<String, Object> pool = new LinkedHashMap<>();
+        pool.put("maxIdle", clientPoolMaxIdle);
+        pool.put("keepAliveMinutes", clientPoolKeepAliveMinutes);
+        if (shared != null) {
+            metrics.put("masterId", shared.masterId);
+            metrics.put("masterHost", shared.masterHost);
+            metrics.put("createdAt", shared.createdAt);
+            metrics.put("kubeconfigCheckedAt", shared.kubeconfigCheckedAt);
+            metrics.put("invalidated", shared.invalidated);
+            metrics.put("activeLeases", shared.activeLeases.get());
+            pool.put("connections", shared.connectionPool.connectionCount());
+            pool.put("idleConnections", shared.connectionPool.idleConnectionCount());
+            okhttp3.Dispatcher dispatcher = shared.dispatcher;
+            if (dispatcher != null) {
+                pool.put("runningCalls", dispatcher.runningCallsCount());
+                pool.put("queuedCalls", dispatcher.queuedCallsCount());
+            }
+        }
+        metrics.put("pool", pool);
+        return metrics;
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void closeSharedClient() {
+        synchronized (informerLock) {
+            stopInformers();
+        }
+        synchronized (sharedClientLock) {
+            SharedClient shared = sharedClient;
+            sharedClient = null;
+            if (shared != null) {
+                closeQuietly(shared);
+            }
+        }
+    }
+
+    // ========== Cluster state cache (SharedInformer) ==========
+
+    @Value("${k8s.cache.enabled:true}")
+    private boolean clusterCacheEnabled;
+
+    @Value("${k8s.cache.resync-minutes:10}")
+    private long clusterCacheResyncMinutes;
+
+    private static final String LABEL_INDEX = "labels";
+
+    private final Object informerLock = new Object();
+    private final Map<Class<? extends HasMetadata>, SharedIndexInformer<? extends HasMetadata>> informers = new java.util.concurrent.ConcurrentHashMap<>();
+    private volatile SharedClient informerClient;
+    private volatile long informersStartedAt;
+    private volatile long clusterCacheCheckedAt;
+    private static final long CLUSTER_CACHE_RECHECK_MS = 30_000;
+    private final Map<Class<? extends HasMetadata>, List<io.fabric8.kubernetes.client.informers.ResourceEventHandler<?>>> cacheHandlers = new java.util.concurrent.ConcurrentHashMap<>();
+    private final java.util.concurrent.atomic.AtomicLong cacheHits = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong cacheMisses = new java.util.concurrent.atomic.AtomicLong();
+
+    /**
+     * Đảm bảo các informer đang chạy trên client dùng chung hiện tại.
+     * Khi client dùng chung được tạo lại (master đổi, 401/TLS...), các informer cũ bị dừng và khởi động lại.
+     * Informer giữ 1 lease của client suốt thời gian chạy: client bị retire không bị đóng dưới informer đang chạy,
+     * mà chỉ đóng khi informer đã chuyển sang client mới (stopInformers trả lease).
+     * Trả về client dùng chung, hoặc null nếu cache bị tắt / chưa kết nối được cluster.
+     */
+    private SharedClient ensureClusterCache() {
+        if (!clusterCacheEnabled) {
+            return null;
+        }
+        // Đường nhanh cho mỗi lần đọc cache: informer đang chạy trên client hiện tại thì không tra master trong DB,
+        // chỉ kiểm tra lại master / kubeconfig mỗi CLUSTER_CACHE_RECHECK_MS
+        SharedClient running = informerClient;
+        if (running != null && running == sharedClient && !running.invalidated && !running.retired
+                && System.currentTimeMillis() - clusterCacheCheckedAt < CLUSTER_CACHE_RECHECK_MS) {
+            return running;
+        }
+        SharedClient shared;
+        try {
+            shared = sharedClientFor(findOnlineMaster());
+        } catch (Exception e) {
+            return null;
+        }
+        if (shared == null || shared.invalidated) {
+            return null;
+        }
+        clusterCacheCheckedAt = System.currentTimeMillis();
+        if (informerClient != shared) {
+            synchronized (informerLock) {
+                if (informerClient != shared) {
+                    if (!tryAcquireLease(shared)) {
+                        return null; // Vừa bị retire - lần đọc sau dùng client mới
+                    }
+                    stopInformers();
+                    startInformers(shared.client);
+                    informerClient = shared;
+                    informersStartedAt = System.currentTimeMillis();
+                }
+            }
+        }
+        return shared;
+    }
+
+    private void startInformers(KubernetesClient client) {
+        long resync = TimeUnit.MINUTES.toMillis(Math.max(0, clusterCacheResyncMinutes));
+        startInformer(Pod.class, client.pods().inAnyNamespace(), resync);
+        startInformer(io.fabric8.kubernetes.api.model.apps.Deployment.class,
+                client.apps().deployments().inAnyNamespace(), resync);
+        startInformer(io.fabric8.kubernetes.api.model.apps.StatefulSet.class,
+                client.apps().statefulSets().inAnyNamespace(), resync);
+        startInformer(io.fabric8.kubernetes.api.model.apps.DaemonSet.class,
+                client.apps().daemonSets().inAnyNamespace(), resync);
+        startInformer(io.fabric8.kubernetes.api.model.batch.v1.Job.class,
+                client.batch().v1().jobs().inAnyNamespace(), resync);
+        startInformer(io.fabric8.kubernetes.api.model.batch.v1.CronJob.class,
+                client.batch().v1().cronjobs().inAnyNamespace(), resync);
+        startInformer(io.fabric8.kubernetes.api.model.Service.class, client.services().inAnyNamespace(), resync);
+        startInformer(Ingress.class, client.network().v1().ingresses().inAnyNamespace(), resync);
+        startInformer(Node.class, client.nodes(), resync);
+        startInformer(Namespace.class, client.namespaces(), resync);
+        startInformer(PersistentVolumeClaim.class, client.persistentVolumeClaims().inAnyNamespace(), resync);
+        startInformer(Event.class, client.v1().events().inAnyNamespace(), resync);
+        logger.info("[K8s Cache] Started {} informers", informers.size());
+    }
+
+    private <T extends HasMetadata> void startInformer(Class<T> type,
+            io.fabric8.kubernetes.client.dsl.Informable<T> informable, long resyncMillis) {
+        try {
+            SharedIndexInformer<T> informer = informable.runnableInformer(resyncMillis);
+            informer.addIndexers(Map.of(LABEL_INDEX, KubernetesService::labelIndexKeys));
+            for (var handler : cacheHandlers.getOrDefault(type, List.of())) {
+                @SuppressWarnings("unchecked")
+                var typed = (io.fabric8.kubernetes.client.informers.ResourceEventHandler<? super T>) handler;
+                informer.addEventHandler(typed);
+            }
+            informer.exceptionHandler((started, t) -> {
+                logger.warn("[K8s Cache] Informer {} error (started={}): {}", type.getSimpleName(), started,
+                        t.getMessage());
+                return started; // Đã chạy thì cho phép watch thử lại, chưa chạy được thì dừng (sẽ fallback API)
+            });
+            informer.start();
+            informers.put(type, informer);
+        } catch (Exception e) {
+            logger.warn("[K8s Cache] Cannot start informer for {}: {}", type.getSimpleName(), e.getMessage());
+        }
+    }
+
+    private static List<String> labelIndexKeys(HasMetadata obj) {
+        Map<String, String> labels = obj.getMetadata() != null ? obj.getMetadata().getLabels() : null;
+        if (labels == null || labels.isEmpty()) {
+            return List.of();
+        }
+        List<String> keys = new ArrayList<>(labels.size());
+        labels.forEach((k, v) -> keys.add(k + "=" + v));
+        return keys;
+    }
+
+    private void stopInformers() {
+        informers.values().forEach(informer -> {
+            try {
+                informer.stop();
+            } catch (Exception e) {
+                logger.debug("[K8s Cache] Error stopping informer: {}", e.getMessage());
+            }
+        });
+        informers.clear();
+        SharedClient previous = informerClient;
+        informerClient = null;
+        if (previous != null) {
+            releaseLease(previous);
+        }
+    }
+
+    /**
+     * Đăng ký handler nhận thay đổi (add/update/delete) của 1 loại resource từ cache informer.
+     * Handler được gắn lại tự động mỗi khi informer khởi động lại; lần khởi động nào cũng phát lại
+     * onAdd cho toàn bộ object hiện có, handler cần tự bỏ qua bản trùng.
+     * Handler tồn tại suốt vòng đời ứng dụng - nên đăng ký 1 lần rồi tự phân phối bên trong.
+     * Gọi hàm này cũng kích hoạt cache nếu chưa chạy.
+     */
+    public <T extends HasMetadata> void addClusterCacheHandler(Class<T> type,
+            io.fabric8.kubernetes.client.informers.ResourceEventHandler<? super T> handler) {
+        synchronized (informerLock) {
+            cacheHandlers.computeIfAbsent(type, k -> new java.util.concurrent.CopyOnWriteArrayList<>()).add(handler);
+            @SuppressWarnings("unchecked")
+            SharedIndexInformer<T> informer = (SharedIndexInformer<T>) informers.get(type);
+            if (informer != null) {
+                informer.addEventHandler(handler);
+            }
+        }
+        ensureClusterCache();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends HasMetadata> SharedIndexInformer<T> syncedInformer(Class<T> type) {
+        if (ensureClusterCache() == null) {
+            return null;
+        }
+        SharedIndexInformer<T> informer = (SharedIndexInformer<T>) informers.get(type);
+        if (informer == null || !informer.hasSynced()) {
+            return null;
+        }
+        return informer;
+    }
+
+    /**
+     * Đọc danh sách resource từ cache (namespace null/rỗng = tất cả namespaces).
+     * Trả về null nếu cache chưa sẵn sàng - caller phải fallback sang gọi API trực tiếp.
+     * Các object trả về là bản trong cache: chỉ đọc, không được sửa.
+     */
+    public <T extends HasMetadata> List<T> listCached(Class<T> type, String namespace) {
+        SharedIndexInformer<T> informer = syncedInformer(type);
+        if (informer == null) {
+            cacheMisses.incrementAndGet();
+            return null;
+        }
+        cacheHits.incrementAndGet();
+        if (namespace != null && !namespace.trim().isEmpty()) {
+            return informer.getIndexer().byIndex(io.fabric8.kubernetes.client.informers.cache.Cache.NAMESPACE_INDEX,
+                    namespace);
+        }
+        return informer.getStore().list();
+    }
+
+    /**
+     * Đọc resource theo label (key=value) từ index của cache, có thể giới hạn theo namespace.
+     * Trả về null nếu cache chưa sẵn sàng.
+     */
+    public <T extends HasMetadata> List<T> listCachedByLabel(Class<T> type, String namespace, String labelKey,
+            String labelValue) {
+        SharedIndexInformer<T> informer = syncedInformer(type);
+        if (informer == null) {
+            cacheMisses.incrementAndGet();
+            return null;
+        }
+        cacheHits.incrementAndGet();
+        List<T> items = informer.getIndexer().byIndex(LABEL_INDEX, labelKey + "=" + labelValue);
+        if (namespace == null || namespace.trim().isEmpty()) {
+            return items;
+        }
+        return items.stream()
+                .filter(item -> item.getMetadata() != null && namespace.equals(item.getMetadata().getNamespace()))
+                .collect(Collectors.toList());
+    }
+
+    // ========== Phân trang / lọc / sắp xếp cho các API list ==========
+
+    private static final String CACHE_CONTINUE_PREFIX = "cache:";
+
+    /**
+     * Tham số list từ query string: limit, continue, labelSelector, fieldSelector, q (tiền tố tên), sort
+     * (name | namespace | age, thêm "-" phía trước để sắp xếp giảm dần).
+     */
+    public record ListQuery(Integer limit, String continueToken, String labelSelector, String fieldSelector,
+            String namePrefix, String sort) {
+
+        public static ListQuery from(Map<String, String> params) {
+            Integer limit = null;
+            String rawLimit = params.get("limit");
+            if (rawLimit != null && !rawLimit.isBlank()) {
+                try {
+                    limit = Integer.parseInt(rawLimit.trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("limit không hợp lệ: " + rawLimit);
+                }
+                if (limit <= 0) {
+                    throw new IllegalArgumentException("limit phải lớn hơn 0");
+                }
+            }
+            return new ListQuery(limit, blankToNull(params.get("continue")), blankToNull(params.get("labelSelector")),
+                    blankToNull(params.get("fieldSelector")), blankToNull(params.get("q")),
+                    blankToNull(params.get("sort")));
+        }
+
+        /** Không có tham số nào - giữ hành vi cũ (trả toàn bộ danh sách) */
+        public boolean isEmpty() {
+            return limit == null && continueToken == null && labelSelector == null && fieldSelector == null
+                    && namePrefix == null && sort == null;
+        }
+
+        public ListQuery withFieldSelector(String extra) {
+            if (extra == null || extra.isBlank()) {
+                return this;
+            }
+            String merged = fieldSelector == null ? extra : fieldSelector + "," + extra;
+            return new ListQuery(limit, continueToken, labelSelector, merged, namePrefix, sort);
+        }
+
+        private static String blankToNull(String v) {
+            return v == null || v.isBlank() ? null : v.trim();
+        }
+    }
+
+    /**
+     * 1 trang kết quả. total chỉ có khi đọc từ cache; remaining là remainingItemCount từ API (có thể null).
+     */
+    public record ListPage<T>(List<T> items, String continueToken, Long remaining, Integer total, String source) {
+
+        public Map<String, Object> metadata() {
+            Map<String, Object> meta = new LinkedHashMap<>();
+            meta.put("continue", continueToken);
+            meta.put("remaining", remaining);
+            meta.put("total", total);
+            meta.put("source", source);
+            return meta;
+        }
+    }
+
+    /**
+     * List có phân trang/lọc/sắp xếp. Khi cache informer đã sẵn sàng, toàn bộ được xử lý trong bộ nhớ
+     * (continue token dạng "cache:{offset}"). Ngược lại map sang ListOptions của Kubernetes API
+     * (limit/continue/labelSelector/fieldSelector); tiền tố tên và sort khi đó chỉ áp dụng trong trang hiện tại.
+     */
+    public <T extends HasMetadata> ListPage<T> listPage(Class<T> type, String namespace, ListQuery query) {
+        boolean apiToken = query.continueToken() != null && !query.continueToken().startsWith(CACHE_CONTINUE_PREFIX);
+        if (!apiToken) {
+            List<T> cached = listCached(type, namespace);
+            if (cached != null) {
+                ListPage<T> page = pageFromCache(cached, query);
+                if (page != null) {
+                    return page;
+                }
+            } else if (query.continueToken() != null) {
+                throw new IllegalArgumentException("continue token đã hết hạn, vui lòng tải lại từ trang đầu");
+            }
+        }
+        return pageFromApi(type, namespace, query);
+    }
+
+    private <T extends HasMetadata> ListPage<T> pageFromCache(List<T> items, ListQuery query) {
+        java.util.function.Predicate<HasMetadata> fieldFilter = parseFieldSelector(query.fieldSelector());
+        if (fieldFilter == null) {
+            return null; // Field không hỗ trợ lọc trong bộ nhớ - để API server xử lý
+        }
+        java.util.function.Predicate<Map<String, String>> labelFilter = parseLabelSelector(query.labelSelector());
+
+        List<T> filtered = items.stream()
+                .filter(item -> item.getMetadata() != null)
+                .filter(item -> labelFilter.test(item.getMetadata().getLabels() != null
+                        ? item.getMetadata().getLabels() : Map.of()))
+                .filter(fieldFilter)
+                .filter(item -> query.namePrefix() == null
+                        || (item.getMetadata().getName() != null && item.getMetadata().getName().startsWith(query.namePrefix())))
+                .sorted(listComparator(query.sort()))
+                .collect(Collectors.toList());
+
+        int offset = 0;
+        if (query.continueToken() != null) {
+            try {
+                offset = Integer.parseInt(query.continueToken().substring(CACHE_CONTINUE_PREFIX.length()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("continue token không hợp lệ");
+            }
+        }
+        int from = Math.min(offset, filtered.size());
+        int to = query.limit() != null ? Math.min(filtered.size(), from + query.limit()) : filtered.size();
+        String next = to < filtered.size() ? CACHE_CONTINUE_PREFIX + to : null;
+        return new ListPage<>(new ArrayList<>(filtered.subList(from, to)), next, (long) (filtered.size() - to),
+                filtered.size(), "cache");
+    }
+
+    private <T extends HasMetadata> ListPage<T> pageFromApi(Class<T> type, String namespace, ListQuery query) {
+        try (KubernetesClient client = getKubernetesClient()) {
+            ListOptionsBuilder options = new ListOptionsBuilder();
+            if (query.limit() != null) {
+                options.withLimit(query.limit().longValue());
+            }
+            if (query.continueToken() != null) {
+                options.withContinue(query.continueToken());
+            }
+            if (query.labelSelector() != null) {
+                options.withLabelSelector(query.labelSelector());
+            }
+            if (query.fieldSelector() != null) {
+                options.withFieldSelector(query.fieldSelector());
+            }
+            var operation = client.resources(type);
+            KubernetesResourceList<T> list = namespace != null && !namespace.trim().isEmpty()
+                    ? operation.inNamespace(namespace).list(options.build())
+                    : operation.inAnyNamespace().list(options.build());
+
+            List<T> items = list.getItems().stream()
+                    .filter(item -> query.namePrefix() == null || (item.getMetadata() != null
+                            && item.getMetadata().getName() != null
+                            && item.getMetadata().getName().startsWith(query.namePrefix())))
+                    .sorted(listComparator(query.sort()))
+                    .collect(Collectors.toList());
+            String next = list.getMetadata() != null ? list.getMetadata().getContinue() : null;
+            Long remaining = list.getMetadata() != null ? list.getMetadata().getRemainingItemCount() : null;
+            return new ListPage<>(items, next != null && !next.isEmpty() ? next : null, remaining, null, "api");
+        }
+    }
+
+    private static Comparator<HasMetadata> listComparator(String sort) {
+        String key = sort == null ? "namespace" : sort;
+        boolean desc = key.startsWith("-");
+        if (desc) {
+            key = key.substring(1);
+        }
+        Comparator<HasMetadata> byName = Comparator.comparing(
+                (HasMetadata h) -> Objects.toString(h.getMetadata().getName(), ""));
+        Comparator<HasMetadata> comparator = switch (key) {
+            case "name" -> byName;
+            case "age", "creationTimestamp" -> Comparator.comparing(
+                    (HasMetadata h) -> Objects.toString(h.getMetadata().getCreationTimestamp(), ""))
+                    .reversed().thenComparing(byName); // age tăng dần = mới tạo trước
+            case "namespace" -> Comparator.comparing(
+                    (HasMetadata h) -> Objects.toString(h.getMetadata().getNamespace(), "")).thenComparing(byName);
+            default -> throw new IllegalArgumentException("sort không hỗ trợ: " + sort + " (name | namespace | age)");
+        };
+        return desc ? comparator.reversed() : comparator;
+    }
+
+    /**
+     * Parse label selector theo cú pháp Kubernetes: k=v, k==v, k!=v, k, !k, k in (a,b), k notin (a,b)
+     */
+    static java.util.function.Predicate<Map<String, String>> parseLabelSelector(String selector) {
+        java.util.function.Predicate<Map<String, String>> result = labels -> true;
+        if (selector == null || selector.isBlank()) {
+            return result;
+        }
+        List<String> terms = new ArrayList<>();
+        int depth = 0;
+        StringBuilder current = new StringBuilder();
+        for (char c : selector.toCharArray()) {
+            if (c == '(') depth++;
+            if (c == ')') depth--;
+            if (c == ',' && depth == 0) {
+                terms.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        terms.add(current.toString().trim());
+
+        for (String term : terms) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            java.util.function.Predicate<Map<String, String>> p;
+            java.util.regex.Matcher set = java.util.regex.Pattern
+                    .compile("^([\\w./-]+)\\s+(in|notin)\\s*\\((.*)\\)$").matcher(term);
+            if (set.matches()) {
+                String key = set.group(1);
+                Set<String> values = Arrays.stream(set.group(3).split(","))
+                        .map(String::trim).filter(v -> !v.isEmpty()).collect(Collectors.toSet());
+                p = "in".equals(set.group(2))
+                        ? labels -> values.contains(labels.get(key))
+                        : labels -> !values.contains(labels.get(key));
+            } else if (term.contains("!=")) {
+                String[] kv = term.split("!=", 2);
+                p = labels -> !kv[1].trim().equals(labels.get(kv[0].trim()));
+            } else if (term.contains("=")) {
+                String[] kv = term.split("==?", 2);
+                p = labels -> kv[1].trim().equals(labels.get(kv[0].trim()));
+            } else if (term.startsWith("!")) {
+                String key = term.substring(1).trim();
+                p = labels -> !labels.containsKey(key);
+            } else if (term.matches("[\\w./-]+")) {
+                p = labels -> labels.containsKey(term);
+            } else {
+                throw new IllegalArgumentException("labelSelector không hợp lệ: " + term);
+            }
+            result = result.and(p);
+        }
+        return result;
+    }
+
+    /**
+     * Field selector hỗ trợ lọc trong bộ nhớ: metadata.name, metadata.namespace, status.phase, spec.nodeName
+     * với =, ==, !=. Trả về null nếu có field khác (caller sẽ chuyển cho API server).
+     */
+    private static java.util.function.Predicate<HasMetadata> parseFieldSelector(String selector) {
+        java.util.function.Predicate<HasMetadata> result = item -> true;
+        if (selector == null || selector.isBlank()) {
+            return result;
+        }
+        for (String term : selector.split(",")) {
+            term = term.trim();
+            if (term.isEmpty()) {
+                continue;
+            }
+            boolean negate = term.contains("!=");
+            String[] kv = negate ? term.split("!=", 2) : term.split("==?", 2);
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("fieldSelector không hợp lệ: " + term);
+            }
+            String field = kv[0].trim();
+            String value = kv[1].trim();
+            java.util.function.Function<HasMetadata, String> getter = switch (field) {
+                case "metadata.name" -> h -> h.getMetadata().getName();
+                case "metadata.namespace" -> h -> h.getMetadata().getNamespace();
+                case "status.phase" -> h -> h instanceof Pod pod && pod.getStatus() != null
+                        ? pod.getStatus().getPhase() : null;
+                case "spec.nodeName" -> h -> h instanceof Pod pod && pod.getSpec() != null
+                        ? pod.getSpec().getNodeName() : null;
+                default -> null;
+            };
+            if (getter == null) {
+                return null;
+            }
+            java.util.function.Predicate<HasMetadata> p = h -> value.equals(Objects.toString(getter.apply(h), ""));
+            result = result.and(negate ? p.negate() : p);
+        }
+        return result;
+    }
+
+    public boolean isClusterCacheEnabled() {
+        return clusterCacheEnabled;
+    }
+
+    /**
+     * Cache sẵn sàng khi tất cả informer đã sync xong lần list đầu tiên
+     */
+    public boolean isClusterCacheReady() {
+        return clusterCacheEnabled && informerClient != null && !informers.isEmpty()
+                && informers.values().stream().allMatch(SharedIndexInformer::hasSynced);
+    }
+
+    /**
+     * Thống kê cache: trạng thái sync, số object và ước lượng bộ nhớ theo từng loại resource
+     * (ước lượng từ kích thước JSON của một mẫu object)
+     */
+    public Map<String, Object> getClusterCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", clusterCacheEnabled);
+        stats.put("ready", isClusterCacheReady());
+        stats.put("startedAt", informersStartedAt > 0 ? informersStartedAt : null);
+        stats.put("hits", cacheHits.get());
+        stats.put("misses", cacheMisses.get());
+
+        SharedClient shared = informerClient;
+        long totalBytes = 0;
+        Map<String, Object> types = new LinkedHashMap<>();
+        for (var entry : informers.entrySet()) {
+            SharedIndexInformer<? extends HasMetadata> informer = entry.getValue();
+            List<? extends HasMetadata> items = informer.getStore().list();
+            long estimatedBytes = estimateMemory(shared, items);
+            totalBytes += estimatedBytes;
+
+            Map<String, Object> t = new LinkedHashMap<>();
+            t.put("synced", informer.hasSynced());
+            t.put("watching", informer.isWatching());
+            t.put("count", items.size());
+            t.put("estimatedBytes", estimatedBytes);
+            t.put("resourceVersion", informer.lastSyncResourceVersion());
+            types.put(entry.getKey().getSimpleName(), t);
+        }
+        stats.put("estimatedTotalBytes", totalBytes);
+        stats.put("types", types);
+        return stats;
+    }
+
+    private long estimateMemory(SharedClient shared, List<? extends HasMetadata> items) {
+        if (shared == null || items.isEmpty()) {
+            return 0;
+        }
+        int sampleSize = Math.min(items.size(), 20);
+        long sampleBytes = 0;
+        try {
+            var serialization = shared.client.getKubernetesSerialization();
+            for (int i = 0; i < sampleSize; i++) {
+                sampleBytes += serialization.asJson(items.get(i * items.size() / sampleSize)).length();
+            }
+        } catch (Exception e) {
+            return -1;
+        }
+        // Object Java trên heap thường lớn hơn JSON khoảng 2-3 lần
+        return sampleBytes * items.size() / sampleSize * 2;
+    }
+
+    private static String sha256(String content) {
+        try {
+            java.security.MessageDigest md = java.security.MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(content.getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
 
@@ -466,33 +1328,22 @@ public class KubernetesService {
     }
 
     /**
-     * Chờ Deployment sẵn sàng (timeout tính bằng phút). Khi thất bại, thu thập
-     * chẩn đoán chi tiết để hỗ trợ xác định nguyên nhân.
+     * Thu thập chẩn đoán cho deployment (pods, container state, log tail)
      */
-    public void waitForDeploymentReady(String namespace, String deploymentName, long timeoutMinutes) {
-        try (KubernetesClient client = getKubernetesClient()) {
-            logger.info("Dang cho Deployment {}/{} san sang...", namespace, deploymentName);
-
-            client.apps().deployments()
-                    .inNamespace(namespace)
-                    .withName(deploymentName)
-                    .waitUntilReady(timeoutMinutes, TimeUnit.MINUTES);
-
-            logger.info("Deployment {}/{} da san sang", namespace, deploymentName);
-        } catch (Exception e) {
-            logger.error("Cho Deployment san sang that bai: {}/{}", namespace, deploymentName, e);
-
-            String diagnostics = collectDeploymentDiagnostics(namespace, deploymentName, 50);
-
-            throw new RuntimeException("Deployment chưa sẵn sàng: " + deploymentName + ". " + diagnostics, e);
+    public String collectDeploymentDiagnostics(String namespace, String deploymentName, int logLines) {
+        try (KubernetesClient diagClient = getKubernetesClient()) {
+            return collectDeploymentDiagnostics(diagClient, namespace, deploymentName, logLines);
+        } catch (Exception diagEx) {
+            return "(không thể thu thập chẩn đoán: " + diagEx.getMessage() + ")";
         }
     }
 
     /**
-     * Thu thập chẩn đoán cho deployment (pods, container state, log tail)
+     * Thu thập chẩn đoán trên client đang dùng (không mở client mới)
      */
-    public String collectDeploymentDiagnostics(String namespace, String deploymentName, int logLines) {
-        try (KubernetesClient diagClient = getKubernetesClient()) {
+    public String collectDeploymentDiagnostics(KubernetesClient diagClient, String namespace, String deploymentName,
+            int logLines) {
+        try {
             StringBuilder sb = new StringBuilder();
             sb.append("Chẩn đoán cho ")
                     .append(namespace).append("/").append(deploymentName).append(": ");
@@ -805,7 +1656,8 @@ public class KubernetesService {
     }
 
     /**
-     * Lấy KubernetesClient cho cluster (method public để tái sử dụng)
+     * Lấy KubernetesClient cho cluster (method public để tái sử dụng).
+     * Trả về lease của client dùng chung - vẫn nên dùng với try-with-resources.
      * 
      * @return KubernetesClient
      */
@@ -878,6 +1730,11 @@ public class KubernetesService {
      * Trả về null nếu kubelet chưa loaded hoặc không thể kết nối
      */
     public NodeList getNodes() {
+        // Cache informer đã sync: không cần SSH kiểm tra kubelet và list lại từ API
+        List<Node> cachedNodes = listCached(Node.class, null);
+        if (cachedNodes != null) {
+            return new NodeListBuilder().withItems(cachedNodes).build();
+        }
         try {
             logger.info("[K8s Service] getNodes() - Tim MASTER online...");
             System.out.println("[K8s Service] getNodes() - Tim MASTER online...");
@@ -1209,32 +2066,20 @@ public class KubernetesService {
      * Trả về danh sách PodMetrics hoặc empty list nếu không có hoặc metrics-server chưa cài đặt
      */
     public java.util.List<io.fabric8.kubernetes.api.model.metrics.v1beta1.PodMetrics> getPodMetrics(String namespace) {
+        if (namespace == null || namespace.trim().isEmpty()) {
+            // Tất cả namespaces: 1 request duy nhất, dùng chung kết quả đã memoize
+            java.util.List<io.fabric8.kubernetes.api.model.metrics.v1beta1.PodMetrics> all = new java.util.ArrayList<>();
+            getPodMetricsByNamespace().values().forEach(all::addAll);
+            return all;
+        }
+        // Nếu đã có snapshot toàn cluster còn hạn thì dùng luôn, không gọi thêm request
+        PodMetricsSnapshot snapshot = podMetricsSnapshot;
+        if (snapshot != null && snapshot.isFresh(podMetricsTtlMillis())) {
+            return snapshot.byNamespace().getOrDefault(namespace, java.util.List.of());
+        }
         try (KubernetesClient client = getKubernetesClient()) {
             try {
-                if (namespace != null && !namespace.trim().isEmpty()) {
-                    return client.top().pods().inNamespace(namespace).metrics().getItems();
-                } else {
-                    // Lấy tất cả pod metrics từ tất cả namespaces
-                    // Fabric8 không có inAnyNamespace() cho metrics, cần lấy từng namespace
-                    java.util.List<io.fabric8.kubernetes.api.model.metrics.v1beta1.PodMetrics> allMetrics = new java.util.ArrayList<>();
-                    var namespaces = getNamespaces();
-                    if (namespaces != null && namespaces.getItems() != null) {
-                        for (var ns : namespaces.getItems()) {
-                            String nsName = ns.getMetadata() != null ? ns.getMetadata().getName() : null;
-                            if (nsName != null && !nsName.isEmpty()) {
-                                try {
-                                    var nsMetrics = client.top().pods().inNamespace(nsName).metrics().getItems();
-                                    if (nsMetrics != null) {
-                                        allMetrics.addAll(nsMetrics);
-                                    }
-                                } catch (Exception e) {
-                                    logger.debug("Khong the lay pod metrics cho namespace {}: {}", nsName, e.getMessage());
-                                }
-                            }
-                        }
-                    }
-                    return allMetrics;
-                }
+                return client.top().pods().inNamespace(namespace).metrics().getItems();
             } catch (KubernetesClientException e) {
                 // Metrics API có thể không available nếu metrics-server chưa cài đặt
                 if (e.getCode() == 404 || e.getCode() == 503) {
@@ -1250,6 +2095,96 @@ public class KubernetesService {
         }
     }
 
+    // ========== Pod metrics toàn cluster (memoized) ==========
+
+    @Value("${k8s.metrics.pod-cache-ttl-seconds:10}")
+    private long podMetricsTtlSeconds;
+
+    private static final String ALL_POD_METRICS_PATH = "/apis/metrics.k8s.io/v1beta1/pods";
+
+    private record PodMetricsSnapshot(
+            Map<String, java.util.List<io.fabric8.kubernetes.api.model.metrics.v1beta1.PodMetrics>> byNamespace,
+            long fetchedAt) {
+        boolean isFresh(long ttlMillis) {
+            return System.currentTimeMillis() - fetchedAt < ttlMillis;
+        }
+    }
+
+    private volatile PodMetricsSnapshot podMetricsSnapshot;
+    private final Object podMetricsLock = new Object();
+    private java.util.concurrent.CompletableFuture<PodMetricsSnapshot> podMetricsInFlight;
+
+    private long podMetricsTtlMillis() {
+        return TimeUnit.SECONDS.toMillis(Math.max(0, podMetricsTtlSeconds));
+    }
+
+    /**
+     * Pod metrics của tất cả namespaces, đã group theo namespace.
+     * Chỉ 1 request tới /apis/metrics.k8s.io/v1beta1/pods cho cả cluster; kết quả được memoize
+     * trong k8s.metrics.pod-cache-ttl-seconds và các request đồng thời dùng chung 1 lần fetch.
+     * Trả về map rỗng nếu metrics-server chưa cài đặt hoặc không kết nối được.
+     */
+    public Map<String, java.util.List<io.fabric8.kubernetes.api.model.metrics.v1beta1.PodMetrics>> getPodMetricsByNamespace() {
+        PodMetricsSnapshot snapshot = podMetricsSnapshot;
+        if (snapshot != null && snapshot.isFresh(podMetricsTtlMillis())) {
+            return snapshot.byNamespace();
+        }
+
+        java.util.concurrent.CompletableFuture<PodMetricsSnapshot> future;
+        boolean owner = false;
+        synchronized (podMetricsLock) {
+            snapshot = podMetricsSnapshot;
+            if (snapshot != null && snapshot.isFresh(podMetricsTtlMillis())) {
+                return snapshot.byNamespace();
+            }
+            if (podMetricsInFlight == null) {
+                podMetricsInFlight = new java.util.concurrent.CompletableFuture<>();
+                owner = true;
+            }
+            future = podMetricsInFlight;
+        }
+
+        if (owner) {
+            PodMetricsSnapshot fetched = new PodMetricsSnapshot(Map.of(), System.currentTimeMillis());
+            try {
+                fetched = new PodMetricsSnapshot(fetchAllPodMetricsGrouped(), System.currentTimeMillis());
+                return fetched.byNamespace();
+            } finally {
+                synchronized (podMetricsLock) {
+                    podMetricsSnapshot = fetched;
+                    podMetricsInFlight = null;
+                }
+                future.complete(fetched);
+            }
+        }
+        return future.join().byNamespace();
+    }
+
+    private Map<String, java.util.List<io.fabric8.kubernetes.api.model.metrics.v1beta1.PodMetrics>> fetchAllPodMetricsGrouped() {
+        try (KubernetesClient client = getKubernetesClient()) {
+            String json = client.raw(ALL_POD_METRICS_PATH);
+            if (json == null || json.isBlank()) {
+                logger.debug("Metrics API khong available (metrics-server co the chua cai dat)");
+                return Map.of();
+            }
+            var list = client.getKubernetesSerialization().unmarshal(json,
+                    io.fabric8.kubernetes.api.model.metrics.v1beta1.PodMetricsList.class);
+            Map<String, java.util.List<io.fabric8.kubernetes.api.model.metrics.v1beta1.PodMetrics>> grouped = new HashMap<>();
+            if (list != null && list.getItems() != null) {
+                for (var pm : list.getItems()) {
+                    String ns = pm.getMetadata() != null ? pm.getMetadata().getNamespace() : null;
+                    if (ns != null) {
+                        grouped.computeIfAbsent(ns, k -> new java.util.ArrayList<>()).add(pm);
+                    }
+                }
+            }
+            return grouped;
+        } catch (Exception e) {
+            logger.debug("Khong the lay pod metrics toan cluster tu Metrics API: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
     /**
      * Tính tổng CPU và RAM usage cho namespace từ pod metrics
      * Trả về Map với keys: "cpu" (cores), "ram" (bytes)
@@ -1629,6 +2564,10 @@ public class KubernetesService {
      * Lấy tất cả các namespace
      */
     public NamespaceList getNamespaces() {
+        List<Namespace> cached = listCached(Namespace.class, null);
+        if (cached != null) {
+            return new NamespaceListBuilder().withItems(cached).build();
+        }
         try (KubernetesClient client = getKubernetesClient()) {
             return client.namespaces().list();
         } catch (KubernetesClientException e) {
@@ -1637,6 +2576,26 @@ public class KubernetesService {
         }
     }
 
+    /**
+     * Lấy events - nếu namespace là null, trả về events của tất cả namespaces.
+     * Đọc từ cache informer nếu đã sẵn sàng.
+     */
+    public EventList getEvents(String namespace) {
+        List<Event> cached = listCached(Event.class, namespace);
+        if (cached != null) {
+            return new EventListBuilder().withItems(cached).build();
+        }
+        try (KubernetesClient client = getKubernetesClient()) {
+            if (namespace != null && !namespace.trim().isEmpty()) {
+                return client.v1().events().inNamespace(namespace).list();
+            }
+            return client.v1().events().inAnyNamespace().list();
+        } catch (KubernetesClientException e) {
+            logger.error("Failed to get events for namespace {}: {}", namespace, e.getMessage(), e);
+            throw e;
+        }
+    }
+
     /**
      * Lấy namespace cụ thể theo tên
      */
@@ -0,0 +1,423 @@
+package com.example.AutoDeployApp.service;
+
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.metrics.v1beta1.ContainerMetrics;
+import io.fabric8.kubernetes.api.model.metrics.v1beta1.NodeMetrics;
+import io.fabric8.kubernetes.api.model.metrics.v1beta1.PodMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lưu lịch sử CPU/RAM của cluster, node, namespace và pod trong bộ nhớ (không cần Prometheus).
+ *
+ * Sampler nền đọc Metrics API mỗi k8s.metrics.history.interval-seconds, mỗi series giữ 4 ring buffer
+ * kiểu primitive: raw (mỗi lần sample, 1 giờ), 1m (24 giờ), 5m (7 ngày) và 1h (30 ngày).
+ * Bộ nhớ cố định theo số series tối đa (k8s.metrics.history.max-series).
+ *
+ * Target: "cluster", "node:{name}", "namespace:{ns}", "pod:{ns}/{name}".
+ */
+@Service
+public class MetricsHistoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsHistoryService.class);
+
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+
+    private final KubernetesService kubernetesService;
+    private final ClusterService clusterService;
+
+    @Value("${k8s.metrics.history.enabled:true}")
+    private boolean enabled;
+
+    @Value("${k8s.metrics.history.interval-seconds:15}")
+    private int intervalSeconds;
+
+    @Value("${k8s.metrics.history.max-series:300}")
+    private int maxSeries;
+
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong failedSamples = new AtomicLong();
+    private final AtomicLong rejectedSeries = new AtomicLong();
+    private volatile long lastSampleAt;
+    private volatile long lastSampleDurationMs;
+
+    private ScheduledExecutorService scheduler;
+
+    public MetricsHistoryService(KubernetesService kubernetesService, ClusterService clusterService) {
+        this.kubernetesService = kubernetesService;
+        this.clusterService = clusterService;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.info("[MetricsHistory] Disabled");
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-history-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        int interval = Math.max(5, intervalSeconds);
+        // Fixed rate, bắt đầu tại mốc chia hết cho interval: sample rơi đúng vào từng bucket, không trôi dần
+        // theo thời gian chạy của mỗi lần sample
+        long intervalMs = intervalMillis();
+        long initialDelay = intervalMs - System.currentTimeMillis() % intervalMs;
+        scheduler.scheduleAtFixedRate(this::sampleSafely, initialDelay, intervalMs, TimeUnit.MILLISECONDS);
+        logger.info("[MetricsHistory] Sampler started, interval={}s, maxSeries={}", interval, maxSeries);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    // ========== Sampling ==========
+
+    private void sampleSafely() {
+        try {
+            // Không có MASTER thì bỏ qua, tránh log lỗi kết nối mỗi chu kỳ
+            if (clusterService.getFirstHealthyMaster().isEmpty()) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            // Timestamp làm tròn xuống mốc interval (bù độ trễ lập lịch), mỗi bucket raw nhận đúng 1 sample
+            sample(start - start % intervalMillis());
+            lastSampleAt = start;
+            lastSampleDurationMs = System.currentTimeMillis() - start;
+            samples.incrementAndGet();
+        } catch (Exception e) {
+            failedSamples.incrementAndGet();
+            logger.debug("[MetricsHistory] Sample failed: {}", e.getMessage());
+        }
+    }
+
+    private void sample(long now) {
+        double clusterCpu = 0;
+        double clusterMem = 0;
+        List<NodeMetrics> nodeMetrics = kubernetesService.getNodeMetrics();
+        if (nodeMetrics != null) {
+            for (NodeMetrics nm : nodeMetrics) {
+                if (nm.getMetadata() == null || nm.getUsage() == null) {
+                    continue;
+                }
+                double cpu = cores(nm.getUsage().get("cpu"));
+                double mem = bytes(nm.getUsage().get("memory"));
+                clusterCpu += cpu;
+                clusterMem += mem;
+                record("node:" + nm.getMetadata().getName(), now, cpu, mem);
+            }
+            if (!nodeMetrics.isEmpty()) {
+                record("cluster", now, clusterCpu, clusterMem);
+            }
+        }
+
+        Map<String, List<PodMetrics>> podMetrics = kubernetesService.getPodMetricsByNamespace();
+        // Namespace trước, pod sau: khi hết ngân sách series thì pod bị bỏ trước
+        List<String[]> podKeys = new ArrayList<>();
+        List<double[]> podValues = new ArrayList<>();
+        for (var entry : podMetrics.entrySet()) {
+            double nsCpu = 0;
+            double nsMem = 0;
+            for (PodMetrics pm : entry.getValue()) {
+                double cpu = 0;
+                double mem = 0;
+                if (pm.getContainers() != null) {
+                    for (ContainerMetrics cm : pm.getContainers()) {
+                        if (cm.getUsage() != null) {
+                            cpu += cores(cm.getUsage().get("cpu"));
+                            mem += bytes(cm.getUsage().get("memory"));
+                        }
+                    }
+                }
+                nsCpu += cpu;
+                nsMem += mem;
+                podKeys.add(new String[] { entry.getKey(), pm.getMetadata().getName() });
+                podValues.add(new double[] { cpu, mem });
+            }
+            record("namespace:" + entry.getKey(), now, nsCpu, nsMem);
+        }
+        for (int i = 0; i < podKeys.size(); i++) {
+            String[] k = podKeys.get(i);
+            record("pod:" + k[0] + "/" + k[1], now, podValues.get(i)[0], podValues.get(i)[1]);
+        }
+
+        pruneStaleSeries(now);
+    }
+
+    private void record(String target, long now, double cpu, double mem) {
+        Series s = series.computeIfAbsent(target,
+                k -> series.size() >= Math.max(1, maxSeries) ? null : new Series(intervalMillis()));
+        if (s == null) {
+            rejectedSeries.incrementAndGet();
+            return;
+        }
+        s.add(now, (float) cpu, (float) mem);
+    }
+
+    /**
+     * Series không nhận sample mới trong 1 giờ (pod đã xóa, node đã rời cluster) được giải phóng
+     */
+    private void pruneStaleSeries(long now) {
+        series.entrySet().removeIf(e -> !"cluster".equals(e.getKey()) && now - e.getValue().lastSampleAt > HOUR);
+    }
+
+    private long intervalMillis() {
+        return TimeUnit.SECONDS.toMillis(Math.max(5, intervalSeconds));
+    }
+
+    private static double cores(Quantity q) {
+        if (q == null) {
+            return 0;
+        }
+        try {
+            return q.getNumericalAmount().doubleValue();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private static double bytes(Quantity q) {
+        return cores(q); // getNumericalAmount quy đổi theo suffix (m, k, Ki, Mi, ...), dùng chung cho CPU và RAM
+    }
+
+    // ========== Query ==========
+
+    /**
+     * Truy vấn lịch sử cho target trong khoảng [from, to] (epoch millis).
+     * stepSeconds <= 0: dùng step của tầng lưu trữ phù hợp nhất.
+     */
+    public Map<String, Object> queryRange(String target, long from, long to, long stepSeconds) {
+        Series s = series.get(target);
+        if (s == null) {
+            throw new IllegalArgumentException("Không có dữ liệu cho target: " + target);
+        }
+        if (to <= from) {
+            throw new IllegalArgumentException("Tham số 'to' phải lớn hơn 'from'");
+        }
+        long requestedStep = stepSeconds > 0 ? TimeUnit.SECONDS.toMillis(stepSeconds) : 0;
+        long now = System.currentTimeMillis();
+
+        Ring tier;
+        List<Sample> raw;
+        synchronized (s) {
+            tier = s.pickTier(now - from, requestedStep);
+            raw = tier.read(from, to);
+        }
+        long step = Math.max(requestedStep, tier.stepMillis);
+
+        List<Map<String, Object>> points = new ArrayList<>();
+        if (step == tier.stepMillis) {
+            for (Sample p : raw) {
+                points.add(point(p.t(), p.cpu(), p.mem()));
+            }
+        } else {
+            // Gộp lại theo step yêu cầu (trung bình)
+            long bucket = -1;
+            double cpuSum = 0;
+            double memSum = 0;
+            int count = 0;
+            for (Sample p : raw) {
+                long b = p.t() - (p.t() % step);
+                if (b != bucket && count > 0) {
+                    points.add(point(bucket, cpuSum / count, memSum / count));
+                    cpuSum = 0;
+                    memSum = 0;
+                    count = 0;
+                }
+                bucket = b;
+                cpuSum += p.cpu();
+                memSum += p.mem();
+                count++;
+            }
+            if (count > 0) {
+                points.add(point(bucket, cpuSum / count, memSum / count));
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("target", target);
+        result.put("from", from);
+        result.put("to", to);
+        result.put("stepSeconds", step / 1000);
+        result.put("tier", tier.name);
+        result.put("points", points);
+        return result;
+    }
+
+    private static Map<String, Object> point(long t, double cpu, double mem) {
+        Map<String, Object> p = new LinkedHashMap<>();
+        p.put("t", t);
+        p.put("cpuCores", cpu);
+        p.put("memoryBytes", mem);
+        return p;
+    }
+
+    /**
+     * Danh sách target đang có dữ liệu và thống kê bộ nhớ của store
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("intervalSeconds", Math.max(5, intervalSeconds));
+        stats.put("maxSeries", maxSeries);
+        stats.put("seriesCount", series.size());
+        stats.put("bytesPerSeries", Series.bytes(intervalMillis()));
+        stats.put("estimatedBytes", (long) series.size() * Series.bytes(intervalMillis()));
+        stats.put("budgetBytes", (long) maxSeries * Series.bytes(intervalMillis()));
+        stats.put("samples", samples.get());
+        stats.put("failedSamples", failedSamples.get());
+        stats.put("rejectedSeries", rejectedSeries.get());
+        stats.put("lastSampleAt", lastSampleAt > 0 ? lastSampleAt : null);
+        stats.put("lastSampleDurationMs", lastSampleDurationMs);
+        List<String> targets = new ArrayList<>(series.keySet());
+        Collections.sort(targets);
+        stats.put("targets", targets);
+        return stats;
+    }
+
+    // ========== Storage ==========
+
+    /**
+     * 1 series = 4 tầng ring buffer. Mỗi tầng gom sample vào bucket theo step và ghi giá trị trung bình.
+     */
+    private record Sample(long t, float cpu, float mem) {
+    }
+
+    private static final class Series {
+        final Ring[] tiers;
+        volatile long lastSampleAt;
+
+        Series(long intervalMillis) {
+            this.tiers = new Ring[] {
+                    new Ring("raw", intervalMillis, (int) (HOUR / intervalMillis)),
+                    new Ring("1m", MINUTE, 24 * 60),
+                    new Ring("5m", 5 * MINUTE, 7 * 24 * 12),
+                    new Ring("1h", HOUR, 30 * 24)
+            };
+        }
+
+        synchronized void add(long t, float cpu, float mem) {
+            for (Ring r : tiers) {
+                r.add(t, cpu, mem);
+            }
+            lastSampleAt = t;
+        }
+
+        /**
+         * Chọn tầng mịn nhất còn bao phủ được khoảng thời gian và có step không lớn hơn step yêu cầu
+         */
+        Ring pickTier(long ageMillis, long requestedStep) {
+            Ring chosen = tiers[tiers.length - 1];
+            for (Ring r : tiers) {
+                if (r.retentionMillis() >= ageMillis) {
+                    chosen = r;
+                    break;
+                }
+            }
+            if (requestedStep > 0) {
+                for (Ring r : tiers) {
+                    if (r.stepMillis <= requestedStep && r.retentionMillis() >= ageMillis
+                            && r.stepMillis > chosen.stepMillis) {
+                        chosen = r;
+                    }
+                }
+            }
+            return chosen;
+        }
+
+        static long bytes(long intervalMillis) {
+            long slots = HOUR / intervalMillis + 24 * 60 + 7 * 24 * 12 + 30 * 24;
+            return slots * (Long.BYTES + 2 * Float.BYTES);
+        }
+    }
+
+    private static final class Ring {
+        final String name;
+        final long stepMillis;
+        final long[] ts;
+        final float[] cpu;
+        final float[] mem;
+        int head; // vị trí ghi tiếp theo
+        int size;
+
+        // Bucket đang gom
+        long bucketStart = -1;
+        double cpuSum;
+        double memSum;
+        int count;
+
+        Ring(String name, long stepMillis, int capacity) {
+            this.name = name;
+            this.stepMillis = stepMillis;
+            this.ts = new long[capacity];
+            this.cpu = new float[capacity];
+            this.mem = new float[capacity];
+        }
+
+        long retentionMillis() {
+            return stepMillis * ts.length;
+        }
+
+        void add(long t, float c, float m) {
+            long b = t - (t % stepMillis);
+            if (bucketStart != -1 && b != bucketStart) {
+                flush();
+            }
+            bucketStart = b;
+            cpuSum += c;
+            memSum += m;
+            count++;
+        }
+
+        private void flush() {
+            if (count == 0) {
+                return;
+            }
+            ts[head] = bucketStart;
+            cpu[head] = (float) (cpuSum / count);
+            mem[head] = (float) (memSum / count);
+            head = (head + 1) % ts.length;
+            if (size < ts.length) {
+                size++;
+            }
+            cpuSum = 0;
+            memSum = 0;
+            count = 0;
+        }
+
+        /**
+         * Đọc các điểm trong khoảng [from, to], kể cả bucket đang gom dở.
+         */
+        List<Sample> read(long from, long to) {
+            List<Sample> out = new ArrayList<>();
+            int start = (head - size + ts.length) % ts.length;
+            for (int i = 0; i < size; i++) {
+                int idx = (start + i) % ts.length;
+                if (ts[idx] >= from && ts[idx] <= to) {
+                    out.add(new Sample(ts[idx], cpu[idx], mem[idx]));
+                }
+            }
+            if (count > 0 && bucketStart >= from && bucketStart <= to) {
+                out.add(new Sample(bucketStart, (float) (cpuSum / count), (float) (memSum / count)));
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.AutoDeployApp.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Thông tin năng lực của 1 server/user thu được từ 1 lần probe SSH: sudo NOPASSWD, hệ điều hành,
+ * trình quản lý gói và các thành phần đã cài (ansible, kubelet, kubectl, container runtime).
+ * ansibleVersion / containerRuntime = null nếu chưa cài.
+ */
+public record ServerCapabilities(String host, int port, String username, boolean sudoNopasswd, String osId,
+        String osFamily, String osVersion, String arch, String packageManager, String ansibleVersion,
+        boolean kubeletInstalled, boolean kubectlInstalled, String containerRuntime, long probedAt) {
+
+    /**
+     * Lệnh probe: 1 lần exec, in các dòng key=value. sudo -n true chính xác hơn grep NOPASSWD trong sudo -l
+     * (chỉ true khi thật sự chạy được sudo không cần mật khẩu).
+     */
+    static final String PROBE_COMMAND = "if sudo -n true 2>/dev/null; then echo sudo_nopasswd=yes; else echo sudo_nopasswd=no; fi; "
+            + "if [ -r /etc/os-release ]; then . /etc/os-release; echo \"os_id=$ID\"; echo \"os_like=$ID_LIKE\"; "
+            + "echo \"os_version=$VERSION_ID\"; fi; "
+            + "echo \"arch=$(uname -m)\"; "
+            + "for pm in apt-get dnf yum zypper apk pacman; do if command -v $pm >/dev/null 2>&1; then echo \"pkg=$pm\"; break; fi; done; "
+            + "echo \"ansible=$(ansible --version 2>/dev/null | head -n 1)\"; "
+            + "if command -v kubelet >/dev/null 2>&1; then echo kubelet=yes; fi; "
+            + "if command -v kubectl >/dev/null 2>&1; then echo kubectl=yes; fi; "
+            + "for rt in containerd docker crio; do if command -v $rt >/dev/null 2>&1; then echo \"runtime=$rt\"; break; fi; done; "
+            + "echo probe=done";
+
+    public boolean ansibleInstalled() {
+        return ansibleVersion != null;
+    }
+
+    /**
+     * Parse output của PROBE_COMMAND; null nếu output không hoàn chỉnh (probe lỗi / bị cắt)
+     */
+    static ServerCapabilities parse(String host, int port, String username, String output) {
+        if (output == null || !output.contains("probe=done")) {
+            return null;
+        }
+        Map<String, String> values = new HashMap<>();
+        for (String line : output.split("\n")) {
+            int eq = line.indexOf('=');
+            if (eq > 0) {
+                values.putIfAbsent(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+            }
+        }
+        String osId = blankToNull(values.get("os_id"));
+        return new ServerCapabilities(host, port, username,
+                "yes".equals(values.get("sudo_nopasswd")),
+                osId,
+                osFamily(osId, values.get("os_like")),
+                blankToNull(values.get("os_version")),
+                blankToNull(values.get("arch")),
+                blankToNull(values.get("pkg")),
+                blankToNull(values.get("ansible")),
+                "yes".equals(values.get("kubelet")),
+                "yes".equals(values.get("kubectl")),
+                blankToNull(values.get("runtime")),
+                System.currentTimeMillis());
+    }
+
+    private static String osFamily(String id, String like) {
+        String all = ((id != null ? id : "") + " " + (like != null ? like : "")).toLowerCase();
+        if (all.contains("debian") || all.contains("ubuntu")) {
+            return "debian";
+        }
+        if (all.contains("rhel") || all.contains("fedora") || all.contains("centos")) {
+            return "rhel";
+        }
+        if (all.contains("suse")) {
+            return "suse";
+        }
+        if (all.contains("alpine")) {
+            return "alpine";
+        }
+        if (all.contains("arch")) {
+            return "arch";
+        }
+        return id;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
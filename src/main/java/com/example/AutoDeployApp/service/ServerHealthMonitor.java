@@ -0,0 +1,404 @@
+package com.example.AutoDeployApp.service;
+
+import com.example.AutoDeployApp.entity.Server;
+import com.example.AutoDeployApp.repository.ServerRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Theo dõi ONLINE/OFFLINE của server ở nền bằng TcpReachabilityProber.
+ *
+ * Mỗi server có chu kỳ riêng: sau khi đổi trạng thái (hoặc lần ping lỗi đầu tiên của server đang ONLINE) chu kỳ
+ * về min-interval, mỗi lần ổn định nhân đôi tới max-interval; thời điểm ping cộng jitter ngẫu nhiên để các
+ * server không dồn vào cùng 1 lúc. Server ONLINE chỉ bị coi là OFFLINE sau failure-threshold lần lỗi liên tiếp.
+ * Chỉ các lần chuyển trạng thái được ghi DB (gộp 1 transaction mỗi tick) và đẩy tới subscriber qua SSE.
+ * DISABLED không được ping. Danh sách server được đọc lại từ DB mỗi refresh-seconds.
+ */
+@Service
+public class ServerHealthMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServerHealthMonitor.class);
+
+    private final ServerRepository serverRepository;
+    private final TcpReachabilityProber tcpReachabilityProber;
+
+    @Value("${health-monitor.enabled:true}")
+    private boolean enabled;
+
+    @Value("${health-monitor.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${health-monitor.min-interval-seconds:5}")
+    private int minIntervalSeconds;
+
+    @Value("${health-monitor.max-interval-seconds:60}")
+    private int maxIntervalSeconds;
+
+    @Value("${health-monitor.jitter-ratio:0.2}")
+    private double jitterRatio;
+
+    @Value("${health-monitor.probe-timeout-ms:2000}")
+    private int probeTimeoutMs;
+
+    @Value("${health-monitor.failure-threshold:2}")
+    private int failureThreshold;
+
+    @Value("${health-monitor.refresh-seconds:30}")
+    private int refreshSeconds;
+
+    @Value("${health-monitor.stream-timeout-minutes:30}")
+    private long streamTimeoutMinutes;
+
+    private final Map<Long, Health> states = new ConcurrentHashMap<>();
+    private final Queue<TcpReachabilityProber.ProbeResult> results = new ConcurrentLinkedQueue<>();
+    private final Queue<Long> forced = new ConcurrentLinkedQueue<>();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicLong probes = new AtomicLong();
+    private final AtomicLong transitions = new AtomicLong();
+    private volatile long lastRefreshAt;
+    private volatile boolean refreshRequested;
+
+    private ScheduledExecutorService scheduler;
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "server-health-push");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ServerHealthMonitor(ServerRepository serverRepository, TcpReachabilityProber tcpReachabilityProber) {
+        this.serverRepository = serverRepository;
+        this.tcpReachabilityProber = tcpReachabilityProber;
+    }
+
+    /**
+     * Trạng thái đã biết của 1 server. rttMs = -1 nếu lần ping gần nhất lỗi hoặc chưa ping.
+     */
+    public record HealthView(Long id, String host, int port, String status, long rttMs, String error,
+            long lastCheckedAt, long lastChangeAt, long intervalMs) {
+    }
+
+    private static final class Health {
+        final Long id;
+        volatile String host;
+        volatile int port;
+        volatile Server.ServerStatus status;
+        volatile long rttMs = -1;
+        volatile String error;
+        volatile long lastCheckedAt;
+        volatile long lastChangeAt;
+        volatile long intervalMs;
+        // Chỉ scheduler thread đọc/ghi
+        int consecutiveFailures;
+        long nextDueAt;
+        boolean probing;
+
+        Health(Long id) {
+            this.id = id;
+        }
+
+        HealthView view() {
+            return new HealthView(id, host, port, status.name(), rttMs, error, lastCheckedAt, lastChangeAt,
+                    intervalMs);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.info("[HealthMonitor] Disabled");
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "server-health-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        long tick = Math.max(200, tickMs);
+        scheduler.scheduleWithFixedDelay(this::tickSafely, tick, tick, TimeUnit.MILLISECONDS);
+        logger.info("[HealthMonitor] Started, interval={}..{}s, jitter={}, failureThreshold={}",
+                minIntervalMs() / 1000, maxIntervalMs() / 1000, jitterRatio, failureThreshold);
+    }
+
+    public boolean isEnabled() {
+        return enabled && scheduler != null;
+    }
+
+    /** Trạng thái hiện tại của các server (không ping) */
+    public List<HealthView> snapshot() {
+        return states.values().stream()
+                .map(Health::view)
+                .sorted(Comparator.comparing(HealthView::id))
+                .toList();
+    }
+
+    public HealthView get(Long serverId) {
+        Health h = serverId != null ? states.get(serverId) : null;
+        return h != null ? h.view() : null;
+    }
+
+    /**
+     * Ping các server này ở tick kế tiếp (bỏ qua chu kỳ), đồng thời đọc lại danh sách server từ DB
+     * để nhận server mới / đổi host / bị disable.
+     */
+    public void probeNow(Collection<Long> serverIds) {
+        forced.addAll(serverIds);
+        refreshRequested = true;
+    }
+
+    /**
+     * Đăng ký nhận thay đổi: event "snapshot" (toàn bộ trạng thái hiện tại) rồi "transition" mỗi khi
+     * 1 server đổi trạng thái.
+     */
+    public SseEmitter subscribe(java.util.function.Predicate<Long> serverFilter) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(streamTimeoutMinutes));
+        Subscriber subscriber = new Subscriber(emitter, serverFilter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        dispatcher.execute(() -> {
+            try {
+                List<HealthView> views = snapshot().stream().filter(v -> serverFilter.test(v.id())).toList();
+                emitter.send(SseEmitter.event().name("snapshot").data(Map.of("servers", views)));
+                subscribers.add(subscriber);
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    // filter: chỉ nhận server của user đang xem
+    private record Subscriber(SseEmitter emitter, java.util.function.Predicate<Long> filter) {
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("servers", states.size());
+        stats.put("probes", probes.get());
+        stats.put("transitions", transitions.get());
+        stats.put("subscribers", subscribers.size());
+        stats.put("lastRefreshAt", lastRefreshAt);
+        stats.put("minIntervalSeconds", minIntervalMs() / 1000);
+        stats.put("maxIntervalSeconds", maxIntervalMs() / 1000);
+        return stats;
+    }
+
+    // ========== Vòng lặp nền ==========
+
+    private void tickSafely() {
+        try {
+            tick(System.currentTimeMillis());
+        } catch (Exception e) {
+            logger.warn("[HealthMonitor] Tick failed: {}", e.getMessage());
+        }
+    }
+
+    private void tick(long now) {
+        if (refreshRequested || now - lastRefreshAt >= TimeUnit.SECONDS.toMillis(Math.max(5, refreshSeconds))) {
+            refreshRequested = false;
+            refreshFromDb(now);
+        }
+
+        List<Health> changed = new ArrayList<>();
+        Map<Long, Server.ServerStatus> previous = new HashMap<>();
+        TcpReachabilityProber.ProbeResult r;
+        while ((r = results.poll()) != null) {
+            Health h = states.get(r.id());
+            if (h != null) {
+                Server.ServerStatus before = h.status;
+                if (apply(h, r, now)) {
+                    previous.putIfAbsent(h.id, before);
+                    changed.add(h);
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            persist(changed, previous);
+        }
+
+        Long id;
+        while ((id = forced.poll()) != null) {
+            Health h = states.get(id);
+            if (h != null) {
+                h.nextDueAt = now;
+            }
+        }
+
+        List<TcpReachabilityProber.Target> due = new ArrayList<>();
+        for (Health h : states.values()) {
+            if (h.status != Server.ServerStatus.DISABLED && !h.probing && h.nextDueAt <= now) {
+                h.probing = true;
+                due.add(new TcpReachabilityProber.Target(h.id, h.host, h.port));
+            }
+        }
+        if (!due.isEmpty()) {
+            probes.addAndGet(due.size());
+            tcpReachabilityProber.probe(due, probeTimeoutMs, results::add);
+        }
+    }
+
+    /** Cập nhật trạng thái theo kết quả ping; true nếu server chuyển trạng thái */
+    private boolean apply(Health h, TcpReachabilityProber.ProbeResult r, long now) {
+        h.probing = false;
+        if (h.status == Server.ServerStatus.DISABLED || !h.host.equals(r.host()) || h.port != r.port()) {
+            return false; // bị disable / đổi địa chỉ trong lúc đang ping
+        }
+        h.lastCheckedAt = now;
+        h.rttMs = r.rttMs();
+        h.error = r.error();
+        Server.ServerStatus next;
+        if (r.reachable()) {
+            h.consecutiveFailures = 0;
+            next = Server.ServerStatus.ONLINE;
+        } else {
+            h.consecutiveFailures++;
+            next = h.status == Server.ServerStatus.ONLINE && h.consecutiveFailures < Math.max(1, failureThreshold)
+                    ? Server.ServerStatus.ONLINE
+                    : Server.ServerStatus.OFFLINE;
+        }
+        boolean transition = next != h.status;
+        if (transition || (!r.reachable() && next == Server.ServerStatus.ONLINE)) {
+            // Vừa đổi trạng thái hoặc đang nghi ngờ lỗi: ping lại sớm
+            h.intervalMs = minIntervalMs();
+        } else {
+            h.intervalMs = Math.min(maxIntervalMs(), Math.max(minIntervalMs(), h.intervalMs * 2));
+        }
+        if (transition) {
+            h.status = next;
+            h.lastChangeAt = now;
+        }
+        h.nextDueAt = now + withJitter(h.intervalMs);
+        return transition;
+    }
+
+    private void persist(List<Health> changed, Map<Long, Server.ServerStatus> previous) {
+        List<Long> online = new ArrayList<>();
+        List<Long> offline = new ArrayList<>();
+        for (Health h : changed) {
+            (h.status == Server.ServerStatus.ONLINE ? online : offline).add(h.id);
+        }
+        try {
+            serverRepository.updateReachability(online, offline);
+        } catch (Exception e) {
+            // Giữ trạng thái trong bộ nhớ, lần refresh sau sẽ đồng bộ lại với DB
+            logger.warn("[HealthMonitor] Failed to persist {} transitions: {}", changed.size(), e.getMessage());
+        }
+        transitions.addAndGet(changed.size());
+        for (Health h : changed) {
+            Server.ServerStatus from = previous.get(h.id);
+            logger.info("[HealthMonitor] {}:{} {} -> {}{}", h.host, h.port, from, h.status,
+                    h.error != null ? " (" + h.error + ")" : "");
+            publish(h.view(), from != null ? from.name() : null);
+        }
+    }
+
+    private void refreshFromDb(long now) {
+        List<Server> servers = serverRepository.findAll();
+        Set<Long> seen = new HashSet<>();
+        for (Server s : servers) {
+            seen.add(s.getId());
+            int port = s.getPort() != null ? s.getPort() : 22;
+            Health h = states.get(s.getId());
+            if (h == null) {
+                h = new Health(s.getId());
+                h.host = s.getHost();
+                h.port = port;
+                h.status = s.getStatus();
+                h.intervalMs = minIntervalMs();
+                // Rải lần ping đầu trong 1 chu kỳ min-interval
+                h.nextDueAt = now + ThreadLocalRandom.current().nextLong(Math.max(1, minIntervalMs()));
+                states.put(h.id, h);
+                continue;
+            }
+            if (!Objects.equals(h.host, s.getHost()) || h.port != port) {
+                h.host = s.getHost();
+                h.port = port;
+                h.consecutiveFailures = 0;
+                h.intervalMs = minIntervalMs();
+                h.nextDueAt = now;
+            }
+            if (h.status != s.getStatus()) {
+                // Trạng thái được đổi ở nơi khác (disable, reconnect, check-status thủ công)
+                h.status = s.getStatus();
+                h.consecutiveFailures = 0;
+                h.lastChangeAt = now;
+                h.intervalMs = minIntervalMs();
+                if (h.status != Server.ServerStatus.DISABLED && !h.probing) {
+                    h.nextDueAt = now + withJitter(h.intervalMs);
+                }
+            }
+        }
+        states.keySet().retainAll(seen);
+        lastRefreshAt = now;
+    }
+
+    private void publish(HealthView view, String from) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("id", view.id());
+        event.put("host", view.host());
+        event.put("port", view.port());
+        event.put("from", from);
+        event.put("to", view.status());
+        event.put("rttMs", view.rttMs());
+        event.put("error", view.error());
+        event.put("at", view.lastChangeAt());
+        dispatcher.execute(() -> {
+            for (Subscriber subscriber : subscribers) {
+                if (!subscriber.filter().test(view.id())) {
+                    continue;
+                }
+                try {
+                    subscriber.emitter().send(SseEmitter.event().name("transition").data(event));
+                } catch (IOException | IllegalStateException e) {
+                    subscribers.remove(subscriber);
+                    subscriber.emitter().completeWithError(e);
+                }
+            }
+        });
+    }
+
+    private long minIntervalMs() {
+        return TimeUnit.SECONDS.toMillis(Math.max(1, minIntervalSeconds));
+    }
+
+    private long maxIntervalMs() {
+        return Math.max(minIntervalMs(), TimeUnit.SECONDS.toMillis(maxIntervalSeconds));
+    }
+
+    private long withJitter(long intervalMs) {
+        double ratio = Math.max(0, Math.min(0.5, jitterRatio));
+        double factor = 1 + ratio * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+        return Math.max(1, (long) (intervalMs * factor));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        subscribers.forEach(s -> s.emitter().complete());
+        subscribers.clear();
+        dispatcher.shutdownNow();
+    }
+}
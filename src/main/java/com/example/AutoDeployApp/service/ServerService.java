@@ -7,6 +7,9 @@ import com.example.AutoDeployApp.repository.SshKeyRepository;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.Session;
 import com.jcraft.jsch.KeyPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -16,24 +19,102 @@ import java.util.List;
 import java.util.Optional;
 import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.net.InetSocketAddress;
-import java.net.Socket;
 import java.util.ArrayList;
 
 @Service
 public class ServerService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ServerService.class);
+    // Lệnh trả chuỗi ngắn (execCommand*, sudo): chỉ giữ phần cuối output, không đọc cả buffer tới max-output-bytes
+    private static final int SHORT_OUTPUT_MAX_BYTES = 1024 * 1024;
+
     private final ServerRepository serverRepository;
     private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
     private final SshKeyRepository sshKeyRepository;
+    private final SshSessionPool sshSessionPool;
+    private final SshExecService sshExecService;
+    private final SshIdentityCache sshIdentityCache;
+    private final TcpReachabilityProber tcpReachabilityProber;
+
+    // Cache năng lực server theo user@host:port (sudo NOPASSWD, OS, package manager, ansible/kubelet...)
+    private final java.util.Map<String, ServerCapabilities> capabilityCache = new java.util.concurrent.ConcurrentHashMap<>();
+
+    @Value("${ssh.capabilities.ttl-seconds:600}")
+    private long capabilityTtlSeconds;
 
-    public ServerService(ServerRepository serverRepository, SshKeyRepository sshKeyRepository) {
+    public ServerService(ServerRepository serverRepository, SshKeyRepository sshKeyRepository,
+            SshSessionPool sshSessionPool, SshExecService sshExecService, SshIdentityCache sshIdentityCache,
+            TcpReachabilityProber tcpReachabilityProber) {
         this.serverRepository = serverRepository;
         this.sshKeyRepository = sshKeyRepository;
+        this.sshSessionPool = sshSessionPool;
+        this.sshExecService = sshExecService;
+        this.sshIdentityCache = sshIdentityCache;
+        this.tcpReachabilityProber = tcpReachabilityProber;
+    }
+
+    /**
+     * Thống kê pool SSH session (hit/miss, thời gian handshake, số session)
+     */
+    public java.util.Map<String, Object> getSshPoolStats() {
+        return sshSessionPool.getStats();
+    }
+
+    /**
+     * Năng lực của server/user (dùng cache, probe qua SSH khi chưa có hoặc hết TTL).
+     * privateKeyPem ưu tiên, password dùng khi không có key. Trả về null nếu không probe được -
+     * người gọi giữ hành vi cũ (coi như cần mật khẩu sudo).
+     */
+    public ServerCapabilities getCapabilities(String host, int port, String username, String password,
+            String privateKeyPem, boolean refresh) {
+        String key = capabilityKey(host, port, username);
+        ServerCapabilities cached = capabilityCache.get(key);
+        if (!refresh && cached != null && (capabilityTtlSeconds <= 0
+                || System.currentTimeMillis() - cached.probedAt() < capabilityTtlSeconds * 1000L)) {
+            return cached;
+        }
+        String output = (privateKeyPem != null && !privateKeyPem.isBlank())
+                ? execCommandWithKey(host, port, username, privateKeyPem, ServerCapabilities.PROBE_COMMAND, 10000)
+                : (password != null && !password.isBlank()
+                        ? execCommand(host, port, username, password, ServerCapabilities.PROBE_COMMAND, 10000)
+                        : null);
+        ServerCapabilities probed = ServerCapabilities.parse(host, port, username, output);
+        if (probed != null) {
+            capabilityCache.put(key, probed);
+        } else {
+            capabilityCache.remove(key);
+        }
+        return probed;
+    }
+
+    public ServerCapabilities getCapabilities(Server s, String fallbackPassword, boolean refresh) {
+        return getCapabilities(s.getHost(), s.getPort() != null ? s.getPort() : 22, s.getUsername(),
+                fallbackPassword, resolveServerPrivateKeyPem(s.getId()), refresh);
+    }
+
+    /**
+     * Có sudo NOPASSWD hay không (theo cache); false nếu không xác định được
+     */
+    public boolean hasSudoNopasswd(String host, int port, String username, String password, String privateKeyPem) {
+        ServerCapabilities caps = getCapabilities(host, port, username, password, privateKeyPem, false);
+        return caps != null && caps.sudoNopasswd();
+    }
+
+    /** Bỏ cache năng lực của mọi user trên host:port (đổi thông tin đăng nhập, cấu hình sudo, xoá server) */
+    public void invalidateCapabilities(String host, int port) {
+        String suffix = "@" + host + ":" + port;
+        capabilityCache.keySet().removeIf(k -> k.endsWith(suffix));
+    }
+
+    private static String capabilityKey(String host, int port, String username) {
+        return username + "@" + host + ":" + port;
+    }
+
+    /**
+     * Thống kê cache private key / identity SSH
+     */
+    public java.util.Map<String, Object> getSshIdentityCacheStats() {
+        return sshIdentityCache.getStats();
     }
 
     public List<Server> findAll() {
@@ -59,11 +140,12 @@ public class ServerService {
         return serverRepository.findById(id).orElseThrow();
     }
 
-    @Transactional(readOnly = true)
+    // Không mở transaction: cache hit không cần DB, cache miss dùng query join fetch (không lazy-load)
     public String resolveServerPrivateKeyPem(Long serverId) {
-        return serverRepository.findByIdWithSshKey(serverId)
-                .map(s -> (s.getSshKey() != null ? s.getSshKey().getEncryptedPrivateKey() : null))
-                .orElse(null);
+        return sshIdentityCache.resolvePem(serverId, id -> serverRepository.findByIdWithSshKey(id)
+                .filter(s -> s.getSshKey() != null && s.getSshKey().getEncryptedPrivateKey() != null)
+                .map(s -> java.util.Map.entry(s.getSshKey().getId(), s.getSshKey().getEncryptedPrivateKey()))
+                .orElse(null));
     }
 
     @Transactional(readOnly = true)
@@ -138,6 +220,9 @@ public class ServerService {
                     created = sshKeyRepository.saveAndFlush(created);
                     s.setSshKey(created);
                     s = serverRepository.saveAndFlush(s);
+                    sshIdentityCache.invalidateServer(s.getId());
+                    // Sinh key kèm cấu hình sudo NOPASSWD - năng lực sudo đã đổi
+                    invalidateCapabilities(s.getHost(), s.getPort() != null ? s.getPort() : 22);
                 }
             } catch (Exception ignored) {
                 // Nếu tạo key thất bại thì bỏ qua, phiên đăng nhập bằng mật khẩu vẫn hoạt động
@@ -163,6 +248,8 @@ public class ServerService {
                 }
             }
         }
+        String oldHost = s.getHost();
+        int oldPort = s.getPort() != null ? s.getPort() : 22;
         // Xây dựng bộ thông số kết nối cuối cùng (giữa giá trị mới và giá trị cũ)
         String effHost = (host != null && !host.isBlank()) ? host : s.getHost();
         Integer effPort = (port != null) ? port : (s.getPort() != null ? s.getPort() : 22);
@@ -228,7 +315,16 @@ public class ServerService {
         } else if (status != null) {
             s.setStatus(status);
         }
-        return serverRepository.saveAndFlush(s);
+        Server saved = serverRepository.saveAndFlush(s);
+        sshIdentityCache.invalidateServer(id);
+        invalidateCapabilities(oldHost, oldPort);
+        invalidateCapabilities(saved.getHost(), saved.getPort() != null ? saved.getPort() : 22);
+        // Thông tin kết nối/khoá thay đổi hoặc server bị ngắt: đóng các session SSH đang pool tới host cũ
+        if (connectionFieldChanged || usedPassword || sshKeyId != null
+                || saved.getStatus() == Server.ServerStatus.DISABLED) {
+            sshSessionPool.evictHost(oldHost, oldPort);
+        }
+        return saved;
     }
 
     @Transactional
@@ -249,10 +345,18 @@ public class ServerService {
     @Transactional
     public void delete(Long id) {
         serverRepository.findById(id).ifPresent(s -> {
+            sshSessionPool.evictHost(s.getHost(), s.getPort() != null ? s.getPort() : 22);
+            sshIdentityCache.invalidateServer(id);
+            invalidateCapabilities(s.getHost(), s.getPort() != null ? s.getPort() : 22);
+            if (s.getSshKey() != null) {
+                sshIdentityCache.invalidateKey(s.getSshKey().getId());
+            }
+
             // 1) Xoá tất cả khoá SSH gắn qua ssh_keys.server_id
             try {
                 java.util.List<SshKey> keys = sshKeyRepository.findByServer_Id(id);
                 if (keys != null && !keys.isEmpty()) {
+                    keys.forEach(k -> sshIdentityCache.invalidateKey(k.getId()));
                     sshKeyRepository.deleteAll(keys);
                 }
             } catch (Exception ignored) {
@@ -300,113 +404,99 @@ public class ServerService {
 
     public String execCommand(String host, int port, String username, String rawPassword, String command,
             int timeoutMs) {
-        Session session = null;
-        com.jcraft.jsch.ChannelExec channel = null;
-        try {
-            JSch jsch = new JSch();
-            session = jsch.getSession(username, host, port);
-            session.setConfig("StrictHostKeyChecking", "no");
-            session.setPassword(rawPassword);
-            session.setTimeout(timeoutMs);
-            session.connect(timeoutMs);
-            channel = (com.jcraft.jsch.ChannelExec) session.openChannel("exec");
-            channel.setCommand(command);
-            java.io.InputStream in = channel.getInputStream();
-            channel.connect(timeoutMs);
-
-            long deadline = System.currentTimeMillis() + timeoutMs;
-            java.io.ByteArrayOutputStream outBuf = new java.io.ByteArrayOutputStream();
-            byte[] buffer = new byte[4096];
-            while (true) {
-                while (in.available() > 0) {
-                    int read = in.read(buffer, 0, buffer.length);
-                    if (read < 0)
-                        break;
-                    outBuf.write(buffer, 0, read);
-                }
-                if (channel.isClosed())
-                    break;
-                if (System.currentTimeMillis() > deadline) {
-                    // timeout cứng
-                    break;
-                }
-                try {
-                    Thread.sleep(50);
-                } catch (InterruptedException ignored) {
-                }
-            }
-            String out = outBuf.toString(java.nio.charset.StandardCharsets.UTF_8).trim();
-            return out;
-        } catch (Exception e) {
-            return null;
-        } finally {
-            try {
-                if (channel != null && channel.isConnected())
-                    channel.disconnect();
-            } catch (Exception ignored) {
-            }
-            try {
-                if (session != null && session.isConnected())
-                    session.disconnect();
-            } catch (Exception ignored) {
-            }
-        }
+        // Dùng lại session đã xác thực từ pool; output do JSch đẩy vào buffer, không polling
+        return execForStdout(host, port, username, rawPassword, null, command, timeoutMs);
     }
 
     public String execCommandWithKey(String host, int port, String username, String privateKeyPem, String command,
             int timeoutMs) {
-        Session session = null;
-        com.jcraft.jsch.ChannelExec channel = null;
-        try {
-            JSch jsch = new JSch();
-            // Nạp key từ chuỗi PEM
-            byte[] prv = privateKeyPem.getBytes(java.nio.charset.StandardCharsets.UTF_8);
-            jsch.addIdentity("inmem-key", prv, null, null);
-            session = jsch.getSession(username, host, port);
-            session.setConfig("StrictHostKeyChecking", "no");
-            session.setTimeout(timeoutMs);
-            session.connect(timeoutMs);
-            channel = (com.jcraft.jsch.ChannelExec) session.openChannel("exec");
-            channel.setCommand(command);
-            java.io.InputStream in = channel.getInputStream();
-            channel.connect(timeoutMs);
-
-            long deadline = System.currentTimeMillis() + timeoutMs;
-            java.io.ByteArrayOutputStream outBuf = new java.io.ByteArrayOutputStream();
-            byte[] buffer = new byte[4096];
-            while (true) {
-                while (in.available() > 0) {
-                    int read = in.read(buffer, 0, buffer.length);
-                    if (read < 0)
-                        break;
-                    outBuf.write(buffer, 0, read);
-                }
-                if (channel.isClosed())
-                    break;
-                if (System.currentTimeMillis() > deadline) {
-                    // timeout cứng
-                    break;
+        return execForStdout(host, port, username, null, privateKeyPem, command, timeoutMs);
+    }
+
+    /**
+     * Handle thực thi lệnh: exit code, stdout/stderr tách riêng, callback khi có dữ liệu, deadline cứng.
+     * Người gọi phải close() handle sau khi dùng xong.
+     */
+    public SshExecService.RemoteExec startExec(Server s, String command, int timeoutMs,
+            SshExecService.ExecListener listener) throws com.jcraft.jsch.JSchException {
+        int port = s.getPort() != null ? s.getPort() : 22;
+        String pem = resolveServerPrivateKeyPem(s.getId());
+        return sshExecService.start(s.getHost(), port, s.getUsername(), null, pem, command, timeoutMs, listener);
+    }
+
+    /**
+     * Lệnh chạy lâu dài bằng SSH key (agent metrics...): output chỉ đi qua listener.onChunk, không giữ lại,
+     * không deadline. Trả về null nếu server chưa có key.
+     */
+    public SshExecService.RemoteExec startStreamExec(Server s, String command, int connectTimeoutMs,
+            SshExecService.ExecListener listener) throws com.jcraft.jsch.JSchException {
+        String pem = resolveServerPrivateKeyPem(s.getId());
+        if (pem == null || pem.isBlank()) {
+            return null;
+        }
+        return sshExecService.startStream(s.getHost(), s.getPort() != null ? s.getPort() : 22, s.getUsername(),
+                null, pem, command, connectTimeoutMs, listener);
+    }
+
+    /**
+     * Chạy nhiều bước trong 1 lần exec SSH (1 round trip thay vì N). Mỗi bước có exit code, stdout, stderr và
+     * thời gian riêng; mode quyết định dừng ở bước lỗi đầu tiên hay chạy tiếp. timeoutMs là deadline cho cả lô.
+     * privateKeyPem ưu tiên, password dùng khi không có key.
+     */
+    public SshScriptBatch.Result execBatch(String host, int port, String username, String password,
+            String privateKeyPem, List<SshScriptBatch.Step> steps, SshScriptBatch.Mode mode, int timeoutMs)
+            throws com.jcraft.jsch.JSchException, InterruptedException {
+        if (steps == null || steps.isEmpty()) {
+            return new SshScriptBatch.Result(List.of(), 0, false, 0);
+        }
+        String nonce = SshScriptBatch.newNonce();
+        long[] beginNanos = new long[steps.size()];
+        long[] endNanos = new long[steps.size()];
+        // Thời gian từng bước = khoảng cách giữa lúc marker BEGIN và END tới (không cần gọi date trên máy đích)
+        SshExecService.ExecListener markerClock = new SshExecService.ExecListener() {
+            @Override
+            public void onLine(SshExecService.StreamType stream, String line) {
+                if (stream != SshExecService.StreamType.STDOUT) {
+                    return;
                 }
-                try {
-                    Thread.sleep(50);
-                } catch (InterruptedException ignored) {
+                int index = SshScriptBatch.markerStep(line, nonce);
+                if (index >= 0 && index < steps.size()) {
+                    if (line.contains(":BEGIN>>>")) {
+                        beginNanos[index] = System.nanoTime();
+                    } else {
+                        endNanos[index] = System.nanoTime();
+                    }
                 }
             }
-            String out = outBuf.toString(java.nio.charset.StandardCharsets.UTF_8).trim();
-            return out;
+        };
+        String command = SshScriptBatch.buildCommand(steps, mode, nonce);
+        try (SshExecService.RemoteExec exec = sshExecService.start(host, port, username, password, privateKeyPem,
+                command, timeoutMs, markerClock)) {
+            SshExecService.ExecResult result = exec.waitFor();
+            return SshScriptBatch.parse(steps, nonce, exec.stdout().asString(), exec.stderr().asString(),
+                    beginNanos, endNanos, result.exitCode(), result.timedOut(), result.durationMs());
+        }
+    }
+
+    public SshScriptBatch.Result execBatch(Server s, List<SshScriptBatch.Step> steps, SshScriptBatch.Mode mode,
+            int timeoutMs) throws com.jcraft.jsch.JSchException, InterruptedException {
+        return execBatch(s.getHost(), s.getPort() != null ? s.getPort() : 22, s.getUsername(), null,
+                resolveServerPrivateKeyPem(s.getId()), steps, mode, timeoutMs);
+    }
+
+    /**
+     * Giữ hành vi cũ của execCommand*: trả stdout đã trim (kể cả khi hết hạn - phần đã nhận), null nếu lỗi
+     */
+    private String execForStdout(String host, int port, String username, String password, String privateKeyPem,
+            String command, int timeoutMs) {
+        try (SshExecService.RemoteExec exec = sshExecService.run(host, port, username, password, privateKeyPem,
+                command, timeoutMs)) {
+            return exec.stdout().tail(SHORT_OUTPUT_MAX_BYTES, StandardCharsets.UTF_8).trim();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception e) {
             return null;
-        } finally {
-            try {
-                if (channel != null)
-                    channel.disconnect();
-            } catch (Exception ignored) {
-            }
-            try {
-                if (session != null)
-                    session.disconnect();
-            } catch (Exception ignored) {
-            }
         }
     }
 
@@ -442,10 +532,8 @@ public class ServerService {
         Session session = null;
         try {
             JSch jsch = new JSch();
-            // Nạp key từ chuỗi PEM bằng cách giữ trong bộ nhớ
-            // JSch hỗ trợ danh tính trong bộ nhớ bằng addIdentity(name, prvkey, pubkey, passphrase)
-            byte[] prv = privateKeyPem.getBytes(java.nio.charset.StandardCharsets.UTF_8);
-            jsch.addIdentity("inmem-key", prv, null, null);
+            // Nạp key từ cache identity (PEM chỉ parse lần đầu)
+            sshIdentityCache.addIdentity(jsch, privateKeyPem);
             session = jsch.getSession(username, host, port);
             session.setConfig("StrictHostKeyChecking", "no");
             session.connect(timeoutMs);
@@ -479,58 +567,59 @@ public class ServerService {
         return false;
     }
 
-    @Transactional
     public List<Server> checkAllStatuses(int timeoutMs) {
+        return checkAllStatuses(timeoutMs, null);
+    }
+
+    /**
+     * Ping TCP (port SSH) tất cả server bằng TcpReachabilityProber: mọi server được probe đồng thời,
+     * onResult (có thể null) nhận từng kết quả ngay khi có để báo tiến độ. DISABLED vẫn được ping nhưng giữ
+     * nguyên status. Chỉ server đổi trạng thái được ghi DB, gộp trong 1 transaction.
+     */
+    public List<Server> checkAllStatuses(int timeoutMs,
+            java.util.function.Consumer<TcpReachabilityProber.ProbeResult> onResult) {
         List<Server> servers = serverRepository.findAll();
-        final int POOL_SIZE = Math.min(servers.size(), 16);
+        java.util.Map<Long, Server> byId = new java.util.HashMap<>();
+        List<TcpReachabilityProber.Target> targets = new ArrayList<>();
+        for (Server s : servers) {
+            byId.put(s.getId(), s);
+            targets.add(new TcpReachabilityProber.Target(s.getId(), s.getHost(),
+                    s.getPort() != null ? s.getPort() : 22));
+        }
 
-        ExecutorService executor = Executors.newFixedThreadPool(POOL_SIZE);
         long start = System.currentTimeMillis();
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
-        for (Server s : servers) {
-            futures.add(CompletableFuture.runAsync(() -> {
-                // DISABLED servers: chỉ check status (ping) nhưng giữ nguyên DISABLED
-                if (s.getStatus() == Server.ServerStatus.DISABLED) {
-                    // Vẫn ping để check nhưng không thay đổi status
-                    try (Socket socket = new Socket()) {
-                        InetSocketAddress addr = new InetSocketAddress(
-                                s.getHost(), s.getPort() != null ? s.getPort() : 22);
-                        socket.connect(addr, timeoutMs);
-                        // Giữ nguyên DISABLED, không đổi thành ONLINE
-                    } catch (Exception ignored) {
-                        // Giữ nguyên DISABLED, không đổi thành OFFLINE
+        List<Long> nowOnline = new ArrayList<>();
+        List<Long> nowOffline = new ArrayList<>();
+        try (var results = tcpReachabilityProber.probe(targets, timeoutMs)) {
+            results.forEach(r -> {
+                Server s = byId.get(r.id());
+                if (s != null && s.getStatus() != Server.ServerStatus.DISABLED) {
+                    Server.ServerStatus status = r.reachable() ? Server.ServerStatus.ONLINE
+                            : Server.ServerStatus.OFFLINE;
+                    if (s.getStatus() != status) {
+                        (r.reachable() ? nowOnline : nowOffline).add(s.getId());
+                        s.setStatus(status);
                     }
-                    return; // Skip update status
                 }
-                
-                // ONLINE/OFFLINE servers: ping và cập nhật status
-                boolean online = false;
-                try (Socket socket = new Socket()) {
-                    InetSocketAddress addr = new InetSocketAddress(
-                            s.getHost(), s.getPort() != null ? s.getPort() : 22);
-                    socket.connect(addr, timeoutMs);
-                    online = true;
-                } catch (Exception ignored) {
-                } finally {
-                    s.setStatus(online ? Server.ServerStatus.ONLINE : Server.ServerStatus.OFFLINE);
+                if (onResult != null) {
+                    onResult.accept(r);
                 }
-            }, executor));
-        }
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-        executor.shutdown();
-        try {
-            executor.awaitTermination(2, TimeUnit.SECONDS);
-        } catch (InterruptedException ignored) {
+            });
         }
 
-        serverRepository.saveAll(servers);
+        serverRepository.updateReachability(nowOnline, nowOffline);
 
         long elapsed = System.currentTimeMillis() - start;
-        System.out.printf("[checkAllStatuses] Checked %d servers in %d ms%n", servers.size(), elapsed);
+        logger.debug("[checkAllStatuses] Checked {} servers in {} ms ({} changed)", servers.size(), elapsed,
+                nowOnline.size() + nowOffline.size());
 
         return servers;
     }
 
+    public java.util.Map<String, Object> getReachabilityProberStats() {
+        return tcpReachabilityProber.getStats();
+    }
+
     /**
      * Reconnect to server and optionally generate SSH key if not exists
      * 
@@ -561,6 +650,9 @@ public class ServerService {
                     created = sshKeyRepository.saveAndFlush(created);
                     s.setSshKey(created);
                     s = serverRepository.saveAndFlush(s);
+                    sshIdentityCache.invalidateServer(s.getId());
+                    // Sinh key kèm cấu hình sudo NOPASSWD - năng lực sudo đã đổi
+                    invalidateCapabilities(s.getHost(), s.getPort() != null ? s.getPort() : 22);
                 }
             } catch (Exception e) {
                 // Log error but don't fail the reconnect operation
@@ -724,68 +816,23 @@ public class ServerService {
      */
     public String execCommandWithKeyAndSudo(String host, int port, String username, String privateKeyPem,
             String command, String sudoPassword, int timeoutMs) {
-        Session session = null;
-        com.jcraft.jsch.ChannelExec channel = null;
         try {
-            JSch jsch = new JSch();
-            // Nạp key từ chuỗi PEM
-            byte[] prv = privateKeyPem.getBytes(java.nio.charset.StandardCharsets.UTF_8);
-            jsch.addIdentity("inmem-key", prv, null, null);
-
-            session = jsch.getSession(username, host, port);
-            session.setConfig("StrictHostKeyChecking", "no");
-            session.connect(timeoutMs);
-
-            channel = (com.jcraft.jsch.ChannelExec) session.openChannel("exec");
-
             // Kiểm tra sudo NOPASSWD trước khi sử dụng password
-            String finalCommand = command;
-            try {
-                String checkSudoCmd = "sudo -l 2>/dev/null | grep -q 'NOPASSWD' && echo 'HAS_NOPASSWD' || echo 'NO_NOPASSWD'";
-                com.jcraft.jsch.ChannelExec checkChannel = (com.jcraft.jsch.ChannelExec) session.openChannel("exec");
-                checkChannel.setCommand(checkSudoCmd);
-                checkChannel.connect(3000);
-
-                java.io.InputStream checkIn = checkChannel.getInputStream();
-                byte[] checkBuf = checkIn.readAllBytes();
-                String checkResult = new String(checkBuf, java.nio.charset.StandardCharsets.UTF_8).trim();
-                checkChannel.disconnect();
-
-                if (checkResult.contains("HAS_NOPASSWD")) {
-                    // Có sudo NOPASSWD, chỉ cần thêm sudo
-                    finalCommand = "sudo " + command;
-                } else {
-                    // Không có sudo NOPASSWD, sử dụng password
-                    finalCommand = createSudoCommand(command, sudoPassword);
-                }
-            } catch (Exception e) {
-                // Nếu không kiểm tra được, sử dụng password
-                finalCommand = createSudoCommand(command, sudoPassword);
+            // (kết quả lấy từ cache năng lực; không xác định được thì dùng password)
+            String finalCommand = hasSudoNopasswd(host, port, username, null, privateKeyPem)
+                    ? "sudo " + command
+                    : createSudoCommand(command, sudoPassword);
+
+            try (SshExecService.RemoteExec exec = sshExecService.run(host, port, username, null, privateKeyPem,
+                    finalCommand, timeoutMs)) {
+                return exec.stdout().tail(SHORT_OUTPUT_MAX_BYTES, StandardCharsets.UTF_8).trim();
             }
-
-            channel.setCommand(finalCommand);
-
-            java.io.InputStream in = channel.getInputStream();
-            channel.connect(timeoutMs);
-
-            byte[] buf = in.readAllBytes();
-            String out = new String(buf, java.nio.charset.StandardCharsets.UTF_8).trim();
-            return out;
-
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception e) {
             System.err.println("Lỗi thực thi lệnh với SSH key và sudo: " + e.getMessage());
             return null;
-        } finally {
-            try {
-                if (channel != null && channel.isConnected())
-                    channel.disconnect();
-            } catch (Exception ignored) {
-            }
-            try {
-                if (session != null && session.isConnected())
-                    session.disconnect();
-            } catch (Exception ignored) {
-            }
         }
     }
 
@@ -794,65 +841,23 @@ public class ServerService {
      */
     public String execCommandWithSudo(String host, int port, String username, String sshPassword,
             String command, String sudoPassword, int timeoutMs) {
-        Session session = null;
-        com.jcraft.jsch.ChannelExec channel = null;
         try {
-            JSch jsch = new JSch();
-            session = jsch.getSession(username, host, port);
-            session.setConfig("StrictHostKeyChecking", "no");
-            session.setPassword(sshPassword);
-            session.connect(timeoutMs);
-
-            channel = (com.jcraft.jsch.ChannelExec) session.openChannel("exec");
-
             // Kiểm tra sudo NOPASSWD trước khi sử dụng password
-            String finalCommand = command;
-            try {
-                String checkSudoCmd = "sudo -l 2>/dev/null | grep -q 'NOPASSWD' && echo 'HAS_NOPASSWD' || echo 'NO_NOPASSWD'";
-                com.jcraft.jsch.ChannelExec checkChannel = (com.jcraft.jsch.ChannelExec) session.openChannel("exec");
-                checkChannel.setCommand(checkSudoCmd);
-                checkChannel.connect(3000);
-
-                java.io.InputStream checkIn = checkChannel.getInputStream();
-                byte[] checkBuf = checkIn.readAllBytes();
-                String checkResult = new String(checkBuf, java.nio.charset.StandardCharsets.UTF_8).trim();
-                checkChannel.disconnect();
-
-                if (checkResult.contains("HAS_NOPASSWD")) {
-                    // Có sudo NOPASSWD, chỉ cần thêm sudo
-                    finalCommand = "sudo " + command;
-                } else {
-                    // Không có sudo NOPASSWD, sử dụng password
-                    finalCommand = createSudoCommand(command, sudoPassword);
-                }
-            } catch (Exception e) {
-                // Nếu không kiểm tra được, sử dụng password
-                finalCommand = createSudoCommand(command, sudoPassword);
+            // (kết quả lấy từ cache năng lực; không xác định được thì dùng password)
+            String finalCommand = hasSudoNopasswd(host, port, username, sshPassword, null)
+                    ? "sudo " + command
+                    : createSudoCommand(command, sudoPassword);
+
+            try (SshExecService.RemoteExec exec = sshExecService.run(host, port, username, sshPassword, null,
+                    finalCommand, timeoutMs)) {
+                return exec.stdout().tail(SHORT_OUTPUT_MAX_BYTES, StandardCharsets.UTF_8).trim();
             }
-
-            channel.setCommand(finalCommand);
-
-            java.io.InputStream in = channel.getInputStream();
-            channel.connect(timeoutMs);
-
-            byte[] buf = in.readAllBytes();
-            String out = new String(buf, java.nio.charset.StandardCharsets.UTF_8).trim();
-            return out;
-
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception e) {
             System.err.println("Lỗi thực thi lệnh với password và sudo: " + e.getMessage());
             return null;
-        } finally {
-            try {
-                if (channel != null && channel.isConnected())
-                    channel.disconnect();
-            } catch (Exception ignored) {
-            }
-            try {
-                if (session != null && session.isConnected())
-                    session.disconnect();
-            } catch (Exception ignored) {
-            }
         }
     }
 
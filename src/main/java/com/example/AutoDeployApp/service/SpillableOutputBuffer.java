@@ -0,0 +1,161 @@
+package com.example.AutoDeployApp.service;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Buffer output có giới hạn: giữ trong RAM tới memoryLimit byte, vượt quá thì chuyển (spill) sang file tạm,
+ * vượt maxBytes thì bỏ phần còn lại và chỉ đếm số byte bị bỏ. Dùng cho output lệnh remote để lệnh chạy lâu
+ * (journalctl, tail -f...) không làm tràn heap. Gọi close() để xoá file tạm.
+ */
+public class SpillableOutputBuffer implements AutoCloseable {
+
+    private final int memoryLimit;
+    private final long maxBytes;
+
+    private byte[] memory = new byte[0];
+    private int memoryLength;
+    private Path spillFile;
+    private OutputStream spillOut;
+    private long size;
+    private long droppedBytes;
+    private boolean closed;
+
+    public SpillableOutputBuffer(int memoryLimit, long maxBytes) {
+        this.memoryLimit = Math.max(0, memoryLimit);
+        this.maxBytes = Math.max(this.memoryLimit, maxBytes);
+    }
+
+    public synchronized void write(byte[] data, int offset, int length) throws IOException {
+        if (closed || length <= 0) {
+            return;
+        }
+        long room = maxBytes - size;
+        int accepted = (int) Math.min(length, Math.max(0, room));
+        droppedBytes += length - accepted;
+        if (accepted == 0) {
+            return;
+        }
+        if (spillOut == null && memoryLength + accepted <= memoryLimit) {
+            if (memoryLength + accepted > memory.length) {
+                int grown = Math.max(memoryLength + accepted, Math.min(memoryLimit, Math.max(8192, memory.length * 2)));
+                memory = Arrays.copyOf(memory, grown);
+            }
+            System.arraycopy(data, offset, memory, memoryLength, accepted);
+            memoryLength += accepted;
+        } else {
+            if (spillOut == null) {
+                spill();
+            }
+            spillOut.write(data, offset, accepted);
+        }
+        size += accepted;
+    }
+
+    private void spill() throws IOException {
+        spillFile = Files.createTempFile("ssh-exec-", ".out");
+        spillOut = new BufferedOutputStream(Files.newOutputStream(spillFile), 65536);
+        spillOut.write(memory, 0, memoryLength);
+        memory = new byte[0];
+        memoryLength = 0;
+    }
+
+    /** Tổng số byte đã giữ lại (RAM + file) */
+    public synchronized long size() {
+        return size;
+    }
+
+    /** Số byte bị bỏ do vượt maxBytes */
+    public synchronized long droppedBytes() {
+        return droppedBytes;
+    }
+
+    public synchronized boolean isTruncated() {
+        return droppedBytes > 0;
+    }
+
+    public synchronized boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Đọc lại toàn bộ nội dung đã giữ. Với buffer đã spill, stream đọc trực tiếp từ file tạm.
+     */
+    public synchronized InputStream openInputStream() throws IOException {
+        if (closed) {
+            return InputStream.nullInputStream();
+        }
+        if (spillFile == null) {
+            return new ByteArrayInputStream(Arrays.copyOf(memory, memoryLength));
+        }
+        spillOut.flush();
+        return Files.newInputStream(spillFile);
+    }
+
+    /**
+     * Toàn bộ nội dung dạng chuỗi - chỉ nên dùng khi output nhỏ hoặc cần giữ hành vi trả String cũ
+     */
+    public String asString() {
+        try (InputStream in = openInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Tối đa maxTailBytes byte cuối (để hiển thị), không đọc cả file khi đã spill
+     */
+    public synchronized String tail(int maxTailBytes, Charset charset) {
+        if (closed || maxTailBytes <= 0) {
+            return "";
+        }
+        if (spillFile == null) {
+            int from = Math.max(0, memoryLength - maxTailBytes);
+            return new String(memory, from, memoryLength - from, charset);
+        }
+        try {
+            spillOut.flush();
+            try (RandomAccessFile raf = new RandomAccessFile(spillFile.toFile(), "r")) {
+                long from = Math.max(0, raf.length() - maxTailBytes);
+                byte[] buf = new byte[(int) (raf.length() - from)];
+                raf.seek(from);
+                raf.readFully(buf);
+                return new String(buf, charset);
+            }
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        memory = new byte[0];
+        memoryLength = 0;
+        if (spillOut != null) {
+            try {
+                spillOut.close();
+            } catch (IOException ignored) {
+            }
+        }
+        if (spillFile != null) {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.example.AutoDeployApp.service;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thực thi lệnh remote qua SSH theo hướng sự kiện.
+ *
+ * Thay vì vòng lặp in.available() + sleep, stdout/stderr được JSch đẩy thẳng vào sink của handle ngay khi
+ * dữ liệu tới (trên thread của session). Handle trả về exit code, stdout/stderr tách riêng (buffer có giới hạn,
+ * tràn sang file tạm), callback theo chunk/dòng, chờ đồng bộ và deadline cứng (hết hạn thì đóng kênh).
+ */
+@Service
+public class SshExecService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SshExecService.class);
+
+    private final SshSessionPool sshSessionPool;
+
+    @Value("${ssh.exec.memory-buffer-bytes:1048576}")
+    private int memoryBufferBytes;
+
+    @Value("${ssh.exec.max-output-bytes:268435456}")
+    private long maxOutputBytes;
+
+    private final ScheduledExecutorService deadlineTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ssh-exec-deadline");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public SshExecService(SshSessionPool sshSessionPool) {
+        this.sshSessionPool = sshSessionPool;
+    }
+
+    public enum StreamType {
+        STDOUT, STDERR
+    }
+
+    /**
+     * Callback khi có dữ liệu. Được gọi trên thread của SSH session (dùng chung cho các kênh khác trên cùng
+     * session) nên phải xử lý nhanh, không chặn.
+     */
+    public interface ExecListener {
+        default void onChunk(StreamType stream, byte[] data, int offset, int length) {
+        }
+
+        /** 1 dòng hoàn chỉnh (không gồm \n), dòng cuối không có \n được gửi khi stream đóng */
+        default void onLine(StreamType stream, String line) {
+        }
+
+        default void onExit(ExecResult result) {
+        }
+    }
+
+    /**
+     * exitCode = null khi process không trả exit-status (bị huỷ, hết hạn, mất kết nối)
+     */
+    public record ExecResult(Integer exitCode, boolean timedOut, boolean cancelled, long durationMs,
+            long stdoutBytes, long stderrBytes, boolean truncated) {
+
+        public boolean isSuccess() {
+            return exitCode != null && exitCode == 0 && !timedOut && !cancelled;
+        }
+    }
+
+    /**
+     * Bắt đầu chạy lệnh và trả về ngay. timeoutMs dùng cho lấy session/mở kênh và làm deadline cứng
+     * của cả lệnh (timeoutMs <= 0: không có deadline). Gọi close() trên handle để giải phóng file tạm.
+     */
+    public RemoteExec start(String host, int port, String username, String password, String privateKeyPem,
+            String command, int timeoutMs, ExecListener listener) throws JSchException {
+        return start(host, port, username, password, privateKeyPem, command, timeoutMs > 0 ? timeoutMs : 10000,
+                timeoutMs, listener, false);
+    }
+
+    /**
+     * Lệnh chạy lâu dài chỉ đọc qua callback (agent, tail -f...): output không được giữ lại, không tách dòng
+     * (chỉ onChunk/onExit), không có deadline. Kênh mở tới khi process kết thúc, kết nối mất hoặc cancel().
+     * Chạy trên session riêng (SshSessionPool.acquireDedicated) để không giữ slot kênh của pool.
+     */
+    public RemoteExec startStream(String host, int port, String username, String password, String privateKeyPem,
+            String command, int connectTimeoutMs, ExecListener listener) throws JSchException {
+        return start(host, port, username, password, privateKeyPem, command, connectTimeoutMs, 0, listener, true);
+    }
+
+    private RemoteExec start(String host, int port, String username, String password, String privateKeyPem,
+            String command, int connectTimeoutMs, int timeoutMs, ExecListener listener, boolean streaming)
+            throws JSchException {
+        SshSessionPool.Lease lease = streaming
+                ? sshSessionPool.acquireDedicated(host, port, username, password, privateKeyPem, connectTimeoutMs)
+                : sshSessionPool.acquire(host, port, username, password, privateKeyPem, connectTimeoutMs);
+        RemoteExec exec = new RemoteExec(command, lease, listener, streaming);
+        try {
+            exec.connect(connectTimeoutMs);
+        } catch (JSchException e) {
+            // Session chết (hoặc đang "treo" - sshd từ chối/không trả lời mở kênh): bỏ session đó, thử lại 1 lần
+            // trên session mới thay vì trả lỗi cho lệnh
+            if (!isSessionFailure(lease, e)) {
+                exec.abortStart();
+                throw e;
+            }
+            exec.abortStart(false);
+            try {
+                lease.renew();
+            } catch (JSchException | RuntimeException renewError) {
+                lease.close();
+                throw renewError;
+            }
+            exec = new RemoteExec(command, lease, listener, streaming);
+            try {
+                exec.connect(connectTimeoutMs);
+            } catch (JSchException | RuntimeException retryError) {
+                exec.abortStart();
+                throw retryError;
+            }
+        } catch (RuntimeException e) {
+            exec.abortStart();
+            throw e;
+        }
+        if (timeoutMs > 0 && !exec.completion.isDone()) {
+            exec.deadlineTask = deadlineTimer.schedule(exec::expire, timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        return exec;
+    }
+
+    // "channel is not opened": sshd không mở kênh (MaxSessions, session treo) - lỗi của session, không của lệnh
+    private static boolean isSessionFailure(SshSessionPool.Lease lease, JSchException e) {
+        return !lease.session().isConnected()
+                || (e.getMessage() != null && e.getMessage().contains("channel is not opened"));
+    }
+
+    /**
+     * Chạy lệnh và chờ kết thúc (hoặc hết deadline). Kết quả vẫn cần close() sau khi đọc output.
+     */
+    public RemoteExec run(String host, int port, String username, String password, String privateKeyPem,
+            String command, int timeoutMs) throws JSchException, InterruptedException {
+        RemoteExec exec = start(host, port, username, password, privateKeyPem, command, timeoutMs, null);
+        try {
+            exec.waitFor();
+        } catch (InterruptedException e) {
+            exec.close();
+            throw e;
+        }
+        return exec;
+    }
+
+    /**
+     * Handle của 1 lệnh đang chạy
+     */
+    public final class RemoteExec implements AutoCloseable {
+        private final String command;
+        private final SshSessionPool.Lease lease;
+        private final ExecListener listener;
+        private final boolean streaming;
+        private final SpillableOutputBuffer stdout;
+        private final SpillableOutputBuffer stderr;
+        private final StreamSink stdoutSink;
+        private final StreamSink stderrSink;
+        private final AtomicInteger openStreams = new AtomicInteger(2);
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+        private final CompletableFuture<ExecResult> completion = new CompletableFuture<>();
+        private ChannelExec channel;
+        private ScheduledFuture<?> deadlineTask;
+        private long startNanos = System.nanoTime();
+        private volatile boolean timedOut;
+        private volatile boolean cancelled;
+
+        private RemoteExec(String command, SshSessionPool.Lease lease, ExecListener listener, boolean streaming) {
+            this.command = command;
+            this.lease = lease;
+            this.listener = listener;
+            this.streaming = streaming;
+            // Chế độ stream: buffer 0 byte - mọi output chỉ được đếm (droppedBytes), không giữ trong RAM/file
+            this.stdout = streaming ? new SpillableOutputBuffer(0, 0)
+                    : new SpillableOutputBuffer(memoryBufferBytes, maxOutputBytes);
+            this.stderr = streaming ? new SpillableOutputBuffer(0, 0)
+                    : new SpillableOutputBuffer(memoryBufferBytes, maxOutputBytes);
+            this.stdoutSink = new StreamSink(StreamType.STDOUT, stdout);
+            this.stderrSink = new StreamSink(StreamType.STDERR, stderr);
+        }
+
+        public String command() {
+            return command;
+        }
+
+        public CompletableFuture<ExecResult> completion() {
+            return completion;
+        }
+
+        public boolean isDone() {
+            return completion.isDone();
+        }
+
+        /** Chờ lệnh kết thúc; deadline cứng (nếu có) đảm bảo lời gọi này không treo mãi */
+        public ExecResult waitFor() throws InterruptedException {
+            try {
+                return completion.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        public ExecResult waitFor(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+            try {
+                return completion.get(timeout, unit);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        public SpillableOutputBuffer stdout() {
+            return stdout;
+        }
+
+        public SpillableOutputBuffer stderr() {
+            return stderr;
+        }
+
+        /** Huỷ lệnh: đóng kênh, completion kết thúc với cancelled=true */
+        public void cancel() {
+            if (!completion.isDone()) {
+                cancelled = true;
+                disconnectChannel();
+            }
+        }
+
+        @Override
+        public void close() {
+            cancel();
+            stdout.close();
+            stderr.close();
+        }
+
+        private void expire() {
+            if (!completion.isDone()) {
+                timedOut = true;
+                logger.debug("[SshExec] Deadline reached, closing channel: {}", command);
+                disconnectChannel();
+            }
+        }
+
+        private void disconnectChannel() {
+            ChannelExec ch = channel;
+            if (ch != null) {
+                try {
+                    ch.disconnect();
+                } catch (Exception ignored) {
+                }
+            }
+            // JSch đã đóng sink nếu kênh đang kết nối; kênh chưa connect thì tự đóng (close() idempotent)
+            stdoutSink.close();
+            stderrSink.close();
+        }
+
+        private void connect(int connectTimeoutMs) throws JSchException {
+            channel = lease.openExec();
+            channel.setCommand(command);
+            channel.setOutputStream(stdoutSink);
+            channel.setErrStream(stderrSink);
+            startNanos = System.nanoTime();
+            channel.connect(connectTimeoutMs);
+        }
+
+        private void abortStart() {
+            abortStart(true);
+        }
+
+        // release = false: lệnh sẽ được thử lại trên cùng lease - không trả lease, không báo onExit
+        private void abortStart(boolean release) {
+            cancelled = true;
+            if (!release) {
+                finished.set(true);
+            }
+            disconnectChannel();
+            stdout.close();
+            stderr.close();
+        }
+
+        // JSch đóng stdout khi nhận EOF và đóng stderr khi kênh đóng (sau exit-status)
+        private void streamClosed() {
+            if (openStreams.decrementAndGet() <= 0) {
+                finish();
+            }
+        }
+
+        private void finish() {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            if (deadlineTask != null) {
+                deadlineTask.cancel(false);
+            }
+            int status = channel != null ? channel.getExitStatus() : -1;
+            try {
+                if (channel != null && channel.isConnected()) {
+                    channel.disconnect();
+                }
+            } catch (Exception ignored) {
+            }
+            lease.close();
+            ExecResult result = new ExecResult(
+                    status >= 0 && !timedOut && !cancelled ? status : null,
+                    timedOut, cancelled,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                    stdout.size(), stderr.size(),
+                    stdout.isTruncated() || stderr.isTruncated());
+            if (listener != null) {
+                try {
+                    listener.onExit(result);
+                } catch (RuntimeException e) {
+                    logger.warn("[SshExec] Listener onExit failed: {}", e.getMessage());
+                }
+            }
+            completion.complete(result);
+        }
+
+        /**
+         * OutputStream JSch ghi vào: lưu vào buffer, gọi callback chunk và tách dòng theo byte '\n'
+         * (an toàn với UTF-8 vì '\n' không nằm trong ký tự nhiều byte)
+         */
+        private final class StreamSink extends OutputStream {
+            private final StreamType type;
+            private final SpillableOutputBuffer buffer;
+            private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+            private final AtomicBoolean closed = new AtomicBoolean(false);
+
+            StreamSink(StreamType type, SpillableOutputBuffer buffer) {
+                this.type = type;
+                this.buffer = buffer;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public synchronized void write(byte[] data, int offset, int length) throws IOException {
+                if (closed.get() || length <= 0) {
+                    return;
+                }
+                buffer.write(data, offset, length);
+                if (listener == null) {
+                    return;
+                }
+                try {
+                    listener.onChunk(type, data, offset, length);
+                    if (streaming) {
+                        return;
+                    }
+                    int lineStart = offset;
+                    int end = offset + length;
+                    for (int i = offset; i < end; i++) {
+                        if (data[i] == '\n') {
+                            partialLine.write(data, lineStart, i - lineStart);
+                            emitLine();
+                            lineStart = i + 1;
+                        }
+                    }
+                    partialLine.write(data, lineStart, end - lineStart);
+                } catch (RuntimeException e) {
+                    logger.warn("[SshExec] Listener failed on {}: {}", type, e.getMessage());
+                }
+            }
+
+            private void emitLine() {
+                String line = partialLine.toString(StandardCharsets.UTF_8);
+                partialLine.reset();
+                if (line.endsWith("\r")) {
+                    line = line.substring(0, line.length() - 1);
+                }
+                listener.onLine(type, line);
+            }
+
+            @Override
+            public void close() {
+                if (!closed.compareAndSet(false, true)) {
+                    return;
+                }
+                synchronized (this) {
+                    if (listener != null && partialLine.size() > 0) {
+                        try {
+                            emitLine();
+                        } catch (RuntimeException e) {
+                            logger.warn("[SshExec] Listener failed on {}: {}", type, e.getMessage());
+                        }
+                    }
+                }
+                streamClosed();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deadlineTimer.shutdownNow();
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.AutoDeployApp.service;
+
+import com.jcraft.jsch.Identity;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.KeyPair;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache private key SSH trong bộ nhớ.
+ *
+ * - Server → (SshKey id, PEM): tránh query findByIdWithSshKey cho mỗi lệnh SSH. PEM được trả về nguyên
+ *   instance đã cache, không tạo bản sao cho mỗi lần gọi.
+ * - SHA-256 nội dung → KeyPair đã parse: tránh parse lại PEM mỗi lần bắt tay.
+ *
+ * Entry bị xoá khi key/server được cập nhật hoặc xoá qua ServerService, khi hết TTL hoặc khi vượt
+ * max-entries; lúc xoá, khoá riêng trong KeyPair được ghi đè bằng 0.
+ */
+@Service
+public class SshIdentityCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SshIdentityCache.class);
+
+    @Value("${ssh.identity-cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${ssh.identity-cache.max-entries:256}")
+    private int maxEntries;
+
+    private final Map<Long, ServerKeyRef> serverKeys = new ConcurrentHashMap<>();
+    // Hash nội dung → KeyPair: cùng nội dung PEM thì cùng 1 identity, bất kể SshKey id
+    private final Map<String, ParsedIdentity> identities = new ConcurrentHashMap<>();
+    // Hash nội dung → SshKey id, để PEM truyền vào pool (không kèm id) vẫn gắn đúng key khi invalidate.
+    // Chỉ giữ hash còn được serverKeys hoặc identities tham chiếu (dọn trong trimIfNeeded)
+    private final Map<String, Long> keyIdByHash = new ConcurrentHashMap<>();
+
+    private final AtomicLong pemHits = new AtomicLong();
+    private final AtomicLong pemMisses = new AtomicLong();
+    private final AtomicLong parseHits = new AtomicLong();
+    private final AtomicLong parses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static final class ServerKeyRef {
+        final Long sshKeyId;
+        final String contentHash;
+        final String pem;
+        final long loadedAt = System.currentTimeMillis();
+
+        ServerKeyRef(Long sshKeyId, String contentHash, String pem) {
+            this.sshKeyId = sshKeyId;
+            this.contentHash = contentHash;
+            this.pem = pem;
+        }
+    }
+
+    private static final class ParsedIdentity {
+        final KeyPair keyPair;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        ParsedIdentity(KeyPair keyPair) {
+            this.keyPair = keyPair;
+        }
+    }
+
+    /**
+     * Key riêng (PEM) của server; loader chỉ được gọi khi cache miss (hoặc hết TTL).
+     * loader trả về Map.entry(sshKeyId, pem) hoặc null nếu server không có key.
+     */
+    public String resolvePem(Long serverId, Function<Long, Map.Entry<Long, String>> loader) {
+        if (serverId == null) {
+            return null;
+        }
+        ServerKeyRef ref = serverKeys.get(serverId);
+        if (ref != null && !isExpired(ref.loadedAt)) {
+            pemHits.incrementAndGet();
+            return ref.pem;
+        }
+        pemMisses.incrementAndGet();
+        Map.Entry<Long, String> loaded = loader.apply(serverId);
+        if (loaded == null || loaded.getValue() == null || loaded.getValue().isBlank()) {
+            // Không cache trường hợp chưa có key: key có thể được tạo ngay sau đó (reconnect, tạo server)
+            invalidateServer(serverId);
+            return null;
+        }
+        String pem = loaded.getValue();
+        String hash = contentHash(pem);
+        if (loaded.getKey() != null) {
+            keyIdByHash.put(hash, loaded.getKey());
+        }
+        serverKeys.put(serverId, new ServerKeyRef(loaded.getKey(), hash, pem));
+        trimIfNeeded();
+        return pem;
+    }
+
+    /**
+     * Nạp identity đã parse vào JSch (parse PEM lần đầu, các lần sau dùng lại KeyPair)
+     */
+    public void addIdentity(JSch jsch, String privateKeyPem) throws JSchException {
+        String hash = contentHash(privateKeyPem);
+        ParsedIdentity parsed = identities.get(hash);
+        if (parsed == null) {
+            KeyPair keyPair = KeyPair.load(jsch, privateKeyPem.getBytes(StandardCharsets.UTF_8), null);
+            if (keyPair.isEncrypted()) {
+                keyPair.dispose();
+                throw new JSchException("Encrypted private keys are not supported");
+            }
+            parses.incrementAndGet();
+            ParsedIdentity created = new ParsedIdentity(keyPair);
+            parsed = identities.putIfAbsent(hash, created);
+            if (parsed == null) {
+                parsed = created;
+                trimIfNeeded();
+            } else {
+                keyPair.dispose();
+            }
+        } else {
+            parseHits.incrementAndGet();
+        }
+        parsed.lastUsed = System.currentTimeMillis();
+        jsch.addIdentity(new CachedIdentity("key-" + hash.substring(0, 12), parsed.keyPair), null);
+    }
+
+    /** Server đổi key / đổi thông tin đăng nhập / bị xoá */
+    public void invalidateServer(Long serverId) {
+        ServerKeyRef ref = serverId != null ? serverKeys.remove(serverId) : null;
+        if (ref != null) {
+            evictions.incrementAndGet();
+        }
+    }
+
+    /** SshKey bị cập nhật hoặc xoá: bỏ mọi entry tham chiếu tới key này */
+    public void invalidateKey(Long sshKeyId) {
+        if (sshKeyId == null) {
+            return;
+        }
+        Set<String> hashes = new HashSet<>();
+        keyIdByHash.forEach((hash, id) -> {
+            if (sshKeyId.equals(id)) {
+                hashes.add(hash);
+            }
+        });
+        serverKeys.entrySet().removeIf(e -> {
+            if (sshKeyId.equals(e.getValue().sshKeyId) || hashes.contains(e.getValue().contentHash)) {
+                hashes.add(e.getValue().contentHash);
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        });
+        identities.entrySet().removeIf(e -> {
+            if (hashes.contains(e.getKey())) {
+                e.getValue().keyPair.dispose();
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        });
+        keyIdByHash.values().removeIf(sshKeyId::equals);
+    }
+
+    public void invalidateAll() {
+        evictions.addAndGet(serverKeys.size() + identities.size());
+        serverKeys.clear();
+        identities.values().forEach(p -> p.keyPair.dispose());
+        identities.clear();
+        keyIdByHash.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("servers", serverKeys.size());
+        stats.put("identities", identities.size());
+        stats.put("pemHits", pemHits.get());
+        stats.put("pemMisses", pemMisses.get());
+        stats.put("parseHits", parseHits.get());
+        stats.put("parses", parses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("ttlSeconds", ttlSeconds);
+        return stats;
+    }
+
+    private boolean isExpired(long timestamp) {
+        return ttlSeconds > 0 && System.currentTimeMillis() - timestamp > TimeUnit.SECONDS.toMillis(ttlSeconds);
+    }
+
+    private void trimIfNeeded() {
+        serverKeys.entrySet().removeIf(e -> {
+            if (isExpired(e.getValue().loadedAt)) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        });
+        identities.entrySet().removeIf(e -> {
+            if (isExpired(e.getValue().lastUsed)) {
+                e.getValue().keyPair.dispose();
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        });
+        int limit = Math.max(1, maxEntries);
+        while (identities.size() > limit) {
+            identities.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().lastUsed))
+                    .ifPresent(e -> {
+                        if (identities.remove(e.getKey(), e.getValue())) {
+                            e.getValue().keyPair.dispose();
+                            evictions.incrementAndGet();
+                        }
+                    });
+        }
+        while (serverKeys.size() > limit) {
+            serverKeys.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().loadedAt))
+                    .ifPresent(e -> {
+                        if (serverKeys.remove(e.getKey(), e.getValue())) {
+                            evictions.incrementAndGet();
+                        }
+                    });
+        }
+        // Hash không còn entry nào tham chiếu thì bỏ luôn mapping sang SshKey id
+        Set<String> live = new HashSet<>(identities.keySet());
+        serverKeys.values().forEach(ref -> live.add(ref.contentHash));
+        keyIdByHash.keySet().retainAll(live);
+    }
+
+    private static String contentHash(String pem) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(pem.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Identity dùng chung KeyPair đã parse. clear() không huỷ KeyPair - việc đó do cache làm khi evict,
+     * vì JSch gọi clear() khi đóng repository của từng instance.
+     */
+    private static final class CachedIdentity implements Identity {
+        private final String name;
+        private final KeyPair keyPair;
+
+        CachedIdentity(String name, KeyPair keyPair) {
+            this.name = name;
+            this.keyPair = keyPair;
+        }
+
+        @Override
+        public boolean setPassphrase(byte[] passphrase) {
+            return true;
+        }
+
+        @Override
+        public byte[] getPublicKeyBlob() {
+            return keyPair.getPublicKeyBlob();
+        }
+
+        @Override
+        public byte[] getSignature(byte[] data) {
+            return keyPair.getSignature(data);
+        }
+
+        @Override
+        public byte[] getSignature(byte[] data, String alg) {
+            return keyPair.getSignature(data, alg);
+        }
+
+        @Override
+        public String getAlgName() {
+            return keyPair.getKeyTypeString();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isEncrypted() {
+            return false;
+        }
+
+        @Override
+        public void clear() {
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.debug("[SSH Identity] Clearing {} cached identities", identities.size());
+        invalidateAll();
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.AutoDeployApp.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.*;
+
+/**
+ * Gộp nhiều lệnh thành 1 script chạy trong 1 lần exec SSH.
+ *
+ * Mỗi bước chạy trong subshell riêng, trước/sau bước script in marker có nonce ngẫu nhiên ra cả stdout và
+ * stderr: {@code <<<STEP:nonce:i:BEGIN>>>} và {@code \n<<<STEP:nonce:i:END:rc>>>}. Phía Java tách output theo
+ * marker để có exit code, stdout, stderr của từng bước; thời gian từng bước đo theo lúc marker tới.
+ */
+public final class SshScriptBatch {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private SshScriptBatch() {
+    }
+
+    public enum Mode {
+        /** Dừng ở bước lỗi đầu tiên, các bước sau có status SKIPPED */
+        STOP_ON_FAILURE,
+        /** Chạy hết các bước bất kể exit code */
+        CONTINUE
+    }
+
+    public record Step(String name, String command) {
+    }
+
+    /**
+     * status: OK, FAILED, SKIPPED (không chạy do bước trước lỗi) hoặc INCOMPLETE (hết hạn / mất kết nối giữa chừng)
+     */
+    public record StepResult(int index, String name, String status, Integer exitCode, String stdout, String stderr,
+            long durationMs) {
+    }
+
+    public record Result(List<StepResult> steps, Integer exitCode, boolean timedOut, long durationMs) {
+
+        public boolean isSuccess() {
+            return !timedOut && steps.stream().allMatch(s -> "OK".equals(s.status()));
+        }
+
+        public StepResult step(String name) {
+            return steps.stream().filter(s -> s.name().equals(name)).findFirst().orElse(null);
+        }
+
+        /** stdout đã trim của bước (chuỗi rỗng nếu bước không chạy) - tương đương giá trị trả về của execCommand */
+        public String output(String name) {
+            StepResult s = step(name);
+            return s != null && s.stdout() != null ? s.stdout().trim() : "";
+        }
+    }
+
+    static String newNonce() {
+        byte[] bytes = new byte[8];
+        RANDOM.nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    /**
+     * Lệnh exec hoàn chỉnh: script được base64 để không phải escape, truyền qua tham số sh -c (stdin giữ nguyên
+     * cho các bước dùng pipe/sudo -S)
+     */
+    static String buildCommand(List<Step> steps, Mode mode, String nonce) {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < steps.size(); i++) {
+            String begin = "<<<STEP:" + nonce + ":" + i + ":BEGIN>>>";
+            script.append("printf '%s\\n' '").append(begin).append("'; printf '%s\\n' '").append(begin)
+                    .append("' >&2\n");
+            script.append("(\n").append(steps.get(i).command()).append("\n)\n");
+            script.append("rc=$?\n");
+            script.append("printf '\\n<<<STEP:").append(nonce).append(':').append(i).append(":END:%d>>>\\n' \"$rc\"; ");
+            script.append("printf '\\n<<<STEP:").append(nonce).append(':').append(i)
+                    .append(":END:%d>>>\\n' \"$rc\" >&2\n");
+            if (mode == Mode.STOP_ON_FAILURE) {
+                script.append("[ \"$rc\" -eq 0 ] || exit \"$rc\"\n");
+            }
+        }
+        script.append("exit 0\n");
+        String encoded = Base64.getEncoder().encodeToString(script.toString().getBytes(StandardCharsets.UTF_8));
+        return "sh -c \"$(echo '" + encoded + "' | base64 -d)\"";
+    }
+
+    /** Marker BEGIN/END nhận được trên stdout: trả về chỉ số bước, -1 nếu không phải marker */
+    static int markerStep(String line, String nonce) {
+        String prefix = "<<<STEP:" + nonce + ":";
+        if (!line.startsWith(prefix) || !line.endsWith(">>>")) {
+            return -1;
+        }
+        int end = line.indexOf(':', prefix.length());
+        try {
+            return end > 0 ? Integer.parseInt(line.substring(prefix.length(), end)) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static Result parse(List<Step> steps, String nonce, String stdout, String stderr, long[] beginNanos,
+            long[] endNanos, Integer exitCode, boolean timedOut, long durationMs) {
+        List<StepResult> results = new ArrayList<>();
+        for (int i = 0; i < steps.size(); i++) {
+            Section out = section(stdout, nonce, i);
+            Section err = section(stderr, nonce, i);
+            String status;
+            if (!out.started) {
+                status = "SKIPPED";
+            } else if (out.exitCode == null) {
+                status = "INCOMPLETE";
+            } else {
+                status = out.exitCode == 0 ? "OK" : "FAILED";
+            }
+            long stepMs = 0;
+            if (beginNanos[i] > 0) {
+                long end = endNanos[i] > 0 ? endNanos[i] : System.nanoTime();
+                stepMs = (end - beginNanos[i]) / 1_000_000L;
+            }
+            results.add(new StepResult(i, steps.get(i).name(), status, out.exitCode,
+                    out.started ? out.text : null, err.started ? err.text : null, stepMs));
+        }
+        return new Result(List.copyOf(results), exitCode, timedOut, durationMs);
+    }
+
+    private record Section(boolean started, String text, Integer exitCode) {
+    }
+
+    private static Section section(String output, String nonce, int index) {
+        if (output == null) {
+            return new Section(false, null, null);
+        }
+        String begin = "<<<STEP:" + nonce + ":" + index + ":BEGIN>>>\n";
+        int b = output.indexOf(begin);
+        if (b < 0) {
+            return new Section(false, null, null);
+        }
+        int from = b + begin.length();
+        String endPrefix = "\n<<<STEP:" + nonce + ":" + index + ":END:";
+        int e = output.indexOf(endPrefix, from);
+        if (e < 0) {
+            return new Section(true, output.substring(from), null);
+        }
+        int codeStart = e + endPrefix.length();
+        int codeEnd = output.indexOf(">>>", codeStart);
+        Integer code = null;
+        try {
+            code = codeEnd > codeStart ? Integer.parseInt(output.substring(codeStart, codeEnd)) : null;
+        } catch (NumberFormatException ignored) {
+        }
+        return new Section(true, output.substring(from, e), code);
+    }
+}
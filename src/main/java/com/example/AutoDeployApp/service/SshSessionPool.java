@@ -0,0 +1,505 @@
+package com.example.AutoDeployApp.service;
+
+import com.jcraft.jsch.Channel;
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool SSH session dùng chung theo host/port/user/credential.
+ *
+ * Mỗi session JSch đã xác thực được dùng lại cho nhiều ChannelExec (tối đa max-channels-per-session kênh
+ * đồng thời), tránh phải bắt tay TCP + key exchange + auth cho từng lệnh. Số session mỗi host bị giới hạn,
+ * session rảnh quá idle-timeout bị đóng, keepalive giữ kết nối sống và session bị rớt được mở lại khi cần.
+ *
+ * Kênh sống lâu (shell terminal, agent metrics) dùng acquireDedicated(): 1 session riêng ngoài pool, không
+ * giữ slot kênh của pool vô thời hạn. JSch cũng không có flow control theo kênh - khi pipe của 1 kênh đầy,
+ * thread đọc của cả session bị chặn, nên kênh đó không được chia session với các lệnh ngắn.
+ * max-channels-per-session phải nhỏ hơn MaxSessions của sshd (mặc định 10).
+ */
+@Service
+public class SshSessionPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(SshSessionPool.class);
+
+    @Value("${ssh.pool.max-sessions-per-host:4}")
+    private int maxSessionsPerHost;
+
+    @Value("${ssh.pool.max-channels-per-session:8}")
+    private int maxChannelsPerSession;
+
+    @Value("${ssh.pool.idle-timeout-seconds:300}")
+    private long idleTimeoutSeconds;
+
+    @Value("${ssh.pool.keepalive-seconds:30}")
+    private int keepaliveSeconds;
+
+    @Value("${ssh.pool.acquire-wait-ms:10000}")
+    private long acquireWaitMs;
+
+    @Value("${ssh.pool.max-dedicated-per-host:16}")
+    private int maxDedicatedPerHost;
+
+    private final Map<String, HostSlots> hosts = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong handshakes = new AtomicLong();
+    private final AtomicLong handshakeFailures = new AtomicLong();
+    private final AtomicLong handshakeNanosTotal = new AtomicLong();
+    private final AtomicLong handshakeNanosMax = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong dedicatedOpened = new AtomicLong();
+
+    private final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ssh-pool-evictor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final SshIdentityCache sshIdentityCache;
+
+    public SshSessionPool(SshIdentityCache sshIdentityCache) {
+        this.sshIdentityCache = sshIdentityCache;
+        evictor.scheduleWithFixedDelay(this::evictIdle, 30, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Khoá pool: credential chỉ giữ dạng fingerprint SHA-256, không giữ bản rõ
+     */
+    private record PoolKey(String host, int port, String username, String credentialFingerprint) {
+    }
+
+    private static final class PooledSession {
+        final PoolKey key;
+        final Session session;
+        final boolean dedicated; // session riêng của 1 lease, không nằm trong pool
+        int leases;
+        long lastUsed = System.currentTimeMillis();
+        boolean broken;
+
+        PooledSession(PoolKey key, Session session) {
+            this(key, session, false);
+        }
+
+        PooledSession(PoolKey key, Session session, boolean dedicated) {
+            this.key = key;
+            this.session = session;
+            this.dedicated = dedicated;
+        }
+    }
+
+    /** Các session của 1 host:port - đồng thời là monitor để chờ slot */
+    private static final class HostSlots {
+        final List<PooledSession> sessions = new ArrayList<>();
+        final List<PooledSession> dedicated = new ArrayList<>();
+        int connecting;
+        int dedicatedConnecting;
+    }
+
+    /**
+     * Phiên mượn từ pool. Mở channel qua openChannel/openExec; close() trả slot về pool (không ngắt session).
+     */
+    public final class Lease implements AutoCloseable {
+        private final String password;
+        private final String privateKeyPem;
+        private final int connectTimeoutMs;
+        private PooledSession pooled;
+        private boolean closed;
+
+        private Lease(PooledSession pooled, String password, String privateKeyPem, int connectTimeoutMs) {
+            this.pooled = pooled;
+            this.password = password;
+            this.privateKeyPem = privateKeyPem;
+            this.connectTimeoutMs = connectTimeoutMs;
+        }
+
+        public Session session() {
+            return pooled.session;
+        }
+
+        /**
+         * Mở channel; nếu session đã rớt (phát hiện trước hoặc khi mở) thì kết nối lại một lần rồi thử lại
+         */
+        public Channel openChannel(String type) throws JSchException {
+            if (!pooled.session.isConnected()) {
+                renew();
+                return pooled.session.openChannel(type);
+            }
+            try {
+                return pooled.session.openChannel(type);
+            } catch (JSchException e) {
+                if (pooled.session.isConnected()) {
+                    throw e;
+                }
+                renew();
+                return pooled.session.openChannel(type);
+            }
+        }
+
+        /**
+         * Bỏ session hiện tại (đánh dấu hỏng, pool đóng khi các kênh khác trả về) và chuyển lease sang session
+         * mới. Dùng khi session chết hoặc không mở được kênh mới (vd. channel.connect thất bại).
+         */
+        public synchronized void renew() throws JSchException {
+            if (closed) {
+                throw new JSchException("SSH lease already closed");
+            }
+            reconnects.incrementAndGet();
+            logger.info("[SSH Pool] Session to {}:{} unusable, reconnecting", pooled.key.host(), pooled.key.port());
+            PooledSession dead = pooled;
+            release(dead, true);
+            pooled = dead.dedicated ? openDedicated(dead.key, password, privateKeyPem, connectTimeoutMs)
+                    : acquirePooled(dead.key, password, privateKeyPem, connectTimeoutMs);
+        }
+
+        public ChannelExec openExec() throws JSchException {
+            return (ChannelExec) openChannel("exec");
+        }
+
+        /** Đánh dấu session hỏng (vd. lỗi giao thức) để pool đóng nó khi trả về */
+        public void invalidate() {
+            synchronized (slots(pooled.key)) {
+                pooled.broken = true;
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release(pooled, false);
+            }
+        }
+    }
+
+    /**
+     * Mượn session đã xác thực. privateKeyPem ưu tiên; password dùng cho xác thực mật khẩu (hoặc fallback).
+     */
+    public Lease acquire(String host, int port, String username, String password, String privateKeyPem,
+            int connectTimeoutMs) throws JSchException {
+        PoolKey key = new PoolKey(host, port, username, fingerprint(username, password, privateKeyPem));
+        return new Lease(acquirePooled(key, password, privateKeyPem, connectTimeoutMs), password, privateKeyPem,
+                connectTimeoutMs);
+    }
+
+    /**
+     * Session riêng cho 1 kênh sống lâu (tối đa max-dedicated-per-host mỗi host), không chiếm slot kênh của pool.
+     * close() trên lease ngắt luôn session.
+     */
+    public Lease acquireDedicated(String host, int port, String username, String password, String privateKeyPem,
+            int connectTimeoutMs) throws JSchException {
+        PoolKey key = new PoolKey(host, port, username, fingerprint(username, password, privateKeyPem));
+        return new Lease(openDedicated(key, password, privateKeyPem, connectTimeoutMs), password, privateKeyPem,
+                connectTimeoutMs);
+    }
+
+    private PooledSession openDedicated(PoolKey key, String password, String privateKeyPem, int connectTimeoutMs)
+            throws JSchException {
+        HostSlots slots = slots(key);
+        synchronized (slots) {
+            if (slots.dedicated.size() + slots.dedicatedConnecting >= Math.max(1, maxDedicatedPerHost)) {
+                throw new JSchException("Too many dedicated SSH sessions to " + key.host() + ":" + key.port());
+            }
+            slots.dedicatedConnecting++;
+        }
+        try {
+            Session session = connect(key, password, privateKeyPem, connectTimeoutMs);
+            PooledSession created = new PooledSession(key, session, true);
+            created.leases = 1;
+            synchronized (slots) {
+                slots.dedicated.add(created);
+            }
+            dedicatedOpened.incrementAndGet();
+            return created;
+        } finally {
+            synchronized (slots) {
+                slots.dedicatedConnecting--;
+            }
+        }
+    }
+
+    private PooledSession acquirePooled(PoolKey key, String password, String privateKeyPem, int connectTimeoutMs)
+            throws JSchException {
+        HostSlots slots = slots(key);
+        List<PooledSession> toClose = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + Math.max(acquireWaitMs, connectTimeoutMs);
+        try {
+            synchronized (slots) {
+                while (true) {
+                    PooledSession best = null;
+                    PooledSession idleOther = null;
+                    for (Iterator<PooledSession> it = slots.sessions.iterator(); it.hasNext();) {
+                        PooledSession ps = it.next();
+                        if (!ps.session.isConnected() || (ps.broken && ps.leases == 0)) {
+                            it.remove();
+                            toClose.add(ps);
+                            continue;
+                        }
+                        if (ps.broken) {
+                            continue;
+                        }
+                        if (ps.key.equals(key) && ps.leases < Math.max(1, maxChannelsPerSession)
+                                && (best == null || ps.leases < best.leases)) {
+                            best = ps;
+                        } else if (!ps.key.equals(key) && ps.leases == 0) {
+                            idleOther = ps;
+                        }
+                    }
+                    if (best != null) {
+                        best.leases++;
+                        best.lastUsed = System.currentTimeMillis();
+                        hits.incrementAndGet();
+                        return best;
+                    }
+                    if (slots.sessions.size() + slots.connecting >= Math.max(1, maxSessionsPerHost)
+                            && idleOther != null) {
+                        // Nhường slot của session rảnh thuộc user/credential khác trên cùng host
+                        slots.sessions.remove(idleOther);
+                        toClose.add(idleOther);
+                        evictions.incrementAndGet();
+                    }
+                    if (slots.sessions.size() + slots.connecting < Math.max(1, maxSessionsPerHost)) {
+                        slots.connecting++;
+                        break;
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new JSchException("SSH pool exhausted for " + key.host() + ":" + key.port());
+                    }
+                    try {
+                        slots.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new JSchException("Interrupted while waiting for SSH session");
+                    }
+                }
+            }
+        } finally {
+            toClose.forEach(ps -> disconnectQuietly(ps.session));
+        }
+
+        misses.incrementAndGet();
+        Session session = null;
+        try {
+            session = connect(key, password, privateKeyPem, connectTimeoutMs);
+            PooledSession created = new PooledSession(key, session);
+            created.leases = 1;
+            synchronized (slots) {
+                slots.connecting--;
+                slots.sessions.add(created);
+                slots.notifyAll();
+            }
+            return created;
+        } catch (JSchException | RuntimeException e) {
+            synchronized (slots) {
+                slots.connecting--;
+                slots.notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private Session connect(PoolKey key, String password, String privateKeyPem, int connectTimeoutMs)
+            throws JSchException {
+        long start = System.nanoTime();
+        try {
+            JSch jsch = new JSch();
+            if (privateKeyPem != null && !privateKeyPem.isBlank()) {
+                sshIdentityCache.addIdentity(jsch, privateKeyPem);
+            }
+            Session session = jsch.getSession(key.username(), key.host(), key.port());
+            session.setConfig("StrictHostKeyChecking", "no");
+            if (password != null && !password.isBlank()) {
+                session.setPassword(password);
+            }
+            // Keepalive: JSch gửi keepalive@openssh.com khi kết nối rảnh, quá 3 lần không phản hồi thì ngắt
+            session.setServerAliveInterval((int) TimeUnit.SECONDS.toMillis(Math.max(1, keepaliveSeconds)));
+            session.setServerAliveCountMax(3);
+            session.connect(connectTimeoutMs);
+            long elapsed = System.nanoTime() - start;
+            handshakes.incrementAndGet();
+            handshakeNanosTotal.addAndGet(elapsed);
+            handshakeNanosMax.accumulateAndGet(elapsed, Math::max);
+            logger.debug("[SSH Pool] Connected {}@{}:{} in {} ms", key.username(), key.host(), key.port(),
+                    TimeUnit.NANOSECONDS.toMillis(elapsed));
+            return session;
+        } catch (JSchException e) {
+            handshakeFailures.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private void release(PooledSession ps, boolean broken) {
+        HostSlots slots = slots(ps.key);
+        if (ps.dedicated) {
+            synchronized (slots) {
+                ps.leases = 0;
+                slots.dedicated.remove(ps);
+            }
+            disconnectQuietly(ps.session);
+            return;
+        }
+        boolean close = false;
+        synchronized (slots) {
+            ps.leases = Math.max(0, ps.leases - 1);
+            ps.lastUsed = System.currentTimeMillis();
+            if (broken) {
+                ps.broken = true;
+            }
+            if ((ps.broken || !ps.session.isConnected()) && ps.leases == 0) {
+                slots.sessions.remove(ps);
+                close = true;
+            }
+            slots.notifyAll();
+        }
+        if (close) {
+            disconnectQuietly(ps.session);
+        }
+    }
+
+    /**
+     * Đóng mọi session tới host:port (vd. khi đổi thông tin đăng nhập hoặc xoá server).
+     * Session đang được mượn bị đánh dấu hỏng và đóng khi trả về.
+     */
+    public void evictHost(String host, int port) {
+        HostSlots slots = hosts.get(host + ":" + port);
+        if (slots == null) {
+            return;
+        }
+        List<PooledSession> toClose = new ArrayList<>();
+        synchronized (slots) {
+            for (Iterator<PooledSession> it = slots.sessions.iterator(); it.hasNext();) {
+                PooledSession ps = it.next();
+                ps.broken = true;
+                if (ps.leases == 0) {
+                    it.remove();
+                    toClose.add(ps);
+                }
+            }
+        }
+        evictions.addAndGet(toClose.size());
+        toClose.forEach(ps -> disconnectQuietly(ps.session));
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(Math.max(1, idleTimeoutSeconds));
+        for (HostSlots slots : hosts.values()) {
+            List<PooledSession> toClose = new ArrayList<>();
+            synchronized (slots) {
+                for (Iterator<PooledSession> it = slots.sessions.iterator(); it.hasNext();) {
+                    PooledSession ps = it.next();
+                    if (ps.leases == 0 && (ps.lastUsed < cutoff || !ps.session.isConnected() || ps.broken)) {
+                        it.remove();
+                        toClose.add(ps);
+                    }
+                }
+                if (!toClose.isEmpty()) {
+                    slots.notifyAll();
+                }
+            }
+            evictions.addAndGet(toClose.size());
+            toClose.forEach(ps -> disconnectQuietly(ps.session));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        int sessions = 0;
+        int leases = 0;
+        int dedicated = 0;
+        for (HostSlots slots : hosts.values()) {
+            synchronized (slots) {
+                sessions += slots.sessions.size();
+                dedicated += slots.dedicated.size();
+                for (PooledSession ps : slots.sessions) {
+                    leases += ps.leases;
+                }
+            }
+        }
+        long count = handshakes.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hosts", hosts.size());
+        stats.put("sessions", sessions);
+        stats.put("leasesInUse", leases);
+        stats.put("dedicatedSessions", dedicated);
+        stats.put("dedicatedOpened", dedicatedOpened.get());
+        stats.put("maxDedicatedPerHost", maxDedicatedPerHost);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        long total = hits.get() + misses.get();
+        stats.put("hitRatio", total > 0 ? Math.round(hits.get() * 1000.0 / total) / 1000.0 : 0.0);
+        stats.put("handshakes", count);
+        stats.put("handshakeFailures", handshakeFailures.get());
+        stats.put("avgHandshakeMs", count > 0 ? TimeUnit.NANOSECONDS.toMillis(handshakeNanosTotal.get() / count) : 0);
+        stats.put("maxHandshakeMs", TimeUnit.NANOSECONDS.toMillis(handshakeNanosMax.get()));
+        stats.put("reconnects", reconnects.get());
+        stats.put("evictions", evictions.get());
+        stats.put("maxSessionsPerHost", maxSessionsPerHost);
+        stats.put("maxChannelsPerSession", maxChannelsPerSession);
+        return stats;
+    }
+
+    private HostSlots slots(PoolKey key) {
+        return hosts.computeIfAbsent(key.host() + ":" + key.port(), k -> new HostSlots());
+    }
+
+    private static String fingerprint(String username, String password, String privateKeyPem) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(String.valueOf(username).getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            if (privateKeyPem != null && !privateKeyPem.isBlank()) {
+                md.update("key:".getBytes(StandardCharsets.UTF_8));
+                md.update(privateKeyPem.getBytes(StandardCharsets.UTF_8));
+            }
+            md.update((byte) 0);
+            if (password != null && !password.isBlank()) {
+                md.update("pw:".getBytes(StandardCharsets.UTF_8));
+                md.update(password.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void disconnectQuietly(Session session) {
+        try {
+            if (session != null && session.isConnected()) {
+                session.disconnect();
+            }
+        } catch (Exception ignored) {
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictor.shutdownNow();
+        for (HostSlots slots : hosts.values()) {
+            synchronized (slots) {
+                slots.sessions.forEach(ps -> disconnectQuietly(ps.session));
+                slots.sessions.clear();
+                slots.dedicated.forEach(ps -> disconnectQuietly(ps.session));
+                slots.dedicated.clear();
+            }
+        }
+        hosts.clear();
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.AutoDeployApp.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Kiểm tra host:port có nhận kết nối TCP hay không bằng connect non-blocking trên 1 Selector.
+ *
+ * Hai thread dùng chung cho mọi lần probe: "tcp-probe-submit" phân giải địa chỉ và mở kết nối (giới hạn số
+ * socket đang mở bằng max-in-flight), "tcp-probe-selector" chờ OP_CONNECT, đo RTT và đóng kết nối khi tới
+ * deadline của từng probe. Kết quả trả về theo thứ tự hoàn thành.
+ */
+@Service
+public class TcpReachabilityProber {
+
+    private static final Logger logger = LoggerFactory.getLogger(TcpReachabilityProber.class);
+
+    @Value("${reachability.max-in-flight:2048}")
+    private int maxInFlight;
+
+    private final ExecutorService submitter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "tcp-probe-submit");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Queue<Probe> pendingRegistrations = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<Probe> deadlines = new PriorityQueue<>(Comparator.comparingLong(p -> p.deadlineNanos));
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private volatile boolean running = true;
+    private volatile Selector selector;
+    private volatile Semaphore inFlight;
+    private Thread selectorThread;
+
+    public record Target(Long id, String host, int port) {
+    }
+
+    /**
+     * rttMs: thời gian từ lúc bắt đầu connect tới khi bắt tay TCP xong (-1 nếu không kết nối được).
+     * error: null khi reachable, "timeout", "unresolved" hoặc thông báo lỗi connect (refused, unreachable...)
+     */
+    public record ProbeResult(Long id, String host, int port, boolean reachable, long rttMs, String error) {
+    }
+
+    /**
+     * Probe song song tất cả target, onResult được gọi trên thread selector (phải xử lý nhanh).
+     * Mỗi target chắc chắn nhận đúng 1 kết quả, muộn nhất timeoutMs sau khi được mở kết nối.
+     */
+    public void probe(List<Target> targets, int timeoutMs, Consumer<ProbeResult> onResult) {
+        if (targets.isEmpty()) {
+            return;
+        }
+        ensureStarted();
+        submitter.execute(() -> {
+            for (Target target : targets) {
+                submit(target, timeoutMs, onResult);
+            }
+        });
+    }
+
+    /**
+     * Probe song song và trả về Stream kết quả theo thứ tự hoàn thành - người gọi có thể xử lý / báo tiến độ
+     * ngay khi từng target có kết quả. Stream kết thúc khi đủ targets.size() phần tử.
+     */
+    public Stream<ProbeResult> probe(List<Target> targets, int timeoutMs) {
+        BlockingQueue<ProbeResult> results = new LinkedBlockingQueue<>();
+        probe(targets, timeoutMs, results::add);
+        int total = targets.size();
+        Iterator<ProbeResult> iterator = new Iterator<>() {
+            private int received;
+
+            @Override
+            public boolean hasNext() {
+                return received < total;
+            }
+
+            @Override
+            public ProbeResult next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    ProbeResult r;
+                    while ((r = results.poll(1, TimeUnit.SECONDS)) == null) {
+                        if (!running) {
+                            throw new IllegalStateException("TCP prober stopped");
+                        }
+                    }
+                    received++;
+                    return r;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for probe results", e);
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(iterator, total,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.SIZED), false);
+    }
+
+    public Map<String, Object> getStats() {
+        Semaphore permits = inFlight;
+        return Map.of(
+                "maxInFlight", Math.max(1, maxInFlight),
+                "inFlight", permits != null ? Math.max(1, maxInFlight) - permits.availablePermits() : 0,
+                "running", running && started.get());
+    }
+
+    private void ensureStarted() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            inFlight = new Semaphore(Math.max(1, maxInFlight));
+            selector = Selector.open();
+        } catch (IOException e) {
+            started.set(false);
+            throw new IllegalStateException("Cannot open selector: " + e.getMessage(), e);
+        }
+        selectorThread = new Thread(this::selectLoop, "tcp-probe-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    private void submit(Target target, int timeoutMs, Consumer<ProbeResult> onResult) {
+        Probe probe = new Probe(target, onResult);
+        InetSocketAddress address = new InetSocketAddress(target.host(), target.port());
+        if (address.isUnresolved()) {
+            probe.deliver(false, -1, "unresolved");
+            return;
+        }
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            probe.deliver(false, -1, "interrupted");
+            return;
+        }
+        probe.holdsPermit = true;
+        try {
+            SocketChannel channel = SocketChannel.open();
+            probe.channel = channel;
+            channel.configureBlocking(false);
+            probe.startNanos = System.nanoTime();
+            probe.deadlineNanos = probe.startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(1, timeoutMs));
+            if (channel.connect(address)) {
+                probe.complete(true, null);
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            probe.complete(false, errorMessage(e));
+            return;
+        }
+        pendingRegistrations.add(probe);
+        Selector s = selector;
+        if (s != null) {
+            s.wakeup();
+        }
+    }
+
+    private void selectLoop() {
+        while (running) {
+            try {
+                long waitMs = 0;
+                Probe nearest = deadlines.peek();
+                if (nearest != null) {
+                    waitMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(nearest.deadlineNanos - System.nanoTime()) + 1);
+                }
+                selector.select(waitMs);
+
+                Probe pending;
+                while ((pending = pendingRegistrations.poll()) != null) {
+                    try {
+                        pending.channel.register(selector, SelectionKey.OP_CONNECT, pending);
+                        deadlines.add(pending);
+                    } catch (IOException | RuntimeException e) {
+                        pending.complete(false, errorMessage(e));
+                    }
+                }
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    Probe probe = (Probe) key.attachment();
+                    if (!key.isValid() || !key.isConnectable()) {
+                        continue;
+                    }
+                    try {
+                        probe.complete(((SocketChannel) key.channel()).finishConnect(), null);
+                    } catch (IOException | RuntimeException e) {
+                        probe.complete(false, errorMessage(e));
+                    }
+                }
+
+                long now = System.nanoTime();
+                while ((nearest = deadlines.peek()) != null && (nearest.done || nearest.deadlineNanos <= now)) {
+                    deadlines.poll();
+                    if (!nearest.done) {
+                        nearest.complete(false, "timeout");
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("[TcpProber] Selector loop error: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static String errorMessage(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private final class Probe {
+        final Target target;
+        final Consumer<ProbeResult> onResult;
+        SocketChannel channel;
+        long startNanos;
+        long deadlineNanos;
+        boolean holdsPermit;
+        volatile boolean done;
+
+        Probe(Target target, Consumer<ProbeResult> onResult) {
+            this.target = target;
+            this.onResult = onResult;
+        }
+
+        /** Đóng socket, trả permit và gửi kết quả; connected=false và error=null: finishConnect chưa xong, chờ tiếp */
+        void complete(boolean connected, String error) {
+            if (done || (!connected && error == null)) {
+                return;
+            }
+            long rttMs = connected ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) : -1;
+            if (channel != null) {
+                try {
+                    channel.close(); // huỷ luôn SelectionKey
+                } catch (IOException ignored) {
+                }
+            }
+            if (holdsPermit) {
+                holdsPermit = false;
+                inFlight.release();
+            }
+            deliver(connected, rttMs, error);
+        }
+
+        void deliver(boolean reachable, long rttMs, String error) {
+            done = true;
+            try {
+                onResult.accept(new ProbeResult(target.id(), target.host(), target.port(), reachable, rttMs,
+                        reachable ? null : error));
+            } catch (RuntimeException e) {
+                logger.warn("[TcpProber] Result callback failed for {}:{}: {}", target.host(), target.port(),
+                        e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        submitter.shutdownNow();
+        Selector s = selector;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -171,20 +171,11 @@ public class AnsibleWebSocketHandler extends TextWebSocketHandler {
                 // Kiểm tra sudo NOPASSWD trước khi yêu cầu mật khẩu
                 boolean needsPassword = true;
                 try {
-                    String pem = serverService.resolveServerPrivateKeyPem(controllerServer.getId());
-                    if (pem != null && !pem.isBlank()) {
-                        String checkSudoCmd = "sudo -l 2>/dev/null | grep -q 'NOPASSWD' && echo 'HAS_NOPASSWD' || echo 'NO_NOPASSWD'";
-                        String sudoCheckResult = serverService.execCommandWithKey(
-                                controllerServer.getHost(),
-                                controllerServer.getPort() != null ? controllerServer.getPort() : 22,
-                                controllerServer.getUsername(),
-                                pem,
-                                checkSudoCmd,
-                                5000);
-                        if (sudoCheckResult != null && sudoCheckResult.contains("HAS_NOPASSWD")) {
-                            needsPassword = false;
-                            controllerSudoPassword = null; // Không cần mật khẩu
-                        }
+                    // Tra cache năng lực server (chỉ probe khi chưa có hoặc hết hạn)
+                    var caps = serverService.getCapabilities(controllerServer, null, false);
+                    if (caps != null && caps.sudoNopasswd()) {
+                        needsPassword = false;
+                        controllerSudoPassword = null; // Không cần mật khẩu
                     }
                 } catch (Exception e) {
                     // Nếu không kiểm tra được sudo NOPASSWD thì tiếp tục với logic cũ
@@ -1510,24 +1501,13 @@ public class AnsibleWebSocketHandler extends TextWebSocketHandler {
         String pem = serverService.resolveServerPrivateKeyPem(server.getId());
 
         if (pem != null && !pem.isBlank()) {
-            try {
-                String checkSudoCmd = "sudo -l 2>/dev/null | grep -q 'NOPASSWD' && echo 'HAS_NOPASSWD' || echo 'NO_NOPASSWD'";
-                String sudoCheckResult = serverService.execCommandWithKey(host, port, username, pem, checkSudoCmd,
-                        5000);
-                hasSudoNopasswd = (sudoCheckResult != null && sudoCheckResult.contains("HAS_NOPASSWD"));
-            } catch (Exception e) {
-                // Nếu không kiểm tra được bằng SSH key thì thử bằng mật khẩu
-                try {
-                    if (sudoPassword != null && !sudoPassword.isBlank()) {
-                        String checkSudoCmd = "sudo -l 2>/dev/null | grep -q 'NOPASSWD' && echo 'HAS_NOPASSWD' || echo 'NO_NOPASSWD'";
-                        String sudoCheckResult = serverService.execCommand(host, port, username, sudoPassword,
-                                checkSudoCmd, 5000);
-                        hasSudoNopasswd = (sudoCheckResult != null && sudoCheckResult.contains("HAS_NOPASSWD"));
-                    }
-                } catch (Exception e2) {
-                    // Nếu vẫn không kiểm tra được thì giả định cần sudo password
-                }
+            // Tra cache năng lực thay vì chạy sudo -l trước mỗi lệnh; probe bằng SSH key, không được thì bằng mật khẩu
+            var caps = serverService.getCapabilities(host, port, username, null, pem, false);
+            if (caps == null && sudoPassword != null && !sudoPassword.isBlank()) {
+                caps = serverService.getCapabilities(host, port, username, sudoPassword, null, false);
             }
+            // Nếu vẫn không kiểm tra được thì giả định cần sudo password
+            hasSudoNopasswd = caps != null && caps.sudoNopasswd();
         }
 
         // Chỉ sử dụng sudo password khi thật sự cần và không có sudo NOPASSWD
@@ -0,0 +1,66 @@
+package com.example.AutoDeployApp.ws;
+
+/**
+ * Buffer vòng kích thước cố định trên mảng byte: giữ capacity byte mới nhất, ghi đè phần cũ nhất.
+ * Vị trí được tính theo offset tuyệt đối (tổng số byte đã ghi từ đầu) để client biết mình đã nhận tới đâu.
+ * Không thread-safe - người gọi tự đồng bộ.
+ */
+final class ByteRingBuffer {
+
+    private final byte[] data;
+    private int head; // vị trí ghi tiếp theo
+    private long total;
+
+    ByteRingBuffer(int capacity) {
+        this.data = new byte[Math.max(1024, capacity)];
+    }
+
+    void write(byte[] src, int offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+        total += length;
+        if (length >= data.length) {
+            System.arraycopy(src, offset + length - data.length, data, 0, data.length);
+            head = 0;
+            return;
+        }
+        int first = Math.min(length, data.length - head);
+        System.arraycopy(src, offset, data, head, first);
+        System.arraycopy(src, offset + first, data, 0, length - first);
+        head = (head + length) % data.length;
+    }
+
+    /** Offset của byte cũ nhất còn giữ */
+    long startOffset() {
+        return Math.max(0, total - data.length);
+    }
+
+    /** Tổng số byte đã ghi (offset của byte tiếp theo) */
+    long endOffset() {
+        return total;
+    }
+
+    int capacity() {
+        return data.length;
+    }
+
+    int size() {
+        return (int) Math.min(total, data.length);
+    }
+
+    /** Copy từ offset (bị kẹp vào [startOffset, endOffset]) tới cuối */
+    byte[] copyFrom(long offset) {
+        long from = Math.max(offset, startOffset());
+        int n = (int) Math.max(0, total - from);
+        byte[] out = new byte[n];
+        if (n == 0) {
+            return out;
+        }
+        int start = Math.floorMod(head - n, data.length);
+        int first = Math.min(n, data.length - start);
+        System.arraycopy(data, start, out, 0, first);
+        System.arraycopy(data, 0, out, first, n - first);
+        return out;
+    }
+}
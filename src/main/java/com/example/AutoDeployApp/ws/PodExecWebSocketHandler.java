@@ -0,0 +1,236 @@
+package com.example.AutoDeployApp.ws;
+
+import com.example.AutoDeployApp.service.K8sWorkloadsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Terminal tương tác vào container (kubectl exec -it) qua WebSocket /ws/pod-exec.
+ *
+ * Message đầu tiên là cấu hình JSON: {"namespace","pod","container","command":[...],"cols","rows"}.
+ * Sau đó text thường được ghi vào stdin; {"type":"resize","cols":..,"rows":..} đổi kích thước TTY
+ * và {"type":"input","data":"..."} ghi stdin tường minh. Output (stdout + stderr qua TTY) được gửi về dạng text.
+ */
+public class PodExecWebSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PodExecWebSocketHandler.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String[] DEFAULT_SHELL = {
+            "/bin/sh", "-c",
+            "TERM=xterm-256color; export TERM; [ -x /bin/bash ] && exec /bin/bash || exec /bin/sh" };
+    private static final ExecutorService executorService = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "pod-exec-ws");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static class ExecBinding {
+        K8sWorkloadsService.InteractiveExec exec;
+        OutputStream stdin;
+        volatile boolean isActive = true;
+    }
+
+    private final Map<String, ExecBinding> connectionMap = new ConcurrentHashMap<>();
+    private final K8sWorkloadsService k8sWorkloadsService;
+
+    public PodExecWebSocketHandler(K8sWorkloadsService k8sWorkloadsService) {
+        this.k8sWorkloadsService = k8sWorkloadsService;
+    }
+
+    @Override
+    public void afterConnectionEstablished(@NonNull WebSocketSession ws) throws Exception {
+        Object role = ws.getAttributes().get("USER_ROLE");
+        if (role == null || !"ADMIN".equalsIgnoreCase(role.toString())) {
+            sendErrorMessage(ws, "Forbidden");
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(@NonNull WebSocketSession ws, @NonNull TextMessage message) throws Exception {
+        ExecBinding binding = connectionMap.get(ws.getId());
+        if (binding == null) {
+            handleInitialConnection(ws, message);
+        } else {
+            handleInput(ws, binding, message.getPayload());
+        }
+    }
+
+    private void handleInitialConnection(WebSocketSession ws, TextMessage message) {
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> cfg = objectMapper.readValue(message.getPayload(), Map.class);
+            String namespace = getStringValue(cfg, "namespace");
+            String pod = getStringValue(cfg, "pod");
+            String container = getStringValue(cfg, "container");
+            int cols = getIntValue(cfg, "cols", 80);
+            int rows = getIntValue(cfg, "rows", 24);
+            String[] command = DEFAULT_SHELL;
+            if (cfg.get("command") instanceof List<?> list && !list.isEmpty()) {
+                command = list.stream().map(String::valueOf).toArray(String[]::new);
+            }
+
+            if (namespace == null || pod == null) {
+                sendErrorMessage(ws, "Missing namespace or pod");
+                return;
+            }
+
+            ExecBinding binding = new ExecBinding();
+            binding.exec = k8sWorkloadsService.openInteractiveExec(namespace, pod, container, command, cols, rows);
+            binding.stdin = binding.exec.watch().getInput();
+            connectionMap.put(ws.getId(), binding);
+            if (!ws.isOpen()) {
+                cleanupBinding(connectionMap.remove(ws.getId()));
+                return;
+            }
+            ws.sendMessage(new TextMessage("[server] Exec connected to " + namespace + "/" + pod
+                    + (container != null ? " (" + container + ")" : "") + "\r\n"));
+            startOutputPump(ws, binding);
+        } catch (KubernetesClientException e) {
+            logger.warn("Failed to open pod exec for session {}: {}", ws.getId(), e.getMessage());
+            sendErrorMessage(ws, "Exec failed: " + e.getMessage());
+        } catch (Exception e) {
+            logger.error("Failed to open pod exec for session: {}", ws.getId(), e);
+            sendErrorMessage(ws, "Exec failed: " + e.getMessage());
+        }
+    }
+
+    private void handleInput(WebSocketSession ws, ExecBinding binding, String payload) {
+        if (!binding.isActive || payload == null || payload.isEmpty()) {
+            return;
+        }
+        try {
+            if (payload.startsWith("{\"type\"")) {
+                Map<String, Object> control = parseControl(payload);
+                if (control != null) {
+                    String type = getStringValue(control, "type");
+                    if ("resize".equals(type)) {
+                        int cols = getIntValue(control, "cols", 0);
+                        int rows = getIntValue(control, "rows", 0);
+                        if (cols > 0 && rows > 0) {
+                            binding.exec.watch().resize(cols, rows);
+                        }
+                        return;
+                    }
+                    if ("input".equals(type)) {
+                        Object data = control.get("data");
+                        if (data == null) {
+                            return;
+                        }
+                        payload = String.valueOf(data);
+                    }
+                }
+            }
+            binding.stdin.write(payload.getBytes(StandardCharsets.UTF_8));
+            binding.stdin.flush();
+        } catch (IOException e) {
+            logger.warn("Failed to send input to pod exec for session: {}", ws.getId(), e);
+            binding.isActive = false;
+        }
+    }
+
+    private void startOutputPump(WebSocketSession ws, ExecBinding binding) {
+        executorService.submit(() -> {
+            // Reader giữ trạng thái decode UTF-8 giữa các lần đọc, không cắt đôi ký tự nhiều byte
+            char[] buffer = new char[4096];
+            try (Reader reader = new InputStreamReader(binding.exec.watch().getOutput(), StandardCharsets.UTF_8)) {
+                while (ws.isOpen() && binding.isActive) {
+                    int read = reader.read(buffer);
+                    if (read < 0) {
+                        break;
+                    }
+                    if (read > 0) {
+                        ws.sendMessage(new TextMessage(new String(buffer, 0, read)));
+                    }
+                }
+                Integer exitCode = binding.exec.watch().exitCode().getNow(null);
+                if (ws.isOpen()) {
+                    ws.sendMessage(new TextMessage("\r\n[server] Exec exited"
+                            + (exitCode != null ? " with code " + exitCode : "") + "\r\n"));
+                }
+            } catch (IOException e) {
+                logger.warn("Pod exec output pump error for session: {}", ws.getId(), e);
+            } finally {
+                binding.isActive = false;
+                connectionMap.remove(ws.getId(), binding);
+                cleanupBinding(binding);
+                try {
+                    if (ws.isOpen()) {
+                        ws.close(CloseStatus.NORMAL);
+                    }
+                } catch (Exception e) {
+                    logger.warn("Error closing WebSocket session: {}", ws.getId(), e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void afterConnectionClosed(@NonNull WebSocketSession ws, @NonNull CloseStatus status) {
+        ExecBinding binding = connectionMap.remove(ws.getId());
+        if (binding != null) {
+            binding.isActive = false;
+            cleanupBinding(binding);
+        }
+    }
+
+    private void cleanupBinding(ExecBinding binding) {
+        if (binding == null || binding.exec == null) {
+            return;
+        }
+        try {
+            binding.exec.close();
+        } catch (Exception e) {
+            logger.debug("Error closing pod exec", e);
+        }
+    }
+
+    private Map<String, Object> parseControl(String payload) {
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> control = objectMapper.readValue(payload, Map.class);
+            return control;
+        } catch (IOException e) {
+            return null; // Không phải control message - coi là input thường
+        }
+    }
+
+    private String getStringValue(Map<String, Object> map, String key) {
+        Object value = map.get(key);
+        return value != null && !String.valueOf(value).isBlank() ? String.valueOf(value) : null;
+    }
+
+    private int getIntValue(Map<String, Object> map, String key, int defaultValue) {
+        Object value = map.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return defaultValue;
+    }
+
+    private void sendErrorMessage(WebSocketSession ws, String message) {
+        try {
+            ws.sendMessage(new TextMessage("[server] " + message + "\r\n"));
+            ws.close(CloseStatus.BAD_DATA);
+        } catch (Exception e) {
+            logger.warn("Failed to send error message to WebSocket", e);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.AutoDeployApp.ws;
+
+import com.example.AutoDeployApp.service.K8sPodLogStreamService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WebSocket stream log pod (follow=true): /ws/pod-logs?namespace=&pod=&container=&tailLines=&sinceSeconds=
+ * &timestamps=&previous=
+ *
+ * Server gửi các frame JSON: {"type":"connected"}, {"type":"logs","lines":[...],"dropped":n},
+ * {"type":"end","reason":"..."} và {"type":"error","message":"..."}.
+ */
+public class PodLogWebSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PodLogWebSocketHandler.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final K8sPodLogStreamService logStreamService;
+    private final Map<String, AutoCloseable> subscriptions = new ConcurrentHashMap<>();
+
+    public PodLogWebSocketHandler(K8sPodLogStreamService logStreamService) {
+        this.logStreamService = logStreamService;
+    }
+
+    @Override
+    public void afterConnectionEstablished(@NonNull WebSocketSession ws) throws Exception {
+        Object role = ws.getAttributes().get("USER_ROLE");
+        if (role == null || !"ADMIN".equalsIgnoreCase(role.toString())) {
+            sendError(ws, "Forbidden");
+            ws.close(CloseStatus.POLICY_VIOLATION);
+            return;
+        }
+
+        MultiValueMap<String, String> params = ws.getUri() != null
+                ? UriComponentsBuilder.fromUri(ws.getUri()).build().getQueryParams()
+                : new org.springframework.util.LinkedMultiValueMap<>();
+        String namespace = param(params, "namespace");
+        String pod = param(params, "pod");
+        if (namespace == null || pod == null) {
+            sendError(ws, "Missing namespace or pod");
+            ws.close(CloseStatus.BAD_DATA);
+            return;
+        }
+
+        K8sPodLogStreamService.LogStreamKey key;
+        int tailLines;
+        try {
+            String since = param(params, "sinceSeconds");
+            key = new K8sPodLogStreamService.LogStreamKey(namespace, pod, param(params, "container"),
+                    since != null ? Integer.parseInt(since) : null,
+                    Boolean.parseBoolean(param(params, "timestamps")),
+                    Boolean.parseBoolean(param(params, "previous")));
+            String tail = param(params, "tailLines");
+            tailLines = tail != null ? Integer.parseInt(tail) : 100;
+        } catch (NumberFormatException e) {
+            sendError(ws, "Invalid number: " + e.getMessage());
+            ws.close(CloseStatus.BAD_DATA);
+            return;
+        }
+
+        send(ws, Map.of("type", "connected", "namespace", namespace, "pod", pod));
+        try {
+            AutoCloseable subscription = logStreamService.subscribe(key, tailLines, new K8sPodLogStreamService.LogSink() {
+                @Override
+                public void sendLines(List<String> lines, long dropped) throws IOException {
+                    send(ws, Map.of("type", "logs", "lines", lines, "dropped", dropped));
+                }
+
+                @Override
+                public void end(String reason) {
+                    try {
+                        send(ws, Map.of("type", "end", "reason", reason));
+                        ws.close(CloseStatus.NORMAL);
+                    } catch (IOException e) {
+                        logger.debug("Failed to close pod log session {}", ws.getId(), e);
+                    }
+                }
+            });
+            subscriptions.put(ws.getId(), subscription);
+            if (!ws.isOpen()) {
+                closeSubscription(ws.getId());
+            }
+        } catch (KubernetesClientException e) {
+            sendError(ws, e.getCode() == 404 ? "Pod not found: " + namespace + "/" + pod : e.getMessage());
+            ws.close(CloseStatus.SERVER_ERROR);
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(@NonNull WebSocketSession ws, @NonNull TextMessage message) {
+        // Stream 1 chiều - bỏ qua dữ liệu từ client (ping của trình duyệt, v.v.)
+    }
+
+    @Override
+    public void afterConnectionClosed(@NonNull WebSocketSession ws, @NonNull CloseStatus status) {
+        closeSubscription(ws.getId());
+    }
+
+    private void closeSubscription(String sessionId) {
+        AutoCloseable subscription = subscriptions.remove(sessionId);
+        if (subscription != null) {
+            try {
+                subscription.close();
+            } catch (Exception e) {
+                logger.debug("Error closing pod log subscription {}", sessionId, e);
+            }
+        }
+    }
+
+    private static String param(MultiValueMap<String, String> params, String name) {
+        String value = params.getFirst(name);
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private void sendError(WebSocketSession ws, String message) {
+        try {
+            send(ws, Map.of("type", "error", "message", message));
+        } catch (IOException e) {
+            logger.warn("Failed to send error message to WebSocket", e);
+        }
+    }
+
+    private static void send(WebSocketSession ws, Map<String, Object> payload) throws IOException {
+        if (ws.isOpen()) {
+            ws.sendMessage(new TextMessage(objectMapper.writeValueAsString(payload)));
+        }
+    }
+}
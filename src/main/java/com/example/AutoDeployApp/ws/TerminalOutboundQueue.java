@@ -0,0 +1,219 @@
+package com.example.AutoDeployApp.ws;
+
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hàng đợi gửi của 1 WebSocket terminal, giới hạn theo số byte (tính cả frame đang gửi).
+ *
+ * Pump đọc SSH gọi offer(): khi hàng đợi đầy, offer() chặn - pump ngừng đọc kênh, buffer của JSch đầy dần và
+ * cuối cùng áp lực ngược truyền qua TCP về máy đích thay vì dồn output không giới hạn trong RAM. Nếu client
+ * không đọc gì quá stallTimeoutMs, offer() ném ClientStalledException để phiên bị đóng.
+ * Chỉ 1 task drain gửi tại 1 thời điểm nên WebSocketSession không bị 2 thread cùng ghi.
+ */
+final class TerminalOutboundQueue {
+
+    /** Client ngừng đọc quá lâu - phiên terminal bị huỷ theo chính sách */
+    static final class ClientStalledException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ClientStalledException(String message) {
+            super(message);
+        }
+    }
+
+    /** Bộ đếm dùng chung cho mọi phiên (expose qua TerminalWebSocketHandler.getStats) */
+    static final class Metrics {
+        final AtomicLong stalls = new AtomicLong();
+        final AtomicLong stallNanos = new AtomicLong();
+        final AtomicLong maxStallNanos = new AtomicLong();
+        final AtomicLong droppedSessions = new AtomicLong();
+        final AtomicLong sendErrors = new AtomicLong();
+
+        void recordStall(long nanos) {
+            stallNanos.addAndGet(nanos);
+            maxStallNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    private record Frame(WebSocketMessage<?> message, int size) {
+    }
+
+    private final WebSocketSession ws;
+    private final Executor sender;
+    private final int maxBytes;
+    private final long stallTimeoutNanos;
+    private final Metrics metrics;
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    // guarded by this
+    private long queuedBytes;
+    private long peakBytes;
+    private long stalls;
+    private long stallNanos;
+    private long currentStallStart;
+    private boolean sending;
+    private boolean closed;
+
+    TerminalOutboundQueue(WebSocketSession ws, Executor sender, int maxBytes, long stallTimeoutMs, Metrics metrics) {
+        this.ws = ws;
+        this.sender = sender;
+        this.maxBytes = Math.max(64 * 1024, maxBytes);
+        this.stallTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1000, stallTimeoutMs));
+        this.metrics = metrics;
+    }
+
+    /**
+     * Thêm frame vào hàng đợi, chặn khi đầy. Trả về false nếu phiên đã đóng (frame bị bỏ).
+     * 1 frame lớn hơn maxBytes vẫn được nhận khi hàng đợi rỗng.
+     */
+    boolean offer(WebSocketMessage<?> message, int size) throws IOException {
+        synchronized (this) {
+            long stallStart = 0;
+            try {
+                while (!closed && queuedBytes > 0 && queuedBytes + size > maxBytes) {
+                    if (stallStart == 0) {
+                        stallStart = System.nanoTime();
+                        currentStallStart = stallStart;
+                        stalls++;
+                        metrics.stalls.incrementAndGet();
+                    }
+                    long remaining = stallTimeoutNanos - (System.nanoTime() - stallStart);
+                    if (remaining <= 0) {
+                        closed = true;
+                        frames.clear();
+                        metrics.droppedSessions.incrementAndGet();
+                        throw new ClientStalledException("Client has not read terminal output for "
+                                + TimeUnit.NANOSECONDS.toSeconds(stallTimeoutNanos) + "s");
+                    }
+                    wait(Math.max(1, Math.min(1000, TimeUnit.NANOSECONDS.toMillis(remaining))));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new java.io.InterruptedIOException("Interrupted while waiting for WebSocket client");
+            } finally {
+                if (stallStart != 0) {
+                    long stalled = System.nanoTime() - stallStart;
+                    stallNanos += stalled;
+                    currentStallStart = 0;
+                    metrics.recordStall(stalled);
+                }
+            }
+            if (closed) {
+                return false;
+            }
+            frames.add(new Frame(message, size));
+            queuedBytes += size;
+            peakBytes = Math.max(peakBytes, queuedBytes);
+            if (sending) {
+                return true;
+            }
+            sending = true;
+        }
+        try {
+            sender.execute(this::drain);
+        } catch (RuntimeException e) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Như offer() nhưng không chặn: trả về false khi hàng đợi không đủ chỗ (hoặc đã đóng). Dùng khi nhiều viewer
+     * cùng xem 1 shell - viewer chậm không được làm các viewer khác phải chờ.
+     */
+    boolean tryOffer(WebSocketMessage<?> message, int size) {
+        synchronized (this) {
+            if (closed || (queuedBytes > 0 && queuedBytes + size > maxBytes)) {
+                return false;
+            }
+            frames.add(new Frame(message, size));
+            queuedBytes += size;
+            peakBytes = Math.max(peakBytes, queuedBytes);
+            if (sending) {
+                return true;
+            }
+            sending = true;
+        }
+        try {
+            sender.execute(this::drain);
+        } catch (RuntimeException e) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    private void drain() {
+        while (true) {
+            Frame frame;
+            synchronized (this) {
+                frame = frames.peek();
+                if (frame == null || closed) {
+                    sending = false;
+                    notifyAll();
+                    return;
+                }
+            }
+            try {
+                ws.sendMessage(frame.message());
+            } catch (IOException | IllegalStateException e) {
+                metrics.sendErrors.incrementAndGet();
+                close();
+                return;
+            }
+            synchronized (this) {
+                if (!closed) {
+                    frames.poll();
+                    queuedBytes -= frame.size();
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /** Bỏ các frame chưa gửi và đánh thức pump đang chờ */
+    synchronized void close() {
+        closed = true;
+        frames.clear();
+        queuedBytes = 0;
+        sending = false;
+        notifyAll();
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    synchronized long queuedBytes() {
+        return queuedBytes;
+    }
+
+    synchronized int depth() {
+        return frames.size();
+    }
+
+    synchronized long peakBytes() {
+        return peakBytes;
+    }
+
+    synchronized long stalls() {
+        return stalls;
+    }
+
+    /** Tổng thời gian pump bị chặn, gồm cả lần chặn đang diễn ra */
+    synchronized long stallMillis() {
+        long total = stallNanos + (currentStallStart != 0 ? System.nanoTime() - currentStallStart : 0);
+        return TimeUnit.NANOSECONDS.toMillis(total);
+    }
+
+    int maxBytes() {
+        return maxBytes;
+    }
+}
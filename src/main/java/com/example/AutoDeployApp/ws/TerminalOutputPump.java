@@ -0,0 +1,100 @@
+package com.example.AutoDeployApp.ws;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Đọc stdout của kênh shell và gộp thành frame: gửi ngay khi đã im lặng quá flushIntervalMs kể từ frame trước
+ * (gõ phím vẫn phản hồi tức thì), còn khi output dồn dập (tail -f, cat file lớn) thì tối đa 1 frame mỗi
+ * flushIntervalMs hoặc khi buffer đầy maxFrameBytes.
+ *
+ * Frame là byte thô - ký tự UTF-8 nhiều byte có thể bị cắt ở ranh giới frame, phía nhận tự giải mã có trạng
+ * thái (Utf8StreamDecoder hoặc TextDecoder/xterm ở trình duyệt).
+ */
+final class TerminalOutputPump {
+
+    static final int DEFAULT_MAX_FRAME_BYTES = 32 * 1024;
+    static final long DEFAULT_FLUSH_INTERVAL_MS = 16;
+
+    /** buffer được dùng lại cho frame sau - phải xử lý/copy xong trước khi trả về */
+    interface FrameHandler {
+        void onFrame(byte[] buffer, int length) throws IOException;
+    }
+
+    private final InputStream in;
+    private final FrameHandler handler;
+    private final byte[] buffer;
+    private final long flushIntervalNanos;
+    private long bytes;
+    private long reads;
+    private long frames;
+
+    TerminalOutputPump(InputStream in, FrameHandler handler) {
+        this(in, handler, DEFAULT_MAX_FRAME_BYTES, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    TerminalOutputPump(InputStream in, FrameHandler handler, int maxFrameBytes, long flushIntervalMs) {
+        this.in = in;
+        this.handler = handler;
+        this.buffer = new byte[Math.max(1024, maxFrameBytes)];
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMs));
+    }
+
+    /**
+     * Chạy tới khi stream kết thúc (EOF), keepRunning trả về false hoặc có IOException
+     */
+    void run(java.util.function.BooleanSupplier keepRunning) throws IOException {
+        long lastFlush = System.nanoTime() - flushIntervalNanos;
+        int length = 0;
+        boolean eof = false;
+        while (!eof && keepRunning.getAsBoolean()) {
+            int n = in.read(buffer, length, buffer.length - length);
+            if (n < 0) {
+                break;
+            }
+            reads++;
+            length += n;
+            // Vừa có frame gần đây: chờ tới hết khoảng flush, gom thêm dữ liệu đến trong lúc chờ
+            long flushAt = lastFlush + flushIntervalNanos;
+            while (length < buffer.length) {
+                int available = in.available();
+                if (available > 0) {
+                    n = in.read(buffer, length, Math.min(available, buffer.length - length));
+                    if (n < 0) {
+                        eof = true;
+                        break;
+                    }
+                    reads++;
+                    length += n;
+                    continue;
+                }
+                long wait = flushAt - System.nanoTime();
+                if (wait <= 0 || !keepRunning.getAsBoolean()) {
+                    break;
+                }
+                LockSupport.parkNanos(Math.min(wait, TimeUnit.MILLISECONDS.toNanos(1)));
+            }
+            if (length > 0) {
+                handler.onFrame(buffer, length);
+                bytes += length;
+                frames++;
+                length = 0;
+                lastFlush = System.nanoTime();
+            }
+        }
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    long reads() {
+        return reads;
+    }
+
+    long frames() {
+        return frames;
+    }
+}
@@ -0,0 +1,499 @@
+package com.example.AutoDeployApp.ws;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Ghi lại phiên terminal theo định dạng asciicast v2 (asciinema): dòng đầu là header JSON, mỗi dòng sau là
+ * [giây, "o"|"i", text]. 1 file .cast cho mỗi TerminalSession, nén thành .cast.gz khi shell kết thúc.
+ *
+ * Pump output chỉ copy chunk rồi đưa vào ConcurrentLinkedQueue (không lock, không I/O); 1 thread
+ * "terminal-recording-writer" duy nhất giải mã UTF-8, ghi qua BufferedWriter 64 KB và flush sau mỗi lô. Khi
+ * writer tụt lại quá maxPendingBytes thì chunk mới bị bỏ (đếm vào droppedBytes) chứ không chặn pump - ghi hình
+ * không bao giờ làm chậm terminal. Chỗ bị bỏ được đánh dấu bằng 1 event "m" đưa vào hàng đợi ngay lúc bỏ.
+ */
+public class TerminalRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(TerminalRecorder.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final Pattern RECORDING_NAME = Pattern.compile("[A-Za-z0-9._-]+\\.cast(\\.gz)?");
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+    // PTY mặc định của kênh shell (handler không gửi resize)
+    private static final int TERM_WIDTH = 80;
+    private static final int TERM_HEIGHT = 24;
+
+    private enum Kind {
+        OPEN, OUTPUT, INPUT, DROPPED, CLOSE
+    }
+
+    private record Event(Recording recording, Kind kind, long atNanos, byte[] data) {
+    }
+
+    private final boolean enabled;
+    private final Path dir;
+    private final boolean recordInput;
+    private final long maxPendingBytes;
+    private final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicLong recordedBytes = new AtomicLong();
+    private final AtomicLong droppedBytes = new AtomicLong();
+    private final AtomicLong writeErrors = new AtomicLong();
+    private final AtomicLong compressed = new AtomicLong();
+    private final Set<String> activeFiles = ConcurrentHashMap.newKeySet();
+    private final ExecutorService compressor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "terminal-recording-gzip");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Thread writer;
+    private volatile boolean writerParked;
+    private volatile boolean running = true;
+
+    public TerminalRecorder(boolean enabled, String dir, boolean recordInput, long maxPendingBytes) {
+        this.dir = Paths.get(dir == null || dir.isBlank() ? "./recordings/terminal" : dir).toAbsolutePath()
+                .normalize();
+        this.recordInput = recordInput;
+        this.maxPendingBytes = Math.max(1024 * 1024, maxPendingBytes);
+        boolean ready = enabled;
+        if (enabled) {
+            try {
+                Files.createDirectories(this.dir);
+            } catch (IOException e) {
+                logger.error("Terminal recording disabled: cannot create directory {}", this.dir, e);
+                ready = false;
+            }
+        }
+        this.enabled = ready;
+        if (!ready) {
+            this.writer = null;
+            return;
+        }
+        this.writer = new Thread(this::writeLoop, "terminal-recording-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        compressLeftovers();
+        logger.info("Terminal recording enabled, directory: {}", this.dir);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Bắt đầu ghi 1 shell mới; null nếu tắt ghi hình */
+    Recording start(String shareId, Long serverId, Long userId, String host) {
+        if (!enabled) {
+            return null;
+        }
+        String safeHost = host == null ? "unknown" : host.replaceAll("[^A-Za-z0-9.-]", "_");
+        String name = FILE_TIME.format(LocalDateTime.now()) + "-s" + (serverId != null ? serverId : 0) + "-"
+                + safeHost + "-" + shareId.substring(0, Math.min(8, shareId.length())).replaceAll("[^A-Za-z0-9]", "x")
+                + ".cast";
+        Recording recording = new Recording(name, serverId, userId, host);
+        activeFiles.add(name);
+        enqueue(new Event(recording, Kind.OPEN, recording.startNanos, null));
+        return recording;
+    }
+
+    private void enqueue(Event event) {
+        queue.add(event);
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Ghi hình của 1 shell. output()/input() gọi từ pump / thread WebSocket, chỉ copy và đưa vào hàng đợi.
+     */
+    final class Recording {
+        final String fileName;
+        final Long serverId;
+        final Long userId;
+        final String host;
+        final long startNanos = System.nanoTime();
+        final long startEpochSeconds = System.currentTimeMillis() / 1000;
+        private final AtomicLong dropped = new AtomicLong();
+        // Đã có event DROPPED chờ trong hàng đợi: các chunk bị bỏ tiếp theo được cộng dồn vào nó
+        private final AtomicBoolean dropMarkerQueued = new AtomicBoolean();
+        private volatile boolean closed;
+        // chỉ writer thread dùng
+        private Writer out;
+        private Path path;
+        private final Utf8StreamDecoder decoder = new Utf8StreamDecoder();
+
+        private Recording(String fileName, Long serverId, Long userId, String host) {
+            this.fileName = fileName;
+            this.serverId = serverId;
+            this.userId = userId;
+            this.host = host;
+        }
+
+        void output(byte[] buffer, int length) {
+            offer(Kind.OUTPUT, Arrays.copyOf(buffer, length));
+        }
+
+        /** Phím gõ chỉ được ghi khi bật terminal.recording.record-input (có thể chứa mật khẩu) */
+        void input(byte[] data) {
+            if (recordInput) {
+                offer(Kind.INPUT, data.clone());
+            }
+        }
+
+        private void offer(Kind kind, byte[] data) {
+            if (closed) {
+                return;
+            }
+            if (pendingBytes.addAndGet(data.length) > maxPendingBytes) {
+                pendingBytes.addAndGet(-data.length);
+                dropped.addAndGet(data.length);
+                droppedBytes.addAndGet(data.length);
+                if (dropMarkerQueued.compareAndSet(false, true)) {
+                    enqueue(new Event(this, Kind.DROPPED, System.nanoTime(), null));
+                }
+                return;
+            }
+            enqueue(new Event(this, kind, System.nanoTime(), data));
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            enqueue(new Event(this, Kind.CLOSE, System.nanoTime(), null));
+        }
+    }
+
+    private void writeLoop() {
+        List<Recording> dirty = new ArrayList<>();
+        while (true) {
+            Event event = queue.poll();
+            if (event == null) {
+                flushAll(dirty);
+                if (!running) {
+                    new ArrayList<>(openRecordings).forEach(this::abandon);
+                    return;
+                }
+                // Kiểm tra lại hàng đợi sau khi bật cờ để không lỡ unpark của enqueue()
+                writerParked = true;
+                if (queue.isEmpty() && running) {
+                    LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+                }
+                writerParked = false;
+                continue;
+            }
+            if (event.data() != null) {
+                pendingBytes.addAndGet(-event.data().length);
+            }
+            try {
+                handle(event, dirty);
+            } catch (IOException | RuntimeException e) {
+                writeErrors.incrementAndGet();
+                logger.warn("Terminal recording {} write failed, stopping it", event.recording().fileName, e);
+                abandon(event.recording());
+            }
+        }
+    }
+
+    // File đang mở - chỉ writer thread dùng
+    private final List<Recording> openRecordings = new ArrayList<>();
+
+    private void handle(Event event, List<Recording> dirty) throws IOException {
+        Recording rec = event.recording();
+        switch (event.kind()) {
+            case OPEN -> {
+                rec.path = dir.resolve(rec.fileName);
+                OutputStream file = Files.newOutputStream(rec.path, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE);
+                rec.out = new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8), WRITE_BUFFER_BYTES);
+                rec.out.write(header(rec));
+                rec.out.write('\n');
+                openRecordings.add(rec);
+                dirty.add(rec);
+            }
+            case OUTPUT, INPUT -> {
+                if (rec.out == null) {
+                    return;
+                }
+                String text = event.kind() == Kind.OUTPUT
+                        ? rec.decoder.decode(event.data(), 0, event.data().length)
+                        : new String(event.data(), StandardCharsets.UTF_8);
+                if (!text.isEmpty()) {
+                    writeEvent(rec, event.atNanos(), event.kind() == Kind.OUTPUT ? "o" : "i", text);
+                    recordedBytes.addAndGet(event.data().length);
+                }
+                if (!dirty.contains(rec)) {
+                    dirty.add(rec);
+                }
+            }
+            case DROPPED -> {
+                // Bỏ cờ trước khi lấy số đếm: byte bị bỏ sau đó sẽ nằm trong event này hoặc event DROPPED mới
+                rec.dropMarkerQueued.set(false);
+                long lost = rec.dropped.getAndSet(0);
+                if (rec.out == null || lost == 0) {
+                    return;
+                }
+                writeEvent(rec, event.atNanos(), "m", "[recording dropped " + lost + " bytes]");
+                if (!dirty.contains(rec)) {
+                    dirty.add(rec);
+                }
+            }
+            case CLOSE -> {
+                if (rec.out == null) {
+                    activeFiles.remove(rec.fileName);
+                    return;
+                }
+                String rest = rec.decoder.flush();
+                if (!rest.isEmpty()) {
+                    writeEvent(rec, event.atNanos(), "o", rest);
+                }
+                rec.out.close();
+                rec.out = null;
+                dirty.remove(rec);
+                openRecordings.remove(rec);
+                activeFiles.remove(rec.fileName);
+                scheduleCompress(rec.path);
+            }
+        }
+    }
+
+    private String header(Recording rec) throws JsonProcessingException {
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("version", 2);
+        header.put("width", TERM_WIDTH);
+        header.put("height", TERM_HEIGHT);
+        header.put("timestamp", rec.startEpochSeconds);
+        header.put("title", rec.host + (rec.serverId != null ? " (server " + rec.serverId + ")" : ""));
+        header.put("env", Map.of("TERM", "xterm-256color"));
+        header.put("serverId", rec.serverId);
+        header.put("userId", rec.userId);
+        header.put("host", rec.host);
+        return objectMapper.writeValueAsString(header);
+    }
+
+    // [1.234567, "o", "..."] - thời gian tính từ lúc mở shell, độ chính xác micro giây
+    private static void writeEvent(Recording rec, long atNanos, String code, String text) throws IOException {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(atNanos - rec.startNanos));
+        String fraction = Long.toString(1_000_000 + micros % 1_000_000).substring(1);
+        rec.out.write('[');
+        rec.out.write(Long.toString(micros / 1_000_000));
+        rec.out.write('.');
+        rec.out.write(fraction);
+        rec.out.write(", \"");
+        rec.out.write(code);
+        rec.out.write("\", ");
+        rec.out.write(objectMapper.writeValueAsString(text));
+        rec.out.write("]\n");
+    }
+
+    // Flush sau mỗi lô để file đang ghi đọc được gần như trực tiếp qua API
+    private void flushAll(List<Recording> dirty) {
+        for (Recording rec : dirty) {
+            try {
+                if (rec.out != null) {
+                    rec.out.flush();
+                }
+            } catch (IOException e) {
+                writeErrors.incrementAndGet();
+                logger.warn("Terminal recording {} flush failed, stopping it", rec.fileName, e);
+                abandon(rec);
+            }
+        }
+        dirty.clear();
+    }
+
+    // Dừng ghi 1 file (lỗi ghi hoặc tắt ứng dụng): đóng, bỏ khỏi danh sách đang mở và nén phần đã ghi
+    private void abandon(Recording rec) {
+        rec.closed = true;
+        if (rec.out != null) {
+            try {
+                rec.out.close();
+            } catch (IOException ignored) {
+            }
+            rec.out = null;
+        }
+        boolean wasOpen = openRecordings.remove(rec);
+        activeFiles.remove(rec.fileName);
+        if (wasOpen && rec.path != null && Files.exists(rec.path)) {
+            scheduleCompress(rec.path);
+        }
+    }
+
+    private void scheduleCompress(Path path) {
+        try {
+            compressor.execute(() -> compress(path));
+        } catch (RejectedExecutionException e) {
+            // Đang tắt ứng dụng: file .cast được nén ở lần khởi động sau
+            logger.debug("Recording {} left uncompressed", path.getFileName());
+        }
+    }
+
+    // Nén ra file tạm rồi đổi tên - API không bao giờ thấy file .gz dở dang
+    private void compress(Path path) {
+        Path gz = path.resolveSibling(path.getFileName() + ".gz");
+        Path part = path.resolveSibling(path.getFileName() + ".gz.part");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(part), WRITE_BUFFER_BYTES)) {
+                Files.copy(path, out);
+            }
+            Files.move(part, gz, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(path);
+            compressed.incrementAndGet();
+        } catch (IOException e) {
+            logger.warn("Failed to compress terminal recording {}", path.getFileName(), e);
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // File .cast còn lại từ lần chạy trước (tắt ứng dụng giữa chừng) - nén nốt; bỏ file nén dở
+    private void compressLeftovers() {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : files.toList()) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(".gz.part")) {
+                    Files.deleteIfExists(p);
+                } else if (name.endsWith(".cast")) {
+                    scheduleCompress(p);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to scan terminal recording directory {}", dir, e);
+        }
+    }
+
+    /** File ghi hình trong thư mục, mới nhất trước; kèm thông tin lấy từ header asciicast */
+    public List<Map<String, Object>> listRecordings() {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        List<Map<String, Object>> result = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : files.toList()) {
+                String name = p.getFileName().toString();
+                if (!RECORDING_NAME.matcher(name).matches()) {
+                    continue;
+                }
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("name", name);
+                m.put("size", Files.size(p));
+                m.put("lastModified", Files.getLastModifiedTime(p).toMillis());
+                m.put("compressed", name.endsWith(".gz"));
+                m.put("active", activeFiles.contains(name));
+                Map<?, ?> header = readHeader(p);
+                if (header != null) {
+                    m.put("timestamp", header.get("timestamp"));
+                    m.put("serverId", header.get("serverId"));
+                    m.put("userId", header.get("userId"));
+                    m.put("host", header.get("host"));
+                    m.put("title", header.get("title"));
+                }
+                result.add(m);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to list terminal recordings in {}", dir, e);
+        }
+        result.sort((a, b) -> Long.compare((Long) b.get("lastModified"), (Long) a.get("lastModified")));
+        return result;
+    }
+
+    private static Map<?, ?> readHeader(Path p) {
+        try (InputStream raw = Files.newInputStream(p);
+                InputStream in = p.toString().endsWith(".gz") ? new GZIPInputStream(raw) : raw;
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            return line == null || line.isBlank() ? null : objectMapper.readValue(line, Map.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * File ghi hình theo tên (đúng mẫu *.cast / *.cast.gz, nằm trong thư mục ghi hình); null nếu không có.
+     * Tên từ request không được dùng trực tiếp làm đường dẫn.
+     */
+    public Path resolveRecording(String name) {
+        if (name == null || !RECORDING_NAME.matcher(name).matches() || name.contains("..")) {
+            return null;
+        }
+        Path p = dir.resolve(name).normalize();
+        return p.getParent().equals(dir) && Files.isRegularFile(p) ? p : null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("recordInput", recordInput);
+        stats.put("activeRecordings", activeFiles.size());
+        stats.put("queuedEvents", queue.size());
+        stats.put("pendingBytes", pendingBytes.get());
+        stats.put("maxPendingBytes", maxPendingBytes);
+        stats.put("recordedBytes", recordedBytes.get());
+        stats.put("droppedBytes", droppedBytes.get());
+        stats.put("writeErrors", writeErrors.get());
+        stats.put("compressedFiles", compressed.get());
+        return stats;
+    }
+
+    /** Ghi nốt hàng đợi và đóng file; nén dở dang được làm tiếp ở lần khởi động sau */
+    @PreDestroy
+    public void shutdown() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
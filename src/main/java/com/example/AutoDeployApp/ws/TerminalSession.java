@@ -0,0 +1,346 @@
+package com.example.AutoDeployApp.ws;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 1 shell SSH tách khỏi WebSocket: sống tiếp khi WebSocket rớt (tới hết thời gian chờ), định danh bằng token
+ * để client nối lại. Output luôn được ghi vào scrollback (ByteRingBuffer) rồi mới chuyển tới các viewer đang gắn;
+ * lúc không có viewer, pump vẫn đọc tiếp và phần cũ nhất của scrollback bị ghi đè.
+ *
+ * Nhiều viewer có thể cùng xem (shareId): output của 1 kênh SSH được phát tới tất cả, mỗi viewer 1 hàng đợi riêng.
+ * Chỉ 1 viewer giữ quyền nhập (input lock) tại 1 thời điểm.
+ *
+ * Nếu bật ghi hình, output (và input nếu cấu hình) được chuyển cho TerminalRecorder; file ghi hình đóng cùng shell.
+ */
+final class TerminalSession {
+
+    /** Viewer không theo kịp khi xem chung - client tự nối lại với offset và nhận phần bị lỡ từ scrollback */
+    static final CloseStatus VIEWER_TOO_SLOW = new CloseStatus(4002, "Viewer too slow");
+    /** Chủ shell nối lại ở cửa sổ khác: viewer chủ cũ bị thay thế */
+    static final CloseStatus OWNER_REPLACED = new CloseStatus(4001, "Resumed in another window");
+
+    final String token;
+    final String shareId;
+    final Long ownerUserId;
+    final Long serverId;
+    final String host;
+    final long createdAt = System.currentTimeMillis();
+    private final OutputStream stdin;
+    private final InputStream stdout;
+    private final Runnable releaseResources;
+    private final TerminalRecorder.Recording recording; // null: không ghi hình
+    private final ByteRingBuffer scrollback;
+    // guarded by this
+    private final List<Viewer> viewers = new ArrayList<>();
+    private Viewer[] viewerSnapshot = new Viewer[0];
+    private Viewer inputHolder;
+    private long detachedAt;
+    private volatile boolean closed;
+
+    TerminalSession(String token, String shareId, Long ownerUserId, Long serverId, String host, OutputStream stdin,
+            InputStream stdout, int scrollbackBytes, TerminalRecorder.Recording recording, Runnable releaseResources) {
+        this.token = token;
+        this.shareId = shareId;
+        this.ownerUserId = ownerUserId;
+        this.serverId = serverId;
+        this.host = host;
+        this.stdin = stdin;
+        this.stdout = stdout;
+        this.scrollback = new ByteRingBuffer(scrollbackBytes);
+        this.recording = recording;
+        this.releaseResources = releaseResources;
+        this.detachedAt = createdAt;
+    }
+
+    InputStream stdout() {
+        return stdout;
+    }
+
+    /**
+     * Gắn thêm viewer và gửi lại scrollback từ fromOffset (-1: shell mới, không phát lại). Làm trong cùng lock
+     * với onOutput nên không có byte nào bị mất hay gửi trùng giữa phần phát lại và output trực tiếp.
+     * Viewer của chủ shell (mở/nối lại bằng token) nhận quyền nhập và thay thế viewer chủ cũ (trả về để
+     * caller đóng với OWNER_REPLACED); chỉ viewer xem chung (shareId) mới cùng tồn tại, ở chế độ chỉ đọc.
+     */
+    Viewer attach(Viewer next, long fromOffset) throws IOException {
+        Viewer replaced = null;
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Terminal session closed");
+            }
+            long start = Math.max(fromOffset, scrollback.startOffset());
+            // Viewer xem chung không nhận resume token của chủ shell
+            next.sendControl("{\"type\":\"terminal-session\",\"token\":\"" + (next.owner ? token : "")
+                    + "\",\"shareId\":\"" + shareId + "\",\"offset\":" + start + ",\"resumed\":" + (fromOffset >= 0)
+                    + "}");
+            byte[] replay = fromOffset >= 0 ? scrollback.copyFrom(start) : new byte[0];
+            int skip = start > scrollback.startOffset() || start == 0 ? 0 : leadingContinuationBytes(replay);
+            if (replay.length > skip) {
+                next.sendOutput(replay, skip, replay.length - skip);
+            }
+            if (next.owner) {
+                for (Viewer v : viewers) {
+                    if (v.owner) {
+                        replaced = v;
+                        break;
+                    }
+                }
+                if (replaced != null) {
+                    viewers.remove(replaced);
+                }
+            }
+            viewers.add(next);
+            viewerSnapshot = viewers.toArray(new Viewer[0]);
+            detachedAt = 0;
+            if (next.owner || inputHolder == null) {
+                inputHolder = next;
+            }
+        }
+        broadcastViewerState();
+        return replaced;
+    }
+
+    // Scrollback đã bị ghi đè có thể bắt đầu giữa 1 ký tự UTF-8 - bỏ các byte tiếp nối ở đầu
+    private static int leadingContinuationBytes(byte[] data) {
+        int i = 0;
+        while (i < data.length && i < 3 && (data[i] & 0xC0) == 0x80) {
+            i++;
+        }
+        return i;
+    }
+
+    /** Gỡ viewer; viewer cuối cùng rời đi thì bắt đầu tính thời gian chờ nối lại */
+    void detach(Viewer v) {
+        synchronized (this) {
+            if (!viewers.remove(v)) {
+                return;
+            }
+            viewerSnapshot = viewers.toArray(new Viewer[0]);
+            if (inputHolder == v) {
+                inputHolder = viewers.isEmpty() ? null : viewers.get(0);
+            }
+            if (viewers.isEmpty()) {
+                detachedAt = System.currentTimeMillis();
+            }
+        }
+        broadcastViewerState();
+    }
+
+    /** Viewer xin quyền nhập; viewer đang giữ mất quyền (chuyển sang chỉ đọc) */
+    void takeInput(Viewer v) {
+        synchronized (this) {
+            if (!viewers.contains(v) || inputHolder == v) {
+                return;
+            }
+            inputHolder = v;
+        }
+        broadcastViewerState();
+    }
+
+    // Báo cho từng viewer: có quyền nhập hay không, tổng số viewer
+    private void broadcastViewerState() {
+        Viewer[] targets;
+        Viewer holder;
+        synchronized (this) {
+            targets = viewerSnapshot;
+            holder = inputHolder;
+        }
+        for (Viewer v : targets) {
+            v.trySendControl("{\"type\":\"terminal-viewers\",\"viewers\":" + targets.length + ",\"input\":"
+                    + (v == holder) + "}");
+        }
+    }
+
+    synchronized boolean isDetached() {
+        return viewers.isEmpty();
+    }
+
+    synchronized int viewerCount() {
+        return viewers.size();
+    }
+
+    /** Đóng session nếu đã tách quá graceMs mà không ai nối lại (kiểm tra và đóng nguyên tử với attach) */
+    boolean closeIfExpired(long now, long graceMs) {
+        synchronized (this) {
+            if (closed || !viewers.isEmpty() || detachedAt == 0 || now - detachedAt <= graceMs) {
+                return false;
+            }
+            closed = true;
+        }
+        release();
+        return true;
+    }
+
+    synchronized long detachedAt() {
+        return viewers.isEmpty() ? detachedAt : 0;
+    }
+
+    synchronized long scrollbackBytes() {
+        return scrollback.size();
+    }
+
+    /**
+     * Gọi từ pump: ghi scrollback rồi phát tới các viewer, ngoài lock để attach() không phải chờ.
+     * 1 viewer: offer() chặn khi client chậm - áp lực ngược về kênh SSH như phiên thường.
+     * Nhiều viewer: tryOffer() không chặn; viewer đầy hàng đợi bị ngắt (VIEWER_TOO_SLOW) và tự nối lại từ
+     * scrollback, các viewer khác không bị ảnh hưởng. Frame nhị phân chỉ copy 1 lần cho mọi viewer.
+     * Ghi hình chỉ copy chunk vào hàng đợi của TerminalRecorder, không chặn.
+     */
+    void onOutput(byte[] buffer, int length) {
+        Viewer[] targets;
+        synchronized (this) {
+            scrollback.write(buffer, 0, length);
+            targets = viewerSnapshot;
+        }
+        if (recording != null) {
+            recording.output(buffer, length);
+        }
+        if (targets.length == 0) {
+            return;
+        }
+        if (targets.length == 1) {
+            Viewer target = targets[0];
+            try {
+                target.sendOutput(buffer, 0, length);
+            } catch (TerminalOutboundQueue.ClientStalledException e) {
+                detach(target);
+                target.close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Client too slow"));
+            } catch (IOException e) {
+                detach(target);
+            }
+            return;
+        }
+        byte[] shared = Arrays.copyOf(buffer, length);
+        for (Viewer target : targets) {
+            if (!target.trySendOutput(shared, length)) {
+                detach(target);
+                target.close(VIEWER_TOO_SLOW);
+            }
+        }
+    }
+
+    /** Chỉ viewer giữ input lock được ghi vào shell; trả về false nếu viewer đang ở chế độ chỉ đọc */
+    boolean write(Viewer from, byte[] input) throws IOException {
+        synchronized (this) {
+            if (inputHolder != from) {
+                return false;
+            }
+        }
+        synchronized (stdin) {
+            stdin.write(input);
+            stdin.flush();
+        }
+        if (recording != null) {
+            recording.input(input);
+        }
+        return true;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /** Đóng shell và giải phóng kênh/lease SSH; các viewer đang gắn bị đóng với status cho trước */
+    void close(CloseStatus status) {
+        Viewer[] targets;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            targets = viewerSnapshot;
+            viewers.clear();
+            viewerSnapshot = new Viewer[0];
+            inputHolder = null;
+        }
+        for (Viewer v : targets) {
+            v.close(status);
+        }
+        release();
+    }
+
+    private void release() {
+        releaseResources.run();
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    /**
+     * 1 WebSocket đang xem session: hàng đợi gửi có giới hạn và (chế độ text) bộ giải mã UTF-8 riêng
+     */
+    static final class Viewer {
+        final WebSocketSession ws;
+        final TerminalOutboundQueue outbound;
+        final Long userId;
+        final boolean owner; // false: tham gia xem chung qua shareId
+        private final Utf8StreamDecoder decoder;
+
+        Viewer(WebSocketSession ws, TerminalOutboundQueue outbound, Long userId, boolean owner, boolean binaryFrames) {
+            this.ws = ws;
+            this.outbound = outbound;
+            this.userId = userId;
+            this.owner = owner;
+            this.decoder = binaryFrames ? null : new Utf8StreamDecoder();
+        }
+
+        void sendOutput(byte[] data, int offset, int length) throws IOException {
+            if (decoder == null) {
+                outbound.offer(new BinaryMessage(ByteBuffer.wrap(Arrays.copyOfRange(data, offset, offset + length))),
+                        length);
+                return;
+            }
+            String text = decode(data, offset, length);
+            if (!text.isEmpty()) {
+                outbound.offer(new TextMessage(text), length);
+            }
+        }
+
+        /** Không chặn; data được dùng chung giữa các viewer nên không được sửa */
+        boolean trySendOutput(byte[] data, int length) {
+            if (decoder == null) {
+                return outbound.tryOffer(new BinaryMessage(ByteBuffer.wrap(data, 0, length).asReadOnlyBuffer()),
+                        length);
+            }
+            String text = decode(data, 0, length);
+            return text.isEmpty() || outbound.tryOffer(new TextMessage(text), length);
+        }
+
+        private String decode(byte[] data, int offset, int length) {
+            synchronized (decoder) {
+                return decoder.decode(data, offset, length);
+            }
+        }
+
+        /** Thông báo dạng text (banner "[server] ...", JSON điều khiển) đi cùng hàng đợi để giữ thứ tự */
+        void sendControl(String text) throws IOException {
+            outbound.offer(new TextMessage(text), text.getBytes(StandardCharsets.UTF_8).length);
+        }
+
+        void trySendControl(String text) {
+            outbound.tryOffer(new TextMessage(text), text.length());
+        }
+
+        void close(CloseStatus status) {
+            outbound.close();
+            try {
+                if (ws.isOpen()) {
+                    ws.close(status);
+                }
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -1,14 +1,14 @@
 package com.example.AutoDeployApp.ws;
 
 import com.example.AutoDeployApp.service.ServerService;
+import com.example.AutoDeployApp.service.SshSessionPool;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jcraft.jsch.ChannelShell;
-import com.jcraft.jsch.JSch;
-import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.lang.NonNull;
+import jakarta.annotation.PreDestroy;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
@@ -18,13 +18,26 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
 import java.util.Base64;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Terminal SSH qua WebSocket. Shell (TerminalSession) tách khỏi WebSocket: khi WebSocket rớt (reload tab, mất
+ * mạng), shell vẫn chạy thêm resume-grace và output được giữ trong scrollback; client gửi {"resume": token,
+ * "offset": số byte đã nhận} để nối lại, nhận phần output bị lỡ rồi output trực tiếp. Client đóng WebSocket với
+ * code 1000 (NORMAL) nghĩa là kết thúc shell ngay.
+ *
+ * Xem chung: admin khác gửi {"join": shareId} để cùng xem shell (1 kênh SSH, output phát tới mọi viewer),
+ * chỉ 1 viewer có quyền nhập; gửi {"type":"terminal-control","action":"take-input"} để giành quyền nhập.
+ *
+ * Bật terminal.recording.enabled thì mỗi shell được ghi thành 1 file asciicast (TerminalRecorder).
+ */
 public class TerminalWebSocketHandler extends TextWebSocketHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(TerminalWebSocketHandler.class);
@@ -36,18 +49,46 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
     });
 
     private static class SshBinding {
+        SshSessionPool.Lease lease;
         Session session;
         ChannelShell channel;
         OutputStream stdin;
         InputStream stdout;
-        volatile boolean isActive = true;
     }
 
-    private final Map<String, SshBinding> connectionMap = new ConcurrentHashMap<>();
+    // WebSocket đang gắn với session nào, qua viewer nào
+    private record Attachment(TerminalSession session, TerminalSession.Viewer viewer) {
+    }
+
+    private static final SecureRandom tokenRandom = new SecureRandom();
+
+    private final Map<String, Attachment> connectionMap = new ConcurrentHashMap<>();
+    private final Map<String, TerminalSession> sessions = new ConcurrentHashMap<>();
     private final ServerService serverService;
+    private final SshSessionPool sshSessionPool;
+    private final TerminalRecorder recorder;
+    private final int outboundMaxBytes;
+    private final long stallTimeoutMs;
+    private final int scrollbackBytes;
+    private final long resumeGraceMs;
+    private final TerminalOutboundQueue.Metrics outboundMetrics = new TerminalOutboundQueue.Metrics();
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "terminal-session-reaper");
+        t.setDaemon(true);
+        return t;
+    });
 
-    public TerminalWebSocketHandler(ServerService serverService) {
+    public TerminalWebSocketHandler(ServerService serverService, SshSessionPool sshSessionPool,
+            TerminalRecorder recorder, int outboundMaxBytes, long stallTimeoutMs, int scrollbackBytes,
+            long resumeGraceSeconds) {
         this.serverService = serverService;
+        this.sshSessionPool = sshSessionPool;
+        this.recorder = recorder;
+        this.outboundMaxBytes = outboundMaxBytes;
+        this.stallTimeoutMs = stallTimeoutMs;
+        this.scrollbackBytes = scrollbackBytes;
+        this.resumeGraceMs = TimeUnit.SECONDS.toMillis(Math.max(0, resumeGraceSeconds));
+        reaper.scheduleWithFixedDelay(this::closeExpiredSessions, 5, 5, TimeUnit.SECONDS);
     }
 
     @Override
@@ -58,12 +99,12 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
     @Override
     protected void handleTextMessage(@NonNull WebSocketSession ws, @NonNull TextMessage message) throws Exception {
         String sid = ws.getId();
-        SshBinding binding = connectionMap.get(sid);
+        Attachment attachment = connectionMap.get(sid);
 
-        if (binding == null) {
+        if (attachment == null) {
             handleInitialConnection(ws, message);
         } else {
-            handleTerminalInput(ws, binding, message);
+            handleTerminalInput(ws, attachment, message);
         }
     }
 
@@ -78,6 +119,19 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
             String password = getStringValue(cfg, "password");
             String passwordB64 = getStringValue(cfg, "passwordB64");
             Long serverId = getLongValue(cfg, "serverId");
+            boolean binaryFrames = Boolean.TRUE.equals(cfg.get("binary"));
+
+            String joinId = getStringValue(cfg, "join");
+            if (joinId != null) {
+                joinSession(ws, joinId, getLongValue(cfg, "offset"), binaryFrames);
+                return;
+            }
+
+            // Nối lại shell cũ nếu token còn hiệu lực và cùng user; hết hạn thì mở shell mới
+            String resumeToken = getStringValue(cfg, "resume");
+            if (resumeToken != null && resumeSession(ws, resumeToken, getLongValue(cfg, "offset"), binaryFrames)) {
+                return;
+            }
 
             // Giải mã mật khẩu base64 nếu client gửi kèm
             if (password == null && passwordB64 != null) {
@@ -102,9 +156,19 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
             // Thiết lập kết nối SSH
             SshBinding binding = establishSshConnection(ws, host, port, username, password, serverId);
             if (binding != null) {
-                connectionMap.put(ws.getId(), binding);
-                startOutputPump(ws, binding);
-                sendSuccessMessage(ws, host, binding.session.getUserInfo() != null);
+                String shareId = newToken();
+                TerminalSession session = new TerminalSession(newToken(), shareId, userIdOf(ws), serverId, host,
+                        binding.stdin, binding.stdout, scrollbackBytes,
+                        recorder.start(shareId, serverId, userIdOf(ws), host), () -> cleanupSshBinding(binding));
+                sessions.put(session.token, session);
+                TerminalSession.Viewer viewer = newViewer(ws, true, binaryFrames);
+                connectionMap.put(ws.getId(), new Attachment(session, viewer));
+                session.attach(viewer, -1);
+                if (resumeToken != null) {
+                    viewer.sendControl("[server] Previous terminal session expired, opened a new shell\n");
+                }
+                viewer.sendControl(successMessage(host, binding.session.getUserInfo() != null));
+                startOutputPump(session, binding.channel);
             }
 
         } catch (Exception e) {
@@ -113,26 +177,123 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
-    private void handleTerminalInput(WebSocketSession ws, SshBinding binding, TextMessage message) {
-        if (!binding.isActive || binding.stdin == null) {
+    private boolean resumeSession(WebSocketSession ws, String token, Long offset, boolean binaryFrames) {
+        TerminalSession session = sessions.get(token);
+        if (session == null || session.isClosed()) {
+            return false;
+        }
+        if (!java.util.Objects.equals(session.ownerUserId, userIdOf(ws))) {
+            logger.warn("Rejected terminal resume from another user, ws session: {}", ws.getId());
+            return false;
+        }
+        TerminalSession.Viewer viewer = newViewer(ws, true, binaryFrames);
+        connectionMap.put(ws.getId(), new Attachment(session, viewer));
+        try {
+            // Nối lại ở cửa sổ mới: cửa sổ cũ của chủ shell bị đóng (4001), không thành 2 viewer tranh quyền nhập
+            TerminalSession.Viewer previous = session.attach(viewer, offset != null ? Math.max(0, offset) : 0);
+            if (previous != null) {
+                previous.close(TerminalSession.OWNER_REPLACED);
+            }
+        } catch (IOException e) {
+            connectionMap.remove(ws.getId());
+            viewer.outbound.close();
+            return false;
+        }
+        logger.info("Terminal session on {} resumed by ws session {}", session.host, ws.getId());
+        return true;
+    }
+
+    // Xem chung shell của người khác (chỉ đọc tới khi giành quyền nhập); chỉ ADMIN
+    private void joinSession(WebSocketSession ws, String shareId, Long offset, boolean binaryFrames) {
+        Long userId = userIdOf(ws);
+        if (userId == null || !isAdmin(ws)) {
+            logger.warn("Rejected terminal join from non-admin, ws session: {}", ws.getId());
+            sendErrorMessage(ws, "Forbidden");
+            return;
+        }
+        TerminalSession session = sessions.values().stream()
+                .filter(s -> s.shareId.equals(shareId) && !s.isClosed())
+                .findFirst().orElse(null);
+        if (session == null) {
+            sendErrorMessage(ws, "Shared terminal session not found");
+            return;
+        }
+        TerminalSession.Viewer viewer = newViewer(ws, false, binaryFrames);
+        connectionMap.put(ws.getId(), new Attachment(session, viewer));
+        try {
+            session.attach(viewer, offset != null ? Math.max(0, offset) : 0);
+        } catch (IOException e) {
+            connectionMap.remove(ws.getId());
+            viewer.outbound.close();
+            sendErrorMessage(ws, "Shared terminal session closed");
+            return;
+        }
+        logger.info("User {} joined terminal session on {} ({} viewers)", userId, session.host,
+                session.viewerCount());
+    }
+
+    private TerminalSession.Viewer newViewer(WebSocketSession ws, boolean owner, boolean binaryFrames) {
+        return new TerminalSession.Viewer(ws, new TerminalOutboundQueue(ws, executorService, outboundMaxBytes,
+                stallTimeoutMs, outboundMetrics), userIdOf(ws), owner, binaryFrames);
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[24];
+        tokenRandom.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static boolean isAdmin(WebSocketSession ws) {
+        Object role = ws.getAttributes().get("USER_ROLE");
+        return role != null && "ADMIN".equalsIgnoreCase(role.toString());
+    }
+
+    private static Long userIdOf(WebSocketSession ws) {
+        Object uid = ws.getAttributes().get("USER_ID");
+        return uid instanceof Number n ? n.longValue() : null;
+    }
+
+    private void handleControlMessage(Attachment attachment, String payload) {
+        try {
+            Map<?, ?> control = objectMapper.readValue(payload, Map.class);
+            TerminalSession.Viewer viewer = attachment.viewer();
+            if ("take-input".equals(control.get("action"))) {
+                // Viewer xem chung chỉ giành quyền nhập được nếu là ADMIN
+                if (!viewer.owner && !isAdmin(viewer.ws)) {
+                    logger.warn("Rejected take-input from non-admin viewer, ws session: {}", viewer.ws.getId());
+                    return;
+                }
+                attachment.session().takeInput(viewer);
+            }
+        } catch (IOException e) {
+            logger.debug("Invalid terminal control message: {}", e.getMessage());
+        }
+    }
+
+    private void handleTerminalInput(WebSocketSession ws, Attachment attachment, TextMessage message) {
+        if (attachment.session().isClosed()) {
             return;
         }
 
         try {
             String payload = message.getPayload();
-            if (payload != null && !payload.isEmpty()) {
-                binding.stdin.write(payload.getBytes(StandardCharsets.UTF_8));
-                binding.stdin.flush();
+            if (payload == null || payload.isEmpty()) {
+                return;
             }
+            if (payload.startsWith("{\"type\":\"terminal-control\"")) {
+                handleControlMessage(attachment, payload);
+                return;
+            }
+            // Viewer chỉ đọc: bỏ qua phím gõ
+            attachment.session().write(attachment.viewer(), payload.getBytes(StandardCharsets.UTF_8));
         } catch (IOException e) {
             logger.warn("Failed to send input to SSH channel for session: {}", ws.getId(), e);
-            binding.isActive = false;
         }
     }
 
     private SshBinding establishSshConnection(WebSocketSession ws, String host, int port,
             String username, String password, Long serverId) {
-        Session ssh = null;
+        SshSessionPool.Lease ssh = null;
         boolean connected = false;
         boolean triedSshKey = false;
 
@@ -144,7 +305,7 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
                     triedSshKey = true;
                     logger.info("Trying SSH key authentication for {}@{}:{}", username, host, port);
                     ssh = createSshSessionWithKey(username, host, port, pem);
-                    if (ssh != null && ssh.isConnected()) {
+                    if (ssh != null && ssh.session().isConnected()) {
                         connected = true;
                         logger.info("SSH key authentication successful for {}@{}:{}", username, host, port);
                     } else {
@@ -168,7 +329,7 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
                 }
                 logger.info("Trying password authentication for {}@{}:{}", username, host, port);
                 ssh = createSshSessionWithPassword(username, host, port, password);
-                connected = ssh != null && ssh.isConnected();
+                connected = ssh != null && ssh.session().isConnected();
                 if (connected) {
                     logger.info("Password authentication successful for {}@{}:{}", username, host, port);
                 }
@@ -179,13 +340,14 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
                 return null;
             }
 
-            // Tạo kênh shell
+            // Tạo kênh shell trên session lấy từ pool
             ChannelShell channel = (ChannelShell) ssh.openChannel("shell");
             channel.setPty(true);
             channel.connect(3000);
 
             SshBinding binding = new SshBinding();
-            binding.session = ssh;
+            binding.lease = ssh;
+            binding.session = ssh.session();
             binding.channel = channel;
             binding.stdin = channel.getOutputStream();
             binding.stdout = channel.getInputStream();
@@ -200,73 +362,48 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
-    private Session createSshSessionWithKey(String username, String host, int port, String pem) {
+    // Session riêng từ SshSessionPool.acquireDedicated (keepalive, StrictHostKeyChecking do pool cấu hình): pump
+    // có thể ngừng đọc kênh shell khi client chậm, việc đó chặn thread đọc của cả session JSch - dùng session riêng
+    // để không làm treo exec/agent metrics/Ansible đang chạy trên session dùng chung của host
+    private SshSessionPool.Lease createSshSessionWithKey(String username, String host, int port, String pem) {
         try {
-            JSch jsch = new JSch();
-            byte[] privateKey = pem.getBytes(StandardCharsets.UTF_8);
-            jsch.addIdentity("inmem-key", privateKey, null, null);
-
-            Session session = jsch.getSession(username, host, port);
-            configureSshSession(session);
-            session.connect(5000);
-            return session;
+            return sshSessionPool.acquireDedicated(host, port, username, null, pem, 5000);
         } catch (Exception e) {
             logger.warn("SSH key authentication failed for {}@{}", username, host, e);
             return null;
         }
     }
 
-    private Session createSshSessionWithPassword(String username, String host, int port, String password) {
+    private SshSessionPool.Lease createSshSessionWithPassword(String username, String host, int port,
+            String password) {
         try {
-            JSch jsch = new JSch();
-            Session session = jsch.getSession(username, host, port);
-            configureSshSession(session);
-            session.setPassword(password);
-            session.connect(5000);
-            return session;
+            return sshSessionPool.acquireDedicated(host, port, username, password, null, 5000);
         } catch (Exception e) {
             logger.error("SSH password authentication failed for {}@{}", username, host, e);
             throw new RuntimeException("SSH connection failed", e);
         }
     }
 
-    private void configureSshSession(Session session) throws JSchException {
-        // TODO: Bổ sung kiểm tra host key chuẩn cho môi trường production
-        // Tạm thời giữ hành vi cũ nhưng bổ sung logging chi tiết hơn
-        session.setConfig("StrictHostKeyChecking", "no");
-        session.setConfig("UserKnownHostsFile", "/dev/null");
-
-        // Thêm cấu hình timeout để giữ kết nối ổn định
-        session.setConfig("ServerAliveInterval", "60");
-        session.setConfig("ServerAliveCountMax", "3");
-    }
-
-    private void startOutputPump(WebSocketSession ws, SshBinding binding) {
+    /**
+     * Output gộp thành frame (tối đa ~60 frame/s khi output dồn dập, xem TerminalOutputPump) thay vì 1 TextMessage
+     * cho mỗi lần read(). Frame được ghi vào scrollback của session rồi tới viewer đang gắn qua hàng đợi gửi có
+     * giới hạn (client đọc chậm thì pump ngừng đọc kênh SSH). Pump chạy tới khi shell kết thúc hoặc session bị đóng,
+     * không phụ thuộc WebSocket.
+     */
+    private void startOutputPump(TerminalSession session, ChannelShell channel) {
         executorService.submit(() -> {
-            byte[] buffer = new byte[4096];
+            TerminalOutputPump pump = new TerminalOutputPump(session.stdout(), session::onOutput);
             try {
-                while (ws.isOpen() && binding.isActive && binding.channel.isConnected()) {
-                    int bytesRead = binding.stdout.read(buffer);
-                    if (bytesRead < 0) {
-                        break;
-                    }
-                    if (bytesRead > 0) {
-                        String output = new String(buffer, 0, bytesRead, StandardCharsets.UTF_8);
-                        ws.sendMessage(new TextMessage(output));
-                    }
-                }
+                pump.run(() -> !session.isClosed() && channel.isConnected());
             } catch (IOException e) {
-                logger.warn("SSH output pump error for session: {}", ws.getId(), e);
-            } finally {
-                binding.isActive = false;
-                cleanupSshBinding(binding);
-                try {
-                    if (ws.isOpen()) {
-                        ws.close(CloseStatus.NORMAL);
-                    }
-                } catch (Exception e) {
-                    logger.warn("Error closing WebSocket session: {}", ws.getId(), e);
+                if (!session.isClosed()) {
+                    logger.warn("SSH output pump error for terminal on {}", session.host, e);
                 }
+            } finally {
+                logger.debug("Output pump for terminal on {} finished: {} bytes, {} reads, {} frames", session.host,
+                        pump.bytes(), pump.reads(), pump.frames());
+                sessions.remove(session.token, session);
+                session.close(CloseStatus.NORMAL);
             }
         });
     }
@@ -274,10 +411,29 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
     @Override
     public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus status) throws Exception {
         logger.info("WebSocket connection closed: {} with status: {}", session.getId(), status);
-        SshBinding binding = connectionMap.remove(session.getId());
-        if (binding != null) {
-            binding.isActive = false;
-            cleanupSshBinding(binding);
+        Attachment attachment = connectionMap.remove(session.getId());
+        if (attachment == null) {
+            return;
+        }
+        attachment.viewer().outbound.close();
+        TerminalSession terminal = attachment.session();
+        if (status.getCode() == CloseStatus.NORMAL.getCode() && attachment.viewer().owner) {
+            // Chủ shell chủ động đóng terminal: kết thúc shell ngay (viewer xem chung rời đi thì không)
+            sessions.remove(terminal.token, terminal);
+            terminal.close(CloseStatus.NORMAL);
+        } else {
+            terminal.detach(attachment.viewer());
+        }
+    }
+
+    private void closeExpiredSessions() {
+        long now = System.currentTimeMillis();
+        for (TerminalSession session : sessions.values()) {
+            if (session.closeIfExpired(now, resumeGraceMs)) {
+                sessions.remove(session.token, session);
+                logger.info("Terminal session on {} closed: not resumed within {}s", session.host,
+                        TimeUnit.MILLISECONDS.toSeconds(resumeGraceMs));
+            }
         }
     }
 
@@ -294,11 +450,11 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
         }
 
         try {
-            if (binding.session != null && binding.session.isConnected()) {
-                binding.session.disconnect();
+            if (binding.lease != null) {
+                binding.lease.close();
             }
         } catch (Exception e) {
-            logger.debug("Error disconnecting SSH session", e);
+            logger.debug("Error releasing SSH session", e);
         }
 
         try {
@@ -318,12 +474,12 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
-    private void cleanupSshSession(Session session) {
-        if (session != null && session.isConnected()) {
+    private void cleanupSshSession(SshSessionPool.Lease lease) {
+        if (lease != null) {
             try {
-                session.disconnect();
+                lease.close();
             } catch (Exception e) {
-                logger.debug("Error disconnecting SSH session", e);
+                logger.debug("Error releasing SSH session", e);
             }
         }
     }
@@ -377,13 +533,78 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
-    private void sendSuccessMessage(WebSocketSession ws, String host, boolean usedKey) {
-        try {
-            String authMethod = usedKey ? " (SSH key)" : " (password)";
-            ws.sendMessage(new TextMessage("[server] SSH connected to " + host + authMethod + "\n"));
-        } catch (Exception e) {
-            logger.warn("Failed to send success message to WebSocket", e);
+    private static String successMessage(String host, boolean usedKey) {
+        String authMethod = usedKey ? " (SSH key)" : " (password)";
+        return "[server] SSH connected to " + host + authMethod + "\n";
+    }
+
+    /**
+     * Số liệu luồng output: byte đang chờ gửi theo từng phiên, số lần / tổng thời gian pump bị chặn vì client
+     * đọc chậm, số phiên bị huỷ do client ngừng đọc
+     */
+    public Map<String, Object> getStats() {
+        java.util.List<Map<String, Object>> connections = new java.util.ArrayList<>();
+        long queuedBytes = 0;
+        for (Map.Entry<String, Attachment> e : connectionMap.entrySet()) {
+            TerminalOutboundQueue q = e.getValue().viewer().outbound;
+            queuedBytes += q.queuedBytes();
+            Map<String, Object> m = new java.util.LinkedHashMap<>();
+            m.put("sessionId", e.getKey());
+            m.put("queuedBytes", q.queuedBytes());
+            m.put("queueDepth", q.depth());
+            m.put("peakQueuedBytes", q.peakBytes());
+            m.put("stalls", q.stalls());
+            m.put("stallMs", q.stallMillis());
+            connections.add(m);
         }
+        long detached = sessions.values().stream().filter(TerminalSession::isDetached).count();
+        long scrollback = sessions.values().stream().mapToLong(TerminalSession::scrollbackBytes).sum();
+        Map<String, Object> stats = new java.util.LinkedHashMap<>();
+        stats.put("sessions", sessions.size());
+        stats.put("viewers", sessions.values().stream().mapToInt(TerminalSession::viewerCount).sum());
+        stats.put("detachedSessions", detached);
+        stats.put("connections", connectionMap.size());
+        stats.put("scrollbackBytes", scrollback);
+        stats.put("scrollbackBytesPerSession", Math.max(1024, scrollbackBytes));
+        stats.put("resumeGraceSeconds", TimeUnit.MILLISECONDS.toSeconds(resumeGraceMs));
+        stats.put("queuedBytes", queuedBytes);
+        stats.put("maxQueuedBytesPerSession", Math.max(64 * 1024, outboundMaxBytes));
+        stats.put("stallTimeoutMs", stallTimeoutMs);
+        stats.put("stalls", outboundMetrics.stalls.get());
+        stats.put("stallMs", TimeUnit.NANOSECONDS.toMillis(outboundMetrics.stallNanos.get()));
+        stats.put("maxStallMs", TimeUnit.NANOSECONDS.toMillis(outboundMetrics.maxStallNanos.get()));
+        stats.put("droppedSessions", outboundMetrics.droppedSessions.get());
+        stats.put("sendErrors", outboundMetrics.sendErrors.get());
+        stats.put("recording", recorder.getStats());
+        stats.put("perConnection", connections);
+        return stats;
+    }
+
+    /**
+     * Các shell đang mở (kèm shareId để xem chung), lọc theo serverId nếu có. Không trả resume token.
+     */
+    public java.util.List<Map<String, Object>> listSessions(Long serverId) {
+        return sessions.values().stream()
+                .filter(s -> !s.isClosed() && (serverId == null || serverId.equals(s.serverId)))
+                .map(s -> {
+                    Map<String, Object> m = new java.util.LinkedHashMap<>();
+                    m.put("shareId", s.shareId);
+                    m.put("serverId", s.serverId);
+                    m.put("host", s.host);
+                    m.put("ownerUserId", s.ownerUserId);
+                    m.put("viewers", s.viewerCount());
+                    m.put("detached", s.isDetached());
+                    m.put("createdAt", s.createdAt);
+                    return m;
+                })
+                .toList();
+    }
+
+    @PreDestroy
+    public void closeAllSessions() {
+        reaper.shutdownNow();
+        sessions.values().forEach(s -> s.close(CloseStatus.SERVICE_RESTARTED));
+        sessions.clear();
     }
 
     // Hook dọn dẹp khi ứng dụng dừng
@@ -0,0 +1,58 @@
+package com.example.AutoDeployApp.ws;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Giải mã UTF-8 có trạng thái cho luồng byte bị cắt tuỳ ý: byte cuối chưa đủ 1 ký tự được giữ lại và ghép với
+ * lần decode sau thay vì thành ký tự lỗi như new String(buffer, 0, n, UTF_8). Byte không hợp lệ thật sự vẫn được
+ * thay bằng U+FFFD. Không thread-safe.
+ */
+final class Utf8StreamDecoder {
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    // Tối đa 3 byte của 1 ký tự chưa hoàn chỉnh từ lần trước + dữ liệu mới
+    private ByteBuffer pending = ByteBuffer.allocate(8 * 1024);
+    private CharBuffer chars = CharBuffer.allocate(8 * 1024);
+
+    String decode(byte[] data, int offset, int length) {
+        if (pending.remaining() < length) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + length));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        pending.put(data, offset, length);
+        pending.flip();
+        if (chars.capacity() < pending.remaining()) {
+            chars = CharBuffer.allocate(pending.remaining());
+        }
+        chars.clear();
+        CoderResult result = decoder.decode(pending, chars, false);
+        if (result.isOverflow()) {
+            // Không xảy ra: số char UTF-16 luôn <= số byte UTF-8
+            throw new IllegalStateException("UTF-8 decode overflow");
+        }
+        pending.compact();
+        chars.flip();
+        return chars.toString();
+    }
+
+    /** Phần byte còn treo khi stream kết thúc (ký tự cụt) thành U+FFFD */
+    String flush() {
+        pending.flip();
+        chars.clear();
+        decoder.decode(pending, chars, true);
+        decoder.flush(chars);
+        decoder.reset();
+        pending.clear();
+        chars.flip();
+        return chars.toString();
+    }
+}
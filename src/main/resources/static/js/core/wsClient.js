@@ -14,6 +14,7 @@
 		constructor(path, options = {}) {
 			this.url = buildUrl(path);
 			this.maxRetries = options.maxRetries ?? 10;
+			this.binaryType = options.binaryType || null; // 'arraybuffer': frame nhị phân được giao nguyên dạng ArrayBuffer
 			this.backoffBaseMs = options.backoffBaseMs ?? 500;
 			this.socket = null;
 			this.retryCount = 0;
@@ -28,13 +29,16 @@
 
 		connect() {
 			this.socket = new WebSocket(this.url);
+			if (this.binaryType) this.socket.binaryType = this.binaryType;
 			this.socket.onopen = () => {
 				this.retryCount = 0;
 				this.onOpen();
 			};
 			this.socket.onmessage = (evt) => {
 				let data = evt.data;
-				try { data = JSON.parse(evt.data); } catch (_) { /* non-JSON payload */ }
+				if (typeof data === 'string') {
+					try { data = JSON.parse(evt.data); } catch (_) { /* non-JSON payload */ }
+				}
 				// Topic dispatch if shape { topic, payload }
 				if (data && typeof data === 'object' && data.topic) {
 					const set = this.topicHandlers.get(data.topic);
@@ -56,9 +60,9 @@
 			setTimeout(() => this.connect(), delay);
 		}
 
-		close() {
+		close(code, reason) {
 			this.closedManually = true;
-			try { this.socket && this.socket.close(); } catch (_) {}
+			try { this.socket && (code ? this.socket.close(code, reason) : this.socket.close()); } catch (_) {}
 		}
 
 		send(objOrString) {
@@ -46,6 +46,9 @@
 				if (req.status === 'PENDING') {
 					statusBadge = 'Pending';
 					chipClass = 'yellow';
+				} else if (req.status === 'DEPLOYING') {
+					statusBadge = 'Deploying';
+					chipClass = 'yellow';
 				} else if (req.status === 'RUNNING') {
 					statusBadge = 'Running';
 					chipClass = 'green';
@@ -670,14 +673,16 @@
 
 			const data = await window.ApiClient.post(`/admin/deployment-requests/${id}/${endpoint}`, params);
 
-			if (data.status === 'RUNNING') {
-				setTimeout(() => {
-					stopPollingDeploymentLogs();
-					loadDeploymentLogs(id);
-				}, 30000);
-			} else {
-				stopPollingDeploymentLogs();
+			if (data.status === 'DEPLOYING') {
+				// Server trả về ngay sau khi tạo resources, rollout chạy nền - theo dõi đến khi kết thúc
+				window.showAlert('info', `
+					⏳ Đã tạo K8s resources cho ứng dụng #${data.applicationId}, đang chờ Deployment sẵn sàng...
+				`);
+				await loadList();
+				waitForRollout(id);
+				return;
 			}
+			stopPollingDeploymentLogs();
 
 			window.showAlert('success', `
 				✅ Ứng dụng #${data.applicationId} đã được xử lý.
@@ -693,6 +698,32 @@
 		}
 	}
 
+	// Theo dõi rollout chạy nền (RUNNING -> READY / FAILED), sau đó dừng polling log và tải lại danh sách
+	function waitForRollout(id) {
+		const timer = setInterval(async () => {
+			let rollout;
+			try {
+				rollout = await window.ApiClient.get(`/admin/deployment-requests/${id}/rollout`);
+			} catch (error) {
+				console.error('Error loading rollout status:', error);
+				return;
+			}
+			if (!rollout || rollout.state === 'RUNNING') {
+				return;
+			}
+			clearInterval(timer);
+			stopPollingDeploymentLogs();
+			loadDeploymentLogs(id);
+			if (rollout.state === 'READY') {
+				window.showAlert('success', `✅ Ứng dụng #${id} đã triển khai thành công.`);
+			} else {
+				const escapeHtml = getEscapeHtml();
+				window.showAlert('error', 'Triển khai thất bại: ' + escapeHtml(rollout.message || 'Lỗi không xác định'));
+			}
+			await loadList();
+		}, 2000);
+	}
+
 	// Retry deployment request
 	async function retryDeploymentRequest(id) {
 		if (!confirm(`Retry triển khai cho yêu cầu #${id}?`)) {
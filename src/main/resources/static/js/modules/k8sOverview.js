@@ -118,18 +118,38 @@
         // Gọi song song các API để load từng phần độc lập
         // Mỗi phần sẽ cập nhật UI ngay khi hoàn thành
         Promise.allSettled([
-            // 1. Health summary + events (ưu tiên cao)
-            window.ApiClient.get('/admin/cluster/overview/health')
-                .then(data => {
-                    healthData = data;
+            // 1. Health + events, workloads, pods/namespaces: một snapshot tổng hợp từ server (cache theo TTL,
+            //    giữ bản tốt gần nhất với meta.stale=true khi cluster tạm thời không truy cập được)
+            window.ApiClient.get('/admin/cluster/overview/snapshot')
+                .then(snapshot => {
+                    console.log('[Overview] Snapshot meta:', snapshot?.meta);
+                    if (snapshot?.meta?.stale) {
+                        console.warn('[Overview] Snapshot stale, ageMs=' + snapshot.meta.ageMs);
+                    }
+
+                    healthData = snapshot?.health || null;
                     renderHealth();
-                    renderEvents();
+                    renderEvents(!healthData);
+
+                    const workloadsCountElCurrent = document.getElementById('overview-workloads-count');
+                    if (workloadsCountElCurrent) {
+                        workloadsCountElCurrent.textContent = snapshot?.workloads?.workloadsCount || 0;
+                    }
+
+                    const podsNamespaces = snapshot?.podsNamespaces || {};
+                    console.log('[Overview] Pods: running=' + (podsNamespaces.runningPodsCount || 0) + ', total=' + (podsNamespaces.podsCount || 0) + ', Namespaces=' + (podsNamespaces.namespacesCount || 0));
+                    const namespacesCountElCurrent = document.getElementById('overview-namespaces-count');
+                    if (namespacesCountElCurrent) namespacesCountElCurrent.textContent = podsNamespaces.namespacesCount || 0;
                 })
                 .catch(error => {
-                    console.error('[Overview] Error loading health summary:', error);
+                    console.error('[Overview] Error loading overview snapshot:', error);
                     healthData = null;
                     renderHealth();
                     renderEvents(true);
+                    const workloadsCountElCurrent = document.getElementById('overview-workloads-count');
+                    if (workloadsCountElCurrent) workloadsCountElCurrent.textContent = '-';
+                    const namespacesCountElCurrent = document.getElementById('overview-namespaces-count');
+                    if (namespacesCountElCurrent) namespacesCountElCurrent.textContent = '-';
                 }),
 
             // 2. Load nodes data - load từ database và K8s API để xác định nodes chưa đăng ký
@@ -246,48 +266,7 @@
                     }
                 }),
 
-            // 3. Load workloads count (nhanh - từ K8s API)
-            window.ApiClient.get('/admin/cluster/overview/workloads')
-                .then(data => {
-                    console.log('[Overview] Workloads response:', data);
-                    
-                    const workloadsCountElCurrent = document.getElementById('overview-workloads-count');
-                    if (!workloadsCountElCurrent) {
-                        console.error('[Overview] Workloads count element không tìm thấy');
-                        return;
-                    }
-                    
-                    const workloadsCount = data.workloadsCount || 0;
-                    workloadsCountElCurrent.textContent = workloadsCount;
-                })
-                .catch(error => {
-                    console.error('[Overview] Error loading workloads:', error);
-                    const workloadsCountElCurrent = document.getElementById('overview-workloads-count');
-                    if (workloadsCountElCurrent) workloadsCountElCurrent.textContent = '-';
-                }),
-
-            // 4. Load pods và namespaces data (nhanh - từ K8s API)
-            window.ApiClient.get('/admin/cluster/overview/pods-namespaces')
-                .then(data => {
-                    console.log('[Overview] Pods/Namespaces response:', data);
-                    
-                    // Lấy lại elements để đảm bảo chúng vẫn tồn tại
-                    const namespacesCountElCurrent = document.getElementById('overview-namespaces-count');
-                    
-                    const runningPodsCount = data.runningPodsCount || 0;
-                    const podsCount = data.podsCount || 0;
-                    const namespacesCount = data.namespacesCount || 0;
-                    console.log('[Overview] Pods: running=' + runningPodsCount + ', total=' + podsCount + ', Namespaces=' + namespacesCount);
-                    
-                    if (namespacesCountElCurrent) namespacesCountElCurrent.textContent = namespacesCount;
-                })
-                .catch(error => {
-                    console.error('[Overview] Error loading pods/namespaces:', error);
-                    const namespacesCountElCurrent = document.getElementById('overview-namespaces-count');
-                    if (namespacesCountElCurrent) namespacesCountElCurrent.textContent = '-';
-                }),
-
-            // 5. Load resource usage data (chậm - cần SSH, ưu tiên sau)
+            // 3. Load resource usage data (chậm - cần SSH, ưu tiên sau; snapshot không có disk nên vẫn gọi riêng)
             window.ApiClient.get('/admin/cluster/overview/resource-usage')
                 .then(data => {
                     console.log('[Overview] Resource Usage response:', data);
@@ -7,10 +7,17 @@
 	let termInfo = { host: '', port: 22, username: '', id: null };
 	let term = null; // xterm instance
 	let termTrySshKey = false; // Flag để track xem đã thử SSH key chưa
+	let termBytesReceived = 0; // Số byte output đã nhận (offset gửi kèm khi nối lại shell)
+	let termJoinShareId = null; // Đang xem chung shell của người khác (shareId)
+	let termReadOnly = false; // Người khác đang giữ quyền nhập
 
 	// Auto-reconnect interval (45 seconds)
 	let autoReconnectInterval = null;
 
+	// SSE thay đổi trạng thái server từ health monitor (thay cho poll check-status)
+	let healthStream = null;
+	let healthReloadTimer = null;
+
 	// Helper: Get escapeHtml function
 	function getEscapeHtml() {
 		return window.K8sHelpers?.escapeHtml || ((text) => {
@@ -1067,6 +1074,11 @@
 				if (skipped > 0) {
 					message += `<br>• <strong>Đã bỏ qua:</strong> ${skipped} máy chủ (Đã kết nối)`;
 				}
+				// Máy online chưa kết nối: server thử SSH key ở nền
+				if (stats.pending > 0) {
+					message += `<br>• <strong>Đang kết nối:</strong> ${stats.pending} máy chủ`;
+					setTimeout(loadServers, 4000);
+				}
 			}
 			
 			window.showAlert('success', message);
@@ -1129,6 +1141,97 @@
 		t.write(text);
 	}
 
+	// Output terminal ở dạng frame nhị phân (byte UTF-8 thô): xterm tự giải mã có trạng thái nên ký tự bị cắt
+	// giữa 2 frame vẫn hiển thị đúng
+	function handleTermBinary(data) {
+		if (data instanceof ArrayBuffer) {
+			termBytesReceived += data.byteLength;
+			const t = ensureXTerm();
+			if (t) t.write(new Uint8Array(data));
+			return true;
+		}
+		return false;
+	}
+
+	// Shell phía server sống thêm 1 thời gian sau khi WebSocket rớt; token lưu theo server (sessionStorage) để
+	// nối lại cả khi reload tab
+	function termTokenKey() {
+		return 'terminal-session-' + termInfo.id;
+	}
+
+	function handleTermSession(data) {
+		if (!data || typeof data !== 'object') return false;
+		if (data.type === 'terminal-viewers') {
+			if (!data.input && !termReadOnly) {
+				appendTerm('\r\n[client] Chỉ xem (' + data.viewers + ' người đang xem): người khác đang giữ quyền nhập.\r\n');
+			} else if (data.input && termReadOnly) {
+				appendTerm('\r\n[client] Bạn đang giữ quyền nhập.\r\n');
+			}
+			termReadOnly = !data.input;
+			return true;
+		}
+		if (data.type !== 'terminal-session') return false;
+		if (data.token) {
+			try { sessionStorage.setItem(termTokenKey(), data.token); } catch (_) { /* ignore */ }
+		}
+		termBytesReceived = data.offset || 0;
+		return true;
+	}
+
+	// Gõ phím khi đang chỉ xem: hỏi giành quyền nhập thay vì gửi phím
+	function sendTermInput(data) {
+		if (!termWS || !termWS.socket || termWS.socket.readyState !== WebSocket.OPEN) return;
+		if (termReadOnly) {
+			if (confirm('Người khác đang giữ quyền nhập. Giành quyền nhập?')) {
+				termWS.send({ type: 'terminal-control', action: 'take-input' });
+			}
+			return;
+		}
+		termWS.send(data);
+	}
+
+	// Server đang có shell mở (của người khác) và mình chưa có shell riêng: hỏi có muốn xem chung không
+	function maybeJoinSharedTerminal() {
+		let ownToken = null;
+		try { ownToken = sessionStorage.getItem(termTokenKey()); } catch (_) { /* ignore */ }
+		if (ownToken || termJoinShareId || !window.ApiClient) return Promise.resolve();
+		return window.ApiClient.get('/admin/servers/terminal-sessions?serverId=' + termInfo.id).then(list => {
+			const shared = Array.isArray(list) ? list.filter(x => !x.detached) : [];
+			if (shared.length && confirm('Server này đang có ' + shared.length + ' phiên terminal đang mở. Xem chung thay vì mở shell mới?')) {
+				termJoinShareId = shared[0].shareId;
+			}
+		}).catch(() => { /* ignore */ });
+	}
+
+	function termConnectMessage(extra) {
+		const msg = Object.assign({ host: termInfo.host, port: termInfo.port, username: termInfo.username, serverId: termInfo.id, binary: true }, extra || {});
+		if (termJoinShareId) {
+			msg.join = termJoinShareId;
+			msg.offset = termBytesReceived;
+			return msg;
+		}
+		let token = null;
+		try { token = sessionStorage.getItem(termTokenKey()); } catch (_) { /* ignore */ }
+		if (token) {
+			msg.resume = token;
+			msg.offset = termBytesReceived;
+		}
+		return msg;
+	}
+
+	// endSession: đóng hẳn shell phía server (code 1000), ngược lại chỉ ngắt WebSocket
+	function closeTermWS(endSession) {
+		if (!termWS) return;
+		try {
+			if (endSession) {
+				termWS.close(1000, 'closed');
+				try { sessionStorage.removeItem(termTokenKey()); } catch (_) { /* ignore */ }
+			} else {
+				termWS.close();
+			}
+		} catch (_) { /* ignore */ }
+	}
+
 	function connectTerminal() {
 		// Kiểm tra nếu đã kết nối
 		if (termWS && termWS.socket && termWS.socket.readyState === WebSocket.OPEN) return;
@@ -1148,15 +1251,16 @@
 
 		// Tạo WSClient mới
 		termWS = new window.WSClient('/ws/terminal', {
+			binaryType: 'arraybuffer',
 			onOpen: () => {
 				if (password) {
 					appendTerm('[client] Connected, opening SSH with password...\n');
 					// Nếu có password, gửi cả serverId và password (backend sẽ ưu tiên SSH key, nếu không được thì dùng password)
-					termWS.send({ host: termInfo.host, port: termInfo.port, username: termInfo.username, serverId: termInfo.id, password: password });
+					termWS.send(termConnectMessage({ password: password }));
 				} else {
 					appendTerm('[client] Connected, trying SSH key...\n');
 					// Nếu không có password, thử SSH key trước
-					termWS.send({ host: termInfo.host, port: termInfo.port, username: termInfo.username, serverId: termInfo.id });
+					termWS.send(termConnectMessage());
 					termTrySshKey = true;
 				}
 			},
@@ -1174,6 +1278,7 @@
 
 		// Xử lý messages
 		termWS.onMessage((data) => {
+			if (handleTermBinary(data) || handleTermSession(data)) return;
 			let message = '';
 			if (typeof data === 'string') {
 				message = data;
@@ -1209,14 +1314,16 @@
 		const t = ensureXTerm();
 		if (t) {
 			t.onData((data) => {
-				if (termWS && termWS.socket && termWS.socket.readyState === WebSocket.OPEN) {
-					termWS.send(data);
-				}
+				sendTermInput(data);
 			});
 		}
 	}
 
 	function connectTerminalAuto() {
+		maybeJoinSharedTerminal().finally(openTerminalSocket);
+	}
+
+	function openTerminalSocket() {
 		// Kiểm tra nếu đã kết nối
 		if (termWS && termWS.socket && termWS.socket.readyState === WebSocket.OPEN) return;
 
@@ -1232,10 +1339,11 @@
 
 		// Tạo WSClient mới
 		termWS = new window.WSClient('/ws/terminal', {
+			binaryType: 'arraybuffer',
 			onOpen: () => {
 				appendTerm('[client] Connected, trying SSH key authentication first...\n');
 				// Ưu tiên thử kết nối bằng SSH key (gửi serverId, không gửi password)
-				termWS.send({ host: termInfo.host, port: termInfo.port, username: termInfo.username, serverId: termInfo.id });
+				termWS.send(termConnectMessage());
 			},
 			onClose: () => {
 				appendTerm('\n[client] Disconnected.\n');
@@ -1251,6 +1359,7 @@
 
 		// Xử lý messages
 		termWS.onMessage((data) => {
+			if (handleTermBinary(data) || handleTermSession(data)) return;
 			let message = '';
 			if (typeof data === 'string') {
 				message = data;
@@ -1290,9 +1399,7 @@
 		const t = ensureXTerm();
 		if (t) {
 			t.onData((data) => {
-				if (termWS && termWS.socket && termWS.socket.readyState === WebSocket.OPEN) {
-					termWS.send(data);
-				}
+				sendTermInput(data);
 			});
 		}
 	}
@@ -1311,7 +1418,16 @@
 				return;
 			}
 
-			// Set terminal info
+			// Close existing WebSocket connection (kết thúc shell của server đang mở trước đó)
+			if (termWS) {
+				closeTermWS(true);
+				termWS = null;
+			}
+
+			// Set terminal info (xterm mới: phát lại toàn bộ scrollback nếu nối lại shell cũ)
+			termBytesReceived = 0;
+			termJoinShareId = null;
+			termReadOnly = false;
 			termInfo = { host: s.host || '', port: s.port || 22, username: s.username || '', id: s.id };
 
 			// Fill form fields
@@ -1337,14 +1453,6 @@
 				term = null;
 			}
 
-			// Close existing WebSocket connection
-			if (termWS) {
-				try {
-					termWS.close();
-				} catch (_) { /* ignore */ }
-				termWS = null;
-			}
-
 			// Reset flag
 			termTrySshKey = false;
 
@@ -1370,11 +1478,9 @@
 	}
 
 	function closeTerminal() {
-		// Close WebSocket connection
+		// Close WebSocket connection và kết thúc shell phía server
 		if (termWS) {
-			try {
-				termWS.close();
-			} catch (_) { /* ignore */ }
+			closeTermWS(true);
 			termWS = null;
 		}
 
@@ -1676,6 +1782,9 @@
 			
 			// Auto-connect servers immediately (one-time check)
 			autoConnectServers();
+
+			// Nhận thay đổi ONLINE/OFFLINE realtime
+			subscribeHealthStream();
 			
 			// DISABLED: Auto-reconnect interval (was every 45 seconds)
 			// Uncomment below to re-enable auto-reconnect:
@@ -1705,7 +1814,31 @@
 				clearInterval(autoReconnectInterval);
 				autoReconnectInterval = null;
 			}
+			if (healthStream) {
+				healthStream.close();
+				healthStream = null;
+			}
+		});
+	}
+
+	// Subscribe health stream: mỗi event "transition" tải lại danh sách (gộp nhiều event trong 500ms)
+	function subscribeHealthStream() {
+		if (healthStream || typeof EventSource === 'undefined') return;
+		healthStream = new EventSource('/admin/servers/health/stream');
+		healthStream.addEventListener('transition', (e) => {
+			try {
+				const data = JSON.parse(e.data);
+				console.debug('[servers.js] Health transition:', `${data.host}:${data.port} ${data.from} -> ${data.to}`);
+			} catch (_) {
+				// ignore
+			}
+			if (healthReloadTimer) clearTimeout(healthReloadTimer);
+			healthReloadTimer = setTimeout(() => {
+				healthReloadTimer = null;
+				loadServers();
+			}, 500);
 		});
+		// EventSource tự kết nối lại khi lỗi mạng / stream hết hạn
 	}
 
 	// Auto-connect servers
@@ -1713,6 +1846,9 @@
 		try {
 			const response = await window.ApiClient.post('/admin/servers/check-status', {});
 			await loadServers();
+			if (response && response.stats && response.stats.pending > 0) {
+				setTimeout(loadServers, 4000); // chờ các lần thử SSH key chạy nền
+			}
 			
 			// Log thống kê (không hiển thị alert để tránh spam)
 			if (response && response.stats) {
@@ -0,0 +1,101 @@
+package com.example.AutoDeployApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class HostMetricsStreamParserTests {
+
+	private final List<long[]> samples = new ArrayList<>();
+	private final HostMetricsStreamParser parser = new HostMetricsStreamParser(3,
+			fields -> samples.add(fields.clone()));
+
+	private void feed(String text) {
+		byte[] data = text.getBytes(StandardCharsets.US_ASCII);
+		parser.feed(data, 0, data.length);
+	}
+
+	@Test
+	void parsesCompleteLineAsFixedPointTimes100() {
+		feed("M 12 0.5 3.25\n");
+
+		assertEquals(1, samples.size());
+		assertArrayEquals(new long[] { 1200, 50, 325 }, samples.get(0));
+		assertEquals(1, parser.samples());
+		assertEquals(0, parser.rejectedLines());
+	}
+
+	@Test
+	void keepsOnlyTwoFractionDigits() {
+		feed("M 1.239 0.0 7\n");
+
+		assertArrayEquals(new long[] { 123, 0, 700 }, samples.get(0));
+	}
+
+	@Test
+	void partialLineWaitsForNewline() {
+		feed("M 10 2");
+		assertEquals(0, samples.size());
+
+		feed("0 3");
+		assertEquals(0, samples.size());
+
+		feed("0\n");
+		assertEquals(1, samples.size());
+		assertArrayEquals(new long[] { 1000, 2000, 3000 }, samples.get(0));
+	}
+
+	@Test
+	void lineSplitByteByByte() {
+		byte[] data = "M 4 5.5 6\r\nM 7 8 9\n".getBytes(StandardCharsets.US_ASCII);
+		for (int i = 0; i < data.length; i++) {
+			parser.feed(data, i, 1);
+		}
+
+		assertEquals(2, samples.size());
+		assertArrayEquals(new long[] { 400, 550, 600 }, samples.get(0));
+		assertArrayEquals(new long[] { 700, 800, 900 }, samples.get(1));
+	}
+
+	@Test
+	void honoursOffsetAndLength() {
+		byte[] data = "xxM 1 2 3\nyy".getBytes(StandardCharsets.US_ASCII);
+		parser.feed(data, 2, data.length - 4);
+
+		assertEquals(1, samples.size());
+		assertArrayEquals(new long[] { 100, 200, 300 }, samples.get(0));
+	}
+
+	@Test
+	void ignoresLinesWithoutPrefix() {
+		feed("bash: warning\n\nM 1 2 3\n");
+
+		assertEquals(1, samples.size());
+		assertEquals(0, parser.rejectedLines());
+	}
+
+	@Test
+	void rejectsWrongFieldCountAndGarbage() {
+		feed("M 1 2\n");
+		feed("M 1 2 3 4\n");
+		feed("M 1 x 3\n");
+		feed("M 1 2 3\n");
+
+		assertEquals(1, samples.size());
+		assertArrayEquals(new long[] { 100, 200, 300 }, samples.get(0));
+		assertEquals(3, parser.rejectedLines());
+	}
+
+	@Test
+	void rejectedLineDoesNotLeakIntoNextLine() {
+		feed("M 9 9 9 9\nM 1 2 3\n");
+
+		assertEquals(1, samples.size());
+		assertArrayEquals(new long[] { 100, 200, 300 }, samples.get(0));
+	}
+}
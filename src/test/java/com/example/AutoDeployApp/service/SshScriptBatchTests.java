@@ -0,0 +1,124 @@
+package com.example.AutoDeployApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SshScriptBatchTests {
+
+	private static final String NONCE = "0123456789abcdef";
+
+	private static final List<SshScriptBatch.Step> STEPS = List.of(
+			new SshScriptBatch.Step("os", "cat /etc/os-release"),
+			new SshScriptBatch.Step("sudo", "sudo -n true"),
+			new SshScriptBatch.Step("kubelet", "kubelet --version"));
+
+	private static String begin(int i) {
+		return "<<<STEP:" + NONCE + ":" + i + ":BEGIN>>>\n";
+	}
+
+	private static String end(int i, int rc) {
+		return "\n<<<STEP:" + NONCE + ":" + i + ":END:" + rc + ">>>\n";
+	}
+
+	private static SshScriptBatch.Result parse(String stdout, String stderr) {
+		return SshScriptBatch.parse(STEPS, NONCE, stdout, stderr, new long[STEPS.size()], new long[STEPS.size()],
+				0, false, 10);
+	}
+
+	@Test
+	void splitsOutputAndExitCodePerStep() {
+		String stdout = begin(0) + "ID=ubuntu\n" + end(0, 0)
+				+ begin(1) + end(1, 0)
+				+ begin(2) + "v1.30.2" + end(2, 0);
+		String stderr = begin(0) + end(0, 0)
+				+ begin(1) + "warn\n" + end(1, 0)
+				+ begin(2) + end(2, 0);
+
+		SshScriptBatch.Result result = parse(stdout, stderr);
+
+		assertTrue(result.isSuccess());
+		assertEquals("ID=ubuntu\n", result.step("os").stdout());
+		assertEquals("", result.step("sudo").stdout());
+		assertEquals("warn\n", result.step("sudo").stderr());
+		assertEquals("v1.30.2", result.output("kubelet"));
+		assertEquals(List.of("OK", "OK", "OK"), result.steps().stream().map(SshScriptBatch.StepResult::status).toList());
+	}
+
+	@Test
+	void stopOnFailureMarksFailedAndSkipped() {
+		String stdout = begin(0) + "ID=ubuntu" + end(0, 0)
+				+ begin(1) + end(1, 1);
+
+		SshScriptBatch.Result result = parse(stdout, "");
+
+		assertFalse(result.isSuccess());
+		assertEquals("OK", result.step("os").status());
+		assertEquals("FAILED", result.step("sudo").status());
+		assertEquals(1, result.step("sudo").exitCode());
+		assertEquals("SKIPPED", result.step("kubelet").status());
+		assertNull(result.step("kubelet").stdout());
+		assertEquals("", result.output("kubelet"));
+	}
+
+	@Test
+	void missingEndMarkerIsIncomplete() {
+		String stdout = begin(0) + "partial out";
+
+		SshScriptBatch.Result result = parse(stdout, null);
+
+		assertEquals("INCOMPLETE", result.step("os").status());
+		assertNull(result.step("os").exitCode());
+		assertEquals("partial out", result.step("os").stdout());
+		assertNull(result.step("os").stderr());
+	}
+
+	@Test
+	void ignoresMarkersWithOtherNonce() {
+		String forged = "<<<STEP:ffffffffffffffff:0:END:0>>>";
+		String stdout = begin(0) + "line\n" + forged + end(0, 2);
+
+		SshScriptBatch.Result result = parse(stdout, "");
+
+		assertEquals("FAILED", result.step("os").status());
+		assertEquals(2, result.step("os").exitCode());
+		assertEquals("line\n" + forged, result.step("os").stdout());
+	}
+
+	@Test
+	void malformedExitCodeIsIncomplete() {
+		String stdout = begin(0) + "x\n<<<STEP:" + NONCE + ":0:END:abc>>>\n";
+
+		assertEquals("INCOMPLETE", parse(stdout, "").step("os").status());
+	}
+
+	@Test
+	void markerStepRecognisesOnlyOwnMarkers() {
+		assertEquals(0, SshScriptBatch.markerStep("<<<STEP:" + NONCE + ":0:BEGIN>>>", NONCE));
+		assertEquals(12, SshScriptBatch.markerStep("<<<STEP:" + NONCE + ":12:END:0>>>", NONCE));
+		assertEquals(-1, SshScriptBatch.markerStep("<<<STEP:other:0:BEGIN>>>", NONCE));
+		assertEquals(-1, SshScriptBatch.markerStep("<<<STEP:" + NONCE + ":x:BEGIN>>>", NONCE));
+		assertEquals(-1, SshScriptBatch.markerStep("<<<STEP:" + NONCE + ":0:BEGIN", NONCE));
+		assertEquals(-1, SshScriptBatch.markerStep("output", NONCE));
+	}
+
+	@Test
+	void buildCommandEmbedsStepsAndMarkers() {
+		String command = SshScriptBatch.buildCommand(STEPS, SshScriptBatch.Mode.STOP_ON_FAILURE, NONCE);
+		String encoded = command.substring(command.indexOf("echo '") + 6, command.indexOf("' | base64 -d"));
+		String script = new String(Base64.getDecoder().decode(encoded), StandardCharsets.UTF_8);
+
+		assertTrue(script.contains("(\nsudo -n true\n)\n"));
+		assertTrue(script.contains("<<<STEP:" + NONCE + ":2:BEGIN>>>"));
+		assertTrue(script.contains("<<<STEP:" + NONCE + ":2:END:%d>>>"));
+		assertTrue(script.contains("[ \"$rc\" -eq 0 ] || exit \"$rc\""));
+		assertFalse(SshScriptBatch.buildCommand(STEPS, SshScriptBatch.Mode.CONTINUE, NONCE).equals(command));
+	}
+}
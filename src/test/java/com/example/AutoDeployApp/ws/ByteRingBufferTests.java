@@ -0,0 +1,94 @@
+package com.example.AutoDeployApp.ws;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class ByteRingBufferTests {
+
+	private static byte[] bytes(int from, int count) {
+		byte[] out = new byte[count];
+		for (int i = 0; i < count; i++) {
+			out[i] = (byte) (from + i);
+		}
+		return out;
+	}
+
+	@Test
+	void capacityHasFloorOf1024() {
+		assertEquals(1024, new ByteRingBuffer(16).capacity());
+		assertEquals(4096, new ByteRingBuffer(4096).capacity());
+	}
+
+	@Test
+	void keepsEverythingBeforeWrap() {
+		ByteRingBuffer ring = new ByteRingBuffer(1024);
+		ring.write(bytes(0, 100), 0, 100);
+		ring.write(bytes(100, 50), 0, 50);
+
+		assertEquals(0, ring.startOffset());
+		assertEquals(150, ring.endOffset());
+		assertEquals(150, ring.size());
+		assertArrayEquals(bytes(0, 150), ring.copyFrom(0));
+		assertArrayEquals(bytes(120, 30), ring.copyFrom(120));
+	}
+
+	@Test
+	void wrapsAroundAndKeepsNewestBytes() {
+		ByteRingBuffer ring = new ByteRingBuffer(1024);
+		ring.write(bytes(0, 1000), 0, 1000);
+		ring.write(bytes(1000, 100), 0, 100); // ghi vắt qua cuối mảng
+
+		assertEquals(1100 - 1024, ring.startOffset());
+		assertEquals(1100, ring.endOffset());
+		assertEquals(1024, ring.size());
+		assertArrayEquals(bytes(1100 - 1024, 1024), ring.copyFrom(ring.startOffset()));
+		assertArrayEquals(bytes(1050, 50), ring.copyFrom(1050));
+	}
+
+	@Test
+	void writeLargerThanCapacityKeepsTail() {
+		ByteRingBuffer ring = new ByteRingBuffer(1024);
+		ring.write(bytes(0, 10), 0, 10);
+		byte[] big = bytes(10, 3000);
+		ring.write(big, 0, big.length);
+
+		assertEquals(3010, ring.endOffset());
+		assertEquals(3010 - 1024, ring.startOffset());
+		assertArrayEquals(Arrays.copyOfRange(big, big.length - 1024, big.length), ring.copyFrom(0));
+	}
+
+	@Test
+	void writeHonoursOffsetAndIgnoresEmpty() {
+		ByteRingBuffer ring = new ByteRingBuffer(1024);
+		ring.write(bytes(0, 10), 3, 4);
+		ring.write(bytes(0, 10), 0, 0);
+
+		assertEquals(4, ring.endOffset());
+		assertArrayEquals(bytes(3, 4), ring.copyFrom(0));
+	}
+
+	@Test
+	void copyFromClampsToRetainedRange() {
+		ByteRingBuffer ring = new ByteRingBuffer(1024);
+		ring.write(bytes(0, 2000), 0, 2000);
+
+		// Offset cũ hơn phần còn giữ: trả từ byte cũ nhất
+		assertArrayEquals(ring.copyFrom(ring.startOffset()), ring.copyFrom(0));
+		assertArrayEquals(ring.copyFrom(ring.startOffset()), ring.copyFrom(-5));
+		// Offset tại hoặc sau cuối: rỗng
+		assertEquals(0, ring.copyFrom(2000).length);
+		assertEquals(0, ring.copyFrom(5000).length);
+	}
+
+	@Test
+	void emptyBufferCopiesNothing() {
+		ByteRingBuffer ring = new ByteRingBuffer(1024);
+
+		assertEquals(0, ring.size());
+		assertEquals(0, ring.copyFrom(0).length);
+	}
+}
@@ -0,0 +1,156 @@
+package com.example.AutoDeployApp.ws;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * WebSocketSession giả cho test: ghi lại frame đã gửi; gated() làm sendMessage chặn tới khi release() - mô phỏng
+ * client không đọc.
+ */
+class FakeWebSocketSession implements WebSocketSession {
+
+	final List<WebSocketMessage<?>> sent = new CopyOnWriteArrayList<>();
+	private final String id;
+	private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+	private final Semaphore permits;
+	private volatile IOException sendFailure;
+	private volatile CloseStatus closeStatus;
+
+	private FakeWebSocketSession(String id, int permits) {
+		this.id = id;
+		this.permits = new Semaphore(permits);
+	}
+
+	static FakeWebSocketSession open(String id) {
+		return new FakeWebSocketSession(id, Integer.MAX_VALUE);
+	}
+
+	static FakeWebSocketSession gated(String id) {
+		return new FakeWebSocketSession(id, 0);
+	}
+
+	void release(int frames) {
+		permits.release(frames);
+	}
+
+	void failSends(IOException failure) {
+		this.sendFailure = failure;
+	}
+
+	CloseStatus closeStatus() {
+		return closeStatus;
+	}
+
+	/** Payload của các TextMessage đã gửi, theo thứ tự */
+	List<String> texts() {
+		return sent.stream().filter(TextMessage.class::isInstance).map(m -> ((TextMessage) m).getPayload()).toList();
+	}
+
+	@Override
+	public void sendMessage(WebSocketMessage<?> message) throws IOException {
+		if (sendFailure != null) {
+			throw sendFailure;
+		}
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted", e);
+		}
+		sent.add(message);
+	}
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	@Override
+	public URI getUri() {
+		return null;
+	}
+
+	@Override
+	public HttpHeaders getHandshakeHeaders() {
+		return new HttpHeaders();
+	}
+
+	@Override
+	public Map<String, Object> getAttributes() {
+		return attributes;
+	}
+
+	@Override
+	public Principal getPrincipal() {
+		return null;
+	}
+
+	@Override
+	public InetSocketAddress getLocalAddress() {
+		return null;
+	}
+
+	@Override
+	public InetSocketAddress getRemoteAddress() {
+		return null;
+	}
+
+	@Override
+	public String getAcceptedProtocol() {
+		return null;
+	}
+
+	@Override
+	public void setTextMessageSizeLimit(int messageSizeLimit) {
+	}
+
+	@Override
+	public int getTextMessageSizeLimit() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+	}
+
+	@Override
+	public int getBinaryMessageSizeLimit() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public List<WebSocketExtension> getExtensions() {
+		return List.of();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return closeStatus == null;
+	}
+
+	@Override
+	public void close() {
+		close(CloseStatus.NORMAL);
+	}
+
+	@Override
+	public void close(CloseStatus status) {
+		if (closeStatus == null) {
+			closeStatus = status;
+		}
+	}
+}
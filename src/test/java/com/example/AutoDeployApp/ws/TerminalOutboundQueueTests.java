@@ -0,0 +1,221 @@
+package com.example.AutoDeployApp.ws;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+class TerminalOutboundQueueTests {
+
+	private static final int MAX_BYTES = 64 * 1024;
+
+	private final TerminalOutboundQueue.Metrics metrics = new TerminalOutboundQueue.Metrics();
+	private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+	private ExecutorService sender;
+
+	@AfterEach
+	void shutdown() {
+		if (sender != null) {
+			sender.shutdownNow();
+		}
+	}
+
+	// Executor chạy task khi test gọi runTasks() - drain diễn ra đúng lúc test muốn
+	private TerminalOutboundQueue manualQueue(FakeWebSocketSession ws) {
+		return new TerminalOutboundQueue(ws, tasks::add, MAX_BYTES, 1000, metrics);
+	}
+
+	private TerminalOutboundQueue threadedQueue(FakeWebSocketSession ws, long stallTimeoutMs) {
+		sender = Executors.newSingleThreadExecutor();
+		return new TerminalOutboundQueue(ws, sender, MAX_BYTES, stallTimeoutMs, metrics);
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			task.run();
+		}
+	}
+
+	private static TextMessage frame(String text) {
+		return new TextMessage(text);
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime() > deadline) {
+				throw new AssertionError("condition not reached within 5s");
+			}
+			Thread.sleep(5);
+		}
+	}
+
+	@Test
+	void countsQueuedBytesAndSchedulesOneDrain() throws IOException {
+		TerminalOutboundQueue queue = manualQueue(FakeWebSocketSession.open("a"));
+
+		assertTrue(queue.offer(frame("one"), 1000));
+		assertTrue(queue.offer(frame("two"), 3000));
+
+		assertEquals(1, tasks.size());
+		assertEquals(2, queue.depth());
+		assertEquals(4000, queue.queuedBytes());
+		assertEquals(4000, queue.peakBytes());
+	}
+
+	@Test
+	void drainSendsInOrderAndReleasesBytes() throws IOException {
+		FakeWebSocketSession ws = FakeWebSocketSession.open("a");
+		TerminalOutboundQueue queue = manualQueue(ws);
+		queue.offer(frame("one"), 1000);
+		queue.offer(frame("two"), 3000);
+
+		runTasks();
+
+		assertEquals(List.of("one", "two"), ws.texts());
+		assertEquals(0, queue.queuedBytes());
+		assertEquals(0, queue.depth());
+		assertEquals(4000, queue.peakBytes());
+
+		// Drain đã dừng: frame mới lên lịch drain mới
+		queue.offer(frame("three"), 10);
+		assertEquals(1, tasks.size());
+	}
+
+	@Test
+	void tryOfferRejectsWhenFullWithoutChangingAccounting() {
+		TerminalOutboundQueue queue = manualQueue(FakeWebSocketSession.open("a"));
+
+		assertTrue(queue.tryOffer(frame("a"), 40 * 1024));
+		assertFalse(queue.tryOffer(frame("b"), 30 * 1024));
+		assertEquals(40 * 1024, queue.queuedBytes());
+		assertEquals(1, queue.depth());
+
+		assertTrue(queue.tryOffer(frame("c"), 24 * 1024));
+		assertEquals(MAX_BYTES, queue.queuedBytes());
+		assertEquals(0, queue.stalls());
+	}
+
+	@Test
+	void oversizedFrameIsAcceptedWhenQueueIsEmpty() throws IOException {
+		TerminalOutboundQueue queue = manualQueue(FakeWebSocketSession.open("a"));
+
+		assertTrue(queue.tryOffer(frame("big"), MAX_BYTES * 2));
+		assertFalse(queue.tryOffer(frame("small"), 1));
+
+		runTasks();
+		assertTrue(queue.offer(frame("big"), MAX_BYTES * 2));
+	}
+
+	@Test
+	void offerBlocksUntilClientReads() throws Exception {
+		FakeWebSocketSession ws = FakeWebSocketSession.gated("a");
+		TerminalOutboundQueue queue = threadedQueue(ws, 10_000);
+		assertTrue(queue.offer(frame("first"), 60 * 1024));
+
+		CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> {
+			try {
+				return queue.offer(frame("second"), 10 * 1024);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		await(() -> queue.stalls() == 1);
+		assertFalse(second.isDone());
+
+		ws.release(2);
+
+		assertTrue(second.get(5, TimeUnit.SECONDS));
+		await(() -> ws.sent.size() == 2);
+		await(() -> queue.queuedBytes() == 0);
+		assertEquals(List.of("first", "second"), ws.texts());
+		assertEquals(1, metrics.stalls.get());
+		assertTrue(metrics.stallNanos.get() > 0);
+		assertFalse(queue.isClosed());
+	}
+
+	@Test
+	void offerThrowsAfterStallTimeoutAndClosesQueue() throws Exception {
+		FakeWebSocketSession ws = FakeWebSocketSession.gated("a");
+		TerminalOutboundQueue queue = threadedQueue(ws, 1000);
+		queue.offer(frame("first"), 60 * 1024);
+
+		long start = System.nanoTime();
+		assertThrows(TerminalOutboundQueue.ClientStalledException.class,
+				() -> queue.offer(frame("second"), 10 * 1024));
+		long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertTrue(waitedMs >= 900, "waited " + waitedMs + "ms");
+		assertTrue(queue.isClosed());
+		assertEquals(0, queue.depth());
+		assertEquals(1, metrics.droppedSessions.get());
+		assertFalse(queue.offer(frame("late"), 1));
+		assertFalse(queue.tryOffer(frame("late"), 1));
+
+		// Frame đang gửi dở không được tính lại khi client đọc sau khi đã bị đóng
+		ws.release(1);
+		await(() -> ws.sent.size() == 1);
+		assertEquals(List.of("first"), ws.texts());
+	}
+
+	@Test
+	void closeWakesBlockedOfferAndDropsFrames() throws Exception {
+		FakeWebSocketSession ws = FakeWebSocketSession.gated("a");
+		TerminalOutboundQueue queue = threadedQueue(ws, 10_000);
+		queue.offer(frame("first"), 60 * 1024);
+
+		CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> {
+			try {
+				return queue.offer(frame("second"), 10 * 1024);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		await(() -> queue.stalls() == 1);
+
+		queue.close();
+
+		assertFalse(second.get(5, TimeUnit.SECONDS));
+		assertEquals(0, queue.queuedBytes());
+		assertEquals(0, queue.depth());
+		ws.release(2);
+	}
+
+	@Test
+	void sendFailureClosesQueue() throws IOException {
+		FakeWebSocketSession ws = FakeWebSocketSession.open("a");
+		ws.failSends(new IOException("broken pipe"));
+		TerminalOutboundQueue queue = manualQueue(ws);
+		queue.offer(frame("one"), 10);
+
+		runTasks();
+
+		assertTrue(queue.isClosed());
+		assertEquals(1, metrics.sendErrors.get());
+		assertFalse(queue.tryOffer(frame("two"), 10));
+	}
+
+	@Test
+	void rejectedExecutionClosesQueue() throws IOException {
+		TerminalOutboundQueue queue = new TerminalOutboundQueue(FakeWebSocketSession.open("a"), task -> {
+			throw new java.util.concurrent.RejectedExecutionException("shutdown");
+		}, MAX_BYTES, 1000, metrics);
+
+		assertFalse(queue.offer(frame("one"), 10));
+		assertTrue(queue.isClosed());
+	}
+}
@@ -0,0 +1,134 @@
+package com.example.AutoDeployApp.ws;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.Test;
+
+class TerminalSessionTests {
+
+	private final ByteArrayOutputStream stdin = new ByteArrayOutputStream();
+	private final TerminalOutboundQueue.Metrics metrics = new TerminalOutboundQueue.Metrics();
+	private final TerminalSession session = new TerminalSession("token", "share", 1L, 7L, "10.0.0.7", stdin,
+			new ByteArrayInputStream(new byte[0]), 4096, null, () -> {
+			});
+
+	private TerminalSession.Viewer viewer(FakeWebSocketSession ws, boolean owner, Executor sender) {
+		return new TerminalSession.Viewer(ws, new TerminalOutboundQueue(ws, sender, 64 * 1024, 1000, metrics), 1L,
+				owner, false);
+	}
+
+	private TerminalSession.Viewer viewer(FakeWebSocketSession ws, boolean owner) {
+		return viewer(ws, owner, Runnable::run);
+	}
+
+	private void output(String text) {
+		byte[] data = text.getBytes(StandardCharsets.UTF_8);
+		session.onOutput(data, data.length);
+	}
+
+	private boolean type(TerminalSession.Viewer from, String text) throws IOException {
+		return session.write(from, text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void ownerResumeReplacesPreviousOwner() throws IOException {
+		TerminalSession.Viewer first = viewer(FakeWebSocketSession.open("first"), true);
+		TerminalSession.Viewer second = viewer(FakeWebSocketSession.open("second"), true);
+
+		assertNull(session.attach(first, -1));
+		assertSame(first, session.attach(second, 0));
+
+		assertEquals(1, session.viewerCount());
+		assertFalse(type(first, "ls\n"));
+		assertTrue(type(second, "ls\n"));
+		assertEquals("ls\n", stdin.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void resumeReplaysScrollbackFromOffset() throws IOException {
+		output("hello");
+		FakeWebSocketSession ws = FakeWebSocketSession.open("owner");
+
+		session.attach(viewer(ws, true), 2);
+		output(" world");
+
+		assertTrue(ws.texts().get(0).contains("\"offset\":2"));
+		assertTrue(ws.texts().contains("llo"));
+		assertTrue(ws.texts().contains(" world"));
+	}
+
+	@Test
+	void joinedViewerIsReadOnlyUntilItTakesInput() throws IOException {
+		TerminalSession.Viewer owner = viewer(FakeWebSocketSession.open("owner"), true);
+		FakeWebSocketSession joinWs = FakeWebSocketSession.open("join");
+		TerminalSession.Viewer joined = viewer(joinWs, false);
+		session.attach(owner, -1);
+
+		assertNull(session.attach(joined, 0));
+		assertEquals(2, session.viewerCount());
+		// Viewer xem chung không nhận resume token
+		assertTrue(joinWs.texts().get(0).contains("\"token\":\"\""));
+		assertFalse(type(joined, "x"));
+
+		session.takeInput(joined);
+
+		assertTrue(type(joined, "y"));
+		assertFalse(type(owner, "z"));
+		assertEquals("y", stdin.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void outputFansOutToEveryViewer() throws IOException {
+		FakeWebSocketSession ownerWs = FakeWebSocketSession.open("owner");
+		FakeWebSocketSession joinWs = FakeWebSocketSession.open("join");
+		session.attach(viewer(ownerWs, true), -1);
+		session.attach(viewer(joinWs, false), 0);
+
+		output("shared");
+
+		assertTrue(ownerWs.texts().contains("shared"));
+		assertTrue(joinWs.texts().contains("shared"));
+	}
+
+	@Test
+	void slowViewerIsClosedWithoutBlockingOthers() throws IOException {
+		FakeWebSocketSession ownerWs = FakeWebSocketSession.open("owner");
+		FakeWebSocketSession slowWs = FakeWebSocketSession.open("slow");
+		session.attach(viewer(ownerWs, true), -1);
+		// Executor không bao giờ chạy drain: hàng đợi của viewer này chỉ đầy lên
+		session.attach(viewer(slowWs, false, task -> {
+		}), 0);
+
+		output("x".repeat(60 * 1024));
+		output("y".repeat(10 * 1024));
+
+		assertEquals(TerminalSession.VIEWER_TOO_SLOW, slowWs.closeStatus());
+		assertEquals(1, session.viewerCount());
+		assertTrue(ownerWs.texts().contains("y".repeat(10 * 1024)));
+		assertNull(ownerWs.closeStatus());
+	}
+
+	@Test
+	void lastViewerLeavingStartsResumeGrace() throws IOException {
+		TerminalSession.Viewer owner = viewer(FakeWebSocketSession.open("owner"), true);
+		session.attach(owner, -1);
+		assertFalse(session.isDetached());
+
+		session.detach(owner);
+
+		assertTrue(session.isDetached());
+		assertFalse(session.closeIfExpired(System.currentTimeMillis(), 60_000));
+		assertTrue(session.closeIfExpired(System.currentTimeMillis() + 120_000, 60_000));
+		assertTrue(session.isClosed());
+	}
+}
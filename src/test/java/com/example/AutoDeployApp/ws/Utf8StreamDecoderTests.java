@@ -0,0 +1,80 @@
+package com.example.AutoDeployApp.ws;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class Utf8StreamDecoderTests {
+
+	@Test
+	void decodesAsciiAsIs() {
+		Utf8StreamDecoder decoder = new Utf8StreamDecoder();
+		byte[] data = "ls -la\r\n".getBytes(StandardCharsets.UTF_8);
+
+		assertEquals("ls -la\r\n", decoder.decode(data, 0, data.length));
+		assertEquals("", decoder.flush());
+	}
+
+	@Test
+	void keepsCharacterSplitAcrossChunksUntilComplete() {
+		Utf8StreamDecoder decoder = new Utf8StreamDecoder();
+		byte[] data = "xin chào".getBytes(StandardCharsets.UTF_8); // "à" = 2 byte, theo sau là "o"
+		int split = data.length - 2; // cắt giữa 2 byte của "à"
+
+		assertEquals("xin ch", decoder.decode(data, 0, split));
+		assertEquals("ào", decoder.decode(data, split, data.length - split));
+	}
+
+	@Test
+	void decodesFourByteCharacterFedOneByteAtATime() {
+		Utf8StreamDecoder decoder = new Utf8StreamDecoder();
+		byte[] data = "a😀b".getBytes(StandardCharsets.UTF_8);
+		StringBuilder out = new StringBuilder();
+
+		for (int i = 0; i < data.length; i++) {
+			out.append(decoder.decode(data, i, 1));
+		}
+
+		assertEquals("a😀b", out.toString());
+	}
+
+	@Test
+	void honoursOffsetAndLength() {
+		Utf8StreamDecoder decoder = new Utf8StreamDecoder();
+		byte[] data = "--ế--".getBytes(StandardCharsets.UTF_8);
+
+		assertEquals("ế", decoder.decode(data, 2, data.length - 4));
+	}
+
+	@Test
+	void replacesInvalidBytes() {
+		Utf8StreamDecoder decoder = new Utf8StreamDecoder();
+		byte[] data = { 'a', (byte) 0xFF, 'b' };
+
+		assertEquals("a�b", decoder.decode(data, 0, data.length));
+	}
+
+	@Test
+	void flushReplacesTruncatedCharacterAndResets() {
+		Utf8StreamDecoder decoder = new Utf8StreamDecoder();
+		byte[] euro = "€".getBytes(StandardCharsets.UTF_8); // 3 byte
+
+		assertEquals("", decoder.decode(euro, 0, 2));
+		assertEquals("�", decoder.flush());
+		assertEquals("€", decoder.decode(euro, 0, euro.length));
+	}
+
+	@Test
+	void growsForChunksLargerThanInitialBuffer() {
+		Utf8StreamDecoder decoder = new Utf8StreamDecoder();
+		String text = "ộ".repeat(10_000); // 30 000 byte
+		byte[] data = text.getBytes(StandardCharsets.UTF_8);
+
+		String first = decoder.decode(data, 0, data.length - 1);
+		String rest = decoder.decode(data, data.length - 1, 1);
+
+		assertEquals(text, first + rest);
+	}
+}